@@ -0,0 +1,52 @@
+package com.dna.challenge.benchmark;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.dna.challenge.S3EventRequestHandler;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Startup benchmark for the slim Lambda JAR, run it in a fresh JVM per measurement via the startupBenchmark Gradle
+ * task. It builds the same {@link S3Event} S3 would send for the census file and reports how long the JVM took to get
+ * to the first and second processed copy, the second copy being what a warm invocation costs.
+ * <p>
+ * The census file must already exist in the local S3 source bucket and the sink bucket must exist.
+ */
+public final class ColdStartBenchmark {
+
+    /**
+     * Private default constructor
+     */
+    private ColdStartBenchmark() {
+        // Private constructor to keep static code analysis happy
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args source bucket and source key, default to source-bucket and census.csv
+     */
+    public static void main(String[] args) {
+        final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        final long mainMillis = System.currentTimeMillis() - jvmStartMillis;
+        final String sourceBucket = args.length > 0 ? args[0] : "source-bucket";
+        final String sourceKey = args.length > 1 ? args[1] : "census.csv";
+        S3Event event = S3Events.objectCreatedEvent(sourceBucket, sourceKey);
+
+        long start = System.currentTimeMillis();
+        S3EventRequestHandler handler = new S3EventRequestHandler();
+        final long handlerMillis = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        handler.handleRequest(event, null);
+        final long firstCopyMillis = System.currentTimeMillis() - start;
+        final long timeToFirstCopyMillis = System.currentTimeMillis() - jvmStartMillis;
+
+        start = System.currentTimeMillis();
+        handler.handleRequest(event, null);
+        final long warmCopyMillis = System.currentTimeMillis() - start;
+
+        System.out.println("jvm-to-main=" + mainMillis + "ms handler-init=" + handlerMillis + "ms first-copy="
+                + firstCopyMillis + "ms warm-copy=" + warmCopyMillis + "ms time-to-first-copy=" + timeToFirstCopyMillis + "ms");
+    }
+}
@@ -0,0 +1,58 @@
+package com.dna.challenge.benchmark;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.dna.challenge.S3EventRequestHandler;
+import com.dna.challenge.util.CommonUtil;
+import com.dna.challenge.util.S3Util;
+
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * One {@link S3EventRequestHandler} with the source object it is invoked on, backed by an {@link InMemoryAmazonS3}.
+ * <p>
+ * The handler is created on the first invocation, so when this class is loaded in a fresh class loader the first
+ * invocation pays for loading and initializing the handler the way a cold Lambda container does. It implements the JDK
+ * {@link LongSupplier} so {@link LambdaInvocationHarness} can invoke it across class loaders.
+ */
+public class HandlerInvocation implements LongSupplier {
+    private static final String SOURCE_BUCKET = "source-bucket";
+    private static final String SINK_BUCKET = "sink-bucket";
+
+    private final InMemoryAmazonS3 amazonS3 = new InMemoryAmazonS3();
+    private final String sourceKey;
+    private final String sinkBucket;
+    private final S3Event event;
+    private S3EventRequestHandler handler;
+
+    /**
+     * Constructor for {@link HandlerInvocation}, registers the in-memory S3 for the endpoint/region the handler reads
+     * from its environment.
+     *
+     * @param header bytes the source object starts with
+     * @param block  bytes repeated after the header
+     * @param size   minimum size of the source object
+     */
+    public HandlerInvocation(final byte[] header, final byte[] block, final long size) {
+        S3Util.registerAmazonS3(CommonUtil.retrieveEnvironmentVariable("S3_SERVICE_ENDPOINT", S3Util.LOCAL_SERVICE_ENDPOINT),
+                CommonUtil.retrieveEnvironmentVariable("S3_SIGNING_REGION", S3Util.LOCAL_SIGNING_REGION), amazonS3);
+        this.sourceKey = "census-" + size + ".csv";
+        this.sinkBucket = CommonUtil.retrieveEnvironmentVariable("SINK_BUCKET", SINK_BUCKET);
+        amazonS3.putGeneratedObject(SOURCE_BUCKET, sourceKey, header, block, size);
+        this.event = S3Events.objectCreatedEvent(SOURCE_BUCKET, sourceKey);
+    }
+
+    /**
+     * Invokes the handler once
+     *
+     * @return long size of the object the handler wrote
+     */
+    @Override
+    public long getAsLong() {
+        if (Objects.isNull(handler)) {
+            handler = new S3EventRequestHandler();
+        }
+        handler.handleRequest(event, null);
+        return amazonS3.writtenSize(sinkBucket, "MODIFIED-" + sourceKey);
+    }
+}
@@ -0,0 +1,282 @@
+package com.dna.challenge.benchmark;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for S3, holding just enough of the API for the Lambda handler to run against it without a
+ * network or LocalStack.
+ * <p>
+ * Source objects are generated: a header followed by a block repeated up to the object size, so a GB sized object does
+ * not need a GB of heap. Objects written by the handler are drained and only their size is kept, reading them back
+ * is not supported.
+ */
+public class InMemoryAmazonS3 extends AbstractAmazonS3 {
+    private final Map<String, GeneratedObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> uploads = new ConcurrentHashMap<>();
+    private final Map<String, Long> writtenSizes = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Adds a generated object
+     *
+     * @param bucketName name of the bucket
+     * @param key        key of the object
+     * @param header     bytes the object starts with
+     * @param block      bytes repeated after the header
+     * @param size       minimum size of the object, it is rounded up to a whole number of blocks
+     * @return long actual size of the object
+     */
+    public long putGeneratedObject(final String bucketName, final String key, final byte[] header, final byte[] block, final long size) {
+        GeneratedObject object = new GeneratedObject(header, block, generatedSize(header.length, block.length, size));
+        objects.put(bucketName + "/" + key, object);
+        return object.size;
+    }
+
+    /**
+     * Size of a generated object, see {@link #putGeneratedObject(String, String, byte[], byte[], long)}
+     *
+     * @param headerLength number of bytes the object starts with
+     * @param blockLength  number of bytes repeated after the header
+     * @param size         minimum size of the object
+     * @return long actual size of the object, rounded up to a whole number of blocks
+     */
+    public static long generatedSize(final int headerLength, final int blockLength, final long size) {
+        return headerLength + Math.max(1, (size - headerLength + blockLength - 1) / blockLength) * blockLength;
+    }
+
+    /**
+     * Size of an object written by the handler
+     *
+     * @param bucketName name of the bucket
+     * @param key        key of the object
+     * @return long size in bytes, -1 if nothing was written
+     */
+    public long writtenSize(final String bucketName, final String key) {
+        return writtenSizes.getOrDefault(bucketName + "/" + key, -1L);
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final String bucketName, final String key) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(object(bucketName, key).size);
+        // Generated objects never change, so ranged reads pinned to this ETag always match
+        metadata.setHeader(Headers.ETAG, "generated-" + key);
+        return metadata;
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final GetObjectMetadataRequest request) {
+        return getObjectMetadata(request.getBucketName(), request.getKey());
+    }
+
+    @Override
+    public S3Object getObject(final GetObjectRequest request) {
+        GeneratedObject object = object(request.getBucketName(), request.getKey());
+        final long[] range = request.getRange();
+        final long start = Objects.isNull(range) ? 0 : range[0];
+        final long end = Objects.isNull(range) ? object.size : Math.min(object.size, range[1] + 1);
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(request.getBucketName());
+        s3Object.setKey(request.getKey());
+        s3Object.getObjectMetadata().setContentLength(end - start);
+        s3Object.setObjectContent(object.open(start, end));
+        return s3Object;
+    }
+
+    @Override
+    public String getObjectAsString(final String bucketName, final String key) {
+        GeneratedObject object = object(bucketName, key);
+        try (InputStream inputStream = object.open(0, object.size)) {
+            byte[] bytes = new byte[Math.toIntExact(object.size)];
+            int length = 0;
+            int count;
+            while (length < bytes.length && (count = inputStream.read(bytes, length, bytes.length - length)) > 0) {
+                length += count;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new AmazonS3Exception("Could not read " + bucketName + "/" + key);
+        }
+    }
+
+    @Override
+    public PutObjectResult putObject(final String bucketName, final String key, final InputStream input, final ObjectMetadata metadata) {
+        writtenSizes.put(bucketName + "/" + key, drain(input));
+        PutObjectResult result = new PutObjectResult();
+        result.setETag("put-" + ids.incrementAndGet());
+        return result;
+    }
+
+    @Override
+    public PutObjectResult putObject(final PutObjectRequest request) {
+        return putObject(request.getBucketName(), request.getKey(), request.getInputStream(), request.getMetadata());
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(final InitiateMultipartUploadRequest request) {
+        final String uploadId = "upload-" + ids.incrementAndGet();
+        uploads.put(uploadId, new AtomicLong());
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(final UploadPartRequest request) {
+        upload(request.getUploadId()).addAndGet(drain(request.getInputStream()));
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("part-" + ids.incrementAndGet());
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(final CompleteMultipartUploadRequest request) {
+        writtenSizes.put(request.getBucketName() + "/" + request.getKey(), upload(request.getUploadId()).get());
+        uploads.remove(request.getUploadId());
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setETag("complete-" + ids.incrementAndGet());
+        return result;
+    }
+
+    @Override
+    public void abortMultipartUpload(final AbortMultipartUploadRequest request) {
+        uploads.remove(request.getUploadId());
+    }
+
+    @Override
+    public void shutdown() {
+        objects.clear();
+        uploads.clear();
+    }
+
+    /**
+     * Looks up a generated object
+     *
+     * @param bucketName name of the bucket
+     * @param key        key of the object
+     * @return GeneratedObject stored under the bucket and key
+     */
+    private GeneratedObject object(final String bucketName, final String key) {
+        GeneratedObject object = objects.get(bucketName + "/" + key);
+        if (Objects.isNull(object)) {
+            AmazonS3Exception exception = new AmazonS3Exception("The specified key does not exist: " + bucketName + "/" + key);
+            exception.setStatusCode(404);
+            throw exception;
+        }
+        return object;
+    }
+
+    /**
+     * Looks up a multipart upload in progress
+     *
+     * @param uploadId id of the upload
+     * @return AtomicLong number of bytes uploaded so far
+     */
+    private AtomicLong upload(final String uploadId) {
+        AtomicLong upload = uploads.get(uploadId);
+        if (Objects.isNull(upload)) {
+            throw new AmazonS3Exception("The specified upload does not exist: " + uploadId);
+        }
+        return upload;
+    }
+
+    /**
+     * Reads a stream to its end, the way S3 consumes a request body
+     *
+     * @param input InputStream to read
+     * @return long number of bytes read
+     */
+    private static long drain(final InputStream input) {
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        try (InputStream inputStream = input) {
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                size += count;
+            }
+        } catch (IOException e) {
+            throw new AmazonS3Exception("Could not read request body");
+        }
+        return size;
+    }
+
+    /**
+     * Object made of a header followed by a repeated block
+     */
+    private static final class GeneratedObject {
+        private final byte[] header;
+        private final byte[] block;
+        private final long size;
+
+        private GeneratedObject(final byte[] header, final byte[] block, final long size) {
+            this.header = header;
+            this.block = block;
+            this.size = size;
+        }
+
+        /**
+         * Opens a range of the object
+         *
+         * @param start offset of the first byte, inclusive
+         * @param end   offset of the last byte, exclusive
+         * @return InputStream of the bytes in the range
+         */
+        private InputStream open(final long start, final long end) {
+            return new InputStream() {
+                private long position = start;
+
+                @Override
+                public int read() {
+                    byte[] single = new byte[1];
+                    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+                }
+
+                @Override
+                public int read(final byte[] bytes, final int offset, final int length) {
+                    if (position >= end) {
+                        return -1;
+                    }
+                    final byte[] source;
+                    final int sourceOffset;
+                    if (position < header.length) {
+                        source = header;
+                        sourceOffset = (int) position;
+                    } else {
+                        source = block;
+                        sourceOffset = (int) ((position - header.length) % block.length);
+                    }
+                    final int count = (int) Math.min(Math.min(length, source.length - sourceOffset), end - position);
+                    System.arraycopy(source, sourceOffset, bytes, offset, count);
+                    position += count;
+                    return count;
+                }
+            };
+        }
+    }
+}
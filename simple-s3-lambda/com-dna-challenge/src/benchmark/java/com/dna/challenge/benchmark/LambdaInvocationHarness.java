@@ -0,0 +1,384 @@
+package com.dna.challenge.benchmark;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.dna.challenge.S3EventRequestHandler;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Local invocation harness for {@link S3EventRequestHandler}, run it via the invocationBenchmark Gradle task. It builds
+ * the {@link S3Event} S3 would send for a generated census file, backs {@link com.dna.challenge.util.S3Util} with an
+ * {@link InMemoryAmazonS3} and invokes the handler repeatedly for each file size, so the handler can be measured
+ * without AWS, LocalStack or a network.
+ * <p>
+ * - cold: every invocation loads the handler, the AWS SDK and their dependencies in a new class loader and runs them
+ * for the first time, the way the first invocation of a Lambda container does. JVM startup itself is not included,
+ * see the startupBenchmark Gradle task for that.
+ * - warm: one handler is invoked a few times to warm it up, then every invocation reuses it.
+ * <p>
+ * For every size and mode it prints the p50 and p99 latency (nearest rank), the throughput at p50 and the bytes
+ * allocated per invocation. Allocation is measured on the heap, see {@link HeapAllocation}, so it includes the parse
+ * workers of a parallel run and any other thread that ends before the invocation does.
+ */
+public final class LambdaInvocationHarness {
+    // Defaults if nothing is passed in
+    private static final String DEFAULT_SIZES = "1KB,1MB,64MB,1GB";
+    private static final int DEFAULT_ITERATIONS = 20;
+    private static final String DEFAULT_MODES = "cold,warm";
+    // Invocations of a size are capped so the bytes processed per mode stay within this, with at least MIN_RUNS
+    private static final long RUN_BUDGET_BYTES = 4L * 1024 * 1024 * 1024;
+    private static final int MIN_RUNS = 3;
+    // Rows in the repeated block of the generated census file, roughly 190 bytes each
+    private static final int MAX_BLOCK_ROWS = 1000;
+    private static final int ROW_BYTES = 190;
+    private static final String CENSUS_HEADER = "CensusTract,State,County,TotalPop,Men,Women,Hispanic,White,Black,Native,"
+            + "Asian,Pacific,Citizen,Income,IncomeErr,IncomePerCap,IncomePerCapErr,Poverty,ChildPoverty,Professional,"
+            + "Service,Office,Construction,Production,Drive,Carpool,Transit,Walk,OtherTransp,WorkAtHome,MeanCommute,"
+            + "Employed,PrivateWork,PublicWork,SelfEmployed,FamilyWork,Unemployment\n";
+    private static final String[][] COUNTIES = {{"Alabama", "Autauga"}, {"Alabama", "Baldwin"}, {"Texas", "Anderson"},
+            {"Texas", "Travis"}, {"Ohio", "Franklin"}, {"New York", "Kings"}, {"California", "Los Angeles"}};
+
+    /**
+     * Private default constructor
+     */
+    private LambdaInvocationHarness() {
+        // Private constructor to keep static code analysis happy
+    }
+
+    /**
+     * Runs the harness
+     *
+     * @param args file sizes, e.g. 1KB,1MB,64MB,1GB, invocations per size and mode, modes, e.g. cold,warm
+     * @throws Exception if the handler could not be loaded or an invocation fails
+     */
+    public static void main(String[] args) throws Exception {
+        final List<Long> sizes = parseSizes(args.length > 0 ? args[0] : DEFAULT_SIZES);
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        final List<String> modes = Arrays.asList((args.length > 2 ? args[2] : DEFAULT_MODES).split(","));
+        final byte[] header = CENSUS_HEADER.getBytes(StandardCharsets.UTF_8);
+
+        System.out.println(String.format(Locale.ROOT, "%-6s %12s %5s %10s %10s %10s %14s %12s",
+                "mode", "size", "runs", "p50(ms)", "p99(ms)", "MB/s", "alloc(MB)/inv", "output"));
+        for (long size : sizes) {
+            final byte[] block = censusBlock((int) Math.max(1, Math.min(MAX_BLOCK_ROWS, size / ROW_BYTES)));
+            final long inputSize = InMemoryAmazonS3.generatedSize(header.length, block.length, size);
+            final int runs = (int) Math.max(MIN_RUNS, Math.min(iterations, RUN_BUDGET_BYTES / inputSize));
+            if (modes.contains("cold")) {
+                report("cold", inputSize, cold(header, block, size, runs));
+            }
+            if (modes.contains("warm")) {
+                report("warm", inputSize, warm(header, block, size, runs));
+            }
+        }
+    }
+
+    /**
+     * Invokes a new handler in a new class loader every time
+     *
+     * @param header bytes the source object starts with
+     * @param block  bytes repeated after the header
+     * @param size   minimum size of the source object
+     * @param runs   number of invocations
+     * @return Samples of every invocation
+     * @throws Exception if the handler could not be loaded or an invocation fails
+     */
+    private static Samples cold(final byte[] header, final byte[] block, final long size, final int runs) throws Exception {
+        final URL[] classPath = classPath();
+        // The parent of the application class loader only holds the JDK, so every class of the handler is loaded again
+        final ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        Samples samples = new Samples(runs);
+        for (int run = 0; run < runs; run++) {
+            try (URLClassLoader classLoader = new URLClassLoader(classPath, parent)) {
+                thread.setContextClassLoader(classLoader);
+                final long allocated = HeapAllocation.INSTANCE.allocatedBytes();
+                final long start = System.nanoTime();
+                LongSupplier invocation = (LongSupplier) classLoader.loadClass(HandlerInvocation.class.getName())
+                        .getConstructor(byte[].class, byte[].class, long.class)
+                        .newInstance(header, block, size);
+                final long output = invocation.getAsLong();
+                samples.add(System.nanoTime() - start, HeapAllocation.INSTANCE.allocatedBytes() - allocated, output);
+            } finally {
+                thread.setContextClassLoader(contextClassLoader);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Invokes the same handler every time, after warming it up
+     *
+     * @param header bytes the source object starts with
+     * @param block  bytes repeated after the header
+     * @param size   minimum size of the source object
+     * @param runs   number of measured invocations
+     * @return Samples of every measured invocation
+     */
+    private static Samples warm(final byte[] header, final byte[] block, final long size, final int runs) {
+        LongSupplier invocation = new HandlerInvocation(header, block, size);
+        for (int warmup = Math.max(1, runs / 4); warmup > 0; warmup--) {
+            invocation.getAsLong();
+        }
+        Samples samples = new Samples(runs);
+        for (int run = 0; run < runs; run++) {
+            final long allocated = HeapAllocation.INSTANCE.allocatedBytes();
+            final long start = System.nanoTime();
+            final long output = invocation.getAsLong();
+            samples.add(System.nanoTime() - start, HeapAllocation.INSTANCE.allocatedBytes() - allocated, output);
+        }
+        return samples;
+    }
+
+    /**
+     * Prints a line of results
+     *
+     * @param mode      cold or warm
+     * @param inputSize size of the source object
+     * @param samples   Samples of the invocations
+     */
+    private static void report(final String mode, final long inputSize, final Samples samples) {
+        final long[] nanos = samples.nanos.clone();
+        Arrays.sort(nanos);
+        final long[] allocated = samples.allocated.clone();
+        Arrays.sort(allocated);
+        final double p50 = percentile(nanos, 0.50) / 1e6;
+        System.out.println(String.format(Locale.ROOT, "%-6s %12s %5d %10.1f %10.1f %10.1f %14.1f %12s",
+                mode, formatSize(inputSize), nanos.length, p50, percentile(nanos, 0.99) / 1e6,
+                inputSize / (1024.0 * 1024) / (p50 / 1e3), percentile(allocated, 0.50) / (1024.0 * 1024),
+                formatSize(samples.output)));
+    }
+
+    /**
+     * Nearest rank percentile
+     *
+     * @param sorted     sorted values
+     * @param percentile between 0 and 1
+     * @return long value at the percentile
+     */
+    private static long percentile(final long[] sorted, final double percentile) {
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * URLs of the class path this JVM was started with, e.g. by the invocationBenchmark Gradle task
+     *
+     * @return URL array of the class path entries
+     * @throws MalformedURLException if an entry is not a valid path
+     */
+    private static URL[] classPath() throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    /**
+     * Generates census records, roughly one in ten without a population
+     *
+     * @param rows number of records
+     * @return byte array of CSV lines without a header
+     */
+    private static byte[] censusBlock(final int rows) {
+        Random random = new Random(rows);
+        StringBuilder builder = new StringBuilder(rows * ROW_BYTES);
+        for (int row = 0; row < rows; row++) {
+            String[] county = COUNTIES[random.nextInt(COUNTIES.length)];
+            builder.append(1001020100L + row * 100L).append(',').append(county[0]).append(',').append(county[1]).append(',');
+            if (random.nextInt(10) == 0) {
+                builder.append("0,0,0,,,,,,,0,,,,,,,,,,,,,,,,,,,0,,,,,\n");
+                continue;
+            }
+            final int totalPop = 100 + random.nextInt(9000);
+            final int men = totalPop / 3 + random.nextInt(totalPop / 3);
+            builder.append(totalPop).append(',').append(men).append(',').append(totalPop - men);
+            appendPercentages(builder, random, 6);
+            builder.append(',').append(totalPop * 3 / 4);
+            for (int income = 0; income < 4; income++) {
+                builder.append(',').append(1000 + random.nextInt(90000)).append(".0");
+            }
+            appendPercentages(builder, random, 13);
+            builder.append(',').append(10 + random.nextInt(300) / 10.0).append(',').append(totalPop / 2);
+            appendPercentages(builder, random, 5);
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends percentages with one decimal that add up to at most 100
+     *
+     * @param builder StringBuilder of the record
+     * @param random  Random to draw the percentages from
+     * @param count   number of percentages
+     */
+    private static void appendPercentages(final StringBuilder builder, final Random random, final int count) {
+        int remaining = 1000;
+        for (int i = 0; i < count; i++) {
+            final int tenths = random.nextInt(remaining / 2 + 1);
+            remaining -= tenths;
+            builder.append(',').append(tenths / 10.0);
+        }
+    }
+
+    /**
+     * Parses sizes such as 512, 1KB, 64MB or 1GB
+     *
+     * @param sizes comma separated sizes, units are powers of 1024
+     * @return List of sizes in bytes
+     */
+    private static List<Long> parseSizes(final String sizes) {
+        List<Long> parsed = new ArrayList<>();
+        for (String size : sizes.toUpperCase(Locale.ROOT).split(",")) {
+            final String value = size.trim();
+            final int shift = value.endsWith("GB") ? 30 : value.endsWith("MB") ? 20 : value.endsWith("KB") ? 10 : 0;
+            parsed.add(Long.parseLong(shift == 0 ? value : value.substring(0, value.length() - 2).trim()) << shift);
+        }
+        return parsed;
+    }
+
+    /**
+     * Formats a size in bytes with a binary unit
+     *
+     * @param bytes size in bytes
+     * @return String e.g. 1.0KB
+     */
+    private static String formatSize(final long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        }
+        final int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format(Locale.ROOT, "%.1f%s", bytes / Math.pow(1024, unit), "KMGT".charAt(unit - 1) + "B");
+    }
+
+    /**
+     * Latency, allocation and output size of invocations
+     */
+    private static final class Samples {
+        private final long[] nanos;
+        private final long[] allocated;
+        private int count;
+        private long output;
+
+        private Samples(final int runs) {
+            this.nanos = new long[runs];
+            this.allocated = new long[runs];
+        }
+
+        private void add(final long invocationNanos, final long allocatedBytes, final long outputSize) {
+            nanos[count] = invocationNanos;
+            allocated[count++] = allocatedBytes;
+            output = outputSize;
+        }
+    }
+
+    /**
+     * Bytes allocated on the heap by every thread since the JVM started, i.e. the heap in use plus everything garbage
+     * collections freed. Per thread counters cannot be used, a thread that ends loses its counter. The count is off by
+     * at most the unused part of each thread's allocation buffer, and memory G1 frees outside of a collection pause
+     * is not seen.
+     * The heap grows a whole allocation buffer at a time, so an invocation allocating less than a buffer may read 0.
+     */
+    private static final class HeapAllocation implements NotificationListener {
+        private static final HeapAllocation INSTANCE = new HeapAllocation();
+        // Time to wait for the notifications of finished collections, they are sent from another thread
+        private static final long NOTIFICATION_TIMEOUT_MILLIS = 1000;
+
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+        private final Set<String> heapPoolNames = heapPools.stream().map(MemoryPoolMXBean::getName).collect(Collectors.toSet());
+        private final AtomicLong freedBytes = new AtomicLong();
+        private final AtomicLong collections = new AtomicLong();
+        private final long collectionsBefore;
+
+        private HeapAllocation() {
+            // Collections that ran before the listener was added are not counted
+            collectionsBefore = collectionCount();
+            for (GarbageCollectorMXBean collector : collectors) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+
+        @Override
+        public void handleNotification(final Notification notification, final Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            final Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+            long freed = 0;
+            for (Map.Entry<String, MemoryUsage> before : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+                if (heapPoolNames.contains(before.getKey())) {
+                    freed += before.getValue().getUsed() - after.get(before.getKey()).getUsed();
+                }
+            }
+            freedBytes.addAndGet(freed);
+            collections.incrementAndGet();
+        }
+
+        /**
+         * Bytes allocated so far, once every finished collection has been counted
+         *
+         * @return long bytes allocated on the heap
+         */
+        private long allocatedBytes() {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NOTIFICATION_TIMEOUT_MILLIS);
+            while (true) {
+                final long count = collectionCount();
+                while (collections.get() < count - collectionsBefore && System.nanoTime() < deadline) {
+                    Thread.yield();
+                }
+                long used = 0;
+                for (MemoryPoolMXBean pool : heapPools) {
+                    used += pool.getUsage().getUsed();
+                }
+                final long freed = freedBytes.get();
+                // A collection in between would count its bytes both as used and as freed, read again
+                if (count == collectionCount() || System.nanoTime() >= deadline) {
+                    return used + freed;
+                }
+            }
+        }
+
+        /**
+         * Collections run so far by every collector
+         *
+         * @return long number of collections
+         */
+        private long collectionCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean collector : collectors) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+            return count;
+        }
+    }
+}
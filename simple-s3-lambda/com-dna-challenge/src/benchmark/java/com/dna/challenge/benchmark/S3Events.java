@@ -0,0 +1,33 @@
+package com.dna.challenge.benchmark;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.s3.event.S3EventNotification;
+
+/**
+ * Builds the S3 events the benchmarks invoke the handler with.
+ */
+public final class S3Events {
+
+    /**
+     * Private default constructor
+     */
+    private S3Events() {
+        // Private constructor to keep static code analysis happy
+    }
+
+    /**
+     * Builds the ObjectCreated event S3 would send for a single object.
+     *
+     * @param bucket name of the bucket the object was created in
+     * @param key    key of the object
+     * @return S3Event holding the record
+     */
+    public static S3Event objectCreatedEvent(final String bucket, final String key) {
+        return new S3Event(S3EventNotification.parseJson("{\"Records\": [{"
+                + "\"eventVersion\": \"2.1\", \"eventSource\": \"aws:s3\", \"awsRegion\": \"us-east-1\","
+                + "\"eventTime\": \"2019-06-01T00:00:00.000Z\", \"eventName\": \"ObjectCreated:Put\","
+                + "\"s3\": {\"s3SchemaVersion\": \"1.0\","
+                + "\"bucket\": {\"name\": \"" + bucket + "\", \"arn\": \"arn:aws:s3:::" + bucket + "\"},"
+                + "\"object\": {\"key\": \"" + key + "\"}}}]}").getRecords());
+    }
+}
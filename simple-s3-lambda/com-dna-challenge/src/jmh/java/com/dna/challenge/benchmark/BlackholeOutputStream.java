@@ -0,0 +1,26 @@
+package com.dna.challenge.benchmark;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+
+/**
+ * Discards the transform output without letting the JIT remove the writes.
+ */
+final class BlackholeOutputStream extends OutputStream {
+    private final Blackhole blackhole;
+
+    BlackholeOutputStream(final Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void write(final int b) {
+        blackhole.consume(b);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+        blackhole.consume(bytes);
+    }
+}
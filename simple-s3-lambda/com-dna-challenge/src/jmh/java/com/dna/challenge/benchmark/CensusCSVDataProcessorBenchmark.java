@@ -0,0 +1,125 @@
+package com.dna.challenge.benchmark;
+
+import com.dna.challenge.data.processor.census.CensusConstants;
+import com.dna.challenge.data.processor.census.CensusRecord;
+import com.dna.challenge.data.processor.s3.CensusCSVDataProcessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * JMH benchmark of the census CSV transform, run it with ./gradlew jmh. Scores are records per second because every
+ * invocation processes {@link #ROWS} synthetic census records, the gc profiler adds the bytes allocated per record.
+ * <p>
+ * {@link #columnarBatch(Blackhole)} is the transform as the Lambda runs it. The baselines are the previous transforms,
+ * {@link #recordPerRow(Blackhole)} read every record into a {@link CensusRecord} with a shared reader and writer and
+ * {@link #mapperPerRecord(Blackhole)} also created a CsvMapper to read and another to write every record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CensusCSVDataProcessorBenchmark {
+    private static final int ROWS = 10_000;
+    private static final CsvMapper CSV_MAPPER = (CsvMapper) new CsvMapper()
+            .configure(JsonGenerator.Feature.IGNORE_UNKNOWN, true)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+    private static final ObjectReader CENSUS_READER = CSV_MAPPER.readerFor(CensusRecord.class)
+            .with(CSV_MAPPER.typedSchemaFor(CensusRecord.class).withSkipFirstDataRow(true));
+    private static final ObjectWriter RESULT_WRITER = CSV_MAPPER.writer(resultSchema());
+
+    private byte[] censusData;
+
+    /**
+     * Generates a census file of {@link #ROWS} records
+     */
+    @Setup
+    public void generateCensusData() {
+        censusData = CensusData.generate(ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long columnarBatch(Blackhole blackhole) {
+        return new CensusCSVDataProcessor(new ByteArrayInputStream(censusData)).process(new BlackholeOutputStream(blackhole));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long recordPerRow(Blackhole blackhole) throws IOException {
+        long recordCount = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new BlackholeOutputStream(blackhole), Charset.defaultCharset()));
+        try (MappingIterator<CensusRecord> censusRecords = CENSUS_READER.readValues(
+                new InputStreamReader(new ByteArrayInputStream(censusData), Charset.defaultCharset()))) {
+            while (censusRecords.hasNextValue()) {
+                CensusRecord record = censusRecords.nextValue();
+                if (Objects.nonNull(record.getTotalPop()) && record.getTotalPop() > 0) {
+                    RESULT_WRITER.withAttribute(CensusConstants.ETHNICITY_COL, record.otherEthnicity()).writeValue(writer, record);
+                    recordCount++;
+                }
+            }
+        }
+        writer.flush();
+        return recordCount;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long mapperPerRecord(Blackhole blackhole) throws IOException {
+        CsvSchema resultSchema = resultSchema();
+        long recordCount = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(censusData), Charset.defaultCharset()))) {
+            Iterator<String> lines = reader.lines().skip(1).iterator();
+            while (lines.hasNext()) {
+                CensusRecord record = new CsvMapper().readerWithTypedSchemaFor(CensusRecord.class).readValue(lines.next());
+                if (record.getTotalPop() > 0) {
+                    blackhole.consume(new CsvMapper().configure(JsonGenerator.Feature.IGNORE_UNKNOWN, true)
+                            .writer(resultSchema)
+                            .withAttribute(CensusConstants.ETHNICITY_COL, record.otherEthnicity())
+                            .writeValueAsString(record));
+                    recordCount++;
+                }
+            }
+        }
+        return recordCount;
+    }
+
+    /**
+     * Helper method to create the schema of the result columns
+     *
+     * @return CsvSchema of the result columns
+     */
+    private static CsvSchema resultSchema() {
+        CsvSchema.Builder builder = CsvSchema.builder();
+        Arrays.asList(CensusConstants.RESULT_COLUMNS).forEach(builder::addColumn);
+        return builder.build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.dna.challenge.benchmark;
+
+import com.dna.challenge.data.processor.census.CensusRecord;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic census data for the benchmarks
+ */
+final class CensusData {
+    // Columns holding whole numbers, the rest hold percentages or amounts with one decimal
+    private static final List<String> COUNT_COLUMNS = Arrays.asList("Men", "Women", "Citizen", "Employed");
+
+    /**
+     * Private default constructor
+     */
+    private CensusData() {
+        // Private constructor to keep static code analysis happy
+    }
+
+    /**
+     * Generates a census file, a tenth of the records have no population and are filtered out by the transform.
+     *
+     * @param rows number of records to generate
+     * @return byte[] census CSV data with a header line
+     */
+    static byte[] generate(final int rows) {
+        // Columns of the census file in file order
+        String[] censusColumns = CensusRecord.class.getAnnotation(JsonPropertyOrder.class).value();
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(rows * 200);
+        builder.append(String.join(",", censusColumns)).append('\n');
+        for (int row = 0; row < rows; row++) {
+            builder.append(1001020100L + row).append(",State").append(row % 50).append(",County").append(row % 3000)
+                    .append(',').append(row % 10 == 0 ? 0 : random.nextInt(10000));
+            for (int column = 4; column < censusColumns.length; column++) {
+                builder.append(',');
+                if (COUNT_COLUMNS.contains(censusColumns[column])) {
+                    builder.append(random.nextInt(5000));
+                } else {
+                    builder.append(random.nextInt(1000) / 10.0);
+                }
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(Charset.defaultCharset());
+    }
+}
@@ -0,0 +1,72 @@
+package com.dna.challenge.benchmark;
+
+import com.dna.challenge.data.processor.s3.ParallelCensusCSVDataProcessor;
+import com.dna.challenge.util.MappedFileByteRangeSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JMH benchmark of the parallel census CSV transform over a memory mapped local file, run it with ./gradlew jmh.
+ * Scores are records per second for each parallelism, compare them on a machine with at least as many cores as the
+ * highest parallelism, on fewer cores the extra threads only share the same cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelCensusCSVDataProcessorBenchmark {
+    private static final int ROWS = 200_000;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"1048576"})
+    private long chunkSize;
+
+    private Path censusFile;
+    private MappedFileByteRangeSource censusDataSource;
+
+    /**
+     * Writes a census file of {@link #ROWS} records, about 40 MB, to a temporary file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup
+    public void writeCensusFile() throws IOException {
+        censusFile = Files.write(Files.createTempFile("census", ".csv"), CensusData.generate(ROWS));
+        censusDataSource = new MappedFileByteRangeSource(censusFile);
+    }
+
+    /**
+     * Deletes the census file
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown
+    public void deleteCensusFile() throws IOException {
+        censusDataSource.close();
+        Files.delete(censusFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long parallelChunks(Blackhole blackhole) {
+        return new ParallelCensusCSVDataProcessor(censusDataSource, parallelism, chunkSize).process(new BlackholeOutputStream(blackhole));
+    }
+}
@@ -4,12 +4,16 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
 import com.amazonaws.services.s3.event.S3EventNotification;
+import com.dna.challenge.data.processor.census.CensusRules;
 import com.dna.challenge.data.processor.s3.CensusCSVDataProcessor;
+import com.dna.challenge.data.processor.s3.ParallelCensusCSVDataProcessor;
 import com.dna.challenge.data.processor.exception.DataProcessingException;
 import com.dna.challenge.util.CommonUtil;
+import com.dna.challenge.util.S3ByteRangeSource;
+import com.dna.challenge.util.S3MultipartOutputStream;
 import com.dna.challenge.util.S3Util;
 
-import java.io.InputStream;
+import java.util.Objects;
 
 /**
  * Lambda request handlers implement AWS Lambda Function application logic using plain old java objects
@@ -21,8 +25,14 @@ public class S3EventRequestHandler implements RequestHandler<S3Event, String> {
     private static final String SERVICE_ENDPOINT_KEY = "S3_SERVICE_ENDPOINT";
     private static final String SIGNING_REGION_KEY = "S3_SIGNING_REGION";
     private static final String SINK_BUCKET_KEY = "SINK_BUCKET";
+    private static final String PARSE_PARALLELISM_KEY = "PARSE_PARALLELISM";
+    private static final String PARSE_CHUNK_SIZE_KEY = "PARSE_CHUNK_SIZE_BYTES";
+    private static final String CENSUS_RULES_KEY = "CENSUS_RULES";
+    private static final String CENSUS_RULES_BUCKET_KEY = "CENSUS_RULES_BUCKET";
+    private static final String CENSUS_RULES_OBJECT_KEY = "CENSUS_RULES_KEY";
     // Default values if nothing is present in the environment variables
     private static final String LOCAL_SINK_BUCKET = "sink-bucket";
+    private static final long DEFAULT_PARSE_CHUNK_SIZE = 8L * 1024 * 1024;
 
     /**
      * Handles a Lambda Function request
@@ -52,13 +62,64 @@ public class S3EventRequestHandler implements RequestHandler<S3Event, String> {
         final String serviceEndpoint = CommonUtil.retrieveEnvironmentVariable(SERVICE_ENDPOINT_KEY, S3Util.LOCAL_SERVICE_ENDPOINT);
         final String signingRegion = CommonUtil.retrieveEnvironmentVariable(SIGNING_REGION_KEY, S3Util.LOCAL_SIGNING_REGION);
         final String sinkBucket = CommonUtil.retrieveEnvironmentVariable(SINK_BUCKET_KEY, LOCAL_SINK_BUCKET);
-        // Grab input stream from AWS S3, i.e. the file to process
-        InputStream inputStream = S3Util.retrieveBucketInputStream(serviceEndpoint, signingRegion, sourceBucket, sourceKey);
-        // Instantiate processor with S3 input stream
-        CensusCSVDataProcessor censusCSVDataProcessor = new CensusCSVDataProcessor(inputStream);
-        // Perform data processing
-        String processorResult = censusCSVDataProcessor.process();
-        // Copy the processed result to a new S3 bucket and return its E-Tag for traceability
-        return S3Util.copyToBucket(serviceEndpoint, signingRegion, sinkBucket, "MODIFIED-" + sourceKey, processorResult).getETag();
+        // The S3 client is built on the first invocation of the container only, warm invocations reuse it
+        final boolean warmClient = S3Util.hasAmazonS3(serviceEndpoint, signingRegion);
+        S3Util.amazonS3(serviceEndpoint, signingRegion);
+        if (Objects.nonNull(context)) {
+            context.getLogger().log(warmClient ? "Reusing S3 client for " + serviceEndpoint
+                    : "Built S3 client for " + serviceEndpoint + " in "
+                    + S3Util.clientInitializationMillis(serviceEndpoint, signingRegion) + " ms");
+        }
+        // Rules are read on every invocation, so a change to the S3 config object applies without a deployment
+        final CensusRules rules = retrieveCensusRules(serviceEndpoint, signingRegion);
+        // Parse on every vCPU of the Lambda by default, files smaller than a chunk are streamed on a single thread.
+        // Unset, malformed or non positive values fall back to the defaults rather than failing the invocation
+        final int parallelism = (int) Math.min(Integer.MAX_VALUE, CommonUtil.retrievePositiveEnvironmentVariable(
+                PARSE_PARALLELISM_KEY, Runtime.getRuntime().availableProcessors()));
+        final long chunkSize = CommonUtil.retrievePositiveEnvironmentVariable(PARSE_CHUNK_SIZE_KEY, DEFAULT_PARSE_CHUNK_SIZE);
+        S3ByteRangeSource censusDataSource = S3Util.rangeSource(serviceEndpoint, signingRegion, sourceBucket, sourceKey);
+        final boolean parallel = parallelism > 1 && censusDataSource.size() > chunkSize;
+        // Stream the processed rows straight into the sink object, only a single upload part is held in memory
+        S3MultipartOutputStream outputStream = S3Util.uploadStream(serviceEndpoint, signingRegion, sinkBucket, "MODIFIED-" + sourceKey);
+        try {
+            if (parallel) {
+                // Fetch and transform chunks of the file with ranged GET requests at the same time
+                new ParallelCensusCSVDataProcessor(censusDataSource, parallelism, chunkSize, rules).process(outputStream);
+            } else {
+                // Grab input stream from AWS S3, i.e. the file to process, and instantiate processor with it
+                new CensusCSVDataProcessor(S3Util.retrieveBucketInputStream(serviceEndpoint, signingRegion, sourceBucket, sourceKey), rules)
+                        .process(outputStream);
+            }
+        } catch (RuntimeException e) {
+            // Do not leave a partial file behind in the sink bucket, a failed abort must not hide why processing failed
+            try {
+                outputStream.abort();
+            } catch (RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+        outputStream.close();
+        // Return the E-Tag of the processed file for traceability
+        return outputStream.getETag();
+    }
+
+    /**
+     * Retrieves the rules to transform the census data with, from the S3 object named by the CENSUS_RULES_BUCKET and
+     * CENSUS_RULES_KEY environment variables if they are set, otherwise from the CENSUS_RULES environment variable, and
+     * the original transform if neither is set.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @return CensusRules to transform the census data with
+     */
+    private static CensusRules retrieveCensusRules(final String serviceEndpoint, final String signingRegion) {
+        final String rulesBucket = CommonUtil.retrieveEnvironmentVariable(CENSUS_RULES_BUCKET_KEY, null);
+        final String rulesKey = CommonUtil.retrieveEnvironmentVariable(CENSUS_RULES_OBJECT_KEY, null);
+        if (CommonUtil.isNotEmpty(rulesBucket) && CommonUtil.isNotEmpty(rulesKey)) {
+            return CensusRules.parse(S3Util.retrieveObjectAsString(serviceEndpoint, signingRegion, rulesBucket, rulesKey));
+        }
+        final String rules = CommonUtil.retrieveEnvironmentVariable(CENSUS_RULES_KEY, null);
+        return CommonUtil.isNotEmpty(rules) ? CensusRules.parse(rules) : CensusRules.DEFAULT;
     }
 }
@@ -0,0 +1,664 @@
+package com.dna.challenge.data.processor.census;
+
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+import com.dna.challenge.util.CsvTokenizer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Columnar batch of census records, each column is kept in a primitive array instead of every record being an object
+ * with a boxed or String field per column. The {@link CensusRules} of the batch are compiled into loops over the
+ * arrays, which keeps the garbage collector idle and lets the JIT vectorize the arithmetic.
+ * <p>
+ * Only the columns the rules read or write are kept, the rest are skipped while parsing:
+ * <p>
+ * - State and County are dictionary encoded, each distinct value is kept once and rows hold its int code
+ * - TotalPop and the ethnicity columns, the Double fields of {@link CensusRecord}, and derived columns are double columns
+ * - Every other column is a String field of {@link CensusRecord} and is kept as text, its characters are copied into
+ * one buffer per column and written back unchanged, e.g. a Men of 012 or 12.0 is written as is. Text columns are only
+ * parsed as numbers when the rules compute with them, a value that is not a number then fails the batch.
+ * <p>
+ * Missing values are kept as {@link Double#NaN}, {@link #MISSING_CODE} and empty text and written as empty values, e.g.
+ * a record missing one of the ethnicity columns gets an empty OtherEthnicity. Output is formatted the same way the
+ * Jackson CSV writer formats a {@link CensusRecord}.
+ * <p>
+ * A batch is reused for every batch of a file, so the dictionaries are shared by the whole file. It is not thread
+ * safe.
+ */
+public class CensusColumnBatch {
+    // Records per batch, large enough for the loops to pay off and small enough to stay in the CPU cache
+    public static final int DEFAULT_CAPACITY = 4096;
+    // Marks a missing value in a dictionary encoded column
+    public static final int MISSING_CODE = Integer.MIN_VALUE;
+    // Characters a text column holds per record before its buffer grows
+    private static final int TEXT_CHARS_PER_RECORD = 8;
+    // Marks a column that is not kept
+    private static final int SKIPPED = -1;
+    // Jackson's CSV writer quotes any value longer than this, or holding a character that sorts below '-'
+    private static final int MAX_UNQUOTED_LENGTH = 24;
+    // Largest power of ten, and mantissa, that a double holds exactly
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+    // Most census values are percentages with one decimal, their text is created once instead of for every value
+    private static final String[] PERCENTAGES = new String[1001];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+        for (int i = 0; i < PERCENTAGES.length; i++) {
+            PERCENTAGES[i] = Double.toString(i / 10.0);
+        }
+    }
+
+    /**
+     * How a column is stored
+     */
+    private enum Type {
+        DICTIONARY, TEXT, DOUBLE
+    }
+
+    /**
+     * Columns of the census file in file order
+     */
+    private enum Column {
+        CENSUS_TRACT("CensusTract", Type.TEXT),
+        STATE("State", Type.DICTIONARY),
+        COUNTY("County", Type.DICTIONARY),
+        TOTAL_POP("TotalPop", Type.DOUBLE),
+        MEN("Men", Type.TEXT),
+        WOMEN("Women", Type.TEXT),
+        HISPANIC("Hispanic", Type.DOUBLE),
+        WHITE("White", Type.DOUBLE),
+        BLACK("Black", Type.DOUBLE),
+        NATIVE("Native", Type.DOUBLE),
+        ASIAN("Asian", Type.DOUBLE),
+        PACIFIC("Pacific", Type.DOUBLE),
+        CITIZEN("Citizen", Type.TEXT),
+        INCOME("Income", Type.TEXT),
+        INCOME_ERR("IncomeErr", Type.TEXT),
+        INCOME_PER_CAP("IncomePerCap", Type.TEXT),
+        INCOME_PER_CAP_ERR("IncomePerCapErr", Type.TEXT),
+        POVERTY("Poverty", Type.TEXT),
+        CHILD_POVERTY("ChildPoverty", Type.TEXT),
+        PROFESSIONAL("Professional", Type.TEXT),
+        SERVICE("Service", Type.TEXT),
+        OFFICE("Office", Type.TEXT),
+        CONSTRUCTION("Construction", Type.TEXT),
+        PRODUCTION("Production", Type.TEXT),
+        DRIVE("Drive", Type.TEXT),
+        CARPOOL("Carpool", Type.TEXT),
+        TRANSIT("Transit", Type.TEXT),
+        WALK("Walk", Type.TEXT),
+        OTHER_TRANSP("OtherTransp", Type.TEXT),
+        WORK_AT_HOME("WorkAtHome", Type.TEXT),
+        MEAN_COMMUTE("MeanCommute", Type.TEXT),
+        EMPLOYED("Employed", Type.TEXT),
+        PRIVATE_WORK("PrivateWork", Type.TEXT),
+        PUBLIC_WORK("PublicWork", Type.TEXT),
+        SELF_EMPLOYED("SelfEmployed", Type.TEXT),
+        FAMILY_WORK("FamilyWork", Type.TEXT),
+        UNEMPLOYMENT("Unemployment", Type.TEXT);
+
+        private final String header;
+        private final Type type;
+
+        Column(final String header, final Type type) {
+            this.header = header;
+            this.type = type;
+        }
+    }
+
+    // Columns the way they appear in the census file
+    private static final Column[] FILE_COLUMNS = Column.values();
+    private static final Map<String, Column> COLUMNS_BY_HEADER = Arrays.stream(FILE_COLUMNS)
+            .collect(Collectors.toMap(column -> column.header, column -> column));
+
+    private final int capacity;
+    // Index of each column of the file in the arrays of its type, or SKIPPED
+    private final int[] slots = new int[FILE_COLUMNS.length];
+    private final int[][] dictionaryCodes;
+    private final StringDictionary[] dictionaries;
+    // Characters of each text column, and where the value of each record starts and how long it is
+    private final char[][] textChars;
+    private final int[][] textOffsets;
+    private final int[][] textLengths;
+    private final int[] textUsed;
+    // Columns of the file followed by the derived columns
+    private final double[][] doubleColumns;
+    private final int firstDerivedSlot;
+    private final List<String> derivedColumns;
+    // Type and slot of each column that is written
+    private final Type[] resultTypes;
+    private final int[] resultSlots;
+    private final CensusExpression.ConditionKernel filter;
+    private final CensusExpression.NumberKernel[] derivations;
+    private int size;
+
+    /**
+     * Constructor for {@link CensusColumnBatch} that transforms the records with {@link CensusRules#DEFAULT}
+     *
+     * @param capacity maximum number of records held at once
+     */
+    public CensusColumnBatch(final int capacity) {
+        this(capacity, CensusRules.DEFAULT);
+    }
+
+    /**
+     * Constructor for {@link CensusColumnBatch}
+     *
+     * @param capacity maximum number of records held at once
+     * @param rules    CensusRules to transform the records with
+     */
+    public CensusColumnBatch(final int capacity, final CensusRules rules) {
+        this.capacity = capacity;
+        // Only the columns of the file the rules use get an array
+        Arrays.fill(slots, SKIPPED);
+        Set<String> fileColumns = rules.getFileColumns();
+        int[] counts = new int[Type.values().length];
+        for (Column column : FILE_COLUMNS) {
+            if (fileColumns.contains(column.header)) {
+                slots[column.ordinal()] = counts[column.type.ordinal()]++;
+            }
+        }
+        this.dictionaryCodes = new int[counts[Type.DICTIONARY.ordinal()]][capacity];
+        this.dictionaries = new StringDictionary[dictionaryCodes.length];
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new StringDictionary();
+        }
+        final int textColumns = counts[Type.TEXT.ordinal()];
+        this.textChars = new char[textColumns][capacity * TEXT_CHARS_PER_RECORD];
+        this.textOffsets = new int[textColumns][capacity];
+        this.textLengths = new int[textColumns][capacity];
+        this.textUsed = new int[textColumns];
+        this.firstDerivedSlot = counts[Type.DOUBLE.ordinal()];
+        this.derivedColumns = rules.getDerivedColumns();
+        this.doubleColumns = new double[firstDerivedSlot + derivedColumns.size()][capacity];
+
+        final List<String> columns = rules.getColumns();
+        this.resultTypes = new Type[columns.size()];
+        this.resultSlots = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            final Column column = COLUMNS_BY_HEADER.get(columns.get(i));
+            resultTypes[i] = column == null ? Type.DOUBLE : column.type;
+            resultSlots[i] = column == null ? derivedSlot(columns.get(i)) : slots[column.ordinal()];
+        }
+        // Compiled once the arrays exist, the kernels hold on to the arrays they read
+        this.derivations = rules.getDerivations().stream()
+                .map(derivation -> derivation.compileNumber(this))
+                .toArray(CensusExpression.NumberKernel[]::new);
+        this.filter = rules.getFilter() == null ? null : rules.getFilter().compileCondition(this);
+    }
+
+    /**
+     * Replaces the content of the batch with the next records of the tokenizer.
+     *
+     * @param tokenizer CsvTokenizer to read records from, past the header line
+     * @return int number of records loaded, 0 once the tokenizer is exhausted
+     */
+    public int load(final CsvTokenizer tokenizer) {
+        size = 0;
+        Arrays.fill(textUsed, 0);
+        try {
+            while (size < capacity && tokenizer.nextLine()) {
+                // Every column starts out missing so a short line leaves the rest of its columns missing
+                clearRow(size);
+                int index = 0;
+                while (index < FILE_COLUMNS.length && tokenizer.nextField()) {
+                    final Column column = FILE_COLUMNS[index++];
+                    final int slot = slots[column.ordinal()];
+                    if (slot != SKIPPED) {
+                        loadValue(column.type, slot, tokenizer.chars(), tokenizer.offset(), tokenizer.length());
+                    }
+                }
+                // A line without a TotalPop, i.e. a blank line, is not a census record
+                if (index > Column.TOTAL_POP.ordinal()) {
+                    size++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new DataProcessingException("ERROR: Exception occurred reading census record " + (size + 1) + " of the batch", e);
+        }
+        return size;
+    }
+
+    /**
+     * Derives the columns of the rules for every record, then selects the records that meet the filter of the rules.
+     *
+     * @param selection int array of at least {@link #getSize()} entries, filled with the indexes of the selected records
+     * @return int number of selected records
+     */
+    public int apply(final int[] selection) {
+        for (int i = 0; i < derivations.length; i++) {
+            System.arraycopy(derivations[i].evaluate(size), 0, doubleColumns[firstDerivedSlot + i], 0, size);
+        }
+        if (filter == null) {
+            for (int row = 0; row < size; row++) {
+                selection[row] = row;
+            }
+            return size;
+        }
+        final boolean[] keep = filter.evaluate(size);
+        int selected = 0;
+        for (int row = 0; row < size; row++) {
+            // Branch free, the index is always written and only kept when the record meets the filter
+            selection[selected] = row;
+            selected += keep[row] ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /**
+     * Writes the selected records with the columns of the rules, see {@link CensusRules#getColumns()}
+     *
+     * @param writer    Writer to write the records to
+     * @param selection indexes of the records to write
+     * @param selected  number of indexes in the selection
+     * @throws IOException if the records cannot be written
+     */
+    public void write(final Writer writer, final int[] selection, final int selected) throws IOException {
+        for (int i = 0; i < selected; i++) {
+            final int row = selection[i];
+            for (int column = 0; column < resultTypes.length; column++) {
+                if (column > 0) {
+                    writer.write(',');
+                }
+                writeValue(writer, resultTypes[column], resultSlots[column], row);
+            }
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Number of records in the batch
+     *
+     * @return int number of records loaded by the last {@link #load(CsvTokenizer)}
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Maximum number of records in the batch
+     *
+     * @return int capacity of the batch
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Names of the columns of the census file, in file order
+     *
+     * @return List of column names
+     */
+    static List<String> fileColumns() {
+        return Arrays.stream(FILE_COLUMNS).map(column -> column.header).collect(Collectors.toList());
+    }
+
+    /**
+     * What a column of the census file holds, for a {@link CensusExpression} using it
+     *
+     * @param name String name of the column
+     * @return Kind of the column, TEXT for State and County and NUMBER for the rest, null if there is no such column
+     */
+    static CensusExpression.Kind fileColumnKind(final String name) {
+        final Column column = COLUMNS_BY_HEADER.get(name);
+        if (column == null) {
+            return null;
+        }
+        return column.type == Type.DICTIONARY ? CensusExpression.Kind.TEXT : CensusExpression.Kind.NUMBER;
+    }
+
+    /**
+     * Creates the kernel of a number column, a column of the file or a derived column
+     *
+     * @param name String name of the column
+     * @return NumberKernel returning the values of the column as doubles, missing values are NaN
+     */
+    CensusExpression.NumberKernel numberColumn(final String name) {
+        final Column column = COLUMNS_BY_HEADER.get(name);
+        if (column == null) {
+            // Derived columns are read straight from their array
+            final double[] values = doubleColumns[derivedSlot(name)];
+            return size -> values;
+        }
+        final int slot = slots[column.ordinal()];
+        switch (column.type) {
+            case TEXT:
+                // Parsed from the buffer of the column every time the rules use it, so the text is written unchanged
+                final double[] converted = new double[capacity];
+                return size -> {
+                    final char[] chars = textChars[slot];
+                    for (int row = 0; row < size; row++) {
+                        converted[row] = parseText(name, chars, textOffsets[slot][row], textLengths[slot][row]);
+                    }
+                    return converted;
+                };
+            case DOUBLE:
+                final double[] doubles = doubleColumns[slot];
+                return size -> doubles;
+            default:
+                throw new DataProcessingException("ERROR: Census column " + name + " is not a number column");
+        }
+    }
+
+    /**
+     * Creates the kernel of a comparison of a text column with a text, the text is looked up in the dictionary of the
+     * column once per batch and the codes of the records are compared with its code.
+     *
+     * @param name  String name of the column
+     * @param value String value to compare with
+     * @return ConditionKernel returning true for the records holding the value
+     */
+    CensusExpression.ConditionKernel textEquals(final String name, final String value) {
+        final Column column = COLUMNS_BY_HEADER.get(name);
+        final int[] codes = dictionaryCodes[slots[column.ordinal()]];
+        final StringDictionary dictionary = dictionaries[slots[column.ordinal()]];
+        final boolean[] result = new boolean[capacity];
+        return size -> {
+            final int code = dictionary.codeOf(value);
+            for (int row = 0; row < size; row++) {
+                result[row] = codes[row] == code;
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Finds where a derived column is kept
+     *
+     * @param name String name of the derived column
+     * @return int slot of the derived column in the double columns
+     */
+    private int derivedSlot(final String name) {
+        return firstDerivedSlot + derivedColumns.indexOf(name);
+    }
+
+    /**
+     * Marks every column of a record as missing
+     *
+     * @param row index of the record
+     */
+    private void clearRow(final int row) {
+        for (int[] codes : dictionaryCodes) {
+            codes[row] = MISSING_CODE;
+        }
+        for (int slot = 0; slot < textLengths.length; slot++) {
+            textOffsets[slot][row] = textUsed[slot];
+            textLengths[slot][row] = 0;
+        }
+        for (int i = 0; i < firstDerivedSlot; i++) {
+            doubleColumns[i][row] = Double.NaN;
+        }
+    }
+
+    /**
+     * Parses a value into its column
+     *
+     * @param type   Type of the column the value belongs to
+     * @param slot   index of the column in the arrays of its type
+     * @param chars  buffer holding the value
+     * @param offset offset of the value in the buffer
+     * @param length length of the value
+     */
+    private void loadValue(final Type type, final int slot, final char[] chars, final int offset, final int length) {
+        switch (type) {
+            case DICTIONARY:
+                dictionaryCodes[slot][size] = length == 0 ? MISSING_CODE : dictionaries[slot].encode(chars, offset, length);
+                break;
+            case TEXT:
+                copyText(slot, chars, offset, length);
+                break;
+            default:
+                doubleColumns[slot][size] = length == 0 ? Double.NaN : parseDouble(chars, offset, length);
+                break;
+        }
+    }
+
+    /**
+     * Writes the value of a record's column
+     *
+     * @param writer Writer to write the value to
+     * @param type   Type of the column to write
+     * @param slot   index of the column in the arrays of its type
+     * @param row    index of the record
+     * @throws IOException if the value cannot be written
+     */
+    private void writeValue(final Writer writer, final Type type, final int slot, final int row) throws IOException {
+        switch (type) {
+            case DICTIONARY:
+                final int code = dictionaryCodes[slot][row];
+                if (code != MISSING_CODE) {
+                    writeString(writer, dictionaries[slot].decode(code));
+                }
+                break;
+            case TEXT:
+                writeText(writer, textChars[slot], textOffsets[slot][row], textLengths[slot][row]);
+                break;
+            default:
+                writeDouble(writer, doubleColumns[slot][row]);
+                break;
+        }
+    }
+
+    /**
+     * Writes a double value the way {@link Double#toString(double)} formats it, nothing if it is missing
+     *
+     * @param writer Writer to write the value to
+     * @param value  double to write
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeDouble(final Writer writer, final double value) throws IOException {
+        final int tenths = (int) (value * 10);
+        if (tenths >= 0 && tenths < PERCENTAGES.length && tenths / 10.0 == value) {
+            writer.write(PERCENTAGES[tenths]);
+        } else if (!Double.isNaN(value)) {
+            writer.write(Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a String value, quoted the same way Jackson's CSV writer quotes it
+     *
+     * @param writer Writer to write the value to
+     * @param value  String to write
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeString(final Writer writer, final String value) throws IOException {
+        boolean quote = value.length() > MAX_UNQUOTED_LENGTH;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            quote = value.charAt(i) < '-';
+        }
+        if (quote) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    /**
+     * Copies the value of a text column into the buffer of the column, growing the buffer if it is full
+     *
+     * @param slot   index of the column in the text columns
+     * @param chars  buffer holding the value
+     * @param offset offset of the value in the buffer
+     * @param length length of the value
+     */
+    private void copyText(final int slot, final char[] chars, final int offset, final int length) {
+        final int used = textUsed[slot];
+        if (used + length > textChars[slot].length) {
+            textChars[slot] = Arrays.copyOf(textChars[slot], Math.max(textChars[slot].length * 2, used + length));
+        }
+        System.arraycopy(chars, offset, textChars[slot], used, length);
+        textOffsets[slot][size] = used;
+        textLengths[slot][size] = length;
+        textUsed[slot] = used + length;
+    }
+
+    /**
+     * Parses the value of a text column as a number for the rules
+     *
+     * @param name   String name of the column, reported if the value is not a number
+     * @param chars  buffer holding the value
+     * @param offset offset of the value in the buffer
+     * @param length length of the value
+     * @return double value of the number, NaN if the value is missing
+     */
+    private static double parseText(final String name, final char[] chars, final int offset, final int length) {
+        if (length == 0) {
+            return Double.NaN;
+        }
+        try {
+            return parseDouble(chars, offset, length);
+        } catch (NumberFormatException e) {
+            throw new DataProcessingException("ERROR: Census column " + name + " holds '"
+                    + new String(chars, offset, length) + "' which is not a number", e);
+        }
+    }
+
+    /**
+     * Writes the value of a text column, quoted the same way Jackson's CSV writer quotes it
+     *
+     * @param writer Writer to write the value to
+     * @param chars  buffer holding the value
+     * @param offset offset of the value in the buffer
+     * @param length length of the value
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeText(final Writer writer, final char[] chars, final int offset, final int length) throws IOException {
+        boolean quote = length > MAX_UNQUOTED_LENGTH;
+        for (int i = offset; i < offset + length && !quote; i++) {
+            quote = chars[i] < '-';
+        }
+        if (!quote) {
+            writer.write(chars, offset, length);
+            return;
+        }
+        writer.write('"');
+        for (int i = offset; i < offset + length; i++) {
+            if (chars[i] == '"') {
+                writer.write('"');
+            }
+            writer.write(chars[i]);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Parses a decimal number without creating a String for it. A number with few enough digits is exactly the
+     * quotient of two doubles, and a single division rounds the same way {@link Double#parseDouble(String)} does,
+     * any other number is left to the JDK.
+     *
+     * @param chars  buffer holding the number
+     * @param offset offset of the number in the buffer
+     * @param length length of the number
+     * @return double value of the number
+     */
+    private static double parseDouble(final char[] chars, final int offset, final int length) {
+        final boolean negative = chars[offset] == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            final char c = chars[offset + i];
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9' && mantissa <= (MAX_EXACT_MANTISSA - 10) / 10) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                decimals += decimals < 0 ? 0 : 1;
+            } else {
+                return Double.parseDouble(new String(chars, offset, length));
+            }
+        }
+        if (digits == 0 || decimals > MAX_EXACT_POWER_OF_TEN) {
+            return Double.parseDouble(new String(chars, offset, length));
+        }
+        final double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Dictionary of the distinct values of a String column. Census records are sorted by state and county, so the
+     * value of the previous record is checked first and most records are encoded without creating a String.
+     */
+    private static final class StringDictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int lastCode = MISSING_CODE;
+
+        /**
+         * Returns the code of a value, adding the value to the dictionary if it is new
+         *
+         * @param chars  buffer holding the value
+         * @param offset offset of the value in the buffer
+         * @param length length of the value
+         * @return int code of the value
+         */
+        private int encode(final char[] chars, final int offset, final int length) {
+            if (lastCode != MISSING_CODE && matches(values.get(lastCode), chars, offset, length)) {
+                return lastCode;
+            }
+            final String value = new String(chars, offset, length);
+            lastCode = codes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+            return lastCode;
+        }
+
+        /**
+         * Returns the code of a value without adding it to the dictionary
+         *
+         * @param value String value to look up
+         * @return int code of the value, -1 if it is not in the dictionary
+         */
+        private int codeOf(final String value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        /**
+         * Returns the value of a code
+         *
+         * @param code int code of the value
+         * @return String value
+         */
+        private String decode(final int code) {
+            return values.get(code);
+        }
+
+        /**
+         * Compares a String to a value in a buffer
+         *
+         * @param value  String to compare
+         * @param chars  buffer holding the other value
+         * @param offset offset of the other value in the buffer
+         * @param length length of the other value
+         * @return boolean true if both values are the same
+         */
+        private static boolean matches(final String value, final char[] chars, final int offset, final int length) {
+            if (value.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,789 @@
+package com.dna.challenge.data.processor.census;
+
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Expression of a {@link CensusRules} rule over the columns of a census record, e.g.
+ * {@code 100 - (Hispanic + White + Black + Native + Asian + Pacific)} or {@code TotalPop > 0 && State == "Texas"}.
+ * <p>
+ * An expression is parsed once, then compiled once per {@link CensusColumnBatch} into kernels that evaluate it for a
+ * whole batch at a time. Every operator is its own loop over the column arrays of the batch, so nothing is interpreted
+ * per record and the loops are simple enough for the JIT to vectorize.
+ * <p>
+ * What an expression may hold, from the lowest to the highest precedence:
+ * <p>
+ * - Conditions combined with {@code ||}, {@code &&} and {@code !}
+ * - Comparisons of numbers with {@code <, <=, >, >=, ==, !=}, and of a text column with a quoted text with
+ * {@code ==, !=}
+ * - Numbers combined with {@code +, -, *, /}, negated with {@code -}, and the functions {@code abs(x)},
+ * {@code min(x, y)} and {@code max(x, y)}
+ * - Number literals, quoted text literals, column names and parentheses
+ * <p>
+ * A missing value is NaN, so arithmetic on it is missing as well and every comparison with it is false, except for
+ * {@code !=}.
+ */
+final class CensusExpression {
+    private final String text;
+    private final Node root;
+
+    /**
+     * What an expression, or part of one, evaluates to
+     */
+    enum Kind {
+        NUMBER, CONDITION, TEXT
+    }
+
+    /**
+     * Evaluates a number expression for a batch
+     */
+    @FunctionalInterface
+    interface NumberKernel {
+        /**
+         * Evaluates the expression for the records of the batch
+         *
+         * @param size number of records in the batch
+         * @return double array holding the value of each record, only valid until the next evaluation
+         */
+        double[] evaluate(int size);
+    }
+
+    /**
+     * Evaluates a condition expression for a batch
+     */
+    @FunctionalInterface
+    interface ConditionKernel {
+        /**
+         * Evaluates the expression for the records of the batch
+         *
+         * @param size number of records in the batch
+         * @return boolean array holding the result of each record, only valid until the next evaluation
+         */
+        boolean[] evaluate(int size);
+    }
+
+    /**
+     * Constructor for {@link CensusExpression}
+     *
+     * @param text Text of the expression
+     * @param root Node the expression was parsed into
+     */
+    private CensusExpression(final String text, final Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Parses an expression
+     *
+     * @param text    Text of the expression
+     * @param columns Function returning the kind of a column, null if there is no such column
+     * @return CensusExpression parsed from the text
+     */
+    static CensusExpression parse(final String text, final Function<String, Kind> columns) {
+        Parser parser = new Parser(text, columns);
+        Node root = parser.parseOr();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.substring(parser.position) + "'");
+        }
+        if (root.kind == Kind.TEXT) {
+            throw parser.error("A text can only be compared with == or !=");
+        }
+        return new CensusExpression(text, root);
+    }
+
+    /**
+     * Combines expressions into one that holds only if all of them hold
+     *
+     * @param conditions List of condition expressions, at least one
+     * @return CensusExpression of all the conditions
+     */
+    static CensusExpression allOf(final List<CensusExpression> conditions) {
+        Node root = conditions.get(0).root;
+        StringBuilder text = new StringBuilder("(").append(conditions.get(0).text).append(')');
+        for (CensusExpression condition : conditions.subList(1, conditions.size())) {
+            root = new Logical("&&", root, condition.root);
+            text.append(" && (").append(condition.text).append(')');
+        }
+        return new CensusExpression(text.toString(), root);
+    }
+
+    /**
+     * What the expression evaluates to
+     *
+     * @return Kind of the expression, either a number or a condition
+     */
+    Kind getKind() {
+        return root.kind;
+    }
+
+    /**
+     * Adds the names of the columns the expression reads to a set
+     *
+     * @param columns Set to add the column names to
+     */
+    void collectColumns(final Set<String> columns) {
+        root.collectColumns(columns);
+    }
+
+    /**
+     * Compiles a number expression for a batch
+     *
+     * @param batch CensusColumnBatch the expression is evaluated for
+     * @return NumberKernel that evaluates the expression for the records of the batch
+     */
+    NumberKernel compileNumber(final CensusColumnBatch batch) {
+        return root.number(batch);
+    }
+
+    /**
+     * Compiles a condition expression for a batch
+     *
+     * @param batch CensusColumnBatch the expression is evaluated for
+     * @return ConditionKernel that evaluates the expression for the records of the batch
+     */
+    ConditionKernel compileCondition(final CensusColumnBatch batch) {
+        return root.condition(batch);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Part of a parsed expression
+     */
+    private abstract static class Node {
+        private final Kind kind;
+
+        Node(final Kind kind) {
+            this.kind = kind;
+        }
+
+        void collectColumns(final Set<String> columns) {
+            // Only column nodes, and nodes holding other nodes, read columns
+        }
+
+        NumberKernel number(final CensusColumnBatch batch) {
+            throw new IllegalStateException("Not a number expression");
+        }
+
+        ConditionKernel condition(final CensusColumnBatch batch) {
+            throw new IllegalStateException("Not a condition expression");
+        }
+    }
+
+    /**
+     * Number literal, its kernel returns the same filled array for every batch
+     */
+    private static final class NumberLiteral extends Node {
+        private final double value;
+
+        NumberLiteral(final double value) {
+            super(Kind.NUMBER);
+            this.value = value;
+        }
+
+        @Override
+        NumberKernel number(final CensusColumnBatch batch) {
+            final double[] values = new double[batch.getCapacity()];
+            Arrays.fill(values, value);
+            return size -> values;
+        }
+    }
+
+    /**
+     * Text literal, only ever compared with a text column
+     */
+    private static final class TextLiteral extends Node {
+        private final String value;
+
+        TextLiteral(final String value) {
+            super(Kind.TEXT);
+            this.value = value;
+        }
+    }
+
+    /**
+     * Column of the census record, or a column derived by an earlier rule
+     */
+    private static final class ColumnReference extends Node {
+        private final String name;
+
+        ColumnReference(final String name, final Kind kind) {
+            super(kind);
+            this.name = name;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            columns.add(name);
+        }
+
+        @Override
+        NumberKernel number(final CensusColumnBatch batch) {
+            return batch.numberColumn(name);
+        }
+    }
+
+    /**
+     * Negated number
+     */
+    private static final class Negation extends Node {
+        private final Node operand;
+
+        Negation(final Node operand) {
+            super(Kind.NUMBER);
+            this.operand = operand;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            operand.collectColumns(columns);
+        }
+
+        @Override
+        NumberKernel number(final CensusColumnBatch batch) {
+            final NumberKernel values = operand.number(batch);
+            final double[] result = new double[batch.getCapacity()];
+            return size -> {
+                final double[] value = values.evaluate(size);
+                for (int i = 0; i < size; i++) {
+                    result[i] = -value[i];
+                }
+                return result;
+            };
+        }
+    }
+
+    /**
+     * Arithmetic on two numbers, or a function of one or two numbers
+     */
+    private static final class Arithmetic extends Node {
+        private final String operator;
+        private final Node left;
+        private final Node right;
+
+        Arithmetic(final String operator, final Node left, final Node right) {
+            super(Kind.NUMBER);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            left.collectColumns(columns);
+            if (right != null) {
+                right.collectColumns(columns);
+            }
+        }
+
+        @Override
+        NumberKernel number(final CensusColumnBatch batch) {
+            final NumberKernel lefts = left.number(batch);
+            final double[] result = new double[batch.getCapacity()];
+            if ("abs".equals(operator)) {
+                return size -> {
+                    final double[] value = lefts.evaluate(size);
+                    for (int i = 0; i < size; i++) {
+                        result[i] = Math.abs(value[i]);
+                    }
+                    return result;
+                };
+            }
+            final NumberKernel rights = right.number(batch);
+            // Each operator gets a loop of its own, so the JIT compiles every loop for a single operation
+            switch (operator) {
+                case "+":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] + r[i];
+                        }
+                        return result;
+                    };
+                case "-":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] - r[i];
+                        }
+                        return result;
+                    };
+                case "*":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] * r[i];
+                        }
+                        return result;
+                    };
+                case "/":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] / r[i];
+                        }
+                        return result;
+                    };
+                case "min":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = Math.min(l[i], r[i]);
+                        }
+                        return result;
+                    };
+                default:
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = Math.max(l[i], r[i]);
+                        }
+                        return result;
+                    };
+            }
+        }
+    }
+
+    /**
+     * Comparison of two numbers
+     */
+    private static final class Comparison extends Node {
+        private final String operator;
+        private final Node left;
+        private final Node right;
+
+        Comparison(final String operator, final Node left, final Node right) {
+            super(Kind.CONDITION);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            left.collectColumns(columns);
+            right.collectColumns(columns);
+        }
+
+        @Override
+        ConditionKernel condition(final CensusColumnBatch batch) {
+            final NumberKernel lefts = left.number(batch);
+            final NumberKernel rights = right.number(batch);
+            final boolean[] result = new boolean[batch.getCapacity()];
+            switch (operator) {
+                case "<":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] < r[i];
+                        }
+                        return result;
+                    };
+                case "<=":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] <= r[i];
+                        }
+                        return result;
+                    };
+                case ">":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] > r[i];
+                        }
+                        return result;
+                    };
+                case ">=":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] >= r[i];
+                        }
+                        return result;
+                    };
+                case "==":
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] == r[i];
+                        }
+                        return result;
+                    };
+                default:
+                    return size -> {
+                        final double[] l = lefts.evaluate(size);
+                        final double[] r = rights.evaluate(size);
+                        for (int i = 0; i < size; i++) {
+                            result[i] = l[i] != r[i];
+                        }
+                        return result;
+                    };
+            }
+        }
+    }
+
+    /**
+     * Comparison of a text column with a text literal
+     */
+    private static final class TextComparison extends Node {
+        private final boolean equal;
+        private final ColumnReference column;
+        private final TextLiteral literal;
+
+        TextComparison(final boolean equal, final ColumnReference column, final TextLiteral literal) {
+            super(Kind.CONDITION);
+            this.equal = equal;
+            this.column = column;
+            this.literal = literal;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            column.collectColumns(columns);
+        }
+
+        @Override
+        ConditionKernel condition(final CensusColumnBatch batch) {
+            final ConditionKernel equals = batch.textEquals(column.name, literal.value);
+            if (equal) {
+                return equals;
+            }
+            final boolean[] result = new boolean[batch.getCapacity()];
+            return size -> {
+                final boolean[] value = equals.evaluate(size);
+                for (int i = 0; i < size; i++) {
+                    result[i] = !value[i];
+                }
+                return result;
+            };
+        }
+    }
+
+    /**
+     * Conditions combined with && or ||, both sides are always evaluated so the loop has no branches
+     */
+    private static final class Logical extends Node {
+        private final String operator;
+        private final Node left;
+        private final Node right;
+
+        Logical(final String operator, final Node left, final Node right) {
+            super(Kind.CONDITION);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            left.collectColumns(columns);
+            right.collectColumns(columns);
+        }
+
+        @Override
+        ConditionKernel condition(final CensusColumnBatch batch) {
+            final ConditionKernel lefts = left.condition(batch);
+            final ConditionKernel rights = right.condition(batch);
+            final boolean[] result = new boolean[batch.getCapacity()];
+            if ("&&".equals(operator)) {
+                return size -> {
+                    final boolean[] l = lefts.evaluate(size);
+                    final boolean[] r = rights.evaluate(size);
+                    for (int i = 0; i < size; i++) {
+                        result[i] = l[i] & r[i];
+                    }
+                    return result;
+                };
+            }
+            return size -> {
+                final boolean[] l = lefts.evaluate(size);
+                final boolean[] r = rights.evaluate(size);
+                for (int i = 0; i < size; i++) {
+                    result[i] = l[i] | r[i];
+                }
+                return result;
+            };
+        }
+    }
+
+    /**
+     * Negated condition
+     */
+    private static final class Not extends Node {
+        private final Node operand;
+
+        Not(final Node operand) {
+            super(Kind.CONDITION);
+            this.operand = operand;
+        }
+
+        @Override
+        void collectColumns(final Set<String> columns) {
+            operand.collectColumns(columns);
+        }
+
+        @Override
+        ConditionKernel condition(final CensusColumnBatch batch) {
+            final ConditionKernel values = operand.condition(batch);
+            final boolean[] result = new boolean[batch.getCapacity()];
+            return size -> {
+                final boolean[] value = values.evaluate(size);
+                for (int i = 0; i < size; i++) {
+                    result[i] = !value[i];
+                }
+                return result;
+            };
+        }
+    }
+
+    /**
+     * Recursive descent parser of an expression, each method parses one level of precedence
+     */
+    private static final class Parser {
+        private final String text;
+        private final Function<String, Kind> columns;
+        private int position;
+
+        Parser(final String text, final Function<String, Kind> columns) {
+            this.text = text;
+            this.columns = columns;
+        }
+
+        Node parseOr() {
+            Node node = parseAnd();
+            while (accept("||")) {
+                node = new Logical("||", expect(node, Kind.CONDITION, "||"), expect(parseAnd(), Kind.CONDITION, "||"));
+            }
+            return node;
+        }
+
+        Node parseAnd() {
+            Node node = parseNot();
+            while (accept("&&")) {
+                node = new Logical("&&", expect(node, Kind.CONDITION, "&&"), expect(parseNot(), Kind.CONDITION, "&&"));
+            }
+            return node;
+        }
+
+        Node parseNot() {
+            if (peek("!") && !peek("!=")) {
+                accept("!");
+                return new Not(expect(parseNot(), Kind.CONDITION, "!"));
+            }
+            return parseComparison();
+        }
+
+        Node parseComparison() {
+            Node left = parseSum();
+            for (String operator : new String[]{"<=", ">=", "==", "!=", "<", ">"}) {
+                if (accept(operator)) {
+                    return comparison(operator, left, parseSum());
+                }
+            }
+            return left;
+        }
+
+        Node parseSum() {
+            Node node = parseProduct();
+            while (true) {
+                if (accept("+")) {
+                    node = arithmetic("+", node, parseProduct());
+                } else if (accept("-")) {
+                    node = arithmetic("-", node, parseProduct());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        Node parseProduct() {
+            Node node = parseUnary();
+            while (true) {
+                if (accept("*")) {
+                    node = arithmetic("*", node, parseUnary());
+                } else if (accept("/")) {
+                    node = arithmetic("/", node, parseUnary());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        Node parseUnary() {
+            if (accept("-")) {
+                Node operand = expect(parseUnary(), Kind.NUMBER, "-");
+                return operand instanceof NumberLiteral ? new NumberLiteral(-((NumberLiteral) operand).value) : new Negation(operand);
+            }
+            return parsePrimary();
+        }
+
+        Node parsePrimary() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end of expression");
+            }
+            final char c = text.charAt(position);
+            if (accept("(")) {
+                Node node = parseOr();
+                if (!accept(")")) {
+                    throw error("Missing ')'");
+                }
+                return node;
+            }
+            if (c == '"' || c == '\'') {
+                final int end = text.indexOf(c, position + 1);
+                if (end < 0) {
+                    throw error("Unterminated text");
+                }
+                final String value = text.substring(position + 1, end);
+                position = end + 1;
+                return new TextLiteral(value);
+            }
+            if (Character.isDigit(c) || c == '.') {
+                final int start = position++;
+                while (position < text.length() && isNumberChar(text.charAt(position), text.charAt(position - 1))) {
+                    position++;
+                }
+                try {
+                    return new NumberLiteral(Double.parseDouble(text.substring(start, position)));
+                } catch (NumberFormatException e) {
+                    position = start;
+                    throw error("Invalid number");
+                }
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                final int start = position;
+                while (position < text.length() && Character.isJavaIdentifierPart(text.charAt(position))) {
+                    position++;
+                }
+                final String name = text.substring(start, position);
+                if (accept("(")) {
+                    return function(name, start);
+                }
+                final Kind kind = columns.apply(name);
+                if (kind == null) {
+                    position = start;
+                    throw error("Unknown column '" + name + "'");
+                }
+                return new ColumnReference(name, kind);
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private Node function(final String name, final int start) {
+            List<Node> arguments = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    arguments.add(expect(parseSum(), Kind.NUMBER, name));
+                } while (accept(","));
+                if (!accept(")")) {
+                    throw error("Missing ')'");
+                }
+            }
+            final String function = name.toLowerCase(Locale.ROOT);
+            final int expected = "abs".equals(function) ? 1 : 2;
+            if (!Arrays.asList("abs", "min", "max").contains(function) || arguments.size() != expected) {
+                position = start;
+                throw error("Unknown function '" + name + "' with " + arguments.size() + " argument(s), expected abs(x), min(x, y) or max(x, y)");
+            }
+            return new Arithmetic(function, arguments.get(0), expected == 2 ? arguments.get(1) : null);
+        }
+
+        private Node arithmetic(final String operator, final Node left, final Node right) {
+            expect(left, Kind.NUMBER, operator);
+            expect(right, Kind.NUMBER, operator);
+            // Constants are folded, so they cost nothing per batch
+            if (left instanceof NumberLiteral && right instanceof NumberLiteral) {
+                final double l = ((NumberLiteral) left).value;
+                final double r = ((NumberLiteral) right).value;
+                switch (operator) {
+                    case "+":
+                        return new NumberLiteral(l + r);
+                    case "-":
+                        return new NumberLiteral(l - r);
+                    case "*":
+                        return new NumberLiteral(l * r);
+                    default:
+                        return new NumberLiteral(l / r);
+                }
+            }
+            return new Arithmetic(operator, left, right);
+        }
+
+        private Node comparison(final String operator, final Node left, final Node right) {
+            if (left.kind == Kind.TEXT || right.kind == Kind.TEXT) {
+                final boolean equal = "==".equals(operator);
+                if (!equal && !"!=".equals(operator)) {
+                    throw error("A text can only be compared with == or !=");
+                }
+                if (left instanceof ColumnReference && right instanceof TextLiteral) {
+                    return new TextComparison(equal, (ColumnReference) left, (TextLiteral) right);
+                }
+                if (left instanceof TextLiteral && right instanceof ColumnReference) {
+                    return new TextComparison(equal, (ColumnReference) right, (TextLiteral) left);
+                }
+                throw error("A text column can only be compared with a quoted text");
+            }
+            return new Comparison(operator, expect(left, Kind.NUMBER, operator), expect(right, Kind.NUMBER, operator));
+        }
+
+        private Node expect(final Node node, final Kind kind, final String operator) {
+            if (node.kind != kind) {
+                throw error("'" + operator + "' expects a " + kind.name().toLowerCase(Locale.ROOT) + " but got a "
+                        + node.kind.name().toLowerCase(Locale.ROOT));
+            }
+            return node;
+        }
+
+        private boolean peek(final String token) {
+            skipWhitespace();
+            return text.startsWith(token, position);
+        }
+
+        private boolean accept(final String token) {
+            if (peek(token)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isNumberChar(final char c, final char previous) {
+            return Character.isDigit(c) || c == '.' || c == 'e' || c == 'E'
+                    || ((c == '-' || c == '+') && (previous == 'e' || previous == 'E'));
+        }
+
+        private DataProcessingException error(final String message) {
+            return new DataProcessingException("ERROR: " + message + " at position " + position + " of rule expression '" + text + "'");
+        }
+    }
+}
@@ -21,6 +21,9 @@ import java.io.Serializable;
 @JsonAppend(attrs = {@JsonAppend.Attr(value = "OtherEthnicity")})
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class CensusRecord implements Serializable {
+    // Shared by every record, a CsvMapper is thread safe and caches serializers so it is expensive to create per row
+    private static final CsvMapper CSV_MAPPER = (CsvMapper) new CsvMapper().configure(JsonGenerator.Feature.IGNORE_UNKNOWN, true);
+
     @JsonProperty("CensusTract")
     private String CensusTract;
     @JsonProperty("State")
@@ -392,6 +395,15 @@ public class CensusRecord implements Serializable {
         Unemployment = unemployment;
     }
 
+    /**
+     * Sums the columns Hispanic, White, Black, Native, Asian and Pacific and subtracts the sum from 100.
+     *
+     * @return double percentage of the population of any other ethnicity
+     */
+    public double otherEthnicity() {
+        return 100 - (this.Hispanic + this.White + this.Black + this.Native + this.Asian + this.Pacific);
+    }
+
     /**
      * Method will sum the columns Hispanic, White, Black, Native, Asian and Pacific and subtract the sum from 100.
      * Then it will put this number in a new column named OtherEthnicity.
@@ -401,14 +413,10 @@ public class CensusRecord implements Serializable {
      * @return String CSV representation of this object with a percentage of the other ethnicity columns attached.
      */
     public String processOtherEthnicityColumn(final String columnName, final CsvSchema schema) {
-        // Get the sum
-        double sum = this.Hispanic + this.White + this.Black + this.Native + this.Asian + this.Pacific;
-
         // Attempt to add the calculation to the record and return its string representation
         try {
-            return new CsvMapper().configure(JsonGenerator.Feature.IGNORE_UNKNOWN, true)
-                    .writer(schema)
-                    .withAttribute(columnName, (100 - sum))
+            return CSV_MAPPER.writer(schema)
+                    .withAttribute(columnName, otherEthnicity())
                     .writeValueAsString(this);
         } catch (JsonProcessingException e) {
             e.printStackTrace();
@@ -0,0 +1,192 @@
+package com.dna.challenge.data.processor.census;
+
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+import com.dna.challenge.util.CommonUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rules of the census transform, i.e. which records are kept, which columns are derived and which columns are written,
+ * so the transform can be changed without a new build of the Lambda.
+ * <p>
+ * Rules are text, one rule per line or separated by ';', anything after a '#' is a comment:
+ * <pre>
+ * filter = TotalPop &gt; 0
+ * derive.OtherEthnicity = 100 - (Hispanic + White + Black + Native + Asian + Pacific)
+ * columns = CensusTract, State, County, Men, Women, Hispanic, White, Black, Native, Asian, Pacific, OtherEthnicity
+ * </pre>
+ * <p>
+ * - filter: condition a record has to meet to be written, see {@link CensusExpression}. Several filters must all be
+ * met, without one every record is written.
+ * - derive.NAME: number expression of a new column NAME, a derived column may use the columns derived before it.
+ * - columns: columns written, in order, from the columns of the census file and the derived columns. Without it every
+ * column of the census file is written, followed by the derived columns.
+ * <p>
+ * Rules are checked when they are parsed, so a mistake fails before any data is read. See {@link #DEFAULT} for the
+ * rules of the original transform.
+ */
+public final class CensusRules {
+    // Keys of the rules
+    private static final String FILTER_KEY = "filter";
+    private static final String DERIVE_PREFIX = "derive.";
+    private static final String COLUMNS_KEY = "columns";
+    // Rules of the original transform
+    public static final String DEFAULT_RULES = String.join(System.lineSeparator(),
+            FILTER_KEY + " = TotalPop > 0",
+            DERIVE_PREFIX + CensusConstants.ETHNICITY_COL + " = 100 - (Hispanic + White + Black + Native + Asian + Pacific)",
+            COLUMNS_KEY + " = " + String.join(", ", CensusConstants.RESULT_COLUMNS));
+    public static final CensusRules DEFAULT = parse(DEFAULT_RULES);
+
+    private final CensusExpression filter;
+    private final List<String> derivedColumns;
+    private final List<CensusExpression> derivations;
+    private final List<String> columns;
+
+    /**
+     * Constructor for {@link CensusRules}
+     *
+     * @param filter         CensusExpression every written record meets, null to write every record
+     * @param derivedColumns List of the names of the derived columns
+     * @param derivations    List of the expressions of the derived columns
+     * @param columns        List of the columns to write
+     */
+    private CensusRules(final CensusExpression filter,
+                        final List<String> derivedColumns,
+                        final List<CensusExpression> derivations,
+                        final List<String> columns) {
+        this.filter = filter;
+        this.derivedColumns = Collections.unmodifiableList(derivedColumns);
+        this.derivations = Collections.unmodifiableList(derivations);
+        this.columns = Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * Parses rules, see {@link CensusRules} for their format
+     *
+     * @param rules String text of the rules
+     * @return CensusRules parsed from the text
+     */
+    public static CensusRules parse(final String rules) {
+        CommonUtil.ifNullThrowException(rules, new DataProcessingException("Cannot parse Null Census Rules"));
+        List<CensusExpression> filters = new ArrayList<>();
+        List<String> derivedColumns = new ArrayList<>();
+        List<CensusExpression> derivations = new ArrayList<>();
+        List<String> columns = null;
+        for (String line : rules.split("[;\\r\\n]")) {
+            final int comment = line.indexOf('#');
+            final String rule = (comment < 0 ? line : line.substring(0, comment)).trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            final int equals = rule.indexOf('=');
+            if (equals < 0) {
+                throw new DataProcessingException("ERROR: Census rule '" + rule + "' is not of the form key = value");
+            }
+            final String key = rule.substring(0, equals).trim();
+            final String value = rule.substring(equals + 1).trim();
+            if (FILTER_KEY.equals(key)) {
+                filters.add(parseExpression(value, CensusExpression.Kind.CONDITION, derivedColumns));
+            } else if (key.startsWith(DERIVE_PREFIX)) {
+                final String name = key.substring(DERIVE_PREFIX.length());
+                if (!name.matches("[A-Za-z_][A-Za-z0-9_]*") || CensusColumnBatch.fileColumnKind(name) != null || derivedColumns.contains(name)) {
+                    throw new DataProcessingException("ERROR: Derived column '" + name + "' must be a new column name");
+                }
+                derivations.add(parseExpression(value, CensusExpression.Kind.NUMBER, derivedColumns));
+                derivedColumns.add(name);
+            } else if (COLUMNS_KEY.equals(key)) {
+                columns = Arrays.stream(value.split(",")).map(String::trim).collect(Collectors.toList());
+            } else {
+                throw new DataProcessingException("ERROR: Unknown census rule '" + key + "', expected filter, derive.NAME or columns");
+            }
+        }
+        if (Objects.isNull(columns)) {
+            columns = new ArrayList<>(CensusColumnBatch.fileColumns());
+            columns.addAll(derivedColumns);
+        }
+        for (String column : columns) {
+            if (CensusColumnBatch.fileColumnKind(column) == null && !derivedColumns.contains(column)) {
+                throw new DataProcessingException("ERROR: Unknown column '" + column + "' in census rule columns");
+            }
+        }
+        return new CensusRules(filters.isEmpty() ? null : CensusExpression.allOf(filters), derivedColumns, derivations, columns);
+    }
+
+    /**
+     * Columns that are written, in order
+     *
+     * @return List of column names, i.e. the header of the result
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Condition every written record meets
+     *
+     * @return CensusExpression of the filter, null if every record is written
+     */
+    CensusExpression getFilter() {
+        return filter;
+    }
+
+    /**
+     * Names of the derived columns, in the order they are derived
+     *
+     * @return List of column names
+     */
+    List<String> getDerivedColumns() {
+        return derivedColumns;
+    }
+
+    /**
+     * Expressions of the derived columns, in the same order as {@link #getDerivedColumns()}
+     *
+     * @return List of number expressions
+     */
+    List<CensusExpression> getDerivations() {
+        return derivations;
+    }
+
+    /**
+     * Columns of the census file the rules read or write, all other columns can be skipped while parsing
+     *
+     * @return Set of column names of the census file
+     */
+    Set<String> getFileColumns() {
+        Set<String> fileColumns = new LinkedHashSet<>(columns);
+        if (Objects.nonNull(filter)) {
+            filter.collectColumns(fileColumns);
+        }
+        derivations.forEach(derivation -> derivation.collectColumns(fileColumns));
+        fileColumns.removeAll(derivedColumns);
+        return fileColumns;
+    }
+
+    /**
+     * Parses an expression of a rule
+     *
+     * @param expression     String text of the expression
+     * @param kind           Kind the expression must evaluate to
+     * @param derivedColumns List of the columns derived so far, which the expression may use
+     * @return CensusExpression parsed from the text
+     */
+    private static CensusExpression parseExpression(final String expression,
+                                                    final CensusExpression.Kind kind,
+                                                    final List<String> derivedColumns) {
+        CensusExpression parsed = CensusExpression.parse(expression, name -> derivedColumns.contains(name)
+                ? CensusExpression.Kind.NUMBER : CensusColumnBatch.fileColumnKind(name));
+        if (parsed.getKind() != kind) {
+            throw new DataProcessingException("ERROR: Census rule expression '" + expression + "' must be a "
+                    + kind.name().toLowerCase(Locale.ROOT) + " expression");
+        }
+        return parsed;
+    }
+}
@@ -1,45 +1,68 @@
 package com.dna.challenge.data.processor.s3;
 
-import com.dna.challenge.data.processor.census.CensusConstants;
-import com.dna.challenge.data.processor.census.CensusRecord;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.dna.challenge.data.processor.census.CensusColumnBatch;
+import com.dna.challenge.data.processor.census.CensusRules;
 import com.dna.challenge.data.processor.DataProcessor;
 import com.dna.challenge.data.processor.exception.DataProcessingException;
 import com.dna.challenge.util.CommonUtil;
+import com.dna.challenge.util.CsvTokenizer;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.Charset;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Class responsible for handling CSV data pulled from an S3 Event in AWS.
  * <p>
- * What this class will do processing the data includes:
+ * What this class will do processing the data with the {@link CensusRules#DEFAULT} rules includes:
  * <p>
  * - Remove any line items that have a TotalPop of zero
  * - For each line item, sum the columns Hispanic, White, Black, Native, Asian and Pacific and subtract the sum from 100.
  * Put this number in a new column named OtherEthnicity.
  * - For each line item, drop all columns not found in the output file format in Appendix B.
+ * <p>
+ * Other {@link CensusRules} filter, derive and write other columns.
+ * <p>
+ * Records are read, transformed and written a batch at a time by {@link #process(OutputStream)} so a file of any size
+ * can be processed in constant memory. A batch is a {@link CensusColumnBatch}, which holds the records in primitive
+ * columns, so no object is created per record.
+ * <p>
+ * See {@link ParallelCensusCSVDataProcessor} to spread the transform of a large file over several cores.
  */
 public class CensusCSVDataProcessor implements DataProcessor<String> {
-    // Final variable because it is ALWAYS required when constructing this Object
+    // Final variables because they are ALWAYS required when constructing this Object
     private final InputStream censusDataStream;
+    private final CensusRules rules;
 
     /**
-     * Constructor for {@link CensusCSVDataProcessor}
+     * Constructor for {@link CensusCSVDataProcessor} that transforms the data with {@link CensusRules#DEFAULT}
      *
      * @param censusDataStream InputStream that is pulled from S3 Object
      */
     public CensusCSVDataProcessor(InputStream censusDataStream) {
+        this(censusDataStream, CensusRules.DEFAULT);
+    }
+
+    /**
+     * Constructor for {@link CensusCSVDataProcessor}
+     *
+     * @param censusDataStream InputStream that is pulled from S3 Object
+     * @param rules            CensusRules to transform the data with
+     */
+    public CensusCSVDataProcessor(InputStream censusDataStream, CensusRules rules) {
         // If the input stream is null then throw an exception immediately
         CommonUtil.ifNullThrowException(censusDataStream, new DataProcessingException("Cannot process Null Census Data Stream"));
+        CommonUtil.ifNullThrowException(rules, new DataProcessingException("Cannot process Census Data without Census Rules"));
         this.censusDataStream = censusDataStream;
+        this.rules = rules;
     }
 
     /**
@@ -48,85 +71,70 @@ public class CensusCSVDataProcessor implements DataProcessor<String> {
      * @return String result of processing CSV data
      */
     public String process() {
-        List<CensusRecord> censusRecords;
-        try {
-            censusRecords = convert(censusDataStream, Charset.defaultCharset(), CensusRecord.class);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new DataProcessingException("ERROR: Exception occurred processing CSV data", e);
-        }
-        // Create an updated schema for use in output later on
-        // this is needed because Jackson's CSV library does not have a proper
-        // drop column function like Spark
-        CsvSchema updatedSchema = createSchemaFromColumnNames(CensusConstants.RESULT_COLUMNS);
-
-        // Filter out values with a total population of zero
-        // then convert the data into the updated format with new column attached
-        // finally, collect them all into a list
-        List<String> resultRecords = censusRecords.stream()
-                .filter(currentRecord -> currentRecord.getTotalPop() > 0)
-                .map(currentRecord -> currentRecord.processOtherEthnicityColumn(CensusConstants.ETHNICITY_COL, updatedSchema))
-                .collect(Collectors.toList());
-        // append header string for output that will be pushed to S3 sink bucket
-        resultRecords.add(0, String.join(",", Arrays.asList(CensusConstants.RESULT_COLUMNS)).concat(System.lineSeparator()));
-        // Join everything in the list together and return
-        return String.join("", resultRecords);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        process(outputStream);
+        return new String(outputStream.toByteArray(), Charset.defaultCharset());
     }
 
     /**
-     * Helper method to create a simple schema from 1..N column names provided.
+     * Processes Census CSV Data one record at a time and writes each modified record to the output stream as soon as
+     * it is processed, so memory use does not grow with the size of the data.
      *
-     * @param columnNames 1..N String objects that will be set in the schema as columns
-     * @return CsvSchema built using the provided column names
+     * @param outputStream OutputStream to write the modified output data to, it is flushed but not closed
+     * @return long number of records written, not counting the header
      */
-    private CsvSchema createSchemaFromColumnNames(String... columnNames) {
-        CsvSchema.Builder builder = CsvSchema.builder();
-        Arrays.asList(columnNames).forEach(builder::addColumn);
-        return builder.build();
+    public long process(final OutputStream outputStream) {
+        CommonUtil.ifNullThrowException(outputStream, new DataProcessingException("Cannot write Census Data to a Null Output Stream"));
+        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(censusDataStream, Charset.defaultCharset()))) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, Charset.defaultCharset()));
+            writeHeader(writer, rules);
+            final long recordCount = transform(bufferedReader, writer, true, rules);
+            writer.flush();
+            return recordCount;
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Exception occurred processing CSV data", e);
+        }
     }
 
     /**
-     * Converts a InputStream to a List and parses it into the provided Class.
+     * Writes the header line for output that will be pushed to S3 sink bucket
      *
-     * @param inputStream InputStream containing parsable CSV content
-     * @param charset     Charset to help encode/decode data
-     * @param clazz       Class to parse input stream too
-     * @param <T>         Generic Type
-     * @return List of T objects parsed from the provided input stream
-     * @throws IOException
+     * @param writer Writer to write the header line to
+     * @param rules  CensusRules holding the columns of the output
+     * @throws IOException if the header cannot be written
      */
-    private <T> List<T> convert(InputStream inputStream, Charset charset, Class<T> clazz) throws IOException {
-        // Null sanity checks
-        CommonUtil.ifNullThrowException(clazz, new DataProcessingException("Cannot Convert Input Stream from a NULL Class"));
-        CommonUtil.ifNullThrowException(inputStream, new DataProcessingException("Cannot Convert NULL Input Stream to object"));
-        // If the provided charset is null then get the default set for the current JVM environment
-        charset = CommonUtil.defaultIfNull(charset, Charset.defaultCharset());
-        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, charset))) {
-            return bufferedReader.lines()
-                    .skip(1L)
-                    .map(line -> processRecord(line, clazz))
-                    .collect(Collectors.toList());
-        }
+    static void writeHeader(final Writer writer, final CensusRules rules) throws IOException {
+        writer.write(String.join(",", rules.getColumns()));
+        writer.write(System.lineSeparator());
     }
 
     /**
-     * Converts the provided String into the Class.
+     * Reads the census records from the reader a batch at a time, derives the columns of the rules, filters out records
+     * that do not meet the rules, or blank lines, and writes the rest with the columns of the rules.
      *
-     * @param recordStr String CSV representation of object
-     * @param clazz     Class to parse String into
-     * @param <T>       Generic Type
-     * @return T parsed from String to specified class
+     * @param reader     Reader of the census data
+     * @param writer     Writer to write the modified records to, it is neither flushed nor closed
+     * @param skipHeader true if the first line of the reader is the header line
+     * @param rules      CensusRules to transform the records with
+     * @return long number of records written
      */
-    private <T> T processRecord(final String recordStr, final Class<T> clazz) {
-        if (CommonUtil.isNotEmpty(recordStr)) {
-            CsvMapper csvMapper = new CsvMapper();
-            try {
-                return csvMapper.readerWithTypedSchemaFor(clazz).readValue(recordStr);
-            } catch (IOException e) {
-                // Throw exception to tell invoking code that something bad happened
-                throw new DataProcessingException(e);
+    static long transform(final Reader reader, final Writer writer, final boolean skipHeader, final CensusRules rules) {
+        // Batch and selection are reused for every batch of the data, the rules are compiled for the batch once
+        CensusColumnBatch batch = new CensusColumnBatch(CensusColumnBatch.DEFAULT_CAPACITY, rules);
+        int[] selection = new int[batch.getCapacity()];
+        long recordCount = 0;
+        try (CsvTokenizer tokenizer = new CsvTokenizer(reader)) {
+            if (skipHeader) {
+                tokenizer.nextLine();
+            }
+            while (batch.load(tokenizer) > 0) {
+                final int selected = batch.apply(selection);
+                batch.write(writer, selection, selected);
+                recordCount += selected;
             }
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Exception occurred processing CSV data", e);
         }
-        return null;
+        return recordCount;
     }
 }
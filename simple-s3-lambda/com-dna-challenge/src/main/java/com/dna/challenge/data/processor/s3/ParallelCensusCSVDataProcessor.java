@@ -0,0 +1,222 @@
+package com.dna.challenge.data.processor.s3;
+
+import com.dna.challenge.data.processor.DataProcessor;
+import com.dna.challenge.data.processor.census.CensusRules;
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+import com.dna.challenge.util.ByteRangeSource;
+import com.dna.challenge.util.CommonUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Processes Census CSV Data the same way {@link CensusCSVDataProcessor} does, with the same output, but spreads the
+ * work over several cores.
+ * <p>
+ * The data is split into chunks of roughly the chunk size, each chunk is moved forward to start right after a line
+ * break so no line is split between two chunks. The chunks are read, parsed and transformed on a fork-join pool at the
+ * same time and the transformed chunks are written to the output in their original order. At most two chunks per
+ * thread are held in memory at once, so memory use does not grow with the size of the data either.
+ * <p>
+ * NOTE: Line breaks are assumed to only separate records, i.e. no quoted value contains one, which is true for the
+ * census data.
+ */
+public class ParallelCensusCSVDataProcessor implements DataProcessor<String> {
+    // Bytes read at a time when looking for the line break a chunk starts after, a census line is about 200 bytes
+    private static final int PROBE_SIZE = 8 * 1024;
+
+    private final ByteRangeSource censusDataSource;
+    private final int parallelism;
+    private final long chunkSize;
+    private final CensusRules rules;
+
+    /**
+     * Constructor for {@link ParallelCensusCSVDataProcessor} that transforms the data with {@link CensusRules#DEFAULT}
+     *
+     * @param censusDataSource ByteRangeSource of the census data, i.e. an S3 object or a local file
+     * @param parallelism      number of chunks to process at the same time
+     * @param chunkSize        size in bytes each chunk is split at, before it is moved to a line break
+     */
+    public ParallelCensusCSVDataProcessor(final ByteRangeSource censusDataSource, final int parallelism, final long chunkSize) {
+        this(censusDataSource, parallelism, chunkSize, CensusRules.DEFAULT);
+    }
+
+    /**
+     * Constructor for {@link ParallelCensusCSVDataProcessor}
+     *
+     * @param censusDataSource ByteRangeSource of the census data, i.e. an S3 object or a local file
+     * @param parallelism      number of chunks to process at the same time
+     * @param chunkSize        size in bytes each chunk is split at, before it is moved to a line break
+     * @param rules            CensusRules to transform the data with
+     */
+    public ParallelCensusCSVDataProcessor(final ByteRangeSource censusDataSource,
+                                          final int parallelism,
+                                          final long chunkSize,
+                                          final CensusRules rules) {
+        CommonUtil.ifNullThrowException(censusDataSource, new DataProcessingException("Cannot process Null Census Data Source"));
+        CommonUtil.ifNullThrowException(rules, new DataProcessingException("Cannot process Census Data without Census Rules"));
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new DataProcessingException("ERROR: Parallelism and chunk size must be positive");
+        }
+        this.censusDataSource = censusDataSource;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.rules = rules;
+    }
+
+    /**
+     * Processes Census CSV Data and returns a String that contains modified output data to push to AWS S3 Sink Bucket
+     *
+     * @return String result of processing CSV data
+     */
+    public String process() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        process(outputStream);
+        return new String(outputStream.toByteArray(), Charset.defaultCharset());
+    }
+
+    /**
+     * Processes Census CSV Data in parallel chunks and writes the modified records to the output stream in their
+     * original order.
+     *
+     * @param outputStream OutputStream to write the modified output data to, it is flushed but not closed
+     * @return long number of records written, not counting the header
+     */
+    public long process(final OutputStream outputStream) {
+        CommonUtil.ifNullThrowException(outputStream, new DataProcessingException("Cannot write Census Data to a Null Output Stream"));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Deque<ForkJoinTask<ProcessedChunk>> inFlight = new ArrayDeque<>();
+        try {
+            List<Long> boundaries = chunkBoundaries(pool);
+            Writer writer = new OutputStreamWriter(outputStream, Charset.defaultCharset());
+            CensusCSVDataProcessor.writeHeader(writer, rules);
+            writer.flush();
+
+            long recordCount = 0;
+            int nextChunk = 0;
+            while (nextChunk < boundaries.size() - 1 || !inFlight.isEmpty()) {
+                // Keep every thread busy with a chunk queued up behind it
+                while (nextChunk < boundaries.size() - 1 && inFlight.size() < parallelism * 2) {
+                    final long start = boundaries.get(nextChunk);
+                    final long end = boundaries.get(++nextChunk);
+                    inFlight.add(pool.submit(() -> processChunk(start, end)));
+                }
+                // Chunks are written in the order they were submitted, no matter which one finishes first
+                ProcessedChunk chunk = inFlight.poll().join();
+                chunk.bytes.writeTo(outputStream);
+                recordCount += chunk.recordCount;
+            }
+            outputStream.flush();
+            return recordCount;
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Exception occurred processing CSV data", e);
+        } finally {
+            inFlight.forEach(task -> task.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the data into chunks that start right after a line break, the first one right after the header line.
+     *
+     * @param pool ForkJoinPool to look for the line breaks on
+     * @return List of chunk offsets, chunk i covers the bytes from offset i up to offset i + 1
+     */
+    private List<Long> chunkBoundaries(final ForkJoinPool pool) {
+        final long size = censusDataSource.size();
+        List<ForkJoinTask<Long>> probes = new ArrayList<>();
+        probes.add(pool.submit(() -> nextLineStart(0, size)));
+        for (long offset = chunkSize; offset < size; offset += chunkSize) {
+            final long nominalStart = offset;
+            probes.add(pool.submit(() -> nextLineStart(nominalStart - 1, size)));
+        }
+        List<Long> boundaries = new ArrayList<>();
+        for (ForkJoinTask<Long> probe : probes) {
+            final long boundary = probe.join();
+            // A line longer than a chunk pushes a boundary onto or past the next one, drop it so no chunk is empty
+            if (boundaries.isEmpty() || boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+        }
+        if (boundaries.get(boundaries.size() - 1) < size) {
+            boundaries.add(size);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Finds where the line after the given offset starts
+     *
+     * @param offset offset to look for a line break from, inclusive
+     * @param size   size of the data
+     * @return long offset right after the first line break at or after the offset, the size if there is none
+     */
+    private long nextLineStart(final long offset, final long size) {
+        byte[] probe = new byte[PROBE_SIZE];
+        for (long start = offset; start < size; start += PROBE_SIZE) {
+            // Read the whole probe so an S3 connection is left drained and can be reused
+            int length = 0;
+            try (InputStream inputStream = censusDataSource.open(start, Math.min(size, start + PROBE_SIZE))) {
+                int count;
+                while (length < probe.length && (count = inputStream.read(probe, length, probe.length - length)) > 0) {
+                    length += count;
+                }
+            } catch (IOException e) {
+                throw new DataProcessingException("ERROR: Could not read census data at offset " + start, e);
+            }
+            for (int i = 0; i < length; i++) {
+                if (probe[i] == '\n') {
+                    return start + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads, parses and transforms the records of one chunk
+     *
+     * @param start offset the chunk starts at, right after a line break
+     * @param end   offset the chunk ends at, exclusive
+     * @return ProcessedChunk the transformed records of the chunk
+     */
+    private ProcessedChunk processChunk(final long start, final long end) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(censusDataSource.open(start, end), Charset.defaultCharset()))) {
+            // The transformed records are smaller than the input, as some of the columns are dropped
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(end - start, Integer.MAX_VALUE - 8));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(bytes, Charset.defaultCharset()));
+            final long recordCount = CensusCSVDataProcessor.transform(reader, writer, false, rules);
+            writer.flush();
+            return new ProcessedChunk(bytes, recordCount);
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Exception occurred processing CSV data", e);
+        }
+    }
+
+    /**
+     * Transformed records of one chunk
+     */
+    private static final class ProcessedChunk {
+        private final ByteArrayOutputStream bytes;
+        private final long recordCount;
+
+        private ProcessedChunk(final ByteArrayOutputStream bytes, final long recordCount) {
+            this.bytes = bytes;
+            this.recordCount = recordCount;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dna.challenge.util;
+
+import java.io.InputStream;
+
+/**
+ * Source of data that can be read from any byte offset, so separate parts of it can be read at the same time.
+ */
+public interface ByteRangeSource {
+
+    /**
+     * Total size of the data
+     *
+     * @return long size in bytes
+     */
+    long size();
+
+    /**
+     * Opens a stream over a range of the data
+     *
+     * @param start offset of the first byte to read, inclusive
+     * @param end   offset to stop reading at, exclusive
+     * @return InputStream of the bytes from start up to end, the caller must close it
+     */
+    InputStream open(long start, long end);
+}
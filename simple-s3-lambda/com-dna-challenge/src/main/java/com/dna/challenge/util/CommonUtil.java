@@ -223,4 +223,35 @@ public class CommonUtil {
     public static String retrieveEnvironmentVariable(final String key, final String defaultStr) {
         return Optional.ofNullable(System.getenv(key)).orElse(defaultStr);
     }
+
+    /**
+     * Helper method to retrieve a positive whole number from an environment variable, defaulting to the default value
+     * if nothing is set or the value is not a number greater than zero.
+     *
+     * @param key String environment variable key to look for
+     * @param defaultValue long the default value if nothing valid is set for the provided variable key
+     * @return long either the environment variable or default value if nothing valid is found.
+     */
+    public static long retrievePositiveEnvironmentVariable(final String key, final long defaultValue) {
+        return parsePositive(System.getenv(key), defaultValue);
+    }
+
+    /**
+     * Parses the provided String to a whole number greater than zero.
+     *
+     * @param str String to parse
+     * @param defaultValue long to return if the String is empty, not a number or not greater than zero
+     * @return long the parsed value or the default value
+     */
+    static long parsePositive(final String str, final long defaultValue) {
+        if (isNullOrEmpty(str)) {
+            return defaultValue;
+        }
+        try {
+            final long value = Long.parseLong(str.trim());
+            return value > 0 ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
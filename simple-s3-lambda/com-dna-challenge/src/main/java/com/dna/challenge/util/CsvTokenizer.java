@@ -0,0 +1,220 @@
+package com.dna.challenge.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits CSV data into lines and fields without creating an object per field. Each field is exposed as a slice of a
+ * char buffer, see {@link #chars()}, {@link #offset()} and {@link #length()}, that is only valid until the next field
+ * is read.
+ * <p>
+ * Fields are separated by commas and lines by \n, \r\n or \r. A field in double quotes may hold commas, line breaks and
+ * doubled double quotes, which stand for a single double quote.
+ */
+public class CsvTokenizer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private char[] buffer = new char[BUFFER_SIZE];
+    // Unescaped content of the current quoted field
+    private char[] quoted = new char[256];
+    private int position;
+    private int limit;
+    private boolean endOfData;
+    private boolean lineOpen;
+    // A line ended with \r, if the next line starts with \n it belongs to that line break
+    private boolean skipLineFeed;
+    private char[] fieldChars;
+    private int fieldOffset;
+    private int fieldLength;
+
+    /**
+     * Constructor for {@link CsvTokenizer}
+     *
+     * @param reader Reader of the CSV data, it is closed along with the tokenizer
+     */
+    public CsvTokenizer(final Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Moves to the next line, skipping what is left of the current one
+     *
+     * @return boolean true if there is another line, false at the end of the data
+     * @throws IOException if the data cannot be read
+     */
+    public boolean nextLine() throws IOException {
+        while (lineOpen) {
+            nextField();
+        }
+        if (position >= limit && !fill(position)) {
+            return false;
+        }
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (buffer[position] == '\n' && ++position >= limit && !fill(position)) {
+                return false;
+            }
+        }
+        lineOpen = true;
+        return true;
+    }
+
+    /**
+     * Moves to the next field of the current line
+     *
+     * @return boolean true if the line has another field, false once every field of the line was read
+     * @throws IOException if the data cannot be read
+     */
+    public boolean nextField() throws IOException {
+        if (!lineOpen) {
+            return false;
+        }
+        if (position >= limit && !fill(position)) {
+            // The data ends right after a comma
+            endField(buffer, position, 0, false);
+            return true;
+        }
+        if (buffer[position] == '"') {
+            return nextQuotedField();
+        }
+        int start = position;
+        while (true) {
+            for (; position < limit; position++) {
+                final char c = buffer[position];
+                if (c == ',') {
+                    endField(buffer, start, position++ - start, true);
+                    return true;
+                }
+                if (c == '\n' || c == '\r') {
+                    skipLineFeed = c == '\r';
+                    endField(buffer, start, position++ - start, false);
+                    return true;
+                }
+            }
+            // The field runs past the data read so far, keep it and read more
+            final int shift = start;
+            final boolean more = fill(start);
+            start -= shift;
+            if (!more) {
+                endField(buffer, start, position - start, false);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Buffer holding the current field
+     *
+     * @return char[] buffer, the field starts at {@link #offset()}
+     */
+    public char[] chars() {
+        return fieldChars;
+    }
+
+    /**
+     * Offset of the current field in {@link #chars()}
+     *
+     * @return int offset of the first char of the field
+     */
+    public int offset() {
+        return fieldOffset;
+    }
+
+    /**
+     * Length of the current field
+     *
+     * @return int number of chars in the field
+     */
+    public int length() {
+        return fieldLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads a field in double quotes, its unescaped content is copied so quotes can be dropped
+     *
+     * @return boolean always true, a field was read
+     * @throws IOException if the data cannot be read
+     */
+    private boolean nextQuotedField() throws IOException {
+        position++;
+        int length = 0;
+        boolean inQuotes = true;
+        while (position < limit || fill(position)) {
+            final char c = buffer[position++];
+            if (inQuotes && c == '"') {
+                // Either the closing quote or the first of two quotes that stand for one
+                if ((position < limit || fill(position)) && buffer[position] == '"') {
+                    position++;
+                } else {
+                    inQuotes = false;
+                    continue;
+                }
+            } else if (!inQuotes && c == ',') {
+                endField(quoted, 0, length, true);
+                return true;
+            } else if (!inQuotes && (c == '\n' || c == '\r')) {
+                skipLineFeed = c == '\r';
+                endField(quoted, 0, length, false);
+                return true;
+            }
+            if (length == quoted.length) {
+                quoted = Arrays.copyOf(quoted, length * 2);
+            }
+            quoted[length++] = c;
+        }
+        endField(quoted, 0, length, false);
+        return true;
+    }
+
+    /**
+     * Sets the current field
+     *
+     * @param chars    buffer holding the field
+     * @param offset   offset of the field in the buffer
+     * @param length   length of the field
+     * @param lineOpen true if more fields follow on the same line
+     */
+    private void endField(final char[] chars, final int offset, final int length, final boolean lineOpen) {
+        this.fieldChars = chars;
+        this.fieldOffset = offset;
+        this.fieldLength = length;
+        this.lineOpen = lineOpen;
+    }
+
+    /**
+     * Reads more data into the buffer, keeping the chars from the given offset on and moving them to the start of the
+     * buffer. The buffer grows if they fill it.
+     *
+     * @param keep offset of the first char to keep
+     * @return boolean true if more data was read, false at the end of the data
+     * @throws IOException if the data cannot be read
+     */
+    private boolean fill(final int keep) throws IOException {
+        if (endOfData) {
+            return false;
+        }
+        final int kept = limit - keep;
+        if (kept == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, kept);
+        }
+        position -= keep;
+        limit = kept;
+        final int count = reader.read(buffer, limit, buffer.length - limit);
+        if (count < 0) {
+            endOfData = true;
+            return false;
+        }
+        limit += count;
+        return true;
+    }
+}
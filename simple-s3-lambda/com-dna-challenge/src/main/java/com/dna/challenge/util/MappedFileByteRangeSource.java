@@ -0,0 +1,91 @@
+package com.dna.challenge.util;
+
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ByteRangeSource} over a local file, every range is memory mapped so it is read straight from the page cache
+ * without copying it through a stream buffer. Ranges are mapped separately, so files larger than the 2 GB limit of a
+ * single mapping can be read as long as each range stays below it.
+ */
+public class MappedFileByteRangeSource implements ByteRangeSource, Closeable {
+    private final FileChannel fileChannel;
+    private final long size;
+
+    /**
+     * Constructor for {@link MappedFileByteRangeSource}
+     *
+     * @param path Path of the file to read
+     */
+    public MappedFileByteRangeSource(final Path path) {
+        try {
+            this.fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = fileChannel.size();
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Could not open " + path, e);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream open(final long start, final long end) {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new DataProcessingException("ERROR: Cannot map a range larger than " + Integer.MAX_VALUE + " bytes");
+        }
+        try {
+            return new ByteBufferInputStream(fileChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, end - start)));
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Could not map bytes " + start + " to " + end, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    /**
+     * {@link InputStream} that reads the remaining bytes of a {@link ByteBuffer}
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.dna.challenge.util;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * {@link ByteRangeSource} over an S3 object, every range is fetched with its own ranged GET request so several ranges
+ * can be downloaded over separate connections at the same time. Every range is pinned to the ETag read with the size,
+ * so an object overwritten while it is being read fails the read instead of mixing bytes of both versions.
+ */
+public class S3ByteRangeSource implements ByteRangeSource {
+    private final AmazonS3 amazonS3;
+    private final String bucketName;
+    private final String bucketKey;
+    private long size = -1;
+    private String eTag;
+
+    /**
+     * Constructor for {@link S3ByteRangeSource}
+     *
+     * @param amazonS3   client to read with
+     * @param bucketName name of the S3 bucket holding the object
+     * @param bucketKey  the key of the object to read
+     */
+    public S3ByteRangeSource(final AmazonS3 amazonS3, final String bucketName, final String bucketKey) {
+        this.amazonS3 = amazonS3;
+        this.bucketName = bucketName;
+        this.bucketKey = bucketKey;
+    }
+
+    /**
+     * Size of the object, looked up with a HEAD request the first time it is asked for
+     *
+     * @return long size in bytes
+     */
+    @Override
+    public synchronized long size() {
+        if (size < 0) {
+            ObjectMetadata metadata = amazonS3.getObjectMetadata(bucketName, bucketKey);
+            eTag = metadata.getETag();
+            size = metadata.getContentLength();
+        }
+        return size;
+    }
+
+    @Override
+    public InputStream open(final long start, final long end) {
+        // S3 treats an empty range as invalid, there is nothing to fetch anyway
+        if (start >= end) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        // Reads the size and ETag if no range was opened yet
+        size();
+        GetObjectRequest request = new GetObjectRequest(bucketName, bucketKey).withRange(start, end - 1);
+        if (CommonUtil.isNotEmpty(eTag)) {
+            request.withMatchingETagConstraint(eTag);
+        }
+        // The client returns no object when the ETag constraint is not met
+        S3Object s3Object = amazonS3.getObject(request);
+        if (s3Object == null) {
+            throw new DataProcessingException("ERROR: " + bucketName + "/" + bucketKey + " changed while it was being read");
+        }
+        return s3Object.getObjectContent();
+    }
+}
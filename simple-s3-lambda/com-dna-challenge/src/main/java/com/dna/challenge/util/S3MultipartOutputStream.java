@@ -0,0 +1,192 @@
+package com.dna.challenge.util;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link OutputStream} that writes an S3 object as it is produced, so the object never has to be held in memory in
+ * full. Bytes are buffered until a part is full and the part is then sent as part of a multipart upload, memory use
+ * stays at a single part no matter how large the object gets. Objects smaller than a part are sent with a single
+ * putObject call on {@link #close()}.
+ * <p>
+ * Closing the stream completes the upload, call {@link #abort()} instead if producing the object failed so no partial
+ * object or orphaned parts are left behind.
+ */
+public class S3MultipartOutputStream extends OutputStream {
+    // S3 rejects parts smaller than this, except for the last part
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final AmazonS3 amazonS3;
+    private final String bucketName;
+    private final String bucketKey;
+    private final byte[] buffer;
+    private final List<PartETag> partETags = new ArrayList<>();
+    private int position;
+    private String uploadId;
+    private String eTag;
+    private boolean closed;
+
+    /**
+     * Constructor for {@link S3MultipartOutputStream}
+     *
+     * @param amazonS3   client to upload with
+     * @param bucketName name of the S3 bucket to put the object into
+     * @param bucketKey  the key of the object to create
+     * @param partSize   size in bytes of each part, at least {@link #MIN_PART_SIZE}
+     */
+    public S3MultipartOutputStream(final AmazonS3 amazonS3, final String bucketName, final String bucketKey, final int partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new DataProcessingException("ERROR: Multipart upload part size must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        this.amazonS3 = amazonS3;
+        this.bucketName = bucketName;
+        this.bucketKey = bucketKey;
+        this.buffer = new byte[partSize];
+    }
+
+    @Override
+    public void write(final int b) {
+        ensureOpen();
+        if (position == buffer.length) {
+            uploadPart();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+        ensureOpen();
+        int written = 0;
+        while (written < length) {
+            if (position == buffer.length) {
+                uploadPart();
+            }
+            final int count = Math.min(length - written, buffer.length - position);
+            System.arraycopy(bytes, offset + written, buffer, position, count);
+            position += count;
+            written += count;
+        }
+    }
+
+    /**
+     * Sends whatever is left in the buffer and completes the upload.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (Objects.isNull(uploadId)) {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(position);
+                eTag = amazonS3.putObject(bucketName, bucketKey, new ByteArrayInputStream(buffer, 0, position), metadata).getETag();
+            } else {
+                if (position > 0) {
+                    uploadPart();
+                }
+                eTag = amazonS3.completeMultipartUpload(
+                        new CompleteMultipartUploadRequest(bucketName, bucketKey, uploadId, partETags)).getETag();
+            }
+        } catch (RuntimeException e) {
+            abortAfter(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Discards everything written so far, including the parts already sent to S3.
+     */
+    public void abort() {
+        closed = true;
+        abortUpload();
+    }
+
+    /**
+     * ETag of the uploaded object, only available once the stream is closed
+     *
+     * @return String ETag of the object, null if the stream is not closed or was aborted
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Number of parts sent so far
+     *
+     * @return int number of parts, 0 if the object is still small enough for a single putObject
+     */
+    public int getPartCount() {
+        return partETags.size();
+    }
+
+    /**
+     * Sends the buffer as the next part of the multipart upload, starting the upload if this is the first part.
+     */
+    private void uploadPart() {
+        try {
+            if (Objects.isNull(uploadId)) {
+                uploadId = amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, bucketKey)).getUploadId();
+            }
+            UploadPartRequest request = new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(bucketKey)
+                    .withUploadId(uploadId)
+                    .withPartNumber(partETags.size() + 1)
+                    .withPartSize(position)
+                    .withInputStream(new ByteArrayInputStream(buffer, 0, position));
+            partETags.add(amazonS3.uploadPart(request).getPartETag());
+            position = 0;
+        } catch (RuntimeException e) {
+            closed = true;
+            abortAfter(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Aborts the multipart upload if one was started.
+     */
+    private void abortUpload() {
+        if (Objects.nonNull(uploadId)) {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, bucketKey, uploadId));
+            uploadId = null;
+        }
+    }
+
+    /**
+     * Aborts the multipart upload after a failed request. A failed abort is attached to the failure so it does not
+     * hide why the upload failed.
+     *
+     * @param failure RuntimeException the upload failed with
+     */
+    private void abortAfter(final RuntimeException failure) {
+        try {
+            abortUpload();
+        } catch (RuntimeException abortFailure) {
+            failure.addSuppressed(abortFailure);
+        }
+    }
+
+    /**
+     * Throws an exception if the stream was already closed or aborted.
+     */
+    private void ensureOpen() {
+        if (closed) {
+            throw new DataProcessingException("ERROR: Cannot write to a closed S3 upload stream");
+        }
+    }
+}
@@ -4,16 +4,36 @@ import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.*;
+import com.dna.challenge.data.processor.exception.DataProcessingException;
 
 import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class to help with common AWS S3 Operations
+ *
+ * Building an {@link AmazonS3} client sets up a connection pool, TLS context and credential chain, so clients are
+ * built once per endpoint/region and kept for the life of the Lambda container. Warm invocations reuse the client,
+ * and its open connections, instead of building a new one.
  */
 public final class S3Util {
     // Class constants to be used by underlying code
     public static final String LOCAL_SERVICE_ENDPOINT = "http://localhost:4572";
     public static final String LOCAL_SIGNING_REGION = "us-east-1";
+    // Size of each part of a streamed upload, and so the memory a streamed upload holds on to
+    public static final int UPLOAD_PART_SIZE = 8 * 1024 * 1024;
+    // Clients built so far keyed by endpoint/region, lives as long as the Lambda container does
+    private static final ConcurrentMap<String, CachedClient> CLIENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Private default constructor
+     */
+    private S3Util() {
+        // Private constructor to keep static code analysis happy
+    }
 
     /**
      * Copies the provided String content to the specified S3 Bucket
@@ -31,10 +51,45 @@ public final class S3Util {
                                                final String bucketName,
                                                final String bucketKey,
                                                final String content) {
-        return S3Util.setupAmazonS3(serviceEndpoint, signingRegion, true)
+        return S3Util.amazonS3(serviceEndpoint, signingRegion)
                 .putObject(bucketName, bucketKey, content);
     }
 
+    /**
+     * Opens a stream that writes its content to the specified S3 Bucket as it is written, see
+     * {@link S3MultipartOutputStream}.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     *                        (e.g. https://sns.us-west-1.amazonaws.com or sns.us-west-1.amazonaws.com)
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @param bucketName      name of the S3 bucket to put file into
+     * @param bucketKey       the key of the object to create.
+     * @return {@link S3MultipartOutputStream} to write the object to, closing it completes the upload
+     */
+    public static S3MultipartOutputStream uploadStream(final String serviceEndpoint,
+                                                       final String signingRegion,
+                                                       final String bucketName,
+                                                       final String bucketKey) {
+        return new S3MultipartOutputStream(S3Util.amazonS3(serviceEndpoint, signingRegion), bucketName, bucketKey, UPLOAD_PART_SIZE);
+    }
+
+    /**
+     * Creates a {@link ByteRangeSource} over a file in an S3 bucket, to read separate parts of it at the same time.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     *                        (e.g. https://sns.us-west-1.amazonaws.com or sns.us-west-1.amazonaws.com)
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @param sourceBucket    name of the S3 bucket holding the file
+     * @param sourceKey       the key of the file to read
+     * @return {@link S3ByteRangeSource} that reads the file with ranged GET requests
+     */
+    public static S3ByteRangeSource rangeSource(final String serviceEndpoint,
+                                                final String signingRegion,
+                                                final String sourceBucket,
+                                                final String sourceKey) {
+        return new S3ByteRangeSource(S3Util.amazonS3(serviceEndpoint, signingRegion), sourceBucket, sourceKey);
+    }
+
     /**
      * Retrieves a file from an S3 bucket and creates an {@link InputStream} from its contents.
      *
@@ -49,27 +104,92 @@ public final class S3Util {
                                                         final String signingRegion,
                                                         final String sourceBucket,
                                                         final String sourceKey) {
-        return S3Util.setupAmazonS3(serviceEndpoint, signingRegion, true)
+        return S3Util.amazonS3(serviceEndpoint, signingRegion)
                 .getObject(new GetObjectRequest(sourceBucket, sourceKey))
                 .getObjectContent();
     }
 
     /**
-     * Creates a {@link AmazonS3} object which provides access to AWS S3 web services.
+     * Retrieves a small file, e.g. a config file, from an S3 bucket as a String.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     *                        (e.g. https://sns.us-west-1.amazonaws.com or sns.us-west-1.amazonaws.com)
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @param sourceBucket    name of the S3 bucket holding the file
+     * @param sourceKey       the key of the file to retrieve
+     * @return String contents of the file
+     */
+    public static String retrieveObjectAsString(final String serviceEndpoint,
+                                                final String signingRegion,
+                                                final String sourceBucket,
+                                                final String sourceKey) {
+        return S3Util.amazonS3(serviceEndpoint, signingRegion).getObjectAsString(sourceBucket, sourceKey);
+    }
+
+    /**
+     * Returns the {@link AmazonS3} client for the endpoint/region, building it the first time it is asked for.
      * <p>
      * NOTE: This will build a localized {@link AmazonS3} object for use when testing against a locally running AWS
      * environment.
      *
-     * @param serviceEndpoint        the service endpoint either with or without the protocol
-     *                               (e.g. https://sns.us-west-1.amazonaws.com or sns.us-west-1.amazonaws.com)
-     * @param signingRegion          the region to use for SigV4 signing of requests (e.g. us-west-1)
-     * @param pathStyleAccessEnabled configures the client to use path-style access for all requests.
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     *                        (e.g. https://sns.us-west-1.amazonaws.com or sns.us-west-1.amazonaws.com)
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
      * @return {@link AmazonS3} provides an interface for accessing the Amazon S3 web service.
      */
-    private static AmazonS3 setupAmazonS3(final String serviceEndpoint,
-                                          final String signingRegion,
-                                          final boolean pathStyleAccessEnabled) {
-        return setupAmazonS3(serviceEndpoint, signingRegion, pathStyleAccessEnabled, true);
+    public static AmazonS3 amazonS3(final String serviceEndpoint, final String signingRegion) {
+        return CLIENTS.computeIfAbsent(clientKey(serviceEndpoint, signingRegion), key -> {
+            final long start = System.nanoTime();
+            AmazonS3 amazonS3 = setupAmazonS3(serviceEndpoint, signingRegion, true, true);
+            return new CachedClient(amazonS3, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }).amazonS3;
+    }
+
+    /**
+     * Sets the {@link AmazonS3} client used for the endpoint/region instead of building one, so the handler can be run
+     * against an in-process stand-in for S3 by a local harness.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @param amazonS3        {@link AmazonS3} client to use for the endpoint/region
+     */
+    public static void registerAmazonS3(final String serviceEndpoint, final String signingRegion, final AmazonS3 amazonS3) {
+        CommonUtil.ifNullThrowException(amazonS3, new DataProcessingException("Cannot register a Null AmazonS3 client"));
+        CLIENTS.put(clientKey(serviceEndpoint, signingRegion), new CachedClient(amazonS3, 0));
+    }
+
+    /**
+     * Checks if a client has already been built for the endpoint/region, i.e. if this is a warm invocation.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @return boolean true if {@link #amazonS3(String, String)} will reuse an existing client
+     */
+    public static boolean hasAmazonS3(final String serviceEndpoint, final String signingRegion) {
+        return CLIENTS.containsKey(clientKey(serviceEndpoint, signingRegion));
+    }
+
+    /**
+     * Returns how long it took to build the client for the endpoint/region.
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @return long milliseconds spent building the client, -1 if it has not been built
+     */
+    public static long clientInitializationMillis(final String serviceEndpoint, final String signingRegion) {
+        CachedClient cachedClient = CLIENTS.get(clientKey(serviceEndpoint, signingRegion));
+        return Objects.isNull(cachedClient) ? -1 : cachedClient.initializationMillis;
+    }
+
+    /**
+     * Builds the key a client is cached under
+     *
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     * @param signingRegion   the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @return String cache key
+     */
+    private static String clientKey(final String serviceEndpoint, final String signingRegion) {
+        return serviceEndpoint + "|" + signingRegion;
     }
 
     /**
@@ -95,4 +215,17 @@ public final class S3Util {
                 .withChunkedEncodingDisabled(chunkedEncodingDisabled)
                 .build();
     }
+
+    /**
+     * Client built for an endpoint/region along with how long it took to build
+     */
+    private static final class CachedClient {
+        private final AmazonS3 amazonS3;
+        private final long initializationMillis;
+
+        private CachedClient(final AmazonS3 amazonS3, final long initializationMillis) {
+            this.amazonS3 = amazonS3;
+            this.initializationMillis = initializationMillis;
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package com.dna.challenge.data.processor.census;
+
+import com.dna.challenge.util.CsvTokenizer;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+public class CensusColumnBatchTest {
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+    private static final String[] COUNTIES = new String[]{
+            "Autauga", "New York", "Prince of Wales-Hyder Census Area", "O'Brien", "Doña Ana", "St. Louis", "\"Quoted\" County", "Bristol, City of"
+    };
+
+    @Test
+    public void testOutputMatchesCensusRecord() throws IOException {
+        Random random = new Random(7);
+        StringBuilder censusData = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        CsvSchema resultSchema = resultSchema();
+        for (int row = 0; row < 1000; row++) {
+            String line = censusLine(random, row);
+            censusData.append(line).append('\n');
+            CensusRecord record = CSV_MAPPER.readerWithTypedSchemaFor(CensusRecord.class).readValue(line);
+            if (record.getTotalPop() > 0) {
+                expected.append(record.processOtherEthnicityColumn(CensusConstants.ETHNICITY_COL, resultSchema));
+            }
+        }
+
+        // A small batch so the records span several batches
+        CensusColumnBatch batch = new CensusColumnBatch(64);
+        int[] selection = new int[batch.getCapacity()];
+        StringWriter writer = new StringWriter();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(censusData.toString()))) {
+            while (batch.load(tokenizer) > 0) {
+                batch.write(writer, selection, batch.apply(selection));
+            }
+        }
+        Assert.assertEquals(expected.toString(), writer.toString());
+    }
+
+    @Test
+    public void testBlankAndShortLinesAreSkipped() throws IOException {
+        CensusColumnBatch batch = new CensusColumnBatch(CensusColumnBatch.DEFAULT_CAPACITY);
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(censusLine(new Random(1), 1) + "\n\n1001020300,Alabama\n" + censusLine(new Random(2), 2) + "\n"))) {
+            Assert.assertEquals(2, batch.load(tokenizer));
+            Assert.assertEquals(0, batch.load(tokenizer));
+        }
+    }
+
+    @Test
+    public void testMissingValuesAreWrittenEmpty() throws IOException {
+        CensusColumnBatch batch = new CensusColumnBatch(1);
+        int[] selection = new int[1];
+        StringWriter writer = new StringWriter();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("1001020100,Alabama,,1948,940,,0.9,87.4,7.7,0.3,,0.0,1503,,,,,,,34.7,17.0,21.3,11.9,15.2,,,,,,,,943,77.1,18.3,4.6,0.0,"))) {
+            batch.load(tokenizer);
+            batch.write(writer, selection, batch.apply(selection));
+        }
+        Assert.assertEquals("1001020100,Alabama,,940,,0.9,87.4,7.7,0.3,,0.0,,34.7,17.0,21.3,11.9,15.2,943,77.1,18.3,4.6,0.0,\n", writer.toString());
+    }
+
+    @Test
+    public void testTextColumnsAreWrittenUnchanged() throws IOException {
+        // Men, Women, Citizen, Employed and the occupation columns are String fields of CensusRecord, values that are
+        // not plain whole numbers, leading zeros and text are passed through the way the record per line transform does
+        String line = "01001020100,Alabama,Autauga,1948,12.0,012,0.9,87.4,7.7,0.3,0.6,0.0,n/a,,,,,,,34,17.0,\"21,3\",11.9,15.2,,,,,,,,943.5,77,18.3,4.6,0.0,";
+        CensusRecord record = CSV_MAPPER.readerWithTypedSchemaFor(CensusRecord.class).readValue(line);
+        String expected = record.processOtherEthnicityColumn(CensusConstants.ETHNICITY_COL, resultSchema());
+
+        CensusColumnBatch batch = new CensusColumnBatch(1);
+        int[] selection = new int[1];
+        StringWriter writer = new StringWriter();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(line))) {
+            batch.load(tokenizer);
+            batch.write(writer, selection, batch.apply(selection));
+        }
+        Assert.assertEquals(expected, writer.toString());
+        Assert.assertTrue(writer.toString().startsWith("01001020100,Alabama,Autauga,12.0,012,"));
+        Assert.assertTrue(writer.toString().contains(",34,17.0,\"21,3\",11.9,15.2,943.5,77,"));
+    }
+
+    /**
+     * Helper method to create a census line with random values, every fifth record has no population
+     *
+     * @param random Random to create the values with
+     * @param row    index of the record
+     * @return String census CSV line without a line break
+     */
+    private static String censusLine(final Random random, final int row) {
+        StringBuilder line = new StringBuilder();
+        line.append(1001020100L + row).append(",Alabama,").append(quote(COUNTIES[row % COUNTIES.length]))
+                .append(',').append(row % 5 == 0 ? 0 : random.nextInt(10000));
+        for (int column = 4; column < 37; column++) {
+            line.append(',');
+            if (column == 4 || column == 5 || column == 31) {
+                line.append(random.nextInt(5000));
+            } else if (column >= 12 && column <= 18 && random.nextInt(10) == 0) {
+                // Columns that are dropped may be empty
+                continue;
+            } else {
+                line.append(random.nextInt(1000) / 10.0 + (random.nextInt(100) == 0 ? 0.123456789 : 0));
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Helper method to quote a CSV value that needs it
+     *
+     * @param value String to quote
+     * @return String value as it appears in a CSV file
+     */
+    private static String quote(final String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    /**
+     * Helper method to create the result schema
+     *
+     * @return CsvSchema of the result columns
+     */
+    private static CsvSchema resultSchema() {
+        CsvSchema.Builder builder = CsvSchema.builder();
+        Arrays.asList(CensusConstants.RESULT_COLUMNS).forEach(builder::addColumn);
+        return builder.build();
+    }
+}
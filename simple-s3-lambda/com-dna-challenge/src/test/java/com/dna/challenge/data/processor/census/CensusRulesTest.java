@@ -0,0 +1,104 @@
+package com.dna.challenge.data.processor.census;
+
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+import com.dna.challenge.util.CsvTokenizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+public class CensusRulesTest {
+    private static final String CENSUS_DATA = String.join("\n",
+            "1001020100,Alabama,Autauga,1948,940,1008,0.9,87.4,7.7,0.3,0.6,0.0,1503,61838.0,11900.0,25713.0,4548.0,8.1,8.4,34.7,17.0,21.3,11.9,15.2,90.2,4.8,0.0,0.5,2.3,2.1,25.0,943,77.1,18.3,4.6,0.0,5.4",
+            "1001020200,Alabama,Autauga,0,0,0,,,,,,,0,,,,,,,,,,,,,,,,,,,0,,,,,",
+            "48001950100,Texas,Anderson,5434,2810,2624,10.8,80.9,6.6,0.0,0.3,0.0,3928,39711.0,3656.0,19327.0,1914.0,22.1,30.6,25.4,20.3,17.8,14.9,21.6,82.6,13.0,0.0,1.4,0.9,2.1,23.8,2220,84.6,11.6,3.8,0.0,6.1",
+            "48001950401,Texas,Anderson,4660,3766,894,19.2,50.1,29.9,0.0,0.0,0.0,3962,,,8146.0,2017.0,,,21.8,29.0,29.3,9.3,10.6,72.2,18.0,0.0,2.1,7.6,0.2,14.8,422,63.9,31.0,4.1,1.0,12.2");
+
+    @Test
+    public void testDefaultRulesAreTheOriginalTransform() {
+        Assert.assertEquals(Arrays.asList(CensusConstants.RESULT_COLUMNS), CensusRules.DEFAULT.getColumns());
+        // Written out by hand, on one line with ';' and a comment, the rules give the same output
+        CensusRules rules = CensusRules.parse("filter=TotalPop>0 # populated; derive.OtherEthnicity = 100-(Hispanic+White+Black+Native+Asian+Pacific);"
+                + "columns=" + String.join(",", CensusConstants.RESULT_COLUMNS));
+        Assert.assertEquals(transform(CensusRules.DEFAULT), transform(rules));
+    }
+
+    @Test
+    public void testCustomRules() {
+        CensusRules rules = CensusRules.parse(String.join("\n",
+                "filter = State == 'Texas'",
+                "filter = !(Women >= Men) || Income / 2 > 19000",
+                "derive.MenShare = Men / (Men + Women) * 100",
+                "derive.Gap = abs(MenShare - 50)",
+                "columns = CensusTract, County, MenShare, Gap, Poverty, MeanCommute"));
+        Assert.assertEquals(Arrays.asList("CensusTract", "County", "MenShare", "Gap", "Poverty", "MeanCommute"), rules.getColumns());
+        final double menShare = 3766 / (3766.0 + 894) * 100;
+        Assert.assertEquals("48001950100,Anderson," + (2810 / (2810.0 + 2624) * 100) + "," + Math.abs(2810 / (2810.0 + 2624) * 100 - 50) + ",22.1,23.8\n"
+                + "48001950401,Anderson," + menShare + "," + Math.abs(menShare - 50) + ",,14.8\n", transform(rules));
+    }
+
+    @Test
+    public void testMissingValues() {
+        // Every comparison with a missing value is false, so a record is only kept if it has an Income
+        Assert.assertEquals("1001020100,0.0\n1001020200,\n48001950100,0.0\n",
+                transform(CensusRules.parse("filter = Income > 0 || TotalPop == 0; derive.X = Income - Income; columns = CensusTract, X")));
+        // Without a filter every record is written, with every column of the file followed by the derived columns
+        CensusRules rules = CensusRules.parse("derive.Rounded = min(max(Poverty, 10), 20)");
+        Assert.assertEquals(CensusColumnBatch.fileColumns().size() + 1, rules.getColumns().size());
+        Assert.assertEquals(4, transform(rules).split("\n").length);
+        Assert.assertTrue(transform(rules).startsWith("1001020100,Alabama,Autauga,1948.0,940,1008,0.9,87.4,7.7,0.3,0.6,0.0,1503,61838.0,"));
+        Assert.assertTrue(transform(rules).contains(",4.6,0.0,5.4,10.0\n"));
+    }
+
+    @Test
+    public void testInvalidRules() {
+        for (String rules : new String[]{
+                "filter = TotalPop", "derive.X = TotalPop > 0", "filter = Unknown > 0", "filter = State > 'A'",
+                "filter = State == County", "derive.State = 1", "derive.X = Y; derive.Y = 1", "columns = CensusTract, Nope",
+                "filter = (TotalPop > 0", "filter = TotalPop > 0 0", "derive.X = sqrt(TotalPop)", "derive.X = 1..2", "unknown = 1",
+                "filter"}) {
+            try {
+                CensusRules.parse(rules);
+                Assert.fail("Rules should not parse: " + rules);
+            } catch (DataProcessingException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("ERROR:"));
+            }
+        }
+    }
+
+    @Test
+    public void testTextColumnThatIsNotANumber() {
+        CensusColumnBatch batch = new CensusColumnBatch(1, CensusRules.parse("filter = Men > 0; columns = CensusTract, Men"));
+        int[] selection = new int[1];
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("1001020100,Alabama,Autauga,1948,n/a,1008"))) {
+            batch.load(tokenizer);
+            batch.apply(selection);
+            Assert.fail("Men is not a number");
+        } catch (DataProcessingException | IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Census column Men holds 'n/a'"));
+        }
+    }
+
+    /**
+     * Helper method to transform the census data with rules
+     *
+     * @param rules CensusRules to transform the data with
+     * @return String transformed records without a header line
+     */
+    private static String transform(final CensusRules rules) {
+        CensusColumnBatch batch = new CensusColumnBatch(2, rules);
+        int[] selection = new int[batch.getCapacity()];
+        StringWriter writer = new StringWriter();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(CENSUS_DATA))) {
+            while (batch.load(tokenizer) > 0) {
+                batch.write(writer, selection, batch.apply(selection));
+            }
+        } catch (IOException e) {
+            throw new DataProcessingException("ERROR: Could not transform census data", e);
+        }
+        return writer.toString();
+    }
+}
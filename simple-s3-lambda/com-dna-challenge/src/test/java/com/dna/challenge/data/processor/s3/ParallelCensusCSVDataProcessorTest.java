@@ -0,0 +1,88 @@
+package com.dna.challenge.data.processor.s3;
+
+import com.dna.challenge.data.processor.census.CensusConstants;
+import com.dna.challenge.util.ByteRangeSource;
+import com.dna.challenge.util.MappedFileByteRangeSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ParallelCensusCSVDataProcessorTest {
+    private static final String HEADER = "CensusTract,State,County,TotalPop,Men,Women,Hispanic,White,Black,Native,Asian,Pacific,Citizen,Income,IncomeErr,IncomePerCap,IncomePerCapErr,Poverty,ChildPoverty,Professional,Service,Office,Construction,Production,Drive,Carpool,Transit,Walk,OtherTransp,WorkAtHome,MeanCommute,Employed,PrivateWork,PublicWork,SelfEmployed,FamilyWork,Unemployment\n";
+
+    @Test
+    public void testOutputMatchesSequentialProcessing() {
+        final byte[] censusData = censusData(200).getBytes();
+        final String expected = new CensusCSVDataProcessor(new ByteArrayInputStream(censusData)).process();
+
+        // Chunks smaller than a line, about a line and many lines long
+        for (long chunkSize : new long[]{1, 150, 1000, 1024 * 1024}) {
+            Assert.assertEquals("Chunk size " + chunkSize, expected,
+                    new ParallelCensusCSVDataProcessor(new ByteArraySource(censusData), 4, chunkSize).process());
+        }
+    }
+
+    @Test
+    public void testLastLineWithoutLineBreak() {
+        final String censusData = censusData(10);
+        final byte[] trimmed = censusData.substring(0, censusData.length() - 1).getBytes();
+        Assert.assertEquals(new CensusCSVDataProcessor(new ByteArrayInputStream(trimmed)).process(),
+                new ParallelCensusCSVDataProcessor(new ByteArraySource(trimmed), 3, 100).process());
+        Assert.assertEquals(String.join(",", CensusConstants.RESULT_COLUMNS) + System.lineSeparator(),
+                new ParallelCensusCSVDataProcessor(new ByteArraySource(HEADER.getBytes()), 2, 10).process());
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final String censusData = censusData(100);
+        Path path = Files.createTempFile("census", ".csv");
+        try (MappedFileByteRangeSource source = new MappedFileByteRangeSource(Files.write(path, censusData.getBytes()))) {
+            Assert.assertEquals(new CensusCSVDataProcessor(new ByteArrayInputStream(censusData.getBytes())).process(),
+                    new ParallelCensusCSVDataProcessor(source, 2, 2048).process());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Helper method to create census data, every third record has no population
+     *
+     * @param records number of records to create
+     * @return String census CSV data with a header line
+     */
+    private static String censusData(final int records) {
+        StringBuilder builder = new StringBuilder(HEADER);
+        for (int i = 0; i < records; i++) {
+            builder.append(1001020100 + i).append(",Alabama,County ").append(i % 7).append(',').append(i % 3 == 0 ? 0 : 1000 + i)
+                    .append(",940,1008,0.9,87.4,7.7,0.3,0.6,0.0,1503,61838.0,11900.0,25713.0,4548.0,8.1,8.4,34.7,17.0,21.3,11.9,15.2,90.2,4.8,0.0,0.5,2.3,2.1,25.0,943,77.1,18.3,4.6,0.0,")
+                    .append(i % 10).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * ByteRangeSource over an in memory byte array
+     */
+    private static class ByteArraySource implements ByteRangeSource {
+        private final byte[] bytes;
+
+        private ByteArraySource(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public InputStream open(final long start, final long end) {
+            return new ByteArrayInputStream(bytes, (int) start, (int) (end - start));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.dna.challenge.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommonUtilTest {
+
+    @Test
+    public void testParsePositive() {
+        Assert.assertEquals(4, CommonUtil.parsePositive("4", 2));
+        Assert.assertEquals(4, CommonUtil.parsePositive(" 4 ", 2));
+    }
+
+    @Test
+    public void testParsePositiveFallsBackToDefault() {
+        Assert.assertEquals(2, CommonUtil.parsePositive(null, 2));
+        Assert.assertEquals(2, CommonUtil.parsePositive("", 2));
+        Assert.assertEquals(2, CommonUtil.parsePositive("four", 2));
+        Assert.assertEquals(2, CommonUtil.parsePositive("0", 2));
+        Assert.assertEquals(2, CommonUtil.parsePositive("-1", 2));
+    }
+}
@@ -0,0 +1,65 @@
+package com.dna.challenge.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CsvTokenizerTest {
+
+    @Test
+    public void testLinesAndFields() throws IOException {
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList("a", "b", ""),
+                Arrays.asList(""),
+                Arrays.asList("c,d", "say \"hi\"", "e"),
+                Arrays.asList("multi\nline", ""),
+                Arrays.asList("f")),
+                tokenize(new StringReader("a,b,\r\n\n\"c,d\",\"say \"\"hi\"\"\",e\r\"multi\nline\",\r\nf")));
+        Assert.assertTrue(tokenize(new StringReader("")).isEmpty());
+    }
+
+    @Test
+    public void testFieldsAcrossReads() throws IOException {
+        // Hands out a few chars per read so fields span reads, and one field is longer than the buffer
+        StringBuilder longField = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            longField.append((char) ('a' + i % 26));
+        }
+        String data = "first,\"quoted, value\"\n" + longField + ",last\n";
+        Reader reader = new StringReader(data) {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                return super.read(chars, offset, Math.min(length, 7));
+            }
+        };
+        Assert.assertEquals(Arrays.asList(Arrays.asList("first", "quoted, value"), Arrays.asList(longField.toString(), "last")),
+                tokenize(reader));
+    }
+
+    /**
+     * Helper method to read every field of every line
+     *
+     * @param reader Reader of the CSV data
+     * @return List of the fields of each line
+     * @throws IOException if the data cannot be read
+     */
+    private static List<List<String>> tokenize(final Reader reader) throws IOException {
+        List<List<String>> lines = new ArrayList<>();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(reader)) {
+            while (tokenizer.nextLine()) {
+                List<String> fields = new ArrayList<>();
+                while (tokenizer.nextField()) {
+                    fields.add(new String(tokenizer.chars(), tokenizer.offset(), tokenizer.length()));
+                }
+                lines.add(fields);
+            }
+        }
+        return lines;
+    }
+}
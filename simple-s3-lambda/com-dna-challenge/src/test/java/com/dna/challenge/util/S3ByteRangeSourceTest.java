@@ -0,0 +1,95 @@
+package com.dna.challenge.util;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.dna.challenge.data.processor.exception.DataProcessingException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class S3ByteRangeSourceTest {
+    private static final String BUCKET_NAME = "census-bucket";
+    private static final String KEY = "census.csv";
+
+    @Test
+    public void testRangeIsPinnedToETag() throws IOException {
+        VersionedAmazonS3 amazonS3 = new VersionedAmazonS3("Income,Men\n");
+        S3ByteRangeSource source = new S3ByteRangeSource(amazonS3, BUCKET_NAME, KEY);
+        Assert.assertEquals(11, source.size());
+        try (InputStream inputStream = source.open(7, 10)) {
+            Assert.assertEquals("Men", read(inputStream));
+        }
+        Assert.assertEquals(Arrays.asList("etag-1"), amazonS3.lastRequest.getMatchingETagConstraints());
+    }
+
+    @Test
+    public void testRangeFailsWhenObjectChanges() {
+        VersionedAmazonS3 amazonS3 = new VersionedAmazonS3("Income,Men\n");
+        S3ByteRangeSource source = new S3ByteRangeSource(amazonS3, BUCKET_NAME, KEY);
+        source.size();
+        // The object is overwritten after its size was read
+        amazonS3.overwrite("Income,Women\n");
+        try {
+            source.open(0, 6);
+            Assert.fail("Expected the read to fail");
+        } catch (DataProcessingException e) {
+            Assert.assertTrue(e.getMessage().contains("changed while it was being read"));
+        }
+    }
+
+    private static String read(final InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[64];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * AmazonS3 holding a single object whose ETag changes every time it is overwritten
+     */
+    private static class VersionedAmazonS3 extends AbstractAmazonS3 {
+        private byte[] content;
+        private int version;
+        private GetObjectRequest lastRequest;
+
+        VersionedAmazonS3(final String content) {
+            overwrite(content);
+        }
+
+        void overwrite(final String content) {
+            this.content = content.getBytes(StandardCharsets.UTF_8);
+            version++;
+        }
+
+        @Override
+        public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(content.length);
+            metadata.setHeader("ETag", "etag-" + version);
+            return metadata;
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            lastRequest = request;
+            // Mirrors the client, which returns no object when the ETag constraint is not met
+            if (!request.getMatchingETagConstraints().contains("etag-" + version)) {
+                return null;
+            }
+            final long[] range = request.getRange();
+            S3Object s3Object = new S3Object();
+            s3Object.setObjectContent(new ByteArrayInputStream(content, (int) range[0], (int) (range[1] - range[0] + 1)));
+            return s3Object;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.dna.challenge.util;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class S3MultipartOutputStreamTest {
+
+    @Test
+    public void testSmallObjectIsPutInOneRequest() {
+        RecordingAmazonS3 amazonS3 = new RecordingAmazonS3();
+        S3MultipartOutputStream outputStream = new S3MultipartOutputStream(amazonS3, "bucket", "key", S3MultipartOutputStream.MIN_PART_SIZE);
+        outputStream.write(new byte[]{1, 2, 3}, 0, 3);
+        outputStream.close();
+        Assert.assertEquals("put", outputStream.getETag());
+        Assert.assertEquals(0, outputStream.getPartCount());
+        Assert.assertEquals(3, amazonS3.content.size());
+    }
+
+    @Test
+    public void testLargeObjectIsUploadedInParts() {
+        RecordingAmazonS3 amazonS3 = new RecordingAmazonS3();
+        S3MultipartOutputStream outputStream = new S3MultipartOutputStream(amazonS3, "bucket", "key", S3MultipartOutputStream.MIN_PART_SIZE);
+        byte[] chunk = new byte[1024 * 1024];
+        for (int i = 0; i < 12; i++) {
+            outputStream.write(chunk, 0, chunk.length);
+        }
+        outputStream.write(7);
+        outputStream.close();
+        Assert.assertEquals("complete", outputStream.getETag());
+        Assert.assertEquals(3, outputStream.getPartCount());
+        Assert.assertEquals(12 * chunk.length + 1, amazonS3.content.size());
+        Assert.assertFalse(amazonS3.aborted);
+    }
+
+    @Test
+    public void testAbortDiscardsUploadedParts() {
+        RecordingAmazonS3 amazonS3 = new RecordingAmazonS3();
+        S3MultipartOutputStream outputStream = new S3MultipartOutputStream(amazonS3, "bucket", "key", S3MultipartOutputStream.MIN_PART_SIZE);
+        byte[] chunk = new byte[S3MultipartOutputStream.MIN_PART_SIZE + 1];
+        outputStream.write(chunk, 0, chunk.length);
+        outputStream.abort();
+        Assert.assertTrue(amazonS3.aborted);
+        Assert.assertNull(outputStream.getETag());
+    }
+
+    @Test
+    public void testFailedAbortAttachedToPartFailure() {
+        RecordingAmazonS3 amazonS3 = new RecordingAmazonS3() {
+            @Override
+            public UploadPartResult uploadPart(UploadPartRequest request) {
+                throw new IllegalStateException("Part failed");
+            }
+
+            @Override
+            public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+                throw new IllegalStateException("Abort failed");
+            }
+        };
+        S3MultipartOutputStream outputStream = new S3MultipartOutputStream(amazonS3, "bucket", "key", S3MultipartOutputStream.MIN_PART_SIZE);
+        byte[] chunk = new byte[S3MultipartOutputStream.MIN_PART_SIZE + 1];
+        try {
+            outputStream.write(chunk, 0, chunk.length);
+            Assert.fail("Expected the write to fail");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Part failed", e.getMessage());
+            Assert.assertEquals("Abort failed", e.getSuppressed()[0].getMessage());
+        }
+    }
+
+    @Test
+    public void testFailedAbortAttachedToCompleteFailure() {
+        RecordingAmazonS3 amazonS3 = new RecordingAmazonS3() {
+            @Override
+            public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+                throw new IllegalStateException("Complete failed");
+            }
+
+            @Override
+            public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+                throw new IllegalStateException("Abort failed");
+            }
+        };
+        S3MultipartOutputStream outputStream = new S3MultipartOutputStream(amazonS3, "bucket", "key", S3MultipartOutputStream.MIN_PART_SIZE);
+        byte[] chunk = new byte[S3MultipartOutputStream.MIN_PART_SIZE + 1];
+        outputStream.write(chunk, 0, chunk.length);
+        try {
+            outputStream.close();
+            Assert.fail("Expected the close to fail");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Complete failed", e.getMessage());
+            Assert.assertEquals("Abort failed", e.getSuppressed()[0].getMessage());
+        }
+        Assert.assertNull(outputStream.getETag());
+    }
+
+    /**
+     * AmazonS3 that keeps the uploaded content in memory instead of sending it
+     */
+    private static class RecordingAmazonS3 extends AbstractAmazonS3 {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final List<Integer> partNumbers = new ArrayList<>();
+        private boolean aborted;
+
+        @Override
+        public PutObjectResult putObject(String bucketName, String key, InputStream input, ObjectMetadata metadata) {
+            read(input);
+            PutObjectResult result = new PutObjectResult();
+            result.setETag("put");
+            return result;
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setUploadId("upload");
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            read(request.getInputStream());
+            partNumbers.add(request.getPartNumber());
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("part-" + request.getPartNumber());
+            return result;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            Assert.assertEquals(partNumbers.size(), request.getPartETags().size());
+            CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setETag("complete");
+            return result;
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            aborted = true;
+        }
+
+        private void read(InputStream input) {
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dna.challenge.util;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class S3UtilTest {
+
+    @Test
+    public void testClientIsReusedPerEndpointAndRegion() {
+        final String endpoint = "http://localhost:14572";
+        Assert.assertFalse(S3Util.hasAmazonS3(endpoint, S3Util.LOCAL_SIGNING_REGION));
+        Assert.assertEquals(-1, S3Util.clientInitializationMillis(endpoint, S3Util.LOCAL_SIGNING_REGION));
+
+        AmazonS3 amazonS3 = S3Util.amazonS3(endpoint, S3Util.LOCAL_SIGNING_REGION);
+        Assert.assertTrue(S3Util.hasAmazonS3(endpoint, S3Util.LOCAL_SIGNING_REGION));
+        Assert.assertTrue(S3Util.clientInitializationMillis(endpoint, S3Util.LOCAL_SIGNING_REGION) >= 0);
+        Assert.assertSame(amazonS3, S3Util.amazonS3(endpoint, S3Util.LOCAL_SIGNING_REGION));
+        Assert.assertNotSame(amazonS3, S3Util.amazonS3(endpoint, "us-west-2"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.alert.lambda.benchmark
+
+import com.alert.lambda.data.processor.AlertRequestHandler
+import com.alert.lambda.exception.DataProcessingException
+import com.alert.lambda.s3.objectCreatedEvent
+import com.amazonaws.services.lambda.runtime.events.S3Event
+import java.lang.management.ManagementFactory
+import kotlin.system.exitProcess
+import kotlin.system.measureTimeMillis
+
+/**
+ * Startup benchmark for the slim Lambda JAR, run it in a fresh JVM per measurement via the startupBenchmark Gradle
+ * task. It builds the same [S3Event] S3 would send for the source object and reports how long the JVM took to get to
+ * the first and second copy, the second copy being what a warm invocation costs.
+ *
+ * The source object must already exist in the local S3 the handler copies from.
+ *
+ * @param args source bucket and source key, default to alert-source-bucket and benchmark.csv
+ */
+fun main(args: Array<String>) {
+    val jvmStartMillis = ManagementFactory.getRuntimeMXBean().startTime
+    val mainMillis = System.currentTimeMillis() - jvmStartMillis
+    val sourceBucket = args.getOrElse(0) { "alert-source-bucket" }
+    val sourceKey = args.getOrElse(1) { "benchmark.csv" }
+    val event = objectCreatedEvent(sourceBucket, sourceKey)
+
+    lateinit var handler: AlertRequestHandler
+    val handlerMillis = measureTimeMillis { handler = AlertRequestHandler() }
+    val firstCopyMillis = try {
+        measureTimeMillis { handler.handleRequest(event, null) }
+    } catch (e: DataProcessingException) {
+        System.err.println("Copy of $sourceBucket/$sourceKey failed: ${e.suppressed.firstOrNull()?.message ?: e.message}")
+        exitProcess(1)
+    }
+    val timeToFirstCopyMillis = System.currentTimeMillis() - jvmStartMillis
+    val warmCopyMillis = measureTimeMillis { handler.handleRequest(event, null) }
+
+    println("jvm-to-main=${mainMillis}ms handler-init=${handlerMillis}ms first-copy=${firstCopyMillis}ms " +
+            "warm-copy=${warmCopyMillis}ms time-to-first-copy=${timeToFirstCopyMillis}ms")
+}
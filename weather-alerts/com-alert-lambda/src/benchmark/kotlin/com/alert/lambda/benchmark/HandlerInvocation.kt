@@ -0,0 +1,45 @@
+package com.alert.lambda.benchmark
+
+import com.alert.lambda.data.processor.AlertRequestHandler
+import com.alert.lambda.s3.InMemoryAmazonS3
+import com.alert.lambda.s3.objectCreatedEvent
+import com.amazonaws.services.lambda.runtime.events.S3Event
+import java.util.function.LongSupplier
+
+/**
+ * One [AlertRequestHandler] with the source object it is invoked on, backed by an [InMemoryAmazonS3].
+ *
+ * The handler is created on the first invocation, so when this class is loaded in a fresh class loader the first
+ * invocation pays for loading and initializing the handler the way a cold Lambda container does. It implements the JDK
+ * [LongSupplier] so the invocation harness can invoke it across class loaders.
+ *
+ * @param size size of the source object in bytes
+ */
+class HandlerInvocation(size: Long) : LongSupplier {
+    private val s3Client = InMemoryAmazonS3()
+    private val sourceKey = "alerts-$size.csv"
+    private val sinkBucket = System.getenv(AlertRequestHandler.SINK_BUCKET_ENV_KEY) ?: AlertRequestHandler.DEFAULT_SINK_BUCKET
+    private val event: S3Event
+    private var handler: AlertRequestHandler? = null
+
+    init {
+        AlertRequestHandler.registerS3Client(s3Client)
+        s3Client.putObjectOfSize(SOURCE_BUCKET, sourceKey, size)
+        event = objectCreatedEvent(SOURCE_BUCKET, sourceKey)
+    }
+
+    /**
+     * Invokes the handler once
+     *
+     * @return size of the object the handler copied to the sink bucket
+     */
+    override fun getAsLong(): Long {
+        // The handler throws if the copy failed
+        (handler ?: AlertRequestHandler().also { handler = it }).handleRequest(event, null)
+        return s3Client.sizeOf(sinkBucket, sourceKey)
+    }
+
+    companion object {
+        private const val SOURCE_BUCKET = "alert-source-bucket"
+    }
+}
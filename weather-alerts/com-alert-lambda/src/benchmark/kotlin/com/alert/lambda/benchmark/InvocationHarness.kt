@@ -0,0 +1,246 @@
+package com.alert.lambda.benchmark
+
+import com.alert.lambda.data.processor.AlertRequestHandler
+import com.alert.lambda.s3.InMemoryAmazonS3
+import com.sun.management.GarbageCollectionNotificationInfo
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+import java.net.URL
+import java.net.URLClassLoader
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.LongSupplier
+import javax.management.Notification
+import javax.management.NotificationEmitter
+import javax.management.NotificationListener
+import javax.management.openmbean.CompositeData
+
+// Invocations of a size are capped so the bytes copied per mode stay within this, with at least MIN_RUNS
+private const val RUN_BUDGET_BYTES = 64L * 1024 * 1024 * 1024
+private const val MIN_RUNS = 3
+// Time to wait for the notifications of finished garbage collections, they are sent from another thread
+private const val NOTIFICATION_TIMEOUT_MILLIS = 1000L
+
+/**
+ * Latency, allocation and output size of invocations
+ */
+private class Samples(runs: Int) {
+    val nanos = LongArray(runs)
+    val allocated = LongArray(runs)
+    var output = 0L
+    private var count = 0
+
+    fun add(invocationNanos: Long, allocatedBytes: Long, outputSize: Long) {
+        nanos[count] = invocationNanos
+        allocated[count++] = allocatedBytes
+        output = outputSize
+    }
+}
+
+/**
+ * Bytes allocated on the heap by every thread since the JVM started, i.e. the heap in use plus everything garbage
+ * collections freed. Per thread counters cannot be used, the copy pool threads that end during an invocation lose
+ * theirs. The count is off by at most the unused part of each thread's allocation buffer, and memory G1 frees outside
+ * of a collection pause is not seen.
+ * The heap grows a whole allocation buffer at a time, so an invocation allocating less than a buffer may read 0.
+ */
+private object HeapAllocation : NotificationListener {
+    private val collectors = ManagementFactory.getGarbageCollectorMXBeans()
+    private val heapPools = ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }
+    private val heapPoolNames = heapPools.map { it.name }.toSet()
+    private val freedBytes = AtomicLong()
+    private val collections = AtomicLong()
+    // Collections that ran before the listener was added are not counted
+    private val collectionsBefore = collectionCount()
+
+    init {
+        collectors.forEach { (it as NotificationEmitter).addNotificationListener(this, null, null) }
+    }
+
+    override fun handleNotification(notification: Notification, handback: Any?) {
+        if (notification.type != GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION) {
+            return
+        }
+        val gcInfo = GarbageCollectionNotificationInfo.from(notification.userData as CompositeData).gcInfo
+        val after = gcInfo.memoryUsageAfterGc
+        freedBytes.addAndGet(gcInfo.memoryUsageBeforeGc.entries
+            .filter { it.key in heapPoolNames }
+            .fold(0L) { freed, (pool, before) -> freed + before.used - after.getValue(pool).used })
+        collections.incrementAndGet()
+    }
+
+    /**
+     * Bytes allocated so far, once every finished collection has been counted
+     *
+     * @return bytes allocated on the heap
+     */
+    fun allocatedBytes(): Long {
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NOTIFICATION_TIMEOUT_MILLIS)
+        while (true) {
+            val count = collectionCount()
+            while (collections.get() < count - collectionsBefore && System.nanoTime() < deadline) {
+                Thread.yield()
+            }
+            val used = heapPools.fold(0L) { total, pool -> total + pool.usage.used }
+            val freed = freedBytes.get()
+            // A collection in between would count its bytes both as used and as freed, read again
+            if (count == collectionCount() || System.nanoTime() >= deadline) {
+                return used + freed
+            }
+        }
+    }
+
+    /**
+     * Collections run so far by every collector
+     *
+     * @return number of collections
+     */
+    private fun collectionCount(): Long = collectors.fold(0L) { count, collector -> count + maxOf(0L, collector.collectionCount) }
+}
+
+/**
+ * Local invocation harness for [AlertRequestHandler], run it via the invocationBenchmark Gradle task. It builds the
+ * S3Event S3 would send for a source object, backs the handler with an [InMemoryAmazonS3] and invokes it repeatedly
+ * for each object size, so the handler can be measured without AWS, LocalStack or a network.
+ *
+ * - cold: every invocation loads the handler, the AWS SDK and their dependencies in a new class loader and runs them
+ * for the first time, the way the first invocation of a Lambda container does. JVM startup itself is not included,
+ * see the startupBenchmark Gradle task for that. The copy pools of every cold handler stay alive until the harness ends.
+ * - warm: one handler is invoked a few times to warm it up, then every invocation reuses it.
+ *
+ * For every size and mode it prints the p50 and p99 latency (nearest rank), the throughput at p50 and the bytes
+ * allocated per invocation on the heap by every thread, see [HeapAllocation], including the copy pool threads that end
+ * before the invocation does. Copies happen inside S3, so objects from the multipart copy
+ * threshold up are where the latency changes, not in proportion to the size.
+ *
+ * @param args object sizes, ex. 1KB,1MB,256MB,1GB, invocations per size and mode, modes, ex. cold,warm
+ */
+fun main(args: Array<String>) {
+    val sizes = args.getOrElse(0) { "1KB,1MB,256MB,1GB" }.split(",").map { parseSize(it) }
+    val iterations = args.getOrElse(1) { "20" }.toInt()
+    val modes = args.getOrElse(2) { "cold,warm" }.split(",")
+
+    println(String.format(Locale.ROOT, "%-6s %12s %5s %10s %10s %10s %14s %12s",
+            "mode", "size", "runs", "p50(ms)", "p99(ms)", "MB/s", "alloc(MB)/inv", "output"))
+    for (size in sizes) {
+        val runs = maxOf(MIN_RUNS.toLong(), minOf(iterations.toLong(), RUN_BUDGET_BYTES / size)).toInt()
+        if ("cold" in modes) {
+            report("cold", size, cold(size, runs))
+        }
+        if ("warm" in modes) {
+            report("warm", size, warm(size, runs))
+        }
+    }
+}
+
+/**
+ * Invokes a new handler in a new class loader every time
+ *
+ * @param size size of the source object
+ * @param runs number of invocations
+ * @return [Samples] of every invocation
+ */
+private fun cold(size: Long, runs: Int): Samples {
+    val classPath = System.getProperty("java.class.path").split(File.pathSeparator).map { File(it).toURI().toURL() }
+    // The parent of the application class loader only holds the JDK, so every class of the handler is loaded again
+    val parent = ClassLoader.getSystemClassLoader().parent
+    val thread = Thread.currentThread()
+    val contextClassLoader = thread.contextClassLoader
+    val samples = Samples(runs)
+    repeat(runs) {
+        URLClassLoader(classPath.toTypedArray<URL>(), parent).use { classLoader ->
+            try {
+                thread.contextClassLoader = classLoader
+                val allocated = HeapAllocation.allocatedBytes()
+                val start = System.nanoTime()
+                val invocation = classLoader.loadClass(HandlerInvocation::class.java.name)
+                    .getConstructor(Long::class.javaPrimitiveType)
+                    .newInstance(size) as LongSupplier
+                val output = invocation.getAsLong()
+                samples.add(System.nanoTime() - start, HeapAllocation.allocatedBytes() - allocated, output)
+            } finally {
+                thread.contextClassLoader = contextClassLoader
+            }
+        }
+    }
+    return samples
+}
+
+/**
+ * Invokes the same handler every time, after warming it up
+ *
+ * @param size size of the source object
+ * @param runs number of measured invocations
+ * @return [Samples] of every measured invocation
+ */
+private fun warm(size: Long, runs: Int): Samples {
+    val invocation: LongSupplier = HandlerInvocation(size)
+    repeat(maxOf(1, runs / 4)) { invocation.getAsLong() }
+    val samples = Samples(runs)
+    repeat(runs) {
+        val allocated = HeapAllocation.allocatedBytes()
+        val start = System.nanoTime()
+        val output = invocation.getAsLong()
+        samples.add(System.nanoTime() - start, HeapAllocation.allocatedBytes() - allocated, output)
+    }
+    return samples
+}
+
+/**
+ * Prints a line of results
+ *
+ * @param mode cold or warm
+ * @param size size of the source object
+ * @param samples [Samples] of the invocations
+ */
+private fun report(mode: String, size: Long, samples: Samples) {
+    val nanos = samples.nanos.sortedArray()
+    val p50 = percentile(nanos, 0.50) / 1e6
+    println(String.format(Locale.ROOT, "%-6s %12s %5d %10.3f %10.3f %10.1f %14.3f %12s",
+            mode, formatSize(size), nanos.size, p50, percentile(nanos, 0.99) / 1e6,
+            size / (1024.0 * 1024) / (p50 / 1e3), percentile(samples.allocated.sortedArray(), 0.50) / (1024.0 * 1024),
+            formatSize(samples.output)))
+}
+
+/**
+ * Nearest rank percentile
+ *
+ * @param sorted sorted values
+ * @param percentile between 0 and 1
+ * @return value at the percentile
+ */
+private fun percentile(sorted: LongArray, percentile: Double): Long =
+    sorted[maxOf(0, Math.ceil(percentile * sorted.size).toInt() - 1)]
+
+/**
+ * Parses a size such as 512, 1KB, 64MB or 1GB, units are powers of 1024
+ *
+ * @param size size with an optional unit
+ * @return size in bytes
+ */
+private fun parseSize(size: String): Long {
+    val value = size.trim()
+    val shift = when {
+        value.endsWith("GB", ignoreCase = true) -> 30
+        value.endsWith("MB", ignoreCase = true) -> 20
+        value.endsWith("KB", ignoreCase = true) -> 10
+        else -> 0
+    }
+    return (if (shift == 0) value else value.dropLast(2).trim()).toLong() shl shift
+}
+
+/**
+ * Formats a size in bytes with a binary unit
+ *
+ * @param bytes size in bytes
+ * @return ex. 1.0KB
+ */
+private fun formatSize(bytes: Long): String {
+    if (bytes < 1024) {
+        return "${bytes}B"
+    }
+    val unit = (63 - java.lang.Long.numberOfLeadingZeros(bytes)) / 10
+    return String.format(Locale.ROOT, "%.1f%cB", bytes / Math.pow(1024.0, unit.toDouble()), "KMGT"[unit - 1])
+}
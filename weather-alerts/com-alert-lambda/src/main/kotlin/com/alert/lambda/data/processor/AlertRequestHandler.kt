@@ -8,7 +8,21 @@ import com.amazonaws.services.lambda.runtime.events.S3Event;
 import com.amazonaws.services.s3.AmazonS3
 import com.amazonaws.services.s3.AmazonS3ClientBuilder
 import com.amazonaws.services.s3.event.S3EventNotification
-import com.amazonaws.services.s3.model.CopyObjectResult
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest
+import com.amazonaws.services.s3.model.CopyPartRequest
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest
+import com.amazonaws.services.s3.model.ObjectMetadata
+import com.amazonaws.services.s3.model.PartETag
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import kotlin.system.measureTimeMillis
 
 /**
  *
@@ -22,72 +36,273 @@ import com.amazonaws.services.s3.model.CopyObjectResult
  * - Data Class
  * - Nullability operators (safe call ?., elvis ?:)
  * - Java interoperability
+ *
+ * S3 can batch several ObjectCreated notifications into a single event, so every record is copied, up to
+ * [MAX_CONCURRENT_COPIES_ENV_KEY] at a time, and the ETag of each copy is returned in a [CopyBatchResult]. If any
+ * copy fails the invocation fails once every copy has finished, so Lambda retries the event and S3 notifications are
+ * not lost. Copies are idempotent so the records that did succeed are simply copied again.
+ * Objects of at least [MULTIPART_COPY_THRESHOLD_ENV_KEY] bytes are copied as a multipart upload whose parts are copied
+ * by S3 in parallel, which is faster for large objects and required above the 5 GB limit of a single copy.
  */
-class AlertRequestHandler : RequestHandler<S3Event, String> {
+class AlertRequestHandler : RequestHandler<S3Event, AlertRequestHandler.CopyBatchResult> {
     // Constants for class, think of "object" as a static block in your code. These can even be named as well
     // so you could have "companion object Constants" and call things inside via Constants.<YOUR-STATIC-CALL>
     companion object {
         // Environment variable keys
         const val SINK_BUCKET_ENV_KEY = "SINK_BUCKET"
+        const val MAX_CONCURRENT_COPIES_ENV_KEY = "MAX_CONCURRENT_COPIES"
+        const val MULTIPART_COPY_THRESHOLD_ENV_KEY = "MULTIPART_COPY_THRESHOLD_BYTES"
+        const val COPY_PART_SIZE_ENV_KEY = "COPY_PART_SIZE_BYTES"
+        const val COPY_PART_CONCURRENCY_ENV_KEY = "COPY_PART_CONCURRENCY"
         // Default Local AWS Constants
         const val LOCAL_SERVICE_ENDPOINT = "http://localhost:4572"
         const val LOCAL_SIGNING_REGION = "us-east-1"
         const val DEFAULT_SINK_BUCKET = "alert-sink-bucket"
+        const val DEFAULT_MAX_CONCURRENT_COPIES = 8
+        const val DEFAULT_MULTIPART_COPY_THRESHOLD = 128L * 1024 * 1024
+        const val DEFAULT_COPY_PART_SIZE = 64L * 1024 * 1024
+        const val DEFAULT_COPY_PART_CONCURRENCY = 8
+        // S3 limits on multipart uploads
+        const val MIN_COPY_PART_SIZE = 5L * 1024 * 1024
+        const val MAX_PARTS = 10000L
+        // Time left for aborting a multipart copy before the Lambda times out
+        const val TIMEOUT_MARGIN_MILLIS = 5000L
+
+        private val multipartCopyThreshold = envLong(MULTIPART_COPY_THRESHOLD_ENV_KEY, DEFAULT_MULTIPART_COPY_THRESHOLD)
+        private val copyPartSize = maxOf(MIN_COPY_PART_SIZE, envLong(COPY_PART_SIZE_ENV_KEY, DEFAULT_COPY_PART_SIZE))
+
+        // Copies are mostly waiting on S3 so a small pool of daemon threads is kept for the life of the container,
+        // "by lazy" means it is only created the first time a request uses it
+        private val copyExecutor: ExecutorService by lazy {
+            daemonPool(envLong(MAX_CONCURRENT_COPIES_ENV_KEY, DEFAULT_MAX_CONCURRENT_COPIES.toLong()).toInt(), "alert-copy")
+        }
+
+        // Parts of multipart copies get their own pool, they are submitted from copyExecutor threads which would
+        // otherwise be waiting on work queued behind them
+        private val partCopyExecutor: ExecutorService by lazy {
+            daemonPool(envLong(COPY_PART_CONCURRENCY_ENV_KEY, DEFAULT_COPY_PART_CONCURRENCY.toLong()).toInt(), "alert-copy-part")
+        }
+
+        /**
+         * Reads a positive number from an environment variable, ex. a size in bytes.
+         *
+         * @param key environment variable key
+         * @param default value to use if the variable is not set or not a positive number
+         * @return the number held by the environment variable or the default
+         */
+        private fun envLong(key: String, default: Long): Long =
+            System.getenv(key)?.toLongOrNull()?.takeIf { it > 0 } ?: default
+
+        /**
+         * Creates a fixed size pool of daemon threads, so the pool never keeps the container's JVM alive.
+         *
+         * @param size number of threads
+         * @param name name of the threads
+         * @return [ExecutorService] backed by the pool
+         */
+        private fun daemonPool(size: Int, name: String): ExecutorService =
+            Executors.newFixedThreadPool(size) { runnable -> Thread(runnable, name).apply { isDaemon = true } }
+
+        // S3 clients keyed by endpoint/region, kept for the life of the container so warm invocations skip building
+        // a new client along with its connection pool, TLS context and credential chain
+        private val s3Clients = ConcurrentHashMap<Pair<String, String>, AmazonS3>()
+
+        /**
+         * Sets the [AmazonS3] client used for the endpoint/region instead of building one, so the handler can be run
+         * against an in-process stand-in for S3 by a local harness.
+         *
+         * @param s3Client [AmazonS3] client to use for the endpoint/region
+         * @param serviceEndpoint the service endpoint either with or without the protocol
+         * @param signingRegion the region to use for SigV4 signing of requests (e.g. us-west-1)
+         */
+        @JvmStatic
+        fun registerS3Client(
+            s3Client: AmazonS3,
+            serviceEndpoint: String = LOCAL_SERVICE_ENDPOINT,
+            signingRegion: String = LOCAL_SIGNING_REGION
+        ) {
+            s3Clients[serviceEndpoint to signingRegion] = s3Client
+        }
     }
 
     /**
-     * Handles a Lambda Function request which in this case will take an S3 file from a source bucket and
-     * move it to a sink bucket.
+     * Handles a Lambda Function request which in this case will take every S3 file in the event from its source bucket
+     * and move it to a sink bucket.
      *
      * Notice that this differs from overriding a method in Java by using the keyword override over @Override
      *
      * @param input The Lambda Function input
      * @param context The Lambda execution environment context object.
-     * @return The Lambda Function output
+     * @return The Lambda Function output, a [CopyBatchResult] with the ETag of each record
+     * @throws DataProcessingException listing the keys that could not be copied if any copy failed
      */
-    override fun handleRequest(input: S3Event?, context: Context?): String {
+    override fun handleRequest(input: S3Event?, context: Context?): CopyBatchResult {
         // Drill into input using the safe call operator ?. which will not continue on in the execution if it is null
-        // the ?: component is an elvis operator which is used when we have a nullable reference, i.e. firstRecord,
-        // we can say "if firstRecord is not null, use it, otherwise use some non-null value or throw an exception.
+        // the ?: component is an elvis operator which is used when we have a nullable reference, i.e. records,
+        // we can say "if records is not null, use it, otherwise use some non-null value or throw an exception.
         // also notice the DataProcessingException is not written in Kotlin class but is in fact Java!
         // Kotlin is fully backwards compatible with Java which is awesome because it doesn't lead to headaches trying
         // to figure out where the language differs under the hood, ex, Scala wrote their own Collection library and it
         // has caused issues in the past when interweaving the two languages
-        val firstRecord = input?.records?.firstOrNull()
+        val records = input?.records?.takeIf { it.isNotEmpty() }
             ?: throw DataProcessingException("ERROR: No Records can be obtained from S3 Event!")
 
-        // Setup our connection to S3, retrieve S3 bucket/object information and copy the source object
-        // to a sink bucket then get the eTag from the resulting CopyObjectResult to return
-        return setupS3Client().copyObject(firstRecord.retrieveS3Information()).eTag
+        // Retrieve our connection to S3, the client is thread safe so every copy shares its connection pool
+        val s3Client = s3Client(context)
+        // Multipart copies give up in time to abort the upload before the Lambda times out
+        val deadline = context?.let { System.currentTimeMillis() + it.remainingTimeInMillis - TIMEOUT_MARGIN_MILLIS }
+            ?: Long.MAX_VALUE
+        // Submit a copy per record then wait for all of them, a failed copy is recorded without stopping the others
+        val copies = records.map { record ->
+            val s3Information = record.retrieveS3Information()
+            s3Information to copyExecutor.submit(Callable { s3Client.copyObject(s3Information, deadline) })
+        }
+        val failures = mutableListOf<Pair<S3Information, Throwable>>()
+        val results = copies.mapNotNull { (s3Information, copy) ->
+            try {
+                CopyRecordResult(s3Information, copy.get())
+            } catch (e: ExecutionException) {
+                val cause = e.cause ?: e
+                failures.add(s3Information to cause)
+                context?.logger?.log("ERROR: Failed to copy ${s3Information.sourceBucket}/${s3Information.sourceKey}: ${cause.message}")
+                null
+            }
+        }
+        // Every copy has finished, fail the invocation if any of them did not succeed so the event is retried
+        if (failures.isNotEmpty()) {
+            val failedKeys = failures.joinToString { (s3Information, _) -> "${s3Information.sourceBucket}/${s3Information.sourceKey}" }
+            // Each failure is attached so its stack trace, and that of any failed abort, ends up in the Lambda logs
+            throw DataProcessingException("ERROR: Failed to copy ${failures.size} of ${copies.size} objects: $failedKeys")
+                .apply { failures.forEach { (_, failure) -> addSuppressed(failure) } }
+        }
+        return CopyBatchResult(results)
     }
 
     /**
-     * Copies an object from a source S3 bucket to a sink S3 bucket.
+     * Copies an object from a source S3 bucket to a sink S3 bucket, using a multipart copy for large objects.
      *
      * This is an extension function, similar to C# and Gosu, Kotlin provides the ability to extend a class with new
      * functionality without having to inherit from the class or use any type of design pattern such as Decorator.
      * This is done via special declarations called extensions. Also, extension properties are supported too!
      *
      * @param s3Information [S3Information] which holds AWS S3 Bucket/Object information
-     * @return CopyObjectResult Contains the data returned by Amazon S3 from the copyObject call
+     * @param deadline time in epoch millis a multipart copy must be finished by
+     * @return ETag of the copied object
+     */
+    private fun AmazonS3.copyObject(s3Information: S3Information, deadline: Long): String {
+        val sourceMetadata = this.getObjectMetadata(s3Information.sourceBucket, s3Information.sourceKey)
+        if (sourceMetadata.contentLength < multipartCopyThreshold) {
+            return this.copyObject(
+                s3Information.sourceBucket,
+                s3Information.sourceKey,
+                s3Information.sinkBucket,
+                s3Information.sinkKey
+            ).eTag
+        }
+        return this.multipartCopy(s3Information, sourceMetadata, deadline)
+    }
+
+    /**
+     * Copies an object as a multipart upload with a part copy request per byte range, the part copies run in parallel
+     * on [partCopyExecutor]. Every part is pinned to the ETag of the source object so the parts cannot come from
+     * different versions if the source is overwritten during the copy. The upload is aborted if any part fails or the
+     * parts are not copied by the deadline so no orphaned parts are left behind in the sink bucket.
+     *
+     * @param s3Information [S3Information] which holds AWS S3 Bucket/Object information
+     * @param sourceMetadata [ObjectMetadata] of the source object
+     * @param deadline time in epoch millis the copy must be finished by
+     * @return ETag of the copied object
      */
-    private fun AmazonS3.copyObject(s3Information: S3Information): CopyObjectResult {
-        return this.copyObject(
-            s3Information.sourceBucket,
-            s3Information.sourceKey,
-            s3Information.sinkBucket,
-            s3Information.sinkKey
-        )
+    private fun AmazonS3.multipartCopy(s3Information: S3Information, sourceMetadata: ObjectMetadata, deadline: Long): String {
+        val objectSize = sourceMetadata.contentLength
+        // S3 allows at most MAX_PARTS parts so the part size grows for very large objects
+        val partSize = maxOf(copyPartSize, (objectSize + MAX_PARTS - 1) / MAX_PARTS)
+        // Carry over the headers a single copy would keep, the rest describes the source object itself
+        val sinkMetadata = ObjectMetadata().apply {
+            contentType = sourceMetadata.contentType
+            cacheControl = sourceMetadata.cacheControl
+            contentEncoding = sourceMetadata.contentEncoding
+            contentDisposition = sourceMetadata.contentDisposition
+            contentLanguage = sourceMetadata.contentLanguage
+            httpExpiresDate = sourceMetadata.httpExpiresDate
+            userMetadata = sourceMetadata.userMetadata
+        }
+        val uploadId = this.initiateMultipartUpload(
+            InitiateMultipartUploadRequest(s3Information.sinkBucket, s3Information.sinkKey, sinkMetadata)
+        ).uploadId
+        val parts = mutableListOf<Future<PartETag>>()
+        try {
+            for (firstByte in 0 until objectSize step partSize) {
+                val request = CopyPartRequest()
+                    .withSourceBucketName(s3Information.sourceBucket)
+                    .withSourceKey(s3Information.sourceKey)
+                    .withDestinationBucketName(s3Information.sinkBucket)
+                    .withDestinationKey(s3Information.sinkKey)
+                    .withUploadId(uploadId)
+                    .withPartNumber(parts.size + 1)
+                    .withFirstByte(firstByte)
+                    .withLastByte(minOf(firstByte + partSize, objectSize) - 1)
+                    .withMatchingETagConstraint(sourceMetadata.eTag)
+                parts.add(partCopyExecutor.submit(Callable {
+                    // The SDK returns null instead of throwing when the ETag constraint is not met
+                    this.copyPart(request)?.partETag
+                        ?: throw DataProcessingException("ERROR: ${s3Information.sourceKey} changed while it was being copied")
+                }))
+            }
+            val partETags = parts.map { it.get(maxOf(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS) }
+            return this.completeMultipartUpload(
+                CompleteMultipartUploadRequest(s3Information.sinkBucket, s3Information.sinkKey, uploadId, partETags)
+            ).eTag
+        } catch (e: Exception) {
+            parts.forEach { it.cancel(true) }
+            val cause = if (e is ExecutionException) e.cause ?: e else e
+            val failure = DataProcessingException(
+                if (cause is TimeoutException) "ERROR: Multipart copy of ${s3Information.sourceKey} did not finish before the Lambda timeout"
+                else "ERROR: Multipart copy of ${s3Information.sourceKey} failed: ${cause.message}", cause
+            )
+            // A failed abort must not hide why the copy failed, it is attached to the failure instead
+            try {
+                this.abortMultipartUpload(AbortMultipartUploadRequest(s3Information.sinkBucket, s3Information.sinkKey, uploadId))
+            } catch (abortFailure: Exception) {
+                failure.addSuppressed(abortFailure)
+            }
+            throw failure
+        }
     }
 
     /**
      * Extension function to take an [S3EventNotification.S3EventNotificationRecord] and pull out necessary information
-     * to construct a [S3Information] object.
+     * to construct a [S3Information] object. Keys arrive URL encoded in S3 events, ex. `year%3D2019/...` for the
+     * partitioned exports, so the decoded key is used.
      *
      * @return [S3Information] built from the provided [S3EventNotification.S3EventNotificationRecord]
      */
     private fun S3EventNotification.S3EventNotificationRecord.retrieveS3Information(): S3Information {
-        return S3Information(this.s3.bucket.name, this.s3.`object`.key)
+        return S3Information(this.s3.bucket.name, this.s3.`object`.urlDecodedKey)
+    }
+
+    /**
+     * Returns the [AmazonS3] client for the endpoint/region, building it on the first invocation of the container and
+     * logging how long that took.
+     *
+     * @param context The Lambda execution environment context object, used for logging
+     * @param serviceEndpoint the service endpoint either with or without the protocol
+     * @param signingRegion the region to use for SigV4 signing of requests (e.g. us-west-1)
+     * @return [AmazonS3] shared by every invocation of the container
+     */
+    private fun s3Client(
+        context: Context?,
+        serviceEndpoint: String = LOCAL_SERVICE_ENDPOINT,
+        signingRegion: String = LOCAL_SIGNING_REGION
+    ): AmazonS3 {
+        return s3Clients[serviceEndpoint to signingRegion] ?: synchronized(s3Clients) {
+            s3Clients.getOrPut(serviceEndpoint to signingRegion) {
+                lateinit var s3Client: AmazonS3
+                val initializationMillis = measureTimeMillis { s3Client = setupS3Client(serviceEndpoint, signingRegion) }
+                context?.logger?.log("Built S3 client for $serviceEndpoint in $initializationMillis ms")
+                s3Client
+            }
+        }
     }
 
     /**
@@ -134,4 +349,18 @@ class AlertRequestHandler : RequestHandler<S3Event, String> {
         val sinkBucket: String = System.getenv(SINK_BUCKET_ENV_KEY) ?: DEFAULT_SINK_BUCKET, // Default to OS variable
         var sinkKey: String = sourceKey // Default to sourceKey if nothing is provided
     )
-}
\ No newline at end of file
+
+    /**
+     * Data class holding the outcome of copying the object of a single S3 Event record.
+     */
+    data class CopyRecordResult(
+        val s3Information: S3Information,
+        val eTag: String    // ETag of the copied object
+    )
+
+    /**
+     * Data class holding the outcome of every record of an S3 Event, in the order of the records. It is only returned
+     * when every copy succeeded, a failed copy fails the invocation instead.
+     */
+    data class CopyBatchResult(val records: List<CopyRecordResult>)
+}
@@ -0,0 +1,121 @@
+package com.alert.lambda.data.processor
+
+import com.alert.lambda.exception.DataProcessingException
+import com.alert.lambda.s3.InMemoryAmazonS3
+import com.alert.lambda.s3.objectCreatedEvent
+import com.amazonaws.services.lambda.runtime.events.S3Event
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest
+import com.amazonaws.services.s3.model.AmazonS3Exception
+import com.amazonaws.services.s3.model.CopyPartRequest
+import com.amazonaws.services.s3.model.CopyPartResult
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult
+import com.amazonaws.services.s3.model.ObjectMetadata
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+
+class AlertRequestHandlerTest {
+    private val s3Client = InMemoryAmazonS3()
+
+    @Before
+    fun setUp() {
+        AlertRequestHandler.registerS3Client(s3Client)
+    }
+
+    @Test
+    fun testCopiesUrlEncodedPartitionKey() {
+        val key = "year=2019/month=06/day=01/hour=10/weather alert.csv"
+        s3Client.putObjectOfSize(SOURCE_BUCKET, key, 10L)
+        // S3 sends the key URL encoded, '=' as %3D and spaces as '+'
+        val result = AlertRequestHandler().handleRequest(
+            objectCreatedEvent(SOURCE_BUCKET, "year%3D2019/month%3D06/day%3D01/hour%3D10/weather+alert.csv"), null
+        )
+        Assert.assertEquals(1, result.records.size)
+        Assert.assertEquals(key, result.records.single().s3Information.sourceKey)
+        Assert.assertEquals(10L, s3Client.sizeOf(AlertRequestHandler.DEFAULT_SINK_BUCKET, key))
+    }
+
+    @Test
+    fun testFailsInvocationOnceEveryCopyFinished() {
+        s3Client.putObjectOfSize(SOURCE_BUCKET, "present.csv", 10L)
+        val event = S3Event(objectCreatedEvent(SOURCE_BUCKET, "missing.csv").records + objectCreatedEvent(SOURCE_BUCKET, "present.csv").records)
+        try {
+            AlertRequestHandler().handleRequest(event, null)
+            Assert.fail("Expected the invocation to fail")
+        } catch (e: DataProcessingException) {
+            Assert.assertTrue(e.message!!.contains("1 of 2"))
+            Assert.assertTrue(e.message!!.contains("$SOURCE_BUCKET/missing.csv"))
+        }
+        // The failed copy did not stop the other one
+        Assert.assertEquals(10L, s3Client.sizeOf(AlertRequestHandler.DEFAULT_SINK_BUCKET, "present.csv"))
+    }
+
+    @Test
+    fun testMultipartCopyKeepsHeaders() {
+        val sourceMetadata = ObjectMetadata().apply {
+            contentType = "text/csv"
+            cacheControl = "max-age=3600"
+            contentEncoding = "gzip"
+            contentDisposition = "attachment; filename=alerts.csv"
+            userMetadata = mapOf("source" to "nws")
+        }
+        s3Client.putObjectOfSize(SOURCE_BUCKET, "large.csv", MULTIPART_SIZE, sourceMetadata)
+        AlertRequestHandler().handleRequest(objectCreatedEvent(SOURCE_BUCKET, "large.csv"), null)
+        val sinkMetadata = s3Client.metadataOf(AlertRequestHandler.DEFAULT_SINK_BUCKET, "large.csv")!!
+        Assert.assertEquals(MULTIPART_SIZE, sinkMetadata.contentLength)
+        Assert.assertEquals("text/csv", sinkMetadata.contentType)
+        Assert.assertEquals("max-age=3600", sinkMetadata.cacheControl)
+        Assert.assertEquals("gzip", sinkMetadata.contentEncoding)
+        Assert.assertEquals("attachment; filename=alerts.csv", sinkMetadata.contentDisposition)
+        Assert.assertEquals("nws", sinkMetadata.userMetadata["source"])
+    }
+
+    @Test
+    fun testMultipartCopyAbortedWhenSourceChanges() {
+        val s3Client = object : InMemoryAmazonS3() {
+            override fun initiateMultipartUpload(request: InitiateMultipartUploadRequest): InitiateMultipartUploadResult =
+                super.initiateMultipartUpload(request).also {
+                    // The source is overwritten after the handler read its ETag
+                    putObjectOfSize(SOURCE_BUCKET, "large.csv", MULTIPART_SIZE)
+                }
+        }
+        AlertRequestHandler.registerS3Client(s3Client)
+        s3Client.putObjectOfSize(SOURCE_BUCKET, "large.csv", MULTIPART_SIZE)
+        try {
+            AlertRequestHandler().handleRequest(objectCreatedEvent(SOURCE_BUCKET, "large.csv"), null)
+            Assert.fail("Expected the copy to fail")
+        } catch (e: DataProcessingException) {
+            Assert.assertTrue(e.suppressed.single().message!!.contains("changed while it was being copied"))
+        }
+        Assert.assertEquals(-1L, s3Client.sizeOf(AlertRequestHandler.DEFAULT_SINK_BUCKET, "large.csv"))
+        Assert.assertEquals(0, s3Client.uploadsInProgress)
+    }
+
+    @Test
+    fun testFailedAbortAttachedToCopyFailure() {
+        val s3Client = object : InMemoryAmazonS3() {
+            override fun copyPart(request: CopyPartRequest): CopyPartResult? =
+                throw AmazonS3Exception("We encountered an internal error").apply { statusCode = 500 }
+
+            override fun abortMultipartUpload(request: AbortMultipartUploadRequest) =
+                throw AmazonS3Exception("Abort failed").apply { statusCode = 503 }
+        }
+        AlertRequestHandler.registerS3Client(s3Client)
+        s3Client.putObjectOfSize(SOURCE_BUCKET, "large.csv", MULTIPART_SIZE)
+        try {
+            AlertRequestHandler().handleRequest(objectCreatedEvent(SOURCE_BUCKET, "large.csv"), null)
+            Assert.fail("Expected the copy to fail")
+        } catch (e: DataProcessingException) {
+            val copyFailure = e.suppressed.single()
+            Assert.assertTrue(copyFailure.message!!.contains("internal error"))
+            Assert.assertTrue(copyFailure.suppressed.single().message!!.contains("Abort failed"))
+        }
+    }
+
+    companion object {
+        private const val SOURCE_BUCKET = "alert-source-bucket"
+        // Above the default multipart copy threshold
+        private const val MULTIPART_SIZE = 200L * 1024 * 1024
+    }
+}
@@ -0,0 +1,175 @@
+package com.alert.lambda.s3
+
+import com.amazonaws.services.s3.AbstractAmazonS3
+import com.amazonaws.services.s3.Headers
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest
+import com.amazonaws.services.s3.model.AmazonS3Exception
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult
+import com.amazonaws.services.s3.model.CopyObjectRequest
+import com.amazonaws.services.s3.model.CopyObjectResult
+import com.amazonaws.services.s3.model.CopyPartRequest
+import com.amazonaws.services.s3.model.CopyPartResult
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult
+import com.amazonaws.services.s3.model.ObjectMetadata
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * In-process stand-in for S3, holding just enough of the API for [com.alert.lambda.data.processor.AlertRequestHandler]
+ * to run against it without a network or LocalStack. It is shared by the handler tests and the invocation benchmark.
+ *
+ * Copies happen inside S3 so no object content is kept, only sizes and metadata. A copy, or a part copy, of a GB sized
+ * object is as cheap as one of a KB sized object, what is measured against this stand-in is the work of the handler
+ * itself. Every object gets a new ETag when it is written and part copies honour matching ETag constraints by returning
+ * null, the way the SDK reports a failed precondition. It is open so tests can make single operations fail.
+ */
+open class InMemoryAmazonS3 : AbstractAmazonS3() {
+    private val sizes = ConcurrentHashMap<String, Long>()
+    private val metadata = ConcurrentHashMap<String, ObjectMetadata>()
+    private val uploads = ConcurrentHashMap<String, Upload>()
+    private val ids = AtomicLong()
+
+    /**
+     * Multipart upload in progress, the metadata it was initiated with and the bytes copied into it so far
+     */
+    private class Upload(val metadata: ObjectMetadata, val bytes: AtomicLong = AtomicLong())
+
+    /**
+     * Number of multipart uploads that were neither completed nor aborted
+     */
+    val uploadsInProgress: Int
+        get() = uploads.size
+
+    /**
+     * Adds an object of a size, replacing any object with the same key along with its ETag
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @param size size of the object in bytes
+     * @param objectMetadata headers and user metadata of the object
+     */
+    fun putObjectOfSize(bucketName: String, key: String, size: Long, objectMetadata: ObjectMetadata = ObjectMetadata()) {
+        write("$bucketName/$key", size, objectMetadata)
+    }
+
+    /**
+     * Size of an object
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @return size in bytes, -1 if there is no such object
+     */
+    fun sizeOf(bucketName: String, key: String): Long = sizes["$bucketName/$key"] ?: -1L
+
+    /**
+     * Metadata of an object, including its ETag
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @return [ObjectMetadata] of the object, null if there is no such object
+     */
+    fun metadataOf(bucketName: String, key: String): ObjectMetadata? = metadata["$bucketName/$key"]?.clone()
+
+    override fun getObjectMetadata(bucketName: String, key: String): ObjectMetadata =
+        metadata["$bucketName/$key"]?.clone()?.apply { contentLength = size(bucketName, key) }
+            ?: throw AmazonS3Exception("The specified key does not exist: $bucketName/$key").apply { statusCode = 404 }
+
+    override fun getObjectMetadata(request: GetObjectMetadataRequest): ObjectMetadata =
+        getObjectMetadata(request.bucketName, request.key)
+
+    override fun copyObject(
+        sourceBucketName: String,
+        sourceKey: String,
+        destinationBucketName: String,
+        destinationKey: String
+    ): CopyObjectResult {
+        val copied = write("$destinationBucketName/$destinationKey", size(sourceBucketName, sourceKey),
+            getObjectMetadata(sourceBucketName, sourceKey))
+        return CopyObjectResult().apply { eTag = copied.eTag }
+    }
+
+    override fun copyObject(request: CopyObjectRequest): CopyObjectResult = copyObject(
+        request.sourceBucketName, request.sourceKey, request.destinationBucketName, request.destinationKey
+    )
+
+    override fun initiateMultipartUpload(request: InitiateMultipartUploadRequest): InitiateMultipartUploadResult {
+        val uploadId = "upload-${ids.incrementAndGet()}"
+        uploads[uploadId] = Upload(request.objectMetadata?.clone() ?: ObjectMetadata())
+        return InitiateMultipartUploadResult().apply {
+            bucketName = request.bucketName
+            key = request.key
+            this.uploadId = uploadId
+        }
+    }
+
+    override fun copyPart(request: CopyPartRequest): CopyPartResult? {
+        val sourceSize = size(request.sourceBucketName, request.sourceKey)
+        val sourceETag = metadata["${request.sourceBucketName}/${request.sourceKey}"]?.eTag
+        if (!request.matchingETagConstraints.isNullOrEmpty() && sourceETag !in request.matchingETagConstraints) {
+            return null
+        }
+        val lastByte = minOf(request.lastByte ?: sourceSize - 1, sourceSize - 1)
+        upload(request.uploadId).bytes.addAndGet(lastByte - (request.firstByte ?: 0L) + 1)
+        return CopyPartResult().apply {
+            partNumber = request.partNumber
+            eTag = "part-${ids.incrementAndGet()}"
+        }
+    }
+
+    override fun completeMultipartUpload(request: CompleteMultipartUploadRequest): CompleteMultipartUploadResult {
+        val upload = upload(request.uploadId)
+        val completed = write("${request.bucketName}/${request.key}", upload.bytes.get(), upload.metadata)
+        uploads.remove(request.uploadId)
+        return CompleteMultipartUploadResult().apply { eTag = completed.eTag }
+    }
+
+    override fun abortMultipartUpload(request: AbortMultipartUploadRequest) {
+        uploads.remove(request.uploadId)
+    }
+
+    override fun shutdown() {
+        sizes.clear()
+        metadata.clear()
+        uploads.clear()
+    }
+
+    /**
+     * Stores an object under a new ETag
+     *
+     * @param path bucket and key of the object
+     * @param size size of the object in bytes
+     * @param objectMetadata headers and user metadata of the object
+     * @return [ObjectMetadata] stored for the object
+     */
+    private fun write(path: String, size: Long, objectMetadata: ObjectMetadata): ObjectMetadata {
+        val stored = objectMetadata.clone().apply {
+            contentLength = size
+            setHeader(Headers.ETAG, "etag-${ids.incrementAndGet()}")
+        }
+        metadata[path] = stored
+        sizes[path] = size
+        return stored
+    }
+
+    /**
+     * Looks up the size of an object, failing the way S3 does if there is no such object
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @return size in bytes
+     */
+    private fun size(bucketName: String, key: String): Long = sizes["$bucketName/$key"]
+        ?: throw AmazonS3Exception("The specified key does not exist: $bucketName/$key").apply { statusCode = 404 }
+
+    /**
+     * Looks up a multipart upload in progress
+     *
+     * @param uploadId id of the upload
+     * @return the upload
+     */
+    private fun upload(uploadId: String): Upload = uploads[uploadId]
+        ?: throw AmazonS3Exception("The specified upload does not exist: $uploadId")
+}
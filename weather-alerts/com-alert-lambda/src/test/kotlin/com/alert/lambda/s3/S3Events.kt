@@ -0,0 +1,23 @@
+package com.alert.lambda.s3
+
+import com.amazonaws.services.lambda.runtime.events.S3Event
+import com.amazonaws.services.s3.event.S3EventNotification
+
+/**
+ * Builds the ObjectCreated event S3 would send for a single object, shared by the handler tests and the benchmarks.
+ *
+ * @param bucket name of the bucket the object was created in
+ * @param key URL encoded key of the object, the way S3 sends it
+ * @return [S3Event] holding the record
+ */
+fun objectCreatedEvent(bucket: String, key: String): S3Event = S3Event(S3EventNotification.parseJson("""
+    {"Records": [{
+        "eventVersion": "2.1", "eventSource": "aws:s3", "awsRegion": "us-east-1",
+        "eventTime": "2019-06-01T00:00:00.000Z", "eventName": "ObjectCreated:Put",
+        "s3": {
+            "s3SchemaVersion": "1.0",
+            "bucket": {"name": "$bucket", "arn": "arn:aws:s3:::$bucket"},
+            "object": {"key": "$key"}
+        }
+    }]}
+""").records)
@@ -0,0 +1,107 @@
+package com.alert.microservice.config.aws;
+
+import com.alert.microservice.api.AwsClientProperties;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.retry.PredefinedBackoffStrategies;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+
+import java.util.Objects;
+
+/**
+ * Builds the {@link ClientConfiguration} used by the AWS SDK clients from {@link AwsClientProperties}. Every
+ * setting is validated so a bad value stops the application at startup instead of surfacing as timeouts later.
+ * Retries use full jitter exponential backoff so clients that fail together do not retry in lockstep.
+ */
+public class AwsClientConfigurationFactory {
+    /**
+     * Private default constructor
+     */
+    private AwsClientConfigurationFactory() {
+        // Private constructor to keep static code analysis happy
+    }
+
+    /**
+     * Creates a validated {@link ClientConfiguration} from the provided properties.
+     *
+     * @param clientName       String name of the client, used in error messages
+     * @param clientProperties AwsClientProperties to build from, if null the defaults are used
+     * @return ClientConfiguration for an AWS SDK client builder
+     */
+    public static ClientConfiguration create(final String clientName, final AwsClientProperties clientProperties) {
+        final AwsClientProperties properties = Objects.isNull(clientProperties) ? new AwsClientProperties() : clientProperties;
+        requireAtLeast(clientName, "max-connections", properties.getMaxConnections(), 1);
+        requireAtLeast(clientName, "connection-max-idle-millis", properties.getConnectionMaxIdleMillis(), 0);
+        requireAtLeast(clientName, "connection-timeout-millis", properties.getConnectionTimeoutMillis(), 0);
+        requireAtLeast(clientName, "socket-timeout-millis", properties.getSocketTimeoutMillis(), 0);
+        requireAtLeast(clientName, "request-timeout-millis", properties.getRequestTimeoutMillis(), 0);
+        requireAtLeast(clientName, "client-execution-timeout-millis", properties.getClientExecutionTimeoutMillis(), 0);
+        requireAtLeast(clientName, "max-error-retry", properties.getMaxErrorRetry(), 0);
+        requireAtLeast(clientName, "retry-base-delay-millis", properties.getRetryBaseDelayMillis(), 1);
+        requireAtLeast(clientName, "retry-max-backoff-millis", properties.getRetryMaxBackoffMillis(), properties.getRetryBaseDelayMillis());
+        requireNotNull(clientName, "tcp-keep-alive", properties.getTcpKeepAlive());
+        requireNotNull(clientName, "use-gzip", properties.getUseGzip());
+        requireNotNull(clientName, "connection-ttl-millis", properties.getConnectionTtlMillis());
+        if (properties.getConnectionTtlMillis() != -1 && properties.getConnectionTtlMillis() < 1) {
+            throw invalid(clientName, "connection-ttl-millis", properties.getConnectionTtlMillis(), "must be -1 or at least 1");
+        }
+
+        RetryPolicy retryPolicy = new RetryPolicy(PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new PredefinedBackoffStrategies.FullJitterBackoffStrategy(properties.getRetryBaseDelayMillis(), properties.getRetryMaxBackoffMillis()),
+                properties.getMaxErrorRetry(), true);
+        return new ClientConfiguration()
+                .withMaxConnections(properties.getMaxConnections())
+                .withTcpKeepAlive(properties.getTcpKeepAlive())
+                .withConnectionTTL(properties.getConnectionTtlMillis())
+                .withConnectionMaxIdleMillis(properties.getConnectionMaxIdleMillis())
+                .withConnectionTimeout(properties.getConnectionTimeoutMillis())
+                .withSocketTimeout(properties.getSocketTimeoutMillis())
+                .withRequestTimeout(properties.getRequestTimeoutMillis())
+                .withClientExecutionTimeout(properties.getClientExecutionTimeoutMillis())
+                .withMaxErrorRetry(properties.getMaxErrorRetry())
+                .withRetryPolicy(retryPolicy)
+                .withGzip(properties.getUseGzip());
+    }
+
+    /**
+     * Throws if the provided value is missing or below the minimum.
+     *
+     * @param clientName String name of the client
+     * @param property   String name of the property
+     * @param value      Number value of the property
+     * @param minimum    long smallest allowed value
+     */
+    private static void requireAtLeast(final String clientName, final String property, final Number value, final long minimum) {
+        requireNotNull(clientName, property, value);
+        if (value.longValue() < minimum) {
+            throw invalid(clientName, property, value, "must be at least " + minimum);
+        }
+    }
+
+    /**
+     * Throws if the provided value is missing.
+     *
+     * @param clientName String name of the client
+     * @param property   String name of the property
+     * @param value      Object value of the property
+     */
+    private static void requireNotNull(final String clientName, final String property, final Object value) {
+        if (Objects.isNull(value)) {
+            throw invalid(clientName, property, null, "must be set");
+        }
+    }
+
+    /**
+     * Creates the exception thrown for an invalid setting.
+     *
+     * @param clientName String name of the client
+     * @param property   String name of the property
+     * @param value      Object value of the property
+     * @param reason     String why the value is invalid
+     * @return AlertServiceException describing the invalid setting
+     */
+    private static AlertServiceException invalid(final String clientName, final String property, final Object value, final String reason) {
+        return new AlertServiceException("Invalid AWS " + clientName + " client setting " + property + "=" + value + ", " + reason);
+    }
+}
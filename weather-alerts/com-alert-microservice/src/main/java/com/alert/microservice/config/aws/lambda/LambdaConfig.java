@@ -1,14 +1,20 @@
 package com.alert.microservice.config.aws.lambda;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.config.aws.AwsClientConfigurationFactory;
 import com.alert.microservice.config.weather.WeatherConstants;
+import com.alert.microservice.service.aws.AwsClientMetricsService;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 /**
  * Configuration class to setup AWS Lambda related configurations
@@ -31,11 +37,17 @@ import org.springframework.context.annotation.Configuration;
  *     <li>
  *         EnableConfigurationProperties = Enable support for {@link ConfigurationProperties} annotated beans.
  *     </li>
+ *     <li>
+ *         Primary = Indicates that a bean should be given preference when multiple candidates are qualified to
+ *         autowire a single-valued dependency.
+ *     </li>
  * </ul>
  */
 @Configuration
 @EnableConfigurationProperties
 public class LambdaConfig {
+    // Name of the AWS Lambda client used by bulk operations
+    public static final String BULK_AWS_LAMBDA = "bulkAwsLambda";
 
     /**
      * Creates a Bean to be used by underlying Lambda service logic.
@@ -49,15 +61,52 @@ public class LambdaConfig {
     }
 
     /**
-     * Creates the primary interface for accessing and interacting with AWS Lambda.
+     * Creates the primary interface for accessing and interacting with AWS Lambda. The connection pool, timeouts
+     * and retries are configured from {@code weather.alert.lambda.client.*} and pool utilization is reported to the
+     * {@link AwsClientMetricsService}.
      *
-     * @param lambdaProperties used to setup the return object
+     * @param lambdaProperties        used to setup the return object
+     * @param awsClientMetricsService tracks connection pool utilization
      * @return Interface for accessing AWS Lambda.
      */
     @Bean
-    public AWSLambda awsLambda(AwsLambdaProperties lambdaProperties) {
+    @Primary
+    public AWSLambda awsLambda(AwsLambdaProperties lambdaProperties, AwsClientMetricsService awsClientMetricsService) {
+        ClientConfiguration clientConfiguration = AwsClientConfigurationFactory.create("lambda", lambdaProperties.getClient());
+        return buildClient(lambdaProperties, clientConfiguration, awsClientMetricsService.collector("lambda", clientConfiguration.getMaxConnections()));
+    }
+
+    /**
+     * Creates the interface for accessing AWS Lambda used by bulk delete/update/publish. It is configured like
+     * {@link #awsLambda} except the SDK does not retry, bulk operations retry throttled calls themselves while
+     * adapting how many run at once.
+     *
+     * @param lambdaProperties        used to setup the return object
+     * @param awsClientMetricsService tracks connection pool utilization
+     * @return Interface for accessing AWS Lambda without SDK retries.
+     */
+    @Bean(BULK_AWS_LAMBDA)
+    public AWSLambda bulkAwsLambda(AwsLambdaProperties lambdaProperties, AwsClientMetricsService awsClientMetricsService) {
+        ClientConfiguration clientConfiguration = AwsClientConfigurationFactory.create("lambda-bulk", lambdaProperties.getClient())
+                .withMaxErrorRetry(0)
+                .withRetryPolicy(PredefinedRetryPolicies.NO_RETRY_POLICY);
+        return buildClient(lambdaProperties, clientConfiguration, awsClientMetricsService.collector("lambda-bulk", clientConfiguration.getMaxConnections()));
+    }
+
+    /**
+     * Builds an AWS Lambda client for the configured endpoint.
+     *
+     * @param lambdaProperties    used to setup the return object
+     * @param clientConfiguration ClientConfiguration of the client
+     * @param metricCollector     RequestMetricCollector reporting pool utilization of the client
+     * @return Interface for accessing AWS Lambda.
+     */
+    private static AWSLambda buildClient(AwsLambdaProperties lambdaProperties, ClientConfiguration clientConfiguration,
+                                         RequestMetricCollector metricCollector) {
         return AWSLambdaClientBuilder.standard()
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(lambdaProperties.getUrl(), lambdaProperties.getRegion()))
+                .withClientConfiguration(clientConfiguration)
+                .withMetricsCollector(metricCollector)
                 .build();
     }
 }
@@ -1,14 +1,22 @@
 package com.alert.microservice.config.aws.s3;
 
 import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.config.aws.AwsClientConfigurationFactory;
 import com.alert.microservice.config.weather.WeatherConstants;
+import com.alert.microservice.service.aws.AwsClientMetricsService;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.Executors;
 
 /**
  * Configuration class to setup AWS S3 related configurations
@@ -50,20 +58,50 @@ public class S3Config {
     }
 
     /**
-     * Creates a {@link AmazonS3} object which provides access to AWS S3 web services.
+     * Creates a {@link AmazonS3} object which provides access to AWS S3 web services. The connection pool, timeouts
+     * and retries are configured from {@code weather.alert.s3.client.*} and pool utilization is reported to the
+     * {@link AwsClientMetricsService}.
      *
-     * @param s3Properties {@link S3Properties}
+     * @param s3Properties            {@link S3Properties}
+     * @param awsClientMetricsService {@link AwsClientMetricsService} tracking connection pool utilization
      * @return {@link AmazonS3} provides an interface for accessing the Amazon S3 web service.
      */
     @Bean
-    public AmazonS3 setupAmazonS3(S3Properties s3Properties) {
+    public AmazonS3 setupAmazonS3(S3Properties s3Properties, AwsClientMetricsService awsClientMetricsService) {
+        ClientConfiguration clientConfiguration = AwsClientConfigurationFactory.create("s3", s3Properties.getClient());
         return AmazonS3ClientBuilder.standard()
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(s3Properties.getUrl(), s3Properties.getRegion()))
+                .withClientConfiguration(clientConfiguration)
+                .withMetricsCollector(awsClientMetricsService.collector("s3", clientConfiguration.getMaxConnections()))
                 // This should be set to true when running locally running a Amazon S3 instance
                 .withPathStyleAccessEnabled(s3Properties.getPathStyleAccessEnabled())
                 // Configures the client to disable chunked encoding for all requests
                 // set this value to true to avoid issues with local S3 bucket testing
-                .withChunkedEncodingDisabled(s3Properties.getPathStyleAccessEnabled())
+                .withChunkedEncodingDisabled(s3Properties.getChunkedEncodingDisabled())
+                .build();
+    }
+
+    /**
+     * Creates a {@link TransferManager} shared by all large uploads. Multipart upload parts are sent in parallel on
+     * a fixed size pool, so no matter how many uploads are running at once the number of connections used for
+     * uploads stays bounded.
+     *
+     * Shutting down the transfer manager also shuts down the S3 client, which is fine since both are only shut
+     * down when the application context closes.
+     *
+     * @param amazonS3     {@link AmazonS3} client used to send the requests
+     * @param s3Properties {@link S3Properties}
+     * @return {@link TransferManager} to manage parallel multipart uploads
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public TransferManager setupTransferManager(AmazonS3 amazonS3, S3Properties s3Properties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("s3-transfer-");
+        threadFactory.setDaemon(true);
+        return TransferManagerBuilder.standard()
+                .withS3Client(amazonS3)
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(s3Properties.getUploadThreads(), threadFactory))
+                .withMultipartUploadThreshold(s3Properties.getMultipartUploadThreshold())
+                .withMinimumUploadPartSize(s3Properties.getMinimumUploadPartSize())
                 .build();
     }
 }
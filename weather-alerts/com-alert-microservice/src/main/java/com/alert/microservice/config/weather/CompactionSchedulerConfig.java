@@ -0,0 +1,61 @@
+package com.alert.microservice.config.weather;
+
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.service.weather.export.AlertExportService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Configuration class to establish the task that merges small Weather Alert exports in the S3 sink bucket
+ *
+ * Annotations Used:
+ *
+ * <ul>
+ *     <li>
+ *         Configuration = Indicates that a class declares one or more Bean methods and
+ *         may be processed by Spring.
+ *     </li>
+ *      <li>
+ *         EnableScheduling = Enables Spring's scheduled task execution capability
+ *     </li>
+ *     <li>
+ *         ConditionalOnProperty = Checks if the specified properties have a specific value a way we can disable
+ *         certain things from being setup in the Application Context.
+ *     </li>
+ *     <li>
+ *         Scheduled = An annotation that marks a method to be scheduled.
+ *     </li>
+ * </ul>
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = WeatherConstants.ENABLE_COMPACTION_PROPERTY)
+public class CompactionSchedulerConfig {
+    // Final variables that are injected in the constructor
+    private final AlertExportService alertExportService;
+    private final S3Properties s3Properties;
+
+    /**
+     * Constructor for this Configuration class that will establish the export compaction task.
+     *
+     * @param alertExportService Service class that writes and compacts Weather Alert exports
+     * @param s3Properties       S3Properties object to hold the sink bucket name
+     */
+    public CompactionSchedulerConfig(AlertExportService alertExportService, S3Properties s3Properties) {
+        this.alertExportService = alertExportService;
+        this.s3Properties = s3Properties;
+    }
+
+    /**
+     * Compacts the closed partitions of the sink bucket.
+     *
+     * fixedDelayString property runs the task every n milliseconds measured from the completion of the previous
+     * execution, so a slow compaction is never overlapped by the next one.
+     */
+    @Scheduled(fixedDelayString = WeatherConstants.COMPACTION_FIXED_DELAY_PROPERTY)
+    public void compactSinkBucket() {
+        alertExportService.compact(s3Properties.getSinkBucket());
+    }
+}
@@ -0,0 +1,60 @@
+package com.alert.microservice.config.weather;
+
+import com.alert.microservice.service.weather.expiry.WeatherAlertExpiryService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Configuration class to establish the task that marks Weather Alerts inactive once they expire
+ *
+ * Annotations Used:
+ *
+ * <ul>
+ *     <li>
+ *         Configuration = Indicates that a class declares one or more Bean methods and
+ *         may be processed by Spring.
+ *     </li>
+ *      <li>
+ *         EnableScheduling = Enables Spring's scheduled task execution capability
+ *     </li>
+ *     <li>
+ *         ConditionalOnProperty = Checks if the specified properties have a specific value a way we can disable
+ *         certain things from being setup in the Application Context.
+ *     </li>
+ *     <li>
+ *         Scheduled = An annotation that marks a method to be scheduled.
+ *     </li>
+ * </ul>
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = WeatherConstants.ENABLE_EXPIRY_PROPERTY)
+public class ExpirySchedulerConfig {
+    // Final variables that are injected in the constructor
+    private final WeatherAlertExpiryService weatherAlertExpiryService;
+
+    /**
+     * Constructor for this Configuration class that will establish the alert expiry task.
+     *
+     * @param weatherAlertExpiryService Service class that tracks when Weather Alerts expire
+     */
+    public ExpirySchedulerConfig(WeatherAlertExpiryService weatherAlertExpiryService) {
+        this.weatherAlertExpiryService = weatherAlertExpiryService;
+    }
+
+    /**
+     * Advances the expiry timer wheel once per tick, marking any alerts that have expired since the last tick
+     * as inactive.
+     *
+     * fixedRateString property runs the task every n milliseconds measured from the start of the previous execution,
+     * which keeps the wheel in step with the clock. Scheduled tasks share the pool sized by
+     * spring.task.scheduling.pool.size, which has more than one thread so a long feed run or S3 compaction does not
+     * delay the tick.
+     */
+    @Scheduled(fixedRateString = WeatherConstants.EXPIRY_TICK_PROPERTY)
+    public void expireWeatherAlerts() {
+        weatherAlertExpiryService.expireDueAlerts();
+    }
+}
@@ -8,9 +8,14 @@ public interface WeatherConstants {
     // Configuration property constant
     String ENABLE_KAFKA_PROPERTY = "weather.alert.kafka.enabled";
     String ENABLE_SCHEDULED_TASK = "weather.alert.scheduler.enabled";
+    String ENABLE_EXPIRY_PROPERTY = "weather.alert.expiry.enabled";
+    String ENABLE_COMPACTION_PROPERTY = "weather.alert.s3.compaction.enabled";
     // Below constants are used in @Value annotations
     String ENABLE_KAFKA_VALUE_PROPERTY = "${weather.alert.kafka.enabled}";
     String ENABLE_ELASTICSEARCH_PROPERTY = "${weather.alert.elasticsearch.enabled}";
+    String ES_MAX_IN_FLIGHT_SEARCHES_PROPERTY = "${weather.alert.elasticsearch.max-in-flight-searches}";
+    String ES_SEARCH_TIMEOUT_PROPERTY = "${weather.alert.elasticsearch.search-timeout-millis}";
+    String PREFER_IN_MEMORY_INDEX_PROPERTY = "${weather.alert.index.prefer-in-memory}";
     String TOPIC_PROPERTY = "${weather.alert.kafka.topic}";
     // Lambda
     String LAMBDA_PREFIX = "weather.alert.lambda";
@@ -19,4 +24,9 @@ public interface WeatherConstants {
     // Scheduled Processing
     String FIXED_DELAY_PROPERTY = "${fixedDelay.in.milliseconds}";
     String INIT_DELAY_PROPERTY = "${initialDelay.in.milliseconds}";
+    // Alert Expiry
+    String ENABLE_EXPIRY_VALUE_PROPERTY = "${weather.alert.expiry.enabled}";
+    String EXPIRY_TICK_PROPERTY = "${weather.alert.expiry.tick-millis}";
+    // S3 Export Compaction
+    String COMPACTION_FIXED_DELAY_PROPERTY = "${weather.alert.s3.compaction.fixed-delay-millis}";
 }
@@ -84,7 +84,8 @@ public class WeatherAlertConsumerConfig {
     }
 
     /**
-     * Factory Bean for Kafka Consumer/Listener containers
+     * Factory Bean for Kafka Consumer/Listener containers. Listeners receive every record of a poll at once so the
+     * alerts of a feed cycle can be indexed to Elasticsearch in bulk.
      *
      * @return {@link KafkaListenerContainerFactory} implementation to build a ConcurrentMessageListenerContainer.
      * This should be the default for most users and a good transition paths for those that are used to building such
@@ -94,6 +95,7 @@ public class WeatherAlertConsumerConfig {
     public ConcurrentKafkaListenerContainerFactory<String, WeatherAlert> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, WeatherAlert> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
         return factory;
     }
 }
@@ -1,9 +1,14 @@
 package com.alert.microservice.controller;
 
+import com.alert.microservice.api.AlertStatistics;
+import com.alert.microservice.api.CompactionResult;
 import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.config.weather.WeatherConstants;
+import com.alert.microservice.service.exception.AlertServiceException;
 import com.alert.microservice.service.weather.WeatherAlertService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,10 +17,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * REST Controller to handle Weather Alert related requests.
@@ -41,6 +51,10 @@ import java.util.Optional;
  *     <li>
  *         RequestBody = Indicates a method parameter should be bound to the body of the web request (ex. POST requests).
  *     </li>
+ *     <li>
+ *         Value = Annotation at the field or method/constructor parameter level that indicates a default value
+ *         expression for the affected argument.
+ *     </li>
  * </ul>
  */
 @Api(tags = "Weather Alerts API")
@@ -48,6 +62,10 @@ import java.util.Optional;
 @RequestMapping("/weather")
 public class WeatherAlertController {
 
+    // Time in milliseconds an asynchronous search is allowed to take before the request times out
+    @Value(WeatherConstants.ES_SEARCH_TIMEOUT_PROPERTY)
+    private Long searchTimeoutMillis;
+
     // Final variables that are injected in the constructor
     private final WeatherAlertService weatherAlertService;
 
@@ -74,44 +92,119 @@ public class WeatherAlertController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Merges the small Weather Alert exports in every closed partition of an S3 bucket into a single object per
+     * partition.
+     *
+     * @param bucketName Optional String name of the bucket to compact, defaults to the sink bucket
+     * @return CompactionResult with the number of partitions and objects merged
+     */
+    @ApiOperation(value = "Merges small Weather Alert exports in closed S3 partitions into larger objects", response = CompactionResult.class)
+    @PostMapping("/s3/compact")
+    public CompactionResult compactS3Exports(@RequestParam(name = "bucket", required = false) Optional<String> bucketName) {
+        return weatherAlertService.compactS3Exports(bucketName.orElse(null));
+    }
+
     /**
      * Performs in essence a SELECT * query on weather alert data limiting the number of results if specified in the
-     * request parameter.
+     * request parameter. The servlet thread is released while Elasticsearch is being queried.
      *
-     * @param limit Optional Integer to set a limit on the number of results returned. If no value is set then it will
-     *              default to 10.
-     * @return Collection of WeatherAlert data from the weather alert Elasticsearch index
-     * @throws IOException
+     * @param limit  Optional Integer to set a limit on the number of results returned. If no value is set then it will
+     *               default to 10.
+     * @param fields Optional List of WeatherAlert field names to return, if not set all fields are returned
+     * @return DeferredResult that is completed with the WeatherAlert data from the weather alert Elasticsearch index
      */
     @GetMapping("/search")
     @ApiOperation(
             value = "Searches Elasticsearch Weather Alert data and Limits the Number of Results to the Specified Limit",
-            notes = "This operates in a similar fashion to a SQL \"SELECT *\" query. If no limit is specified it defaults to 10",
+            notes = "This operates in a similar fashion to a SQL \"SELECT *\" query. If no limit is specified it defaults to 10. " +
+                    "The fields parameter can be used to only return a subset of the alert fields, ex. fields=id,title,severity",
             tags = { "Query Weather Data" },
             response = Collection.class
     )
-    public Collection<WeatherAlert> retrieveWeatherAlerts(@RequestParam(name = "limit", required = false) Optional<Integer> limit) throws IOException {
-        return weatherAlertService.retrieveElasticsearchData(limit.orElse(10));
+    public DeferredResult<Collection<WeatherAlert>> retrieveWeatherAlerts(
+            @RequestParam(name = "limit", required = false) Optional<Integer> limit,
+            @RequestParam(name = "fields", required = false) Optional<List<String>> fields) {
+        return toDeferredResult(weatherAlertService.retrieveElasticsearchDataAsync(limit.orElse(10), fields.orElse(null)));
     }
 
     /**
-     * Performs an Elasticsearch Query on Weather Alert Data.
+     * Performs an Elasticsearch Query on Weather Alert Data. The servlet thread is released while Elasticsearch is
+     * being queried.
      *
      * @param isFuzzySearch Boolean to dictate if we should perform a fuzzy search or not
      * @param weatherAlert WeatherAlert to extract query information from
-     * @return Collection of WeatherAlert responses that match from Elasticsearch
-     * @throws IOException
+     * @param fields Optional List of WeatherAlert field names to return, if not set all fields are returned
+     * @return DeferredResult that is completed with the WeatherAlert responses that match from Elasticsearch
      */
     @PostMapping("/search/{isFuzzySearch}")
     @ApiOperation(
             value = "Performs an Elasticsearch Query on Weather Alert Data",
-            notes = "Fuzzy Match capabilities follow the default Elasticsearch Fuzziness parameters in terms of edit distance",
+            notes = "Fuzzy Match capabilities follow the default Elasticsearch Fuzziness parameters in terms of edit distance. " +
+                    "The fields parameter can be used to only return a subset of the alert fields, ex. fields=id,title,severity",
             tags = { "Query Weather Data" },
             response = Collection.class
     )
-    public Collection<WeatherAlert> typedSearch(
+    public DeferredResult<Collection<WeatherAlert>> typedSearch(
             @PathVariable("isFuzzySearch") Boolean isFuzzySearch,
-            @RequestBody WeatherAlert weatherAlert) throws IOException {
-        return weatherAlertService.searchWeatherAlerts(weatherAlert, isFuzzySearch);
+            @RequestBody WeatherAlert weatherAlert,
+            @RequestParam(name = "fields", required = false) Optional<List<String>> fields) {
+        return toDeferredResult(weatherAlertService.searchWeatherAlertsAsync(weatherAlert, isFuzzySearch, fields.orElse(null)));
+    }
+
+    /**
+     * Retrieves Weather Alert statistics computed by Elasticsearch aggregations. Statistics only change when new
+     * alerts are indexed or a counted alert expires so the response is tagged with an ETag for the current statistics
+     * version, letting clients revalidate with If-None-Match and receive a 304 until the statistics change.
+     *
+     * @param interval   Optional String interval to bucket the effective date histogram by, defaults to 1d
+     * @param webRequest WebRequest used to check the If-None-Match header against the current statistics version
+     * @return DeferredResult that is completed with the {@link AlertStatistics} or null if not modified
+     */
+    @GetMapping("/statistics")
+    @ApiOperation(
+            value = "Retrieves Weather Alert Statistics Aggregated by Elasticsearch",
+            notes = "Counts alerts by severity, urgency and category, buckets alerts by effective date using the provided " +
+                    "interval (1h, 1d, 1w or 1M, defaults to 1d) and counts active versus expired alerts. Results are " +
+                    "cached until new alerts are indexed or the next counted alert expires.",
+            tags = { "Query Weather Data" },
+            response = AlertStatistics.class
+    )
+    public DeferredResult<AlertStatistics> alertStatistics(
+            @RequestParam(name = "interval", required = false) Optional<String> interval,
+            WebRequest webRequest) {
+        final String histogramInterval = interval.orElse("1d");
+        // Statistics are stable until they are invalidated so their version and the interval make up the ETag
+        if (webRequest.checkNotModified("\"" + weatherAlertService.getStatisticsVersion() + "-" + histogramInterval + "\"")) {
+            return null;
+        }
+        return toDeferredResult(weatherAlertService.retrieveAlertStatisticsAsync(histogramInterval));
+    }
+
+    /**
+     * Bridges the provided {@link CompletableFuture} to a {@link DeferredResult} so Spring can complete the request
+     * once the future is done. If the future does not complete within the configured search timeout it is cancelled,
+     * which gives up on the search behind it, and an error result is set instead.
+     *
+     * @param future CompletableFuture to wait on
+     * @param <T>    Generic Type of the result
+     * @return DeferredResult that is completed from the provided future
+     */
+    private <T> DeferredResult<T> toDeferredResult(final CompletableFuture<T> future) {
+        DeferredResult<T> deferredResult = new DeferredResult<>(searchTimeoutMillis);
+        deferredResult.onTimeout(() -> {
+            future.cancel(true);
+            deferredResult.setErrorResult(
+                    new AlertServiceException("Search did not complete within " + searchTimeoutMillis + " milliseconds"));
+        });
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                // Unwrap the exception thrown by a dependent stage so the original cause is reported
+                deferredResult.setErrorResult(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            } else {
+                deferredResult.setResult(result);
+            }
+        });
+        return deferredResult;
     }
 }
@@ -0,0 +1,51 @@
+package com.alert.microservice.controller.aws;
+
+import com.alert.microservice.api.ClientPoolMetrics;
+import com.alert.microservice.service.aws.AwsClientMetricsService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST Controller to report on the AWS SDK clients used by this application.
+ *
+ * Annotations Explained:
+ * <ul>
+ *     <li>
+ *         RestController = A convenience annotation that is itself annotated with Controller  and ResponseBody.
+ *     </li>
+ *     <li>
+ *         RequestMapping = Annotation for mapping web requests onto methods in request-handling classes with
+ *         flexible method signatures.
+ *     </li>
+ *     <li>
+ *        ApiOperation = Describes an operation or typically a HTTP method against a specific path.
+ *     </li>
+ * </ul>
+ */
+@Api(tags = "AWS Client API")
+@RestController
+@RequestMapping("/aws/clients")
+public class AwsClientController {
+    // Final variables that are injected in the constructor
+    private final AwsClientMetricsService awsClientMetricsService;
+
+    /**
+     * Constructor for this {@link AwsClientController}
+     *
+     * @param awsClientMetricsService service tracking connection pool utilization of the AWS clients
+     */
+    public AwsClientController(AwsClientMetricsService awsClientMetricsService) {
+        this.awsClientMetricsService = awsClientMetricsService;
+    }
+
+    @ApiOperation(value = "Retrieves connection pool utilization and request counts of the AWS S3 and Lambda clients", response = List.class)
+    @GetMapping("/metrics")
+    public List<ClientPoolMetrics> getClientMetrics() {
+        return awsClientMetricsService.metrics();
+    }
+}
@@ -1,6 +1,7 @@
 package com.alert.microservice.controller.aws;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BulkLambdaResult;
 import com.alert.microservice.service.aws.LambdaService;
 import com.amazonaws.AmazonWebServiceResult;
 import com.amazonaws.services.lambda.model.DeleteFunctionResult;
@@ -8,6 +9,7 @@ import com.amazonaws.services.lambda.model.GetFunctionResult;
 import com.amazonaws.services.lambda.model.ListFunctionsResult;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -15,10 +17,12 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * REST Controller to handle AWS Lambda related REST requests.
@@ -38,6 +42,9 @@ import java.util.Collection;
  *     <li>
  *        PathVariable = Indicates that a method parameter should be bound to a URI template variable.
  *     </li>
+ *     <li>
+ *        RequestParam = Indicates that a method parameter should be bound to a web request parameter.
+ *     </li>
  * </ul>
  */
 @Api(tags = "AWS Lambda API")
@@ -85,12 +92,41 @@ public class LambdaController {
         return lambdaService.lambdaFunctionExists(functionName);
     }
 
-    @ApiOperation(value = "Deletes all AWS Lambda Functions", response = Collection.class)
+    @ApiOperation(value = "Clears cached AWS Lambda Function metadata so the next read goes to AWS")
+    @PostMapping("/functions/refresh")
+    public ResponseEntity<Void> refreshLambdaFunctions() {
+        lambdaService.refreshFunctionMetadata();
+        return ResponseEntity.noContent().build();
+    }
+
+    @ApiOperation(value = "Deletes all AWS Lambda Functions in parallel", response = BulkLambdaResult.class)
     @DeleteMapping("/functions")
-    public Collection<DeleteFunctionResult> deleteAllLambdaFunctions() {
+    public BulkLambdaResult deleteAllLambdaFunctions() {
         return lambdaService.deleteAllLambdaFunctions();
     }
 
+    @ApiOperation(
+            value = "Updates the handler, role and/or timeout of many AWS Lambda Functions in parallel",
+            notes = "Only the handler, role and timeout of the provided properties are applied. If no function names " +
+                    "are provided every function is updated.",
+            response = BulkLambdaResult.class
+    )
+    @PutMapping("/functions/configuration")
+    public BulkLambdaResult updateLambdaFunctionConfigurations(@RequestParam(name = "functionNames", required = false) List<String> functionNames,
+                                                               @RequestBody AwsLambdaProperties configuration) {
+        return lambdaService.updateLambdaFunctionConfigurations(functionNames, configuration);
+    }
+
+    @ApiOperation(
+            value = "Publishes a new version of many AWS Lambda Functions in parallel",
+            notes = "If no function names are provided a version of every function is published.",
+            response = BulkLambdaResult.class
+    )
+    @PostMapping("/functions/versions")
+    public BulkLambdaResult publishLambdaFunctionVersions(@RequestParam(name = "functionNames", required = false) List<String> functionNames) {
+        return lambdaService.publishLambdaFunctionVersions(functionNames);
+    }
+
     @ApiOperation(value = "Deletes a AWS Lambda Function by Name", response = DeleteFunctionResult.class)
     @DeleteMapping("/functions/{functionName}")
     public DeleteFunctionResult deleteLambdaFunction(@PathVariable("functionName") String functionName) {
@@ -1,12 +1,22 @@
 package com.alert.microservice.controller.aws;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BucketDeletionResult;
+import com.alert.microservice.api.BucketInventory;
+import com.alert.microservice.api.ObjectListingPage;
+import com.alert.microservice.api.ObjectSummary;
+import com.alert.microservice.api.UploadProgress;
 import com.alert.microservice.service.aws.S3FileService;
+import com.alert.microservice.service.aws.S3InventoryService;
+import com.alert.microservice.service.aws.S3TransferService;
 import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -14,13 +24,16 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -45,6 +58,9 @@ import java.util.Optional;
  *        RequestParam = Indicates that a method parameter should be bound to a web request parameter.
  *     </li>
  *     <li>
+ *        RequestHeader = Indicates that a method parameter should be bound to a web request header.
+ *     </li>
+ *     <li>
  *         RequestPart = Annotation that can be used to associate the part of a "multipart/form-data" request with a
  *         method argument.
  *     </li>
@@ -54,26 +70,59 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/aws/s3")
 public class S3Controller {
+    // Media type for newline delimited JSON
+    private static final String NDJSON_VALUE = "application/x-ndjson";
     // Final variables that are injected in the constructor
     private final S3FileService s3FileService;
+    private final S3TransferService s3TransferService;
+    private final S3InventoryService s3InventoryService;
 
     /**
      * Constructor for this {@link S3Controller}
      *
-     * @param s3FileService Service to perform AWS S3 related operations
+     * @param s3FileService      Service to perform AWS S3 related operations
+     * @param s3TransferService  Service to perform large AWS S3 uploads
+     * @param s3InventoryService Service to list and take inventory of AWS S3 objects
      */
-    public S3Controller(S3FileService s3FileService) {
+    public S3Controller(S3FileService s3FileService, S3TransferService s3TransferService, S3InventoryService s3InventoryService) {
         this.s3FileService = s3FileService;
+        this.s3TransferService = s3TransferService;
+        this.s3InventoryService = s3InventoryService;
     }
 
-    @ApiOperation(value = "Downloads the S3 object to your machine", response = ResponseEntity.class)
+    @ApiOperation(value = "Downloads the S3 object to your machine, a single byte range may be requested with the Range header", response = ResponseEntity.class)
     @GetMapping(value = "/download/{bucketName}/{bucketKey}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public ResponseEntity<InputStreamResource> downloadFile(@PathVariable("bucketName") String bucketName,
-                                                            @PathVariable("bucketKey") String bucketKey) {
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header("Content-Disposition", "attachment; filename=" + bucketKey)
-                .body(new InputStreamResource(s3FileService.retrieveBucketInputStream(bucketName, bucketKey)));
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable("bucketName") String bucketName,
+                                                              @PathVariable("bucketKey") String bucketKey,
+                                                              @RequestHeader(name = HttpHeaders.RANGE, required = false) String rangeHeader) {
+        // Headers come from a HEAD request, the object is only opened once the body is written on the async executor
+        // and is pinned to the ETag of the HEAD so the bytes always belong to the version the headers describe
+        ObjectMetadata metadata = s3FileService.retrieveObjectMetadata(bucketName, bucketKey);
+        final String eTag = metadata.getETag();
+        final long length = metadata.getContentLength();
+        HttpRange range = singleRange(rangeHeader);
+        if (Objects.isNull(range)) {
+            return downloadResponse(HttpStatus.OK, bucketKey, metadata)
+                    .contentLength(length)
+                    .body(outputStream -> s3FileService.transfer(s3FileService.retrieveObject(bucketName, bucketKey, eTag), outputStream));
+        }
+        // The object length is needed to resolve suffix ranges and reject ranges past the end of the object
+        final long start;
+        final long end;
+        try {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            return rangeNotSatisfiable(length);
+        }
+        // A range starting at or past the end of the object is not rejected by HttpRange itself
+        if (start >= length) {
+            return rangeNotSatisfiable(length);
+        }
+        return downloadResponse(HttpStatus.PARTIAL_CONTENT, bucketKey, metadata)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                .contentLength(end - start + 1)
+                .body(outputStream -> s3FileService.transfer(s3FileService.retrieveObject(bucketName, bucketKey, eTag, start, end), outputStream));
     }
 
     @ApiOperation(value = "Retrieves a List of AWS S3 Buckets", response = Bucket.class, responseContainer = "List")
@@ -87,6 +136,32 @@ public class S3Controller {
         return s3FileService.bucketNames();
     }
 
+    @ApiOperation(value = "Retrieves a page of objects in the specified bucket, pass the continuation token back to get the next page", response = ObjectListingPage.class)
+    @GetMapping("/objects/{bucketName}")
+    public ObjectListingPage listObjects(@PathVariable("bucketName") String bucketName,
+                                         @RequestParam(name = "prefix", required = false) Optional<String> prefix,
+                                         @RequestParam(name = "continuationToken", required = false) Optional<String> continuationToken,
+                                         @RequestParam(name = "maxKeys", required = false) Optional<Integer> maxKeys) {
+        return s3InventoryService.listObjects(bucketName, prefix.orElse(null), continuationToken.orElse(null), maxKeys.orElse(1000));
+    }
+
+    @ApiOperation(value = "Streams every object in the specified bucket as newline delimited JSON", response = ObjectSummary.class, responseContainer = "List")
+    @GetMapping(value = "/objects/{bucketName}/stream", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamObjects(@PathVariable("bucketName") String bucketName,
+                                                               @RequestParam(name = "prefix", required = false) Optional<String> prefix) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(outputStream -> s3InventoryService.streamObjects(bucketName, prefix.orElse(null), outputStream));
+    }
+
+    @ApiOperation(value = "Retrieves object counts and byte totals for each key prefix of the specified bucket", response = BucketInventory.class)
+    @GetMapping("/inventory/{bucketName}")
+    public BucketInventory inventory(@PathVariable("bucketName") String bucketName,
+                                     @RequestParam(name = "prefix", required = false) Optional<String> prefix,
+                                     @RequestParam(name = "delimiter", required = false) Optional<String> delimiter) {
+        return s3InventoryService.inventory(bucketName, prefix.orElse(null), delimiter.orElse("/"));
+    }
+
     @ApiOperation(value = "Uploads file to the specified bucket", response = PutObjectResult.class)
     @PostMapping("/upload/{bucketName}")
     public PutObjectResult uploadData(
@@ -95,6 +170,20 @@ public class S3Controller {
         return s3FileService.uploadToBucket(file, bucketName);
     }
 
+    @ApiOperation(value = "Starts uploading a large file to the specified bucket using parallel multipart uploads", response = UploadProgress.class)
+    @PostMapping("/upload/large/{bucketName}")
+    public ResponseEntity<UploadProgress> uploadLargeData(
+            @PathVariable("bucketName") String bucketName,
+            @RequestPart("file") MultipartFile file) throws IOException {
+        return ResponseEntity.accepted().body(s3TransferService.uploadLargeFile(file, bucketName));
+    }
+
+    @ApiOperation(value = "Retrieves the progress and throughput of a large upload", response = UploadProgress.class)
+    @GetMapping("/upload/large/{uploadId}")
+    public UploadProgress uploadProgress(@PathVariable("uploadId") String uploadId) {
+        return s3TransferService.progress(uploadId);
+    }
+
     @ApiOperation(value = "Creates the specified bucket if it does NOT exist already", response = ResponseEntity.class)
     @PostMapping("/bucket/{bucketName}")
     public ResponseEntity<String> createBucket(@PathVariable("bucketName") String bucketName) {
@@ -105,18 +194,60 @@ public class S3Controller {
                 .body("Bucket Created = " + bucketCreated);
     }
 
-    @ApiOperation(value = "Deletes S3 Buckets forcing Deletion if Specified", response = ResponseEntity.class)
+    @ApiOperation(value = "Deletes S3 Buckets forcing Deletion if Specified", response = BucketDeletionResult.class, responseContainer = "List")
     @DeleteMapping("/buckets")
-    public ResponseEntity deleteS3Buckets(@RequestParam(name = "force", required = false) Optional<Boolean> force) {
-        s3FileService.deleteAllBuckets(force.orElse(false));
-        return ResponseEntity.ok().build();
+    public ResponseEntity<List<BucketDeletionResult>> deleteS3Buckets(@RequestParam(name = "force", required = false) Optional<Boolean> force) {
+        return ResponseEntity.ok(s3FileService.deleteAllBuckets(force.orElse(false)));
     }
 
-    @ApiOperation(value = "Deletes S3 Bucket forcing Deletion if Specified", response = ResponseEntity.class)
+    @ApiOperation(value = "Deletes S3 Bucket forcing Deletion if Specified", response = BucketDeletionResult.class)
     @DeleteMapping("/bucket/{bucketName}")
-    public ResponseEntity deleteS3Bucket(@PathVariable("bucketName") String bucketName,
-                                         @RequestParam(name = "force", required = false) Optional<Boolean> force) {
-        s3FileService.deleteBucket(bucketName, force.orElse(false));
-        return ResponseEntity.ok().build();
+    public ResponseEntity<BucketDeletionResult> deleteS3Bucket(@PathVariable("bucketName") String bucketName,
+                                                               @RequestParam(name = "force", required = false) Optional<Boolean> force) {
+        return ResponseEntity.ok(s3FileService.deleteBucket(bucketName, force.orElse(false)));
+    }
+
+    /**
+     * Builds the headers shared by full and partial downloads.
+     *
+     * @param status    HttpStatus of the response
+     * @param bucketKey String key of the object being downloaded, used as the file name
+     * @param metadata  ObjectMetadata of the object being downloaded
+     * @return ResponseEntity.BodyBuilder with the shared headers applied
+     */
+    private ResponseEntity.BodyBuilder downloadResponse(final HttpStatus status, final String bucketKey, final ObjectMetadata metadata) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + bucketKey)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(metadata.getETag());
+    }
+
+    /**
+     * Builds the 416 response for a range that does not overlap the object.
+     *
+     * @param length long length of the object in bytes
+     * @return ResponseEntity telling the client the length of the object
+     */
+    private static ResponseEntity<StreamingResponseBody> rangeNotSatisfiable(final long length) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .build();
+    }
+
+    /**
+     * Parses the Range header. Only a single range is supported, when the header is missing, malformed or asks for
+     * multiple ranges it is ignored and the whole object is served, which is allowed by the HTTP specification.
+     *
+     * @param rangeHeader String value of the Range header, may be null
+     * @return HttpRange requested or null if the whole object should be served
+     */
+    private static HttpRange singleRange(final String rangeHeader) {
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,148 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.ClientPoolMetrics;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.TimingInfo;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Service that tracks connection pool utilization of the AWS SDK clients. Each client is built with the
+ * {@link RequestMetricCollector} returned by {@link #collector(String, int)}, which makes the SDK record the state
+ * of the client's connection pool on every request. The latest and peak values are kept in memory so they can be
+ * checked without shipping SDK metrics to CloudWatch.
+ *
+ * Annotations Explained:
+ *
+ * <ul>
+ *     <li>
+ *         Service = Indicates that an annotated class is a "Service".
+ *     </li>
+ * </ul>
+ */
+@Service
+public class AwsClientMetricsService {
+    // Collectors by client name, sorted so metrics are always reported in the same order
+    private final Map<String, PoolMetricCollector> collectors = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates, or returns the existing, metric collector for the named client.
+     *
+     * @param clientName     String name of the client, ex. s3 or lambda
+     * @param maxConnections int size of the client's connection pool
+     * @return RequestMetricCollector to build the client with
+     */
+    public RequestMetricCollector collector(final String clientName, final int maxConnections) {
+        return collectors.computeIfAbsent(clientName, name -> new PoolMetricCollector(name, maxConnections));
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every client.
+     *
+     * @return List of {@link ClientPoolMetrics} in client name order
+     */
+    public List<ClientPoolMetrics> metrics() {
+        return collectors.values().stream()
+                .map(PoolMetricCollector::toClientPoolMetrics)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Collects the connection pool counters the SDK records on each request of a single client.
+     */
+    private static class PoolMetricCollector extends RequestMetricCollector {
+        private final String clientName;
+        private final int maxConnections;
+        private final AtomicInteger leased = new AtomicInteger();
+        private final AtomicInteger available = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger maxLeased = new AtomicInteger();
+        private final AtomicInteger maxPending = new AtomicInteger();
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong retryCount = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong timedCount = new AtomicLong();
+        private final DoubleAdder totalLatencyMillis = new DoubleAdder();
+
+        /**
+         * Constructor for a {@link PoolMetricCollector}
+         *
+         * @param clientName     String name of the client
+         * @param maxConnections int size of the client's connection pool
+         */
+        PoolMetricCollector(String clientName, int maxConnections) {
+            this.clientName = clientName;
+            this.maxConnections = maxConnections;
+        }
+
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            requestCount.incrementAndGet();
+            // The SDK hands over a null response when the call failed after all retries
+            if (Objects.isNull(response)) {
+                errorCount.incrementAndGet();
+            }
+            TimingInfo timingInfo = request.getAWSRequestMetrics().getTimingInfo();
+            final int leasedNow = counter(timingInfo, AWSRequestMetrics.Field.HttpClientPoolLeasedCount);
+            final int pendingNow = counter(timingInfo, AWSRequestMetrics.Field.HttpClientPoolPendingCount);
+            leased.set(leasedNow);
+            pending.set(pendingNow);
+            available.set(counter(timingInfo, AWSRequestMetrics.Field.HttpClientPoolAvailableCount));
+            maxLeased.accumulateAndGet(leasedNow, Math::max);
+            maxPending.accumulateAndGet(pendingNow, Math::max);
+            // Every HTTP request after the first one of a call is a retry
+            retryCount.addAndGet(Math.max(0, counter(timingInfo, AWSRequestMetrics.Field.RequestCount) - 1));
+            TimingInfo executeTime = timingInfo.getSubMeasurement(AWSRequestMetrics.Field.ClientExecuteTime.name());
+            if (Objects.nonNull(executeTime) && Objects.nonNull(executeTime.getTimeTakenMillisIfKnown())) {
+                totalLatencyMillis.add(executeTime.getTimeTakenMillisIfKnown());
+                timedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Takes a snapshot of the collected metrics.
+         *
+         * @return ClientPoolMetrics of the client
+         */
+        ClientPoolMetrics toClientPoolMetrics() {
+            ClientPoolMetrics clientPoolMetrics = new ClientPoolMetrics();
+            clientPoolMetrics.setClientName(clientName);
+            clientPoolMetrics.setMaxConnections(maxConnections);
+            clientPoolMetrics.setLeased(leased.get());
+            clientPoolMetrics.setAvailable(available.get());
+            clientPoolMetrics.setPending(pending.get());
+            clientPoolMetrics.setMaxLeased(maxLeased.get());
+            clientPoolMetrics.setMaxPending(maxPending.get());
+            clientPoolMetrics.setUtilization(maxConnections > 0 ? (double) leased.get() / maxConnections : 0d);
+            clientPoolMetrics.setRequestCount(requestCount.get());
+            clientPoolMetrics.setRetryCount(retryCount.get());
+            clientPoolMetrics.setErrorCount(errorCount.get());
+            final long timed = timedCount.get();
+            clientPoolMetrics.setAverageLatencyMillis(timed > 0 ? totalLatencyMillis.sum() / timed : 0d);
+            return clientPoolMetrics;
+        }
+
+        /**
+         * Reads a counter recorded by the SDK.
+         *
+         * @param timingInfo TimingInfo of the request
+         * @param field      AWSRequestMetrics.Field of the counter
+         * @return int value of the counter, 0 if it was not recorded
+         */
+        private static int counter(final TimingInfo timingInfo, final AWSRequestMetrics.Field field) {
+            Number value = timingInfo.getCounter(field.name());
+            return Objects.isNull(value) ? 0 : value.intValue();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.BulkLambdaResult;
+import com.alert.microservice.api.LambdaOperationResult;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs an operation against many AWS Lambda Functions in parallel. The number of operations in flight adapts to
+ * throttling: it is halved every time AWS Lambda throttles an operation and grows back by one after a full window of
+ * successful operations, so a bulk operation backs off from account rate limits on its own and recovers once they
+ * clear. Throttled operations are retried with jittered backoff, any other failure is recorded against the function
+ * without stopping the remaining operations. Operations must not be retried by the AWS SDK as well, the attempts would
+ * multiply and the throttling the concurrency adapts to would be hidden behind the SDK's own backoff.
+ * <p>
+ * One executor is kept for the life of the application and every bulk operation runs on its bounded pool, idle
+ * threads of the pool are let go so it costs nothing between bulk operations.
+ */
+class LambdaBulkExecutor {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(LambdaBulkExecutor.class);
+    // Base delay before a throttled operation is retried, doubled on every attempt
+    private static final long RETRY_BASE_DELAY_MILLIS = 200;
+    // Max delay before a throttled operation is retried
+    private static final long RETRY_MAX_DELAY_MILLIS = 10000;
+    // Time an idle pool thread is kept around for the next bulk operation
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor for a {@link LambdaBulkExecutor}
+     *
+     * @param maxConcurrency int max number of operations in flight at once
+     * @param maxAttempts    int max number of times a throttled operation is attempted
+     */
+    LambdaBulkExecutor(final int maxConcurrency, final int maxAttempts) {
+        if (maxConcurrency < 1 || maxAttempts < 1) {
+            throw new AlertServiceException("Bulk Lambda concurrency and attempts must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxAttempts = maxAttempts;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lambda-bulk-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, IDLE_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stops the pool, operations already submitted are allowed to finish.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs the operation against every function and waits for all of them to finish.
+     *
+     * @param operation     String name of the operation, ex. delete
+     * @param functionNames List of function names to operate on
+     * @param function      Function that performs the operation for a single function name and returns the version
+     *                      it produced, or null if the operation does not produce one
+     * @return BulkLambdaResult with the outcome for each function in the order provided
+     */
+    BulkLambdaResult execute(final String operation, final List<String> functionNames, final Function<String, String> function) {
+        final long start = System.currentTimeMillis();
+        final AdaptiveLimit limit = new AdaptiveLimit(maxConcurrency);
+        List<LambdaOperationResult> results;
+        if (functionNames.isEmpty()) {
+            results = Collections.emptyList();
+        } else {
+            List<CompletableFuture<LambdaOperationResult>> futures = functionNames.stream()
+                    .map(name -> CompletableFuture.supplyAsync(() -> run(name, function, limit), executor))
+                    .collect(Collectors.toList());
+            results = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        }
+
+        BulkLambdaResult bulkLambdaResult = new BulkLambdaResult();
+        bulkLambdaResult.setOperation(operation);
+        bulkLambdaResult.setResults(results);
+        bulkLambdaResult.setSucceeded((int) results.stream().filter(LambdaOperationResult::getSuccess).count());
+        bulkLambdaResult.setFailed(results.size() - bulkLambdaResult.getSucceeded());
+        bulkLambdaResult.setThrottled(limit.throttled.get());
+        bulkLambdaResult.setFinalConcurrency(limit.current());
+        bulkLambdaResult.setElapsedMillis(System.currentTimeMillis() - start);
+        LOG.info("Bulk Lambda {} of {} functions: {} succeeded, {} failed, {} throttled in {} ms", operation,
+                results.size(), bulkLambdaResult.getSucceeded(), bulkLambdaResult.getFailed(),
+                bulkLambdaResult.getThrottled(), bulkLambdaResult.getElapsedMillis());
+        return bulkLambdaResult;
+    }
+
+    /**
+     * Runs the operation for a single function, retrying while it is throttled.
+     *
+     * @param functionName String name of the function
+     * @param function     Function that performs the operation
+     * @param limit        AdaptiveLimit shared by every operation of the bulk operation
+     * @return LambdaOperationResult outcome of the operation
+     */
+    private LambdaOperationResult run(final String functionName, final Function<String, String> function, final AdaptiveLimit limit) {
+        final long start = System.currentTimeMillis();
+        LambdaOperationResult result = new LambdaOperationResult();
+        result.setFunctionName(functionName);
+        result.setSuccess(false);
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            result.setAttempts(attempt);
+            boolean throttled = false;
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.setError("Interrupted while waiting to run");
+                break;
+            }
+            try {
+                result.setVersion(function.apply(functionName));
+                result.setSuccess(true);
+                result.setError(null);
+            } catch (RuntimeException e) {
+                throttled = isThrottled(e);
+                result.setError(e.getMessage());
+            } finally {
+                limit.release(throttled);
+            }
+            if (!throttled || attempt == maxAttempts || !backoff(attempt)) {
+                break;
+            }
+        }
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Sleeps for a jittered, exponentially growing delay before a throttled operation is retried.
+     *
+     * @param attempt int attempt that was throttled
+     * @return boolean true if the operation should be retried, false if the thread was interrupted
+     */
+    private static boolean backoff(final int attempt) {
+        final long ceiling = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Determines if AWS Lambda rejected the operation because of rate limits.
+     *
+     * @param e RuntimeException thrown by the operation
+     * @return boolean true if the operation was throttled
+     */
+    static boolean isThrottled(final RuntimeException e) {
+        return e instanceof AmazonServiceException
+                && (RetryUtils.isThrottlingException((AmazonServiceException) e)
+                || ((AmazonServiceException) e).getStatusCode() == 429);
+    }
+
+    /**
+     * Limit on the number of operations in flight that is cut in half on throttling and grows back by one after as
+     * many successes in a row as the current limit.
+     */
+    static class AdaptiveLimit {
+        private final int max;
+        private final AtomicInteger throttled = new AtomicInteger();
+        private int limit;
+        private int inFlight;
+        private int successes;
+
+        /**
+         * Constructor for an {@link AdaptiveLimit} starting at the max
+         *
+         * @param max int max number of operations in flight at once
+         */
+        AdaptiveLimit(final int max) {
+            this.max = max;
+            this.limit = max;
+        }
+
+        /**
+         * Waits until an operation can start.
+         *
+         * @throws InterruptedException if interrupted while waiting
+         */
+        synchronized void acquire() throws InterruptedException {
+            while (inFlight >= limit) {
+                wait();
+            }
+            inFlight++;
+        }
+
+        /**
+         * Marks an operation as finished and adapts the limit to its outcome.
+         *
+         * @param wasThrottled boolean true if AWS throttled the operation
+         */
+        synchronized void release(final boolean wasThrottled) {
+            inFlight--;
+            if (wasThrottled) {
+                throttled.incrementAndGet();
+                limit = Math.max(1, limit / 2);
+                successes = 0;
+            } else if (++successes >= limit && limit < max) {
+                limit++;
+                successes = 0;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Current limit on operations in flight.
+         *
+         * @return int current limit
+         */
+        synchronized int current() {
+            return limit;
+        }
+    }
+}
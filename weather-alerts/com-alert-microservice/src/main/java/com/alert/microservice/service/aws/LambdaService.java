@@ -1,9 +1,12 @@
 package com.alert.microservice.service.aws;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BulkLambdaResult;
+import com.alert.microservice.config.aws.lambda.LambdaConfig;
 import com.alert.microservice.service.exception.AlertServiceException;
 import com.alert.microservice.util.CollectionUtil;
 import com.alert.microservice.util.CommonUtil;
+import com.alert.microservice.util.FileUtil;
 import com.amazonaws.AmazonWebServiceResult;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.CreateFunctionRequest;
@@ -13,39 +16,66 @@ import com.amazonaws.services.lambda.model.FunctionCode;
 import com.amazonaws.services.lambda.model.FunctionConfiguration;
 import com.amazonaws.services.lambda.model.GetFunctionRequest;
 import com.amazonaws.services.lambda.model.GetFunctionResult;
+import com.amazonaws.services.lambda.model.ListFunctionsRequest;
 import com.amazonaws.services.lambda.model.ListFunctionsResult;
+import com.amazonaws.services.lambda.model.PublishVersionRequest;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
 import com.amazonaws.services.lambda.model.Runtime;
 import com.amazonaws.services.lambda.model.UpdateFunctionCodeRequest;
 import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
 import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
 import com.amazonaws.services.s3.model.LambdaConfiguration;
 import com.amazonaws.services.s3.model.S3Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
  * Service to perform AWS Lambda related operations
  * <p>
+ * Function metadata is cached for {@code metadataCacheTtlMillis} so existence checks and reads do not go back to
+ * AWS every time. Single functions are looked up by name with {@code GetFunction}, only functions that exist are
+ * cached so the cache never holds more entries than there are functions, while the full list of functions is read
+ * across every page of {@code ListFunctions}. Both
+ * caches are cleared whenever a function is created, updated or deleted through this service.
+ * <p>
+ * Bulk operations go through a separate client that the AWS SDK does not retry on, {@link LambdaBulkExecutor} retries
+ * throttled calls itself, and share a single executor for the life of the service.
+ * <p>
  * Annotations Explained:
  *
  * <ul>
  *  <li>
  *      Service = Indicates that an annotated class is a "Service".
  *  </li>
+ *  <li>
+ *      Qualifier = Selects which of several beans of the same type is injected.
+ *  </li>
+ *  <li>
+ *      PreDestroy = Used on a method that is called as the application context closes to release resources.
+ *  </li>
  * </ul>
  */
 @Service
 public class LambdaService {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(LambdaService.class);
     // Class constant for local lambda functionS
     private static final String LAMBDA_ARN_BASE = "arn:aws:lambda:us-east-1:000000000000:function:";
     private static final String LAMBDA_CONFIG_NAME = "LambdaFunctionConfigurations";
@@ -53,16 +83,37 @@ public class LambdaService {
     // Final variables that are injected in the service constructor
     private final AwsLambdaProperties lambdaProperties;
     private final AWSLambda awsLambda;
+    private final AWSLambda bulkAwsLambda;
+
+    // Functions looked up by name, functions that do not exist are never cached
+    private final ConcurrentMap<String, CachedMetadata<GetFunctionResult>> functionsByName = new ConcurrentHashMap<>();
+    // Every function across all pages of the last listing, null until functions are listed
+    private volatile CachedMetadata<List<FunctionConfiguration>> functionList;
+    // Executor shared by every bulk operation, created by the first one
+    private LambdaBulkExecutor bulkExecutor;
 
     /**
      * Constructor for this {@link LambdaService}
      *
      * @param lambdaProperties object to hold AWS Lambda related information
      * @param awsLambda        Interface for accessing AWS Lambda.
+     * @param bulkAwsLambda    Interface for accessing AWS Lambda without SDK retries, used by bulk operations
      */
-    public LambdaService(AwsLambdaProperties lambdaProperties, AWSLambda awsLambda) {
+    public LambdaService(AwsLambdaProperties lambdaProperties, AWSLambda awsLambda,
+                         @Qualifier(LambdaConfig.BULK_AWS_LAMBDA) AWSLambda bulkAwsLambda) {
         this.lambdaProperties = lambdaProperties;
         this.awsLambda = awsLambda;
+        this.bulkAwsLambda = bulkAwsLambda;
+    }
+
+    /**
+     * Stops the pool bulk operations run on.
+     */
+    @PreDestroy
+    synchronized void shutdown() {
+        if (Objects.nonNull(bulkExecutor)) {
+            bulkExecutor.shutdown();
+        }
     }
 
     /**
@@ -71,27 +122,28 @@ public class LambdaService {
      * @return long count of AWS Lambda functions
      */
     public long lambdaFunctionCount() {
-        return listLambdaFunctions().getFunctions().size();
+        return allFunctions().size();
     }
 
     /**
-     * Returns a wrapped List of AWS Lambda Functions in a {@link ListFunctionsResult}
+     * Returns a wrapped List of every AWS Lambda Function in a {@link ListFunctionsResult}. All pages are read so the
+     * result is never truncated.
      *
      * @return ListFunctionResult A list of Lambda functions.
      */
     public ListFunctionsResult listLambdaFunctions() {
-        return awsLambda.listFunctions();
+        return new ListFunctionsResult().withFunctions(allFunctions());
     }
 
     /**
-     * Retrieves a AWS Lambda {@link ListFunctionsResult} and then collects the names of each function into the result
+     * Retrieves every AWS Lambda function and then collects the names of each function into the result
      * {@link Collection} response.
      *
      * @return Collection of AWS Lambda Function String Names
      */
     public Collection<String> getLambdaFunctionNames() {
         // Retrieve all lambda function information from AWS then collect the function names to a list to return
-        return listLambdaFunctions().getFunctions().stream()
+        return allFunctions().stream()
                 .map(FunctionConfiguration::getFunctionName)
                 .collect(Collectors.toList());
     }
@@ -121,8 +173,8 @@ public class LambdaService {
             return getLambdaFunction(lambdaFunctionProperties.getFunctionName());
         }
 
-        // Create byte buffer of JVM Lambda code
-        ByteBuffer byteBuffer = ByteBuffer.wrap(Files.readAllBytes(new File(lambdaFunctionProperties.getJarPath()).toPath()));
+        // Memory-map the JVM Lambda code rather than copying it onto the heap
+        ByteBuffer byteBuffer = FileUtil.map(new File(lambdaFunctionProperties.getJarPath()).toPath());
         // Create function code for new lambda function
         FunctionCode functionCode = new FunctionCode().withZipFile(byteBuffer);
         // Instantiate create function request
@@ -134,7 +186,11 @@ public class LambdaService {
                 .withRole(lambdaFunctionProperties.getRole())
                 .withTimeout(lambdaFunctionProperties.getTimeout());
         // Create function
-        return awsLambda.createFunction(createFunctionRequest);
+        try {
+            return awsLambda.createFunction(createFunctionRequest);
+        } finally {
+            invalidate(lambdaFunctionProperties.getFunctionName());
+        }
     }
 
     /**
@@ -151,7 +207,6 @@ public class LambdaService {
 
         // Check to see if the function exists, if so, then update it
         if (lambdaFunctionExists(lambdaFunctionProperties.getFunctionName())) {
-            System.out.println("UPDATING LAMBDA");
             // if the lambda is not updated, i.e. a non HTTP 200 response was returned then throw an exception
             if (!updateLambda(lambdaFunctionProperties)) {
                 throw new AlertServiceException("Cannot update AWS Lambda " + lambdaFunctionProperties.getFunctionName());
@@ -168,9 +223,10 @@ public class LambdaService {
      * @param functionName String function to retrieve
      * @return GetFunctionResult Returns information about the function or function version, with a link to download
      * the deployment package that's valid for 10 minutes.
+     * @throws ResourceNotFoundException if there is no function with the provided name
      */
     public GetFunctionResult getLambdaFunction(final String functionName) {
-        return awsLambda.getFunction(new GetFunctionRequest().withFunctionName(functionName));
+        return loadFunction(functionName);
     }
 
     /**
@@ -180,10 +236,12 @@ public class LambdaService {
      * @return boolean true if the function exists, false otherwise
      */
     public boolean lambdaFunctionExists(final String functionName) {
-        // Sanity check
-        CommonUtil.ifEmptyThrowException(functionName, new AlertServiceException("Cannot check existence of Lambda Function with null/empty name"));
-        ListFunctionsResult listFunctionsResult = listLambdaFunctions();
-        return Objects.nonNull(CollectionUtil.firstOrNull(listFunctionsResult.getFunctions(), (func) -> func.getFunctionName().equals(functionName)));
+        try {
+            loadFunction(functionName);
+            return true;
+        } catch (ResourceNotFoundException e) {
+            return false;
+        }
     }
 
     /**
@@ -196,19 +254,79 @@ public class LambdaService {
         // Instantiate initial delete function request
         DeleteFunctionRequest deleteFunctionRequest = new DeleteFunctionRequest().withFunctionName(functionName);
         // Execute delete request and return the result
-        return awsLambda.deleteFunction(deleteFunctionRequest);
+        try {
+            return awsLambda.deleteFunction(deleteFunctionRequest);
+        } finally {
+            invalidate(functionName);
+        }
     }
 
     /**
-     * Deletes all functions known to AWS.
+     * Clears all cached function metadata so the next read goes to AWS.
+     */
+    public void refreshFunctionMetadata() {
+        functionsByName.clear();
+        functionList = null;
+    }
+
+    /**
+     * Deletes all functions known to AWS. Functions are listed across every page and deleted in parallel, backing
+     * off whenever AWS Lambda throttles the deletes.
      *
-     * @return Collection of {@link DeleteFunctionResult} results from Lambda function deletion
+     * @return BulkLambdaResult holding the outcome for each function
      */
-    public Collection<DeleteFunctionResult> deleteAllLambdaFunctions() {
+    public BulkLambdaResult deleteAllLambdaFunctions() {
+        // Always list fresh so functions created elsewhere since the last listing are deleted too
+        refreshFunctionMetadata();
         // Get a list of AWS Lambda function names and transform to list
         List<String> names = CollectionUtil.listOf(getLambdaFunctionNames());
-        // Delete functions by name and add results to list
-        return names.stream().map(this::deleteLambdaFunction).collect(Collectors.toList());
+        // Delete functions by name in parallel and aggregate the results
+        try {
+            return bulkExecutor().execute("delete", names, functionName -> {
+                bulkAwsLambda.deleteFunction(new DeleteFunctionRequest().withFunctionName(functionName));
+                return null;
+            });
+        } finally {
+            refreshFunctionMetadata();
+        }
+    }
+
+    /**
+     * Updates the configuration of many functions in parallel. Only the handler, role and timeout set on the
+     * provided {@link AwsLambdaProperties} are changed, any that are null are left as they are.
+     *
+     * @param functionNames Collection of function names to update, if null or empty every function is updated
+     * @param configuration {@link AwsLambdaProperties} holding the configuration to apply
+     * @return BulkLambdaResult holding the outcome for each function
+     */
+    public BulkLambdaResult updateLambdaFunctionConfigurations(final Collection<String> functionNames, final AwsLambdaProperties configuration) {
+        CommonUtil.ifNullThrowException(configuration, new AlertServiceException("Cannot update Lambda Functions with a Null configuration"));
+        try {
+            return bulkExecutor().execute("update-configuration", targetFunctions(functionNames), functionName ->
+                    bulkAwsLambda.updateFunctionConfiguration(new UpdateFunctionConfigurationRequest()
+                            .withFunctionName(functionName)
+                            .withHandler(configuration.getHandler())
+                            .withRole(configuration.getRole())
+                            .withTimeout(configuration.getTimeout()))
+                            .getVersion());
+        } finally {
+            refreshFunctionMetadata();
+        }
+    }
+
+    /**
+     * Publishes a new version of many functions in parallel from their current code and configuration.
+     *
+     * @param functionNames Collection of function names to publish, if null or empty every function is published
+     * @return BulkLambdaResult holding the outcome and published version for each function
+     */
+    public BulkLambdaResult publishLambdaFunctionVersions(final Collection<String> functionNames) {
+        try {
+            return bulkExecutor().execute("publish-version", targetFunctions(functionNames), functionName ->
+                    bulkAwsLambda.publishVersion(new PublishVersionRequest().withFunctionName(functionName)).getVersion());
+        } finally {
+            refreshFunctionMetadata();
+        }
     }
 
     /**
@@ -241,8 +359,10 @@ public class LambdaService {
     }
 
     /**
-     * Helper method to update both an AWS Lambdas configuration and underlying code in a single call. The HTTP
-     * response codes are then evaluated to see if the updates were successful or not.
+     * Helper method to update both an AWS Lambdas configuration and underlying code in a single call. Each update is
+     * skipped when the deployed function already matches, the code is compared by the SHA-256 of the JAR and the
+     * function's {@code CodeSha256}, so deploying unchanged code only costs the metadata lookup. The HTTP response
+     * codes of the updates that were sent are then evaluated to see if they were successful or not.
      *
      * NOTE: This method assumes that you have checked that the function exists beforehand!
      *
@@ -253,13 +373,52 @@ public class LambdaService {
     private boolean updateLambda(final AwsLambdaProperties lambdaFunctionProperties) throws IOException {
         // Null sanity check to avoid NPE
         CommonUtil.ifNullThrowException(lambdaFunctionProperties, new AlertServiceException("Cannot Create Lambda Function from Null Object"));
-        // Update Lambda config
-        AmazonWebServiceResult configUpdate = updateLambdaConfiguration(lambdaFunctionProperties);
-        // Update Lambda code
-        AmazonWebServiceResult lambdaCodeUpdate = updateLambdaCode(lambdaFunctionProperties);
-        // Check the response code of each response to ensure everything went well
-        return configUpdate.getSdkHttpMetadata().getHttpStatusCode() == HttpStatus.OK.value()
-                && lambdaCodeUpdate.getSdkHttpMetadata().getHttpStatusCode() == HttpStatus.OK.value();
+        FunctionConfiguration deployed = getLambdaFunction(lambdaFunctionProperties.getFunctionName()).getConfiguration();
+        ByteBuffer code = FileUtil.map(new File(lambdaFunctionProperties.getJarPath()).toPath());
+        final boolean configurationChanged = configurationChanged(deployed, lambdaFunctionProperties);
+        final boolean codeChanged = !FileUtil.sha256Base64(code).equals(deployed.getCodeSha256());
+        if (!configurationChanged && !codeChanged) {
+            LOG.debug("AWS Lambda {} is up to date, skipping update", lambdaFunctionProperties.getFunctionName());
+            return true;
+        }
+        boolean updated = true;
+        try {
+            if (configurationChanged) {
+                // Update Lambda config
+                updated = isOk(updateLambdaConfiguration(lambdaFunctionProperties));
+            }
+            if (codeChanged) {
+                // Update Lambda code
+                updated &= isOk(updateLambdaCode(lambdaFunctionProperties, code));
+            }
+        } finally {
+            invalidate(lambdaFunctionProperties.getFunctionName());
+        }
+        return updated;
+    }
+
+    /**
+     * Checks if the deployed configuration of a function differs from the provided {@link AwsLambdaProperties}.
+     *
+     * @param deployed                 FunctionConfiguration of the deployed function
+     * @param lambdaFunctionProperties {@link AwsLambdaProperties} the function should be configured with
+     * @return boolean true if the configuration needs to be updated, false otherwise
+     */
+    private static boolean configurationChanged(final FunctionConfiguration deployed, final AwsLambdaProperties lambdaFunctionProperties) {
+        return !Objects.equals(deployed.getHandler(), lambdaFunctionProperties.getHandler())
+                || !Objects.equals(deployed.getRole(), lambdaFunctionProperties.getRole())
+                || !Objects.equals(deployed.getTimeout(), lambdaFunctionProperties.getTimeout())
+                || !Runtime.Java8.toString().equals(deployed.getRuntime());
+    }
+
+    /**
+     * Checks the HTTP response code of an AWS result.
+     *
+     * @param result AmazonWebServiceResult to check
+     * @return boolean true if AWS responded with HTTP 200, false otherwise
+     */
+    private static boolean isOk(final AmazonWebServiceResult result) {
+        return result.getSdkHttpMetadata().getHttpStatusCode() == HttpStatus.OK.value();
     }
 
     /**
@@ -279,21 +438,141 @@ public class LambdaService {
     }
 
     /**
-     * Updates the underlying AWS Lambda code using the provided {@link AwsLambdaProperties} to set things up.
+     * Updates the underlying AWS Lambda code with the provided JAR contents.
      *
      * @param lambdaFunctionProperties {@link AwsLambdaProperties} used to update AWS Lambda Code
+     * @param code                     ByteBuffer holding the JAR of the Lambda code
      * @return AmazonWebServiceResult of the UpdateFunctionCode operation returned by the service.
-     * @throws IOException if issues occur while creating JAR byte buffer
      */
-    private AmazonWebServiceResult updateLambdaCode(final AwsLambdaProperties lambdaFunctionProperties) throws IOException {
-        // Create byte buffer of JVM Lambda code
-        ByteBuffer byteBuffer = ByteBuffer.wrap(Files.readAllBytes(new File(lambdaFunctionProperties.getJarPath()).toPath()));
+    private AmazonWebServiceResult updateLambdaCode(final AwsLambdaProperties lambdaFunctionProperties, final ByteBuffer code) {
         // Instantiate update code request
         UpdateFunctionCodeRequest updateFunctionCodeRequest = new UpdateFunctionCodeRequest()
                 .withFunctionName(lambdaFunctionProperties.getFunctionName())
-                .withZipFile(byteBuffer);
+                .withZipFile(code);
         // Update function code
         return awsLambda.updateFunctionCode(updateFunctionCodeRequest);
     }
 
+    /**
+     * Resolves the functions a bulk operation runs against.
+     *
+     * @param functionNames Collection of function names, if null or empty every function is targeted
+     * @return List of distinct function names
+     */
+    private List<String> targetFunctions(final Collection<String> functionNames) {
+        return CollectionUtil.isEmpty(functionNames)
+                ? CollectionUtil.listOf(getLambdaFunctionNames())
+                : functionNames.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the executor shared by bulk operations, creating it with the configured concurrency and attempts the
+     * first time it is needed.
+     *
+     * @return LambdaBulkExecutor to run a bulk operation with
+     */
+    private synchronized LambdaBulkExecutor bulkExecutor() {
+        if (Objects.isNull(bulkExecutor)) {
+            bulkExecutor = new LambdaBulkExecutor(lambdaProperties.getBulkConcurrency(), lambdaProperties.getBulkMaxAttempts());
+        }
+        return bulkExecutor;
+    }
+
+    /**
+     * Looks up a function by name, answering from the cache while the entry is fresh. A function that does not exist
+     * is removed from the cache and not remembered, so looking up arbitrary names cannot grow the cache.
+     *
+     * @param functionName String AWS Lambda function to look up
+     * @return GetFunctionResult of the function
+     * @throws ResourceNotFoundException if there is no function with the provided name
+     */
+    private GetFunctionResult loadFunction(final String functionName) {
+        // Sanity check
+        CommonUtil.ifEmptyThrowException(functionName, new AlertServiceException("Cannot look up Lambda Function with null/empty name"));
+        CachedMetadata<GetFunctionResult> cached = functionsByName.get(functionName);
+        if (Objects.nonNull(cached) && cached.isFresh(ttlMillis())) {
+            return cached.value;
+        }
+        try {
+            GetFunctionResult function = awsLambda.getFunction(new GetFunctionRequest().withFunctionName(functionName));
+            functionsByName.put(functionName, new CachedMetadata<>(function));
+            return function;
+        } catch (ResourceNotFoundException e) {
+            functionsByName.remove(functionName);
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves every function, answering from the cache while the last listing is fresh. Otherwise every page of
+     * functions is listed by following the returned marker.
+     *
+     * @return List of every {@link FunctionConfiguration}
+     */
+    private List<FunctionConfiguration> allFunctions() {
+        CachedMetadata<List<FunctionConfiguration>> cached = functionList;
+        if (Objects.nonNull(cached) && cached.isFresh(ttlMillis())) {
+            return cached.value;
+        }
+        List<FunctionConfiguration> functions = new ArrayList<>();
+        ListFunctionsRequest listFunctionsRequest = new ListFunctionsRequest();
+        ListFunctionsResult listFunctionsResult;
+        do {
+            listFunctionsResult = awsLambda.listFunctions(listFunctionsRequest);
+            functions.addAll(listFunctionsResult.getFunctions());
+            listFunctionsRequest.setMarker(listFunctionsResult.getNextMarker());
+        } while (CommonUtil.isNotEmpty(listFunctionsResult.getNextMarker()));
+        functionList = new CachedMetadata<>(Collections.unmodifiableList(functions));
+        return functionList.value;
+    }
+
+    /**
+     * Removes cached metadata that may no longer be accurate after the provided function was changed.
+     *
+     * @param functionName String name of the function that was created, updated or deleted
+     */
+    private void invalidate(final String functionName) {
+        if (Objects.nonNull(functionName)) {
+            functionsByName.remove(functionName);
+        }
+        functionList = null;
+    }
+
+    /**
+     * Time in milliseconds function metadata is cached for.
+     *
+     * @return long cache TTL, zero or less disables caching
+     */
+    private long ttlMillis() {
+        return Objects.isNull(lambdaProperties.getMetadataCacheTtlMillis()) ? 0 : lambdaProperties.getMetadataCacheTtlMillis();
+    }
+
+    /**
+     * Metadata along with the time it was loaded.
+     *
+     * @param <T> Generic Type of the metadata
+     */
+    private static class CachedMetadata<T> {
+        private final T value;
+        private final long loadedMillis = System.currentTimeMillis();
+
+        /**
+         * Constructor for a {@link CachedMetadata}
+         *
+         * @param value metadata that was loaded
+         */
+        CachedMetadata(T value) {
+            this.value = value;
+        }
+
+        /**
+         * Checks if the metadata is still within its TTL.
+         *
+         * @param ttlMillis long time in milliseconds metadata is cached for
+         * @return boolean true if the metadata can still be used, false otherwise
+         */
+        boolean isFresh(final long ttlMillis) {
+            return System.currentTimeMillis() - loadedMillis < ttlMillis;
+        }
+    }
 }
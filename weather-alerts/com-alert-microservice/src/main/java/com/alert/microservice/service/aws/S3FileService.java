@@ -1,15 +1,23 @@
 package com.alert.microservice.service.aws;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BucketDeletionResult;
+import com.alert.microservice.api.S3Properties;
 import com.alert.microservice.service.exception.AlertServiceException;
 import com.alert.microservice.util.CollectionUtil;
 import com.alert.microservice.util.CommonUtil;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -23,9 +31,17 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
@@ -43,19 +59,30 @@ import java.util.stream.Collectors;
 public class S3FileService {
     // Logger for info/debug purposes
     private static final Logger LOG = LoggerFactory.getLogger(S3FileService.class);
+    // Max number of keys S3 accepts in a single multi-object delete request
+    private static final int MAX_DELETE_BATCH_SIZE = 1000;
+    // Size of the buffer used to stream object content from S3 to a client
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    // Separates the lines of every CSV export, fixed so exports and compacted objects do not depend on the host OS
+    public static final String CSV_LINE_SEPARATOR = "\n";
     // Final variables that are injected in the service constructor
     private final AmazonS3 s3Client;
     private final LambdaService lambdaService;
+    private final S3Properties s3Properties;
+    // Flipped to false the first time the S3 endpoint rejects a multi-object delete
+    private final AtomicBoolean multiObjectDeleteSupported = new AtomicBoolean(true);
 
     /**
      * Constructor for this {@link S3FileService}
      *
      * @param s3Client      Provides an interface for accessing the Amazon S3 web service.
      * @param lambdaService Service performs AWS Lambda related operations
+     * @param s3Properties  S3Properties object to hold S3 related information
      */
-    public S3FileService(AmazonS3 s3Client, LambdaService lambdaService) {
+    public S3FileService(AmazonS3 s3Client, LambdaService lambdaService, S3Properties s3Properties) {
         this.s3Client = s3Client;
         this.lambdaService = lambdaService;
+        this.s3Properties = s3Properties;
     }
 
     /**
@@ -69,6 +96,106 @@ public class S3FileService {
         return s3Client.getObject(new GetObjectRequest(sourceBucket, sourceKey)).getObjectContent();
     }
 
+    /**
+     * Retrieves the metadata of an S3 object without retrieving its contents.
+     *
+     * @param bucketName String name of the S3 bucket holding the object
+     * @param bucketKey  String key of the object
+     * @return ObjectMetadata holding the content length, ETag and other object information
+     */
+    public ObjectMetadata retrieveObjectMetadata(final String bucketName, final String bucketKey) {
+        return s3Client.getObjectMetadata(bucketName, bucketKey);
+    }
+
+    /**
+     * Retrieves an S3 object. The returned object holds an open connection to S3 until its content has been read
+     * and closed, see {@link #transfer(S3Object, OutputStream)}.
+     *
+     * @param bucketName String name of the S3 bucket holding the object
+     * @param bucketKey  String key of the object
+     * @return S3Object with its metadata and content stream
+     */
+    public S3Object retrieveObject(final String bucketName, final String bucketKey) {
+        return s3Client.getObject(new GetObjectRequest(bucketName, bucketKey));
+    }
+
+    /**
+     * Retrieves the bytes between the provided positions of an S3 object using a ranged GET, so only that part
+     * of the object is sent by S3.
+     *
+     * @param bucketName String name of the S3 bucket holding the object
+     * @param bucketKey  String key of the object
+     * @param start      long position of the first byte to retrieve, inclusive
+     * @param end        long position of the last byte to retrieve, inclusive
+     * @return S3Object with its metadata and a content stream holding only the requested bytes
+     */
+    public S3Object retrieveObject(final String bucketName, final String bucketKey, final long start, final long end) {
+        return s3Client.getObject(new GetObjectRequest(bucketName, bucketKey).withRange(start, end));
+    }
+
+    /**
+     * Retrieves an S3 object as long as its ETag still matches the provided one, so the content is that of the same
+     * version of the object as metadata read earlier.
+     *
+     * @param bucketName String name of the S3 bucket holding the object
+     * @param bucketKey  String key of the object
+     * @param eTag       String ETag the object must still have
+     * @return S3Object with its metadata and content stream
+     * @throws AlertServiceException if the object has changed since the ETag was read
+     */
+    public S3Object retrieveObject(final String bucketName, final String bucketKey, final String eTag) {
+        return retrieveMatchingObject(new GetObjectRequest(bucketName, bucketKey), eTag);
+    }
+
+    /**
+     * Retrieves the bytes between the provided positions of an S3 object using a ranged GET, as long as its ETag still
+     * matches the provided one so the bytes belong to the same version of the object as metadata read earlier.
+     *
+     * @param bucketName String name of the S3 bucket holding the object
+     * @param bucketKey  String key of the object
+     * @param eTag       String ETag the object must still have
+     * @param start      long position of the first byte to retrieve, inclusive
+     * @param end        long position of the last byte to retrieve, inclusive
+     * @return S3Object with its metadata and a content stream holding only the requested bytes
+     * @throws AlertServiceException if the object has changed since the ETag was read
+     */
+    public S3Object retrieveObject(final String bucketName, final String bucketKey, final String eTag, final long start, final long end) {
+        return retrieveMatchingObject(new GetObjectRequest(bucketName, bucketKey).withRange(start, end), eTag);
+    }
+
+    /**
+     * Copies the content of the provided S3 object to the output stream through a fixed size buffer so the object
+     * is never held in memory. If the copy does not finish, for example because the client went away, the S3
+     * connection is aborted rather than drained so it is released straight away.
+     *
+     * @param s3Object     S3Object to read the content of, it is always closed by this method
+     * @param outputStream OutputStream to write the content to
+     * @return long number of bytes transferred
+     * @throws IOException if reading from S3 or writing to the output stream fails
+     */
+    public long transfer(final S3Object s3Object, final OutputStream outputStream) throws IOException {
+        S3ObjectInputStream inputStream = s3Object.getObjectContent();
+        byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+        long transferred = 0;
+        boolean complete = false;
+        try {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+                transferred += read;
+            }
+            outputStream.flush();
+            complete = true;
+            return transferred;
+        } finally {
+            if (!complete) {
+                LOG.debug("Aborting transfer of {}/{} after {} bytes", s3Object.getBucketName(), s3Object.getKey(), transferred);
+                inputStream.abort();
+            }
+            s3Object.close();
+        }
+    }
+
     /**
      * Transforms the provided collection of objects into a CSV representation with schema/header and write it to
      * an input stream.
@@ -82,8 +209,9 @@ public class S3FileService {
     public <T> InputStream toCSVInputStream(final Collection<T> contentCollection, final Class<T> clazz) throws JsonProcessingException {
         CsvMapper csvMapper = new CsvMapper();
         CsvSchema csvSchema = csvMapper.schemaFor(clazz);
-        ObjectWriter writer = csvMapper.writerWithSchemaFor(clazz);
-        StringJoiner stringJoiner = new StringJoiner(System.lineSeparator());
+        // Rows are joined with CSV_LINE_SEPARATOR, so the writer must not end each row with its own separator
+        ObjectWriter writer = csvMapper.writer(csvSchema.withLineSeparator(""));
+        StringJoiner stringJoiner = new StringJoiner(CSV_LINE_SEPARATOR);
 
         // Grab CSV Header and add to String Joiner
         final String header = String.join(",", CollectionUtil.streamOn(csvSchema.iterator())
@@ -109,7 +237,10 @@ public class S3FileService {
      * @throws IOException
      */
     public PutObjectResult uploadToBucket(final MultipartFile multipartFile, final String bucketName) throws IOException {
-        return uploadInputStream(multipartFile.getInputStream(), bucketName, multipartFile.getOriginalFilename());
+        // The size is known up front so pass it along, otherwise the SDK buffers the whole file to work it out
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(multipartFile.getSize());
+        return uploadInputStream(multipartFile.getInputStream(), bucketName, multipartFile.getOriginalFilename(), metadata);
     }
 
     /**
@@ -122,10 +253,23 @@ public class S3FileService {
      * @return PutObjectResult Contains the data returned by Amazon S3 from the putObject operation.
      */
     public PutObjectResult uploadInputStream(final InputStream inputStream, final String bucketName, final String bucketKey) {
+        // Instantiate empty metadata for upload
+        return uploadInputStream(inputStream, bucketName, bucketKey, new ObjectMetadata());
+    }
+
+    /**
+     * Uploads the provided {@link InputStream} to the specified S3 bucket with the provided metadata.
+     *
+     * @param inputStream represents an input stream of bytes
+     * @param bucketName String S3 bucket to put file into
+     * @param bucketKey String S3 "filename" of data to push into bucket
+     * @param metadata ObjectMetadata to upload with, set the content length when known
+     * @return PutObjectResult Contains the data returned by Amazon S3 from the putObject operation.
+     */
+    private PutObjectResult uploadInputStream(final InputStream inputStream, final String bucketName, final String bucketKey,
+                                              final ObjectMetadata metadata) {
         // Create bucket if it does not exist already
         createBucket(bucketName);
-        // Instantiate empty metadata for upload
-        ObjectMetadata metadata = new ObjectMetadata();
         // Put data in S3
         return s3Client.putObject(bucketName, bucketKey, inputStream, metadata);
     }
@@ -174,15 +318,30 @@ public class S3FileService {
     }
 
     /**
-     * Deletes all known AWS S3 Buckets.
+     * Deletes all known AWS S3 Buckets. Buckets are emptied and deleted concurrently, up to the configured
+     * {@code deleteConcurrency} at a time.
      *
      * DO NOT USE THIS OUTSIDE OF TESTING SCENARIOS!
      *
      * @param forceDelete boolean to dictate if we should force removal or not. If the bucket is NOT empty and we do
      *                    NOT force deletion an error will be thrown.
+     * @return List of {@link BucketDeletionResult} objects, one per deleted bucket
      */
-    public void deleteAllBuckets(final boolean forceDelete) {
-        buckets().forEach(bucket -> deleteBucket(bucket.getName(), forceDelete));
+    public List<BucketDeletionResult> deleteAllBuckets(final boolean forceDelete) {
+        List<String> bucketNames = bucketNames();
+        if (bucketNames.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final int concurrency = Math.max(1, Math.min(bucketNames.size(), s3Properties.getDeleteConcurrency()));
+        ExecutorService bucketExecutor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<CompletableFuture<BucketDeletionResult>> futures = bucketNames.stream()
+                    .map(bucketName -> CompletableFuture.supplyAsync(() -> deleteBucket(bucketName, forceDelete), bucketExecutor))
+                    .collect(Collectors.toList());
+            return futures.stream().map(this::joinDeletion).collect(Collectors.toList());
+        } finally {
+            bucketExecutor.shutdown();
+        }
     }
 
     /**
@@ -191,13 +350,34 @@ public class S3FileService {
      * @param bucketName  String bucket name to remove
      * @param forceDelete boolean to dictate if we should force removal or not. If the bucket is NOT empty and we do
      *                    NOT force deletion an error will be thrown.
+     * @return BucketDeletionResult holding the number of objects removed and how quickly
      */
-    public void deleteBucket(final String bucketName, final boolean forceDelete) {
+    public BucketDeletionResult deleteBucket(final String bucketName, final boolean forceDelete) {
+        final long start = System.currentTimeMillis();
+        BucketDeletionResult result = newDeletionResult(bucketName);
         if (forceDelete) {
-            forceDeleteS3Bucket(bucketName);
-        } else {
-            s3Client.deleteBucket(bucketName);
+            emptyBucket(result);
         }
+        s3Client.deleteBucket(bucketName);
+        final long elapsedMillis = System.currentTimeMillis() - start;
+        result.setElapsedMillis(elapsedMillis);
+        result.setObjectsPerSecond(result.getObjectsDeleted() * 1000d / Math.max(1, elapsedMillis));
+        LOG.info("Deleted S3 Bucket {} with {} objects in {} ms ({} objects/sec)", bucketName,
+                result.getObjectsDeleted(), elapsedMillis, String.format("%.1f", result.getObjectsPerSecond()));
+        return result;
+    }
+
+    /**
+     * Deletes the provided objects from the bucket using batched multi-object delete requests where supported.
+     *
+     * @param bucketName String name of the bucket holding the objects
+     * @param keys       List of object keys to delete
+     * @return long number of objects deleted
+     */
+    public long deleteObjects(final String bucketName, final List<String> keys) {
+        BucketDeletionResult result = newDeletionResult(bucketName);
+        deleteObjects(result, keys);
+        return result.getObjectsDeleted();
     }
 
     /**
@@ -219,32 +399,153 @@ public class S3FileService {
     }
 
     /**
-     * Force deletes bucket by removing all contents held in the bucket then removing the bucket itself.
+     * Sends the provided {@link GetObjectRequest} constrained to the provided ETag. S3 answers a GET whose ETag
+     * constraint fails with 412, which the client reports as a null object.
      *
-     * @param bucketName String name of bucket to force deletion of
+     * @param getObjectRequest GetObjectRequest to send
+     * @param eTag             String ETag the object must still have
+     * @return S3Object with its metadata and content stream
+     * @throws AlertServiceException if the object no longer has the provided ETag
      */
-    private void forceDeleteS3Bucket(final String bucketName) {
-        // Delete all objects from the bucket. This is sufficient
-        // for un-versioned buckets. For versioned buckets, when you attempt to delete objects, Amazon S3 inserts
-        // delete markers for all objects, but doesn't delete the object versions.
-        // To delete objects from versioned buckets, delete all of the object versions before deleting
-        // the bucket (see below for an example).
-        ObjectListing objectListing = s3Client.listObjects(bucketName);
-        while (true) {
-            for (S3ObjectSummary s3ObjectSummary : objectListing.getObjectSummaries()) {
-                s3Client.deleteObject(bucketName, s3ObjectSummary.getKey());
+    private S3Object retrieveMatchingObject(final GetObjectRequest getObjectRequest, final String eTag) {
+        S3Object s3Object = s3Client.getObject(getObjectRequest.withMatchingETagConstraint(eTag));
+        if (Objects.isNull(s3Object)) {
+            throw new AlertServiceException("S3 object " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey()
+                    + " changed while it was being read, its ETag is no longer " + eTag);
+        }
+        return s3Object;
+    }
+
+    /**
+     * Removes all contents held in the bucket so it can be deleted. Objects are removed in batches of up to
+     * {@code MAX_DELETE_BATCH_SIZE} keys per multi-object delete request, while the next page of the listing is
+     * fetched in the background. If the S3 endpoint does not support multi-object delete, the remaining objects
+     * are removed one request at a time.
+     *
+     * This is sufficient for un-versioned buckets. For versioned buckets, when you attempt to delete objects,
+     * Amazon S3 inserts delete markers for all objects, but doesn't delete the object versions.
+     *
+     * @param result BucketDeletionResult for the bucket to empty, counts are added to it as objects are removed
+     */
+    private void emptyBucket(final BucketDeletionResult result) {
+        final String bucketName = result.getBucketName();
+        ExecutorService listingExecutor = Executors.newSingleThreadExecutor();
+        try {
+            ObjectListing objectListing = s3Client.listObjects(new ListObjectsRequest()
+                    .withBucketName(bucketName)
+                    .withMaxKeys(MAX_DELETE_BATCH_SIZE));
+            while (true) {
+                // Listing pages are driven by a marker, so deleting this page does not affect the next one
+                final ObjectListing currentListing = objectListing;
+                CompletableFuture<ObjectListing> nextListing = currentListing.isTruncated()
+                        ? CompletableFuture.supplyAsync(() -> s3Client.listNextBatchOfObjects(currentListing), listingExecutor)
+                        : null;
+                List<String> keys = currentListing.getObjectSummaries().stream()
+                        .map(S3ObjectSummary::getKey)
+                        .collect(Collectors.toList());
+                deleteObjects(result, keys);
+                if (Objects.isNull(nextListing)) {
+                    break;
+                }
+                objectListing = nextListing.join();
+            }
+        } catch (CompletionException e) {
+            throw new AlertServiceException("Cannot list objects in S3 Bucket " + bucketName, e.getCause());
+        } finally {
+            listingExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Deletes the provided keys from the bucket using as few requests as the S3 endpoint allows.
+     *
+     * @param result BucketDeletionResult for the bucket holding the keys, counts are added to it
+     * @param keys   List of object keys to delete
+     */
+    private void deleteObjects(final BucketDeletionResult result, final List<String> keys) {
+        final String bucketName = result.getBucketName();
+        if (multiObjectDeleteSupported.get()) {
+            for (List<String> batch : CollectionUtil.partition(keys, MAX_DELETE_BATCH_SIZE)) {
+                try {
+                    // Quiet mode only reports keys that could not be deleted which keeps the response small
+                    s3Client.deleteObjects(new DeleteObjectsRequest(bucketName)
+                            .withKeys(batch.toArray(new String[0]))
+                            .withQuiet(true));
+                    addDeleted(result, batch.size(), true);
+                } catch (MultiObjectDeleteException e) {
+                    addDeleted(result, batch.size() - e.getErrors().size(), true);
+                    throw new AlertServiceException("Cannot delete " + e.getErrors().size() + " objects from S3 Bucket "
+                            + bucketName + ", first error: " + e.getErrors().get(0).getMessage(), e);
+                } catch (AmazonS3Exception e) {
+                    if (!isNotImplemented(e)) {
+                        throw e;
+                    }
+                    LOG.warn("S3 endpoint does not support multi-object delete, falling back to single object deletes");
+                    multiObjectDeleteSupported.set(false);
+                    deleteObjects(result, keys.subList(keys.indexOf(batch.get(0)), keys.size()));
+                    return;
+                }
+            }
+        } else {
+            for (String key : keys) {
+                s3Client.deleteObject(bucketName, key);
+                addDeleted(result, 1, false);
             }
-            // If the bucket contains many objects, the listObjects() call
-            // might not return all of the objects in the first listing. Check to
-            // see whether the listing was truncated. If so, retrieve the next page of objects
-            // and delete them.
-            if (objectListing.isTruncated()) {
-                objectListing = s3Client.listNextBatchOfObjects(objectListing);
-            } else {
-                break;
+        }
+    }
+
+    /**
+     * Creates a {@link BucketDeletionResult} for the bucket with zero counts.
+     *
+     * @param bucketName String name of the bucket objects are deleted from
+     * @return BucketDeletionResult with zero counts
+     */
+    private static BucketDeletionResult newDeletionResult(final String bucketName) {
+        BucketDeletionResult result = new BucketDeletionResult();
+        result.setBucketName(bucketName);
+        result.setObjectsDeleted(0L);
+        result.setDeleteRequests(0);
+        result.setMultiObjectDelete(false);
+        return result;
+    }
+
+    /**
+     * Adds the outcome of a delete request to the provided result.
+     *
+     * @param result            BucketDeletionResult to update
+     * @param deleted           int number of objects the request removed
+     * @param multiObjectDelete boolean true if the request was a multi-object delete
+     */
+    private static void addDeleted(final BucketDeletionResult result, final int deleted, final boolean multiObjectDelete) {
+        result.setObjectsDeleted(result.getObjectsDeleted() + deleted);
+        result.setDeleteRequests(result.getDeleteRequests() + 1);
+        result.setMultiObjectDelete(result.getMultiObjectDelete() || multiObjectDelete);
+    }
+
+    /**
+     * Determines if the provided error means the S3 endpoint does not implement the operation that was requested.
+     *
+     * @param e AmazonS3Exception returned by S3
+     * @return boolean true if the operation is not supported, false otherwise
+     */
+    private static boolean isNotImplemented(final AmazonS3Exception e) {
+        return e.getStatusCode() == 501 || e.getStatusCode() == 405 || "NotImplemented".equals(e.getErrorCode());
+    }
+
+    /**
+     * Waits on a bucket deletion, surfacing the underlying error if it failed.
+     *
+     * @param future CompletableFuture of the bucket deletion
+     * @return BucketDeletionResult of the completed deletion
+     */
+    private BucketDeletionResult joinDeletion(final CompletableFuture<BucketDeletionResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new AlertServiceException("Cannot delete S3 Bucket", e.getCause());
         }
-        // Delete the actual bucket
-        s3Client.deleteBucket(bucketName);
     }
 }
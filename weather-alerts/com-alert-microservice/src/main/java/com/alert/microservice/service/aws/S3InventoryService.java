@@ -0,0 +1,256 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.BucketInventory;
+import com.alert.microservice.api.ObjectListingPage;
+import com.alert.microservice.api.ObjectSummary;
+import com.alert.microservice.api.PrefixInventory;
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.util.CommonUtil;
+import com.alert.microservice.util.TransformUtil;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Service to list and take inventory of the objects held in AWS S3 buckets. Listings are paged with continuation
+ * tokens so no bucket is ever read into memory all at once.
+ *
+ * Annotations Explained:
+ *
+ * <ul>
+ *     <li>
+ *         Service = Indicates that an annotated class is a "Service".
+ *     </li>
+ * </ul>
+ */
+@Service
+public class S3InventoryService {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(S3InventoryService.class);
+    // Max number of keys S3 returns in a single listing page
+    private static final int MAX_KEYS = 1000;
+    // Line separator used when streaming objects as newline delimited JSON
+    private static final byte[] NEW_LINE = "\n".getBytes();
+    // Final variables that are injected in the service constructor
+    private final AmazonS3 s3Client;
+    private final S3Properties s3Properties;
+
+    /**
+     * Constructor for this {@link S3InventoryService}
+     *
+     * @param s3Client     Provides an interface for accessing the Amazon S3 web service.
+     * @param s3Properties S3Properties object to hold S3 related information
+     */
+    public S3InventoryService(AmazonS3 s3Client, S3Properties s3Properties) {
+        this.s3Client = s3Client;
+        this.s3Properties = s3Properties;
+    }
+
+    /**
+     * Lists a single page of objects from the bucket. Pass the returned continuation token back in to retrieve the
+     * next page.
+     *
+     * @param bucketName        String name of the bucket to list
+     * @param prefix            String prefix to restrict keys to, may be null
+     * @param continuationToken String token from the previous page, null for the first page
+     * @param maxKeys           int max number of objects in the page, capped at 1000 by S3
+     * @return ObjectListingPage holding the objects and the token for the next page
+     */
+    public ObjectListingPage listObjects(final String bucketName, final String prefix, final String continuationToken, final int maxKeys) {
+        CommonUtil.ifEmptyThrowException(bucketName, new AlertServiceException("Cannot list objects of a null/empty bucket"));
+        ListObjectsV2Result result = s3Client.listObjectsV2(new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withContinuationToken(continuationToken)
+                .withMaxKeys(Math.max(1, Math.min(maxKeys, MAX_KEYS))));
+        ObjectListingPage objectListingPage = new ObjectListingPage();
+        objectListingPage.setBucketName(bucketName);
+        objectListingPage.setPrefix(prefix);
+        objectListingPage.setObjects(result.getObjectSummaries().stream()
+                .map(S3InventoryService::toObjectSummary)
+                .collect(Collectors.toList()));
+        objectListingPage.setNextContinuationToken(result.getNextContinuationToken());
+        objectListingPage.setTruncated(result.isTruncated());
+        return objectListingPage;
+    }
+
+    /**
+     * Writes every object in the bucket to the output stream as newline delimited JSON, one page at a time, so the
+     * first objects reach the client while later pages are still being listed. The stream runs on the MVC async
+     * executor and is bounded by {@code spring.mvc.async.request-timeout}, when the request times out the task is
+     * interrupted and no further pages are listed.
+     *
+     * @param bucketName   String name of the bucket to list
+     * @param prefix       String prefix to restrict keys to, may be null
+     * @param outputStream OutputStream to write the objects to
+     * @return long number of objects written
+     * @throws IOException if writing to the output stream fails or the stream was interrupted
+     */
+    public long streamObjects(final String bucketName, final String prefix, final OutputStream outputStream) throws IOException {
+        final ObjectWriter writer = TransformUtil.mapper().writerFor(ObjectSummary.class);
+        long written = 0;
+        String continuationToken = null;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Streaming objects of bucket " + bucketName + " was interrupted after " + written + " objects");
+            }
+            ObjectListingPage page = listObjects(bucketName, prefix, continuationToken, MAX_KEYS);
+            for (ObjectSummary objectSummary : page.getObjects()) {
+                outputStream.write(writer.writeValueAsBytes(objectSummary));
+                outputStream.write(NEW_LINE);
+                written++;
+            }
+            outputStream.flush();
+            continuationToken = page.getNextContinuationToken();
+        } while (CommonUtil.isNotEmpty(continuationToken));
+        return written;
+    }
+
+    /**
+     * Builds an inventory of the bucket with object counts and byte totals per key prefix. The prefixes one level
+     * below the provided prefix are found with a delimited listing and then each one is listed in full in parallel,
+     * up to the configured {@code inventoryConcurrency} at a time. Objects directly under the provided prefix are
+     * totalled under the provided prefix itself.
+     *
+     * @param bucketName String name of the bucket to take inventory of
+     * @param prefix     String prefix to restrict keys to, may be null
+     * @param delimiter  String delimiter that separates levels of the key, ex. "/"
+     * @return BucketInventory with the totals for each prefix and the bucket as a whole
+     */
+    public BucketInventory inventory(final String bucketName, final String prefix, final String delimiter) {
+        CommonUtil.ifEmptyThrowException(bucketName, new AlertServiceException("Cannot take inventory of a null/empty bucket"));
+        CommonUtil.ifEmptyThrowException(delimiter, new AlertServiceException("Cannot take inventory without a delimiter"));
+        final long start = System.currentTimeMillis();
+        final String basePrefix = CommonUtil.defaultIfNullOrEmpty(prefix, "");
+
+        // Find the next level of prefixes while totalling the objects that sit directly under the base prefix
+        PrefixInventory baseInventory = emptyPrefixInventory(basePrefix);
+        List<String> commonPrefixes = new ArrayList<>();
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(basePrefix)
+                .withDelimiter(delimiter)
+                .withMaxKeys(MAX_KEYS);
+        ListObjectsV2Result result;
+        do {
+            result = s3Client.listObjectsV2(request);
+            commonPrefixes.addAll(result.getCommonPrefixes());
+            result.getObjectSummaries().forEach(summary -> addObject(baseInventory, summary));
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+
+        List<PrefixInventory> prefixInventories = new ArrayList<>();
+        if (baseInventory.getObjectCount() > 0) {
+            prefixInventories.add(baseInventory);
+        }
+        if (!commonPrefixes.isEmpty()) {
+            final int concurrency = Math.max(1, Math.min(commonPrefixes.size(), s3Properties.getInventoryConcurrency()));
+            ExecutorService listingExecutor = Executors.newFixedThreadPool(concurrency);
+            try {
+                List<CompletableFuture<PrefixInventory>> futures = commonPrefixes.stream()
+                        .map(commonPrefix -> CompletableFuture.supplyAsync(() -> prefixInventory(bucketName, commonPrefix), listingExecutor))
+                        .collect(Collectors.toList());
+                for (CompletableFuture<PrefixInventory> future : futures) {
+                    prefixInventories.add(future.join());
+                }
+            } catch (CompletionException e) {
+                throw new AlertServiceException("Cannot take inventory of S3 Bucket " + bucketName, e.getCause());
+            } finally {
+                listingExecutor.shutdown();
+            }
+        }
+        prefixInventories.sort(Comparator.comparing(PrefixInventory::getPrefix));
+
+        BucketInventory bucketInventory = new BucketInventory();
+        bucketInventory.setBucketName(bucketName);
+        bucketInventory.setPrefix(basePrefix);
+        bucketInventory.setPrefixes(prefixInventories);
+        bucketInventory.setObjectCount(prefixInventories.stream().mapToLong(PrefixInventory::getObjectCount).sum());
+        bucketInventory.setTotalBytes(prefixInventories.stream().mapToLong(PrefixInventory::getTotalBytes).sum());
+        bucketInventory.setElapsedMillis(System.currentTimeMillis() - start);
+        LOG.debug("Inventory of {}/{} found {} objects across {} prefixes in {} ms", bucketName, basePrefix,
+                bucketInventory.getObjectCount(), prefixInventories.size(), bucketInventory.getElapsedMillis());
+        return bucketInventory;
+    }
+
+    /**
+     * Lists every object under the prefix totalling their count and size.
+     *
+     * @param bucketName String name of the bucket to list
+     * @param prefix     String prefix to total
+     * @return PrefixInventory with the totals for the prefix
+     */
+    private PrefixInventory prefixInventory(final String bucketName, final String prefix) {
+        PrefixInventory prefixInventory = emptyPrefixInventory(prefix);
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMaxKeys(MAX_KEYS);
+        ListObjectsV2Result result;
+        do {
+            result = s3Client.listObjectsV2(request);
+            result.getObjectSummaries().forEach(summary -> addObject(prefixInventory, summary));
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+        return prefixInventory;
+    }
+
+    /**
+     * Creates a {@link PrefixInventory} with zero totals.
+     *
+     * @param prefix String prefix the totals are for
+     * @return PrefixInventory with zero totals
+     */
+    private static PrefixInventory emptyPrefixInventory(final String prefix) {
+        PrefixInventory prefixInventory = new PrefixInventory();
+        prefixInventory.setPrefix(prefix);
+        prefixInventory.setObjectCount(0L);
+        prefixInventory.setTotalBytes(0L);
+        return prefixInventory;
+    }
+
+    /**
+     * Adds the provided object to the totals of the prefix inventory.
+     *
+     * @param prefixInventory PrefixInventory to add to
+     * @param summary         S3ObjectSummary of the object
+     */
+    private static void addObject(final PrefixInventory prefixInventory, final S3ObjectSummary summary) {
+        prefixInventory.setObjectCount(prefixInventory.getObjectCount() + 1);
+        prefixInventory.setTotalBytes(prefixInventory.getTotalBytes() + summary.getSize());
+    }
+
+    /**
+     * Converts the SDK's object summary into the {@link ObjectSummary} returned by this API.
+     *
+     * @param summary S3ObjectSummary from a listing
+     * @return ObjectSummary holding the same information
+     */
+    private static ObjectSummary toObjectSummary(final S3ObjectSummary summary) {
+        ObjectSummary objectSummary = new ObjectSummary();
+        objectSummary.setKey(summary.getKey());
+        objectSummary.setSize(summary.getSize());
+        objectSummary.setLastModified(summary.getLastModified());
+        objectSummary.setETag(summary.getETag());
+        objectSummary.setStorageClass(summary.getStorageClass());
+        return objectSummary;
+    }
+}
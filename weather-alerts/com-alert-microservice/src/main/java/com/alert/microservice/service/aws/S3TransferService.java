@@ -0,0 +1,205 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.UploadProgress;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.util.CommonUtil;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferProgress;
+import com.amazonaws.services.s3.transfer.Upload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Service to perform large AWS S3 uploads. Uploaded files are spooled to disk, which the servlet container has
+ * usually done already, so the S3 SDK knows their length up front and the {@link TransferManager} can send
+ * multipart upload parts in parallel. Uploads run in the background and their progress can be looked up by ID.
+ *
+ * Annotations Explained:
+ *
+ * <ul>
+ *     <li>
+ *         Service = Indicates that an annotated class is a "Service".
+ *     </li>
+ * </ul>
+ */
+@Service
+public class S3TransferService {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(S3TransferService.class);
+    // Max number of uploads that are remembered for progress lookups
+    private static final int MAX_TRACKED_UPLOADS = 1000;
+    // Final variables that are injected in the service constructor
+    private final TransferManager transferManager;
+    private final S3FileService s3FileService;
+    // Uploads by ID, the oldest are forgotten once the limit is reached
+    private final Map<String, TrackedUpload> uploads = Collections.synchronizedMap(
+            new LinkedHashMap<String, TrackedUpload>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TrackedUpload> eldest) {
+                    return size() > MAX_TRACKED_UPLOADS;
+                }
+            });
+
+    /**
+     * Constructor for this {@link S3TransferService}
+     *
+     * @param transferManager Manages parallel multipart uploads to S3
+     * @param s3FileService   Service to perform AWS S3 related operations
+     */
+    public S3TransferService(TransferManager transferManager, S3FileService s3FileService) {
+        this.transferManager = transferManager;
+        this.s3FileService = s3FileService;
+    }
+
+    /**
+     * Starts uploading the provided {@link MultipartFile} to the specified S3 bucket in the background. The file is
+     * moved to a temporary file which is removed once the upload finishes, whether it succeeds or not.
+     *
+     * @param multipartFile A representation of an uploaded file received in a multipart request.
+     * @param bucketName    String S3 bucket to put file into
+     * @return UploadProgress of the upload that was started, its ID can be used to look up progress later
+     * @throws IOException if the file cannot be spooled to disk
+     */
+    public UploadProgress uploadLargeFile(final MultipartFile multipartFile, final String bucketName) throws IOException {
+        CommonUtil.ifEmptyThrowException(multipartFile.getOriginalFilename(), new AlertServiceException("Cannot upload a file without a name"));
+        final File spooledFile = File.createTempFile("s3-upload-", ".tmp");
+        try {
+            // Moves the file when the container already spooled it to disk, otherwise writes it out
+            multipartFile.transferTo(spooledFile);
+            s3FileService.createBucket(bucketName);
+            return track(transferManager.upload(bucketName, multipartFile.getOriginalFilename(), spooledFile),
+                    bucketName, multipartFile.getOriginalFilename(), spooledFile);
+        } catch (IOException | RuntimeException e) {
+            deleteSpooledFile(spooledFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the progress of a previously started upload.
+     *
+     * @param uploadId String ID of the upload
+     * @return UploadProgress of the upload
+     */
+    public UploadProgress progress(final String uploadId) {
+        TrackedUpload trackedUpload = uploads.get(uploadId);
+        CommonUtil.ifNullThrowException(trackedUpload, new AlertServiceException("No upload found with ID " + uploadId));
+        return trackedUpload.toUploadProgress();
+    }
+
+    /**
+     * Remembers the upload so its progress can be looked up and cleans up the spooled file once it finishes.
+     *
+     * @param upload      Upload that was started
+     * @param bucketName  String S3 bucket the file is put into
+     * @param bucketKey   String S3 key the file is put under
+     * @param spooledFile File the upload reads from
+     * @return UploadProgress of the upload
+     */
+    private UploadProgress track(final Upload upload, final String bucketName, final String bucketKey, final File spooledFile) {
+        TrackedUpload trackedUpload = new TrackedUpload(UUID.randomUUID().toString(), bucketName, bucketKey, upload);
+        uploads.put(trackedUpload.id, trackedUpload);
+        upload.addProgressListener((ProgressListener) progressEvent -> {
+            ProgressEventType eventType = progressEvent.getEventType();
+            if (eventType == ProgressEventType.TRANSFER_COMPLETED_EVENT
+                    || eventType == ProgressEventType.TRANSFER_FAILED_EVENT
+                    || eventType == ProgressEventType.TRANSFER_CANCELED_EVENT) {
+                trackedUpload.finish();
+                deleteSpooledFile(spooledFile);
+                UploadProgress uploadProgress = trackedUpload.toUploadProgress();
+                LOG.info("Upload {} to {}/{} finished as {}, {} bytes in {} ms ({} bytes/sec)", uploadProgress.getId(),
+                        bucketName, bucketKey, eventType, uploadProgress.getBytesTransferred(),
+                        uploadProgress.getElapsedMillis(), String.format("%.0f", uploadProgress.getBytesPerSecond()));
+            }
+        });
+        // The upload may have finished before the listener was added, in which case no event will fire
+        if (upload.isDone()) {
+            trackedUpload.finish();
+            deleteSpooledFile(spooledFile);
+        }
+        return trackedUpload.toUploadProgress();
+    }
+
+    /**
+     * Removes the temporary file an upload was read from.
+     *
+     * @param spooledFile File to remove
+     */
+    private static void deleteSpooledFile(final File spooledFile) {
+        if (spooledFile.exists() && !spooledFile.delete()) {
+            LOG.warn("Unable to delete spooled upload file {}", spooledFile);
+        }
+    }
+
+    /**
+     * An upload along with what it was for, when it started and when it finished.
+     */
+    private static class TrackedUpload {
+        private final String id;
+        private final String bucketName;
+        private final String bucketKey;
+        private final Upload upload;
+        private final long startMillis = System.currentTimeMillis();
+        // Time the upload finished, completed, failed or canceled, or -1 while it is running
+        private volatile long endMillis = -1;
+
+        /**
+         * Constructor for a {@link TrackedUpload}
+         *
+         * @param id         String ID of the upload
+         * @param bucketName String S3 bucket the file is put into
+         * @param bucketKey  String S3 key the file is put under
+         * @param upload     Upload to track
+         */
+        TrackedUpload(String id, String bucketName, String bucketKey, Upload upload) {
+            this.id = id;
+            this.bucketName = bucketName;
+            this.bucketKey = bucketKey;
+            this.upload = upload;
+        }
+
+        /**
+         * Records when the upload finished, only the first call counts so the transfer rate of a finished upload stays
+         * the same for as long as it is tracked.
+         */
+        synchronized void finish() {
+            if (endMillis < 0) {
+                endMillis = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * Takes a snapshot of the upload's progress, the elapsed time stops once the upload finished.
+         *
+         * @return UploadProgress of the upload
+         */
+        UploadProgress toUploadProgress() {
+            TransferProgress transferProgress = upload.getProgress();
+            final long finishedMillis = endMillis;
+            final long elapsedMillis = (finishedMillis < 0 ? System.currentTimeMillis() : finishedMillis) - startMillis;
+            UploadProgress uploadProgress = new UploadProgress();
+            uploadProgress.setId(id);
+            uploadProgress.setBucketName(bucketName);
+            uploadProgress.setBucketKey(bucketKey);
+            uploadProgress.setState(Objects.toString(upload.getState()));
+            uploadProgress.setBytesTransferred(transferProgress.getBytesTransferred());
+            uploadProgress.setTotalBytes(transferProgress.getTotalBytesToTransfer());
+            uploadProgress.setPercentTransferred(transferProgress.getPercentTransferred());
+            uploadProgress.setElapsedMillis(elapsedMillis);
+            uploadProgress.setBytesPerSecond(transferProgress.getBytesTransferred() * 1000d / Math.max(1, elapsedMillis));
+            return uploadProgress;
+        }
+    }
+}
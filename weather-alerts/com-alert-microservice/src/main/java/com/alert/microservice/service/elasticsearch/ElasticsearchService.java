@@ -4,36 +4,56 @@ import com.alert.microservice.api.WeatherAlert;
 import com.alert.microservice.config.weather.WeatherConstants;
 import com.alert.microservice.service.ToggleComponent;
 import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.service.exception.SearchRejectedException;
 import com.alert.microservice.util.CollectionUtil;
 import com.alert.microservice.util.CommonUtil;
 import com.alert.microservice.util.TransformUtil;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.FuzzyQueryBuilder;
 import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -49,6 +69,13 @@ import java.util.stream.Collectors;
  *      Value = Annotation at the field or method/constructor parameter level
  *      that indicates a default value expression for the affected argument.
  *  </li>
+ *  <li>
+ *      PostConstruct = Used on a method that needs to be executed after dependency injection is done to perform any
+ *      initialization.
+ *  </li>
+ *  <li>
+ *      PreDestroy = Used on a method that is called as the application context closes to release resources.
+ *  </li>
  * </ul>
  */
 @Service
@@ -58,11 +85,29 @@ public class ElasticsearchService extends ToggleComponent  {
     // Constant for Elasticsearch type, this will be removed in future ES versions but for now is a necessary evil
     // that we have to deal with
     private static final String DEFAULT_ES_TYPE = "_doc";
+    // Number of results returned by typed searches, matches the Elasticsearch default
+    public static final int DEFAULT_SEARCH_SIZE = 10;
+    // Max number of requests sent in a single bulk call
+    private static final int BULK_BATCH_SIZE = 1000;
 
     // Value from properties to dictate if Elasticsearch is enabled or not
     @Value(WeatherConstants.ENABLE_ELASTICSEARCH_PROPERTY)
     private Boolean elasticsearchIsEnabled;
 
+    // Upper bound on the number of asynchronous searches that can be waiting on Elasticsearch at once
+    @Value(WeatherConstants.ES_MAX_IN_FLIGHT_SEARCHES_PROPERTY)
+    private Integer maxInFlightSearches;
+
+    // Time in milliseconds Elasticsearch is given to run a search before it returns what it has found so far
+    @Value(WeatherConstants.ES_SEARCH_TIMEOUT_PROPERTY)
+    private Long searchTimeoutMillis;
+
+    // Permits for asynchronous searches, initialized once the max in-flight value has been injected
+    private Semaphore inFlightSearches;
+
+    // Reads asynchronous search responses so the Elasticsearch client's I/O threads are never busy deserializing hits
+    private ExecutorService responseExecutor;
+
     // Final variable that is injected in the service constructor
     private final RestHighLevelClient client;
 
@@ -75,6 +120,41 @@ public class ElasticsearchService extends ToggleComponent  {
         this.client = client;
     }
 
+    /**
+     * Sets up the permits used to bound the number of asynchronous searches in-flight against Elasticsearch and the
+     * pool their responses are read on.
+     */
+    @PostConstruct
+    void init() {
+        inFlightSearches = new Semaphore(maxInFlightSearches);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("es-response-");
+        threadFactory.setDaemon(true);
+        responseExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), threadFactory);
+    }
+
+    /**
+     * Stops the pool asynchronous search responses are read on.
+     */
+    @PreDestroy
+    void shutdown() {
+        responseExecutor.shutdownNow();
+    }
+
+    /**
+     * Attempts to execute what is held in the provided {@link BulkRequest} against Elasticsearch.
+     *
+     * @param bulkRequest holds a batch of index, update or delete requests
+     * @return BulkResponse Elasticsearch response of a bulk operation
+     */
+    private BulkResponse bulk(final BulkRequest bulkRequest) {
+        try {
+            return client.bulk(bulkRequest);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new AlertServiceException("Cannot Bulk Update Elasticsearch Data", e);
+        }
+    }
+
     /**
      * Performs an Elasticsearch query using data contained in the provided entity against the Elasticsearch index
      * specified. This will take out the work involved with parsing out data that is held in a typical Elasticsearch
@@ -106,6 +186,69 @@ public class ElasticsearchService extends ToggleComponent  {
         return retrieveEntityFromResponse(client.search(buildSearchRequest(QueryBuilders.matchAllQuery(), index, size)), clazz);
     }
 
+    /**
+     * Asynchronous flavor of {@link #search(Object, String, boolean, Class)}. The request is handed off to the
+     * Elasticsearch client's I/O threads so the calling thread is not blocked while waiting on a response, the hits
+     * are then read on a worker pool. Cancelling the returned future gives up on the search.
+     *
+     * @param entity       T entity to process and extract search parameters from
+     * @param index        String Elasticsearch index to query
+     * @param isFuzzyQuery boolean to dictate if we should use fuzzy matching or not
+     * @param clazz        Class of type T to dictate how the data is processed
+     * @param fields       Collection of field names to include from each document source, if null or empty the whole
+     *                     source is returned
+     * @param <T>          Generic Type
+     * @return CompletableFuture that completes with the response data pulled from an Elasticsearch {@link SearchResponse}
+     */
+    public <T> CompletableFuture<Collection<T>> searchAsync(final T entity,
+                                                            final String index,
+                                                            final boolean isFuzzyQuery,
+                                                            final Class<T> clazz,
+                                                            final Collection<String> fields) {
+        return readAsync(searchAsync(buildSearchRequest(buildQuery(entity, isFuzzyQuery), index, DEFAULT_SEARCH_SIZE, fields)),
+                searchResponse -> retrieveEntityFromResponse(searchResponse, clazz));
+    }
+
+    /**
+     * Asynchronous flavor of {@link #selectAll(String, int, Class)}.
+     *
+     * @param index  String Elasticsearch index to query
+     * @param size   int the number of results to return
+     * @param clazz  Class to help convert the Elasticsearch response data to an object.
+     * @param fields Collection of field names to include from each document source, if null or empty the whole
+     *               source is returned
+     * @param <T>    Generic Type
+     * @return CompletableFuture that completes with the index data parsed to type T
+     */
+    public <T> CompletableFuture<Collection<T>> selectAllAsync(final String index,
+                                                               final int size,
+                                                               final Class<T> clazz,
+                                                               final Collection<String> fields) {
+        return readAsync(searchAsync(buildSearchRequest(QueryBuilders.matchAllQuery(), index, size, fields)),
+                searchResponse -> retrieveEntityFromResponse(searchResponse, clazz));
+    }
+
+    /**
+     * Asynchronously runs the provided aggregations over every document in the index. No hits are returned
+     * (size = 0) so only the aggregation results are sent back from Elasticsearch. The returned future completes on
+     * the worker pool so dependent stages do not run on the Elasticsearch client's I/O threads.
+     *
+     * @param index        String Elasticsearch index to aggregate over
+     * @param aggregations Collection of {@link AggregationBuilder} to compute
+     * @return CompletableFuture that completes with the {@link SearchResponse} holding the aggregation results
+     */
+    public CompletableFuture<SearchResponse> aggregateAsync(final String index, final Collection<AggregationBuilder> aggregations) {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(QueryBuilders.matchAllQuery())
+                .size(0)
+                .timeout(TimeValue.timeValueMillis(searchTimeoutMillis));
+        aggregations.forEach(searchSourceBuilder::aggregation);
+        SearchRequest searchRequest = Requests.searchRequest(index).source(searchSourceBuilder);
+        // Log out query if in debug mode then perform the request
+        LOG.debug("Elasticsearch Aggregation Request {}", searchRequest);
+        return readAsync(searchAsync(searchRequest), Function.identity());
+    }
+
     /**
      * Constructs a {@link IndexRequest} under the hood and indexes it to the specified index.
      *
@@ -119,8 +262,66 @@ public class ElasticsearchService extends ToggleComponent  {
         return index(toIndexRequest(entity, id, index));
     }
 
+    /**
+     * Indexes every provided entity to the specified index using bulk {@link IndexRequest}s, replacing any existing
+     * document with the same id. Requests are sent in batches of {@code BULK_BATCH_SIZE} and each batch waits for
+     * the next index refresh, so once this returns the documents are visible to searches and aggregations.
+     *
+     * @param index      String Elasticsearch index to index the documents into
+     * @param entities   Collection of objects to index to Elasticsearch
+     * @param idFunction Function to extract the document id from an entity, a null id generates one
+     * @param <T>        Generic Type T
+     * @return int number of documents that were successfully indexed
+     */
+    public <T> int bulkIndex(final String index, final Collection<T> entities, final Function<T, String> idFunction) {
+        int indexed = 0;
+        for (List<T> batch : CollectionUtil.partition(CollectionUtil.removeNulls(entities), BULK_BATCH_SIZE)) {
+            BulkRequest bulkRequest = Requests.bulkRequest().setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+            batch.forEach(entity -> bulkRequest.add(toIndexRequest(entity, idFunction.apply(entity), index)));
+            BulkResponse bulkResponse = bulk(bulkRequest);
+            for (BulkItemResponse item : bulkResponse.getItems()) {
+                if (item.isFailed()) {
+                    LOG.warn("Elasticsearch index of {} failed: {}", item.getId(), item.getFailureMessage());
+                } else {
+                    indexed++;
+                }
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Applies the same partial document to every provided id using bulk {@link UpdateRequest}s. Only the fields in the
+     * partial document are sent, the rest of each document is left untouched. Requests are sent in batches of
+     * {@code BULK_BATCH_SIZE} so a large number of ids does not build one huge request body.
+     *
+     * @param index           String Elasticsearch index holding the documents
+     * @param ids             Collection of document ids to update
+     * @param partialDocument Map of field name to value to merge into each document
+     * @return int number of documents that were successfully updated
+     */
+    public int bulkPartialUpdate(final String index, final Collection<String> ids, final Map<String, Object> partialDocument) {
+        int updated = 0;
+        for (List<String> batch : CollectionUtil.partition(CollectionUtil.removeNulls(ids), BULK_BATCH_SIZE)) {
+            BulkRequest bulkRequest = Requests.bulkRequest();
+            batch.forEach(id -> bulkRequest.add(new UpdateRequest(index, DEFAULT_ES_TYPE, id).doc(partialDocument)));
+            BulkResponse bulkResponse = bulk(bulkRequest);
+            for (BulkItemResponse item : bulkResponse.getItems()) {
+                if (item.isFailed()) {
+                    LOG.warn("Elasticsearch partial update of {} failed: {}", item.getId(), item.getFailureMessage());
+                } else {
+                    updated++;
+                }
+            }
+        }
+        return updated;
+    }
+
     /**
      * Parses an Elasticsearch {@link SearchResponse} into the provided Collection of {@link Class} objects.
+     * Each hit is decoded straight from its source bytes using a shared reader rather than building an
+     * intermediate Map per hit. Hits without a source, ex. when the index has _source disabled, cannot be decoded and
+     * are left out with a warning.
      *
      * @param searchResponse {@link SearchResponse} from Elasticsearch
      * @param clazz          Class of type T to dictate how the data is processed
@@ -128,11 +329,44 @@ public class ElasticsearchService extends ToggleComponent  {
      * @return Collection of response data pulled from an Elasticsearch {@link SearchResponse}
      */
     private <T> Collection<T> retrieveEntityFromResponse(final SearchResponse searchResponse, final Class<T> clazz) {
+        final ObjectReader reader = TransformUtil.reader(clazz);
         return CollectionUtil.streamOn(searchResponse.getHits().iterator())
-                .map(hit -> TransformUtil.convert(hit.getSourceAsMap(), clazz))
+                .filter(this::hasSource)
+                .map(hit -> this.<T>readSource(hit, reader))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Checks if the provided {@link SearchHit} has a source to decode, logging the hit if it does not.
+     *
+     * @param hit SearchHit to check
+     * @return boolean true if the hit has a source, false otherwise
+     */
+    private boolean hasSource(final SearchHit hit) {
+        if (hit.hasSource()) {
+            return true;
+        }
+        LOG.warn("Elasticsearch hit {} in index {} has no source, leaving it out of the results", hit.getId(), hit.getIndex());
+        return false;
+    }
+
+    /**
+     * Deserializes the source of the provided {@link SearchHit} using the provided reader.
+     *
+     * @param hit    SearchHit to read the source bytes from
+     * @param reader ObjectReader bound to type T
+     * @param <T>    Generic Type
+     * @return T built from the hit source
+     */
+    private <T> T readSource(final SearchHit hit, final ObjectReader reader) {
+        BytesRef source = hit.getSourceRef().toBytesRef();
+        try {
+            return reader.readValue(source.bytes, source.offset, source.length);
+        } catch (IOException e) {
+            throw new AlertServiceException("Cannot Read Elasticsearch Hit " + hit.getId(), e);
+        }
+    }
+
     /**
      * Attempts to index what is held in the provided {@link IndexRequest} to Elasticsearch.
      *
@@ -160,6 +394,82 @@ public class ElasticsearchService extends ToggleComponent  {
      * @throws IOException
      */
     private <T> SearchResponse search(final T entity, final String index, final boolean isFuzzyQuery) throws IOException {
+        // Create search request to Elasticsearch and perform the request
+        // Note, with newer versions of ES, i.e. 7.0, you will need to append a RequestOptions param to the request
+        // Ex. client.search(searchRequest, RequestOptions.DEFAULT);
+        return client.search(buildSearchRequest(buildQuery(entity, isFuzzyQuery), index));
+    }
+
+    /**
+     * Sends the provided {@link SearchRequest} to Elasticsearch without blocking the calling thread. If the number of
+     * searches already waiting on Elasticsearch has reached the configured limit the returned future is failed
+     * immediately with a {@link SearchRejectedException} instead of queueing more work onto the cluster.
+     * <p>
+     * The permit is handed back as soon as the future is done, including when it is cancelled. The 6.2 client cannot
+     * abort a request that has been sent, so a cancelled search may still finish on the cluster, but no later than
+     * the timeout set on its source.
+     *
+     * @param searchRequest SearchRequest to execute
+     * @return CompletableFuture that completes with the {@link SearchResponse} from Elasticsearch
+     */
+    private CompletableFuture<SearchResponse> searchAsync(final SearchRequest searchRequest) {
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        if (!inFlightSearches.tryAcquire()) {
+            future.completeExceptionally(new SearchRejectedException("Too many Elasticsearch searches in-flight, limit is " + maxInFlightSearches));
+            return future;
+        }
+        future.whenComplete((searchResponse, throwable) -> inFlightSearches.release());
+        try {
+            sendSearch(searchRequest, ActionListener.wrap(
+                    searchResponse -> {
+                        if (searchResponse.isTimedOut()) {
+                            LOG.warn("Elasticsearch search timed out, returning partial results {}", searchRequest);
+                        }
+                        future.complete(searchResponse);
+                    },
+                    exception -> future.completeExceptionally(new AlertServiceException("Cannot Search Elasticsearch Data", exception))));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Hands the provided {@link SearchRequest} to the Elasticsearch client's I/O threads.
+     *
+     * @param searchRequest SearchRequest to execute
+     * @param listener      ActionListener notified on an I/O thread once Elasticsearch responds
+     */
+    void sendSearch(final SearchRequest searchRequest, final ActionListener<SearchResponse> listener) {
+        client.searchAsync(searchRequest, listener);
+    }
+
+    /**
+     * Applies the provided reader to the response of an asynchronous search on the worker pool. Cancelling the
+     * returned future also cancels the search so its permit is handed back right away.
+     *
+     * @param search CompletableFuture of the search
+     * @param reader Function to turn the {@link SearchResponse} into the result
+     * @param <R>    Generic Type of the result
+     * @return CompletableFuture that completes with the result of the reader
+     */
+    private <R> CompletableFuture<R> readAsync(final CompletableFuture<SearchResponse> search,
+                                               final Function<SearchResponse, R> reader) {
+        CompletableFuture<R> result = search.thenApplyAsync(reader, responseExecutor);
+        // No-op unless the result was cancelled before the search completed
+        result.whenComplete((value, throwable) -> search.cancel(false));
+        return result;
+    }
+
+    /**
+     * Builds a boolean query from the non-null fields held in the provided entity.
+     *
+     * @param entity       T entity to process and extract search parameters from
+     * @param isFuzzyQuery boolean to dictate if we should use fuzzy matching or not
+     * @param <T>          Generic Type
+     * @return QueryBuilder that must match every populated field in the entity
+     */
+    private <T> QueryBuilder buildQuery(final T entity, final boolean isFuzzyQuery) {
         // Create a boolean query base to put in our query values
         BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
         // Process entity and put match or fuzzy queries into the bool query
@@ -170,10 +480,7 @@ public class ElasticsearchService extends ToggleComponent  {
         } else {
             processEntityMap(entity, (entry) -> boolQueryBuilder.must(new MatchQueryBuilder(entry.getKey(), entry.getValue())));
         }
-        // Create search request to Elasticsearch and perform the request
-        // Note, with newer versions of ES, i.e. 7.0, you will need to append a RequestOptions param to the request
-        // Ex. client.search(searchRequest, RequestOptions.DEFAULT);
-        return client.search(buildSearchRequest(boolQueryBuilder, index));
+        return boolQueryBuilder;
     }
 
     /**
@@ -237,7 +544,7 @@ public class ElasticsearchService extends ToggleComponent  {
     private SearchRequest buildSearchRequest(final QueryBuilder queryBuilder, final String index) {
         // Build search request using the provided query and index
         // defaulting to 10 results as Elasticsearch would do
-        return buildSearchRequest(queryBuilder, index, 10);
+        return buildSearchRequest(queryBuilder, index, DEFAULT_SEARCH_SIZE);
     }
 
     /**
@@ -250,10 +557,33 @@ public class ElasticsearchService extends ToggleComponent  {
      * @return SearchRequest built from the provided parameters.
      */
     private SearchRequest buildSearchRequest(final QueryBuilder queryBuilder, final String index, final int size) {
-        // Build search request using the provided query and index
-        SearchRequest searchRequest = Requests.searchRequest(index).source(new SearchSourceBuilder()
+        return buildSearchRequest(queryBuilder, index, size, null);
+    }
+
+    /**
+     * Helper method to create a {@link SearchRequest} from the {@link QueryBuilder} against the
+     * Elasticsearch index provided to the method, only returning the requested fields of each document.
+     *
+     * @param queryBuilder parent class for other Elasticsearch queries
+     * @param index        String ES index name to search
+     * @param size         size of results to return
+     * @param fields       Collection of source fields to include, if null or empty the whole source is returned
+     * @return SearchRequest built from the provided parameters.
+     */
+    private SearchRequest buildSearchRequest(final QueryBuilder queryBuilder,
+                                             final String index,
+                                             final int size,
+                                             final Collection<String> fields) {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
                 .query(queryBuilder)
-                .size(size));
+                .size(size)
+                .timeout(TimeValue.timeValueMillis(searchTimeoutMillis));
+        // Only pull back the requested fields so less data is sent over the wire and deserialized
+        if (CollectionUtil.isNotEmpty(fields)) {
+            searchSourceBuilder.fetchSource(fields.toArray(new String[0]), null);
+        }
+        // Build search request using the provided query and index
+        SearchRequest searchRequest = Requests.searchRequest(index).source(searchSourceBuilder);
         // Log out query if in debug mode then return the search request
         LOG.debug("Elasticsearch Search Request {}", searchRequest);
         return searchRequest;
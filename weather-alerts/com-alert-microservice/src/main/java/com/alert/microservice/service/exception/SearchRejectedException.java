@@ -0,0 +1,21 @@
+package com.alert.microservice.service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Runtime Exception that is thrown when a search is turned away because too many searches are already waiting on
+ * Elasticsearch. Clients receive a 503 so they know to back off and retry rather than treating it as a failure.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SearchRejectedException extends AlertServiceException {
+    /**
+     * Constructs a new runtime exception with the specified detail message.
+     *
+     * @param message the detail message. The detail message is saved for
+     *                later retrieval by the {@link #getMessage()} method.
+     */
+    public SearchRejectedException(String message) {
+        super(message);
+    }
+}
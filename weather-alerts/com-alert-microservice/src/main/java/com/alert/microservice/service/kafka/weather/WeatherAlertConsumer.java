@@ -3,7 +3,7 @@ package com.alert.microservice.service.kafka.weather;
 import com.alert.microservice.api.WeatherAlert;
 import com.alert.microservice.config.weather.WeatherConstants;
 import com.alert.microservice.service.elasticsearch.ElasticsearchService;
-import org.elasticsearch.action.index.IndexResponse;
+import com.alert.microservice.service.weather.WeatherAlertService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,6 +11,10 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
 /**
  * Kafka Consumer that handles consuming and processing of Kafka {@link WeatherAlert} messages
  *
@@ -51,37 +55,48 @@ public class WeatherAlertConsumer {
 
     // Final variables that are injected in the service constructor
     private final ElasticsearchService elasticsearchService;
+    private final WeatherAlertService weatherAlertService;
 
     /**
      * Constructor for this {@link WeatherAlertConsumer}
      *
      * @param elasticsearchService service class that serves up ES related functionality
+     * @param weatherAlertService  service class whose statistics are invalidated once new alerts are indexed
      */
-    public WeatherAlertConsumer(ElasticsearchService elasticsearchService) {
+    public WeatherAlertConsumer(ElasticsearchService elasticsearchService, WeatherAlertService weatherAlertService) {
         this.elasticsearchService = elasticsearchService;
+        this.weatherAlertService = weatherAlertService;
     }
 
     /**
-     * Listener method to take in Weather Alert messages from Kafka and process them
+     * Listener method to take in the Weather Alert messages of a Kafka poll and process them
      *
-     * @param weatherAlert WeatherAlert that is pulled in from Kafka topic
+     * @param weatherAlerts List of WeatherAlert that is pulled in from Kafka topic
      */
     @KafkaListener(topics = WeatherConstants.TOPIC_PROPERTY)
-    public void receive(WeatherAlert weatherAlert) {
-        LOG.debug("Weather Alert Kafka Consumer received {}", weatherAlert);
+    public void receive(List<WeatherAlert> weatherAlerts) {
+        LOG.debug("Weather Alert Kafka Consumer received {} alerts", weatherAlerts.size());
         // Push data from Kafka to Elasticsearch, for you know, searching.
-        pushToElasticsearch(weatherAlert);
+        pushToElasticsearch(weatherAlerts);
     }
 
     /**
-     * Pushes the provided {@link WeatherAlert} to the pre-configured Elasticsearch index.
+     * Pushes the provided {@link WeatherAlert}s to the pre-configured Elasticsearch index. The alerts are searchable
+     * once the bulk index returns, so only then are statistics computed against the previous data invalidated.
      *
-     * @param weatherAlert WeatherAlert to push to Elasticsearch
+     * @param weatherAlerts List of WeatherAlert to push to Elasticsearch
      */
-    private void pushToElasticsearch(final WeatherAlert weatherAlert) {
+    private void pushToElasticsearch(final List<WeatherAlert> weatherAlerts) {
         if (elasticsearchService.isEnabled()) {
-            IndexResponse indexResponse = elasticsearchService.index(weatherAlert, weatherAlert.getId(), elasticsearchWeatherIndex);
-            LOG.debug("Elasticsearch Index Response {}", indexResponse);
+            // The messages may have sat on the topic for a while so re-check the active flag against the expiry
+            final Date now = new Date();
+            weatherAlerts.forEach(weatherAlert -> {
+                Date expiresDate = weatherAlert.getExpires();
+                weatherAlert.setActive(Objects.nonNull(expiresDate) && expiresDate.after(now));
+            });
+            int indexed = elasticsearchService.bulkIndex(elasticsearchWeatherIndex, weatherAlerts, WeatherAlert::getId);
+            LOG.debug("Elasticsearch indexed {} of {} alerts", indexed, weatherAlerts.size());
+            weatherAlertService.invalidateStatistics();
         }
     }
 }
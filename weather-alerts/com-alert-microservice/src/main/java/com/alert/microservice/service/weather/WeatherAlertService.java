@@ -1,6 +1,8 @@
 package com.alert.microservice.service.weather;
 
 import com.alert.microservice.api.AlertProcessingResult;
+import com.alert.microservice.api.AlertStatistics;
+import com.alert.microservice.api.CompactionResult;
 import com.alert.microservice.api.S3Properties;
 import com.alert.microservice.service.aws.LambdaService;
 import com.alert.microservice.service.elasticsearch.ElasticsearchService;
@@ -8,8 +10,25 @@ import com.alert.microservice.service.aws.S3FileService;
 import com.alert.microservice.service.exception.AlertServiceException;
 import com.alert.microservice.service.kafka.KafkaService;
 import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.service.weather.expiry.WeatherAlertExpiryService;
+import com.alert.microservice.service.weather.export.AlertExportService;
+import com.alert.microservice.service.weather.index.WeatherAlertIndexService;
+import com.alert.microservice.util.CollectionUtil;
+import com.alert.microservice.util.CommonUtil;
+import com.alert.microservice.util.TransformUtil;
 import com.amazonaws.AmazonWebServiceResult;
 import com.amazonaws.services.s3.model.PutObjectResult;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.joda.time.ReadableInstant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,8 +36,19 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Service class to handle weather alert related functions for this application
@@ -39,6 +69,21 @@ import java.util.Date;
 public class WeatherAlertService {
     // Logger for info/debug purposes
     private static final Logger LOG = LoggerFactory.getLogger(WeatherAlertService.class);
+    // Aggregation names and the fields they are computed over, terms aggregations use the keyword sub-field that
+    // Elasticsearch creates for dynamically mapped strings
+    private static final String SEVERITY_AGG = "severity";
+    private static final String URGENCY_AGG = "urgency";
+    private static final String CATEGORY_AGG = "category";
+    private static final String EFFECTIVE_AGG = "effective";
+    private static final String ACTIVE_AGG = "active";
+    private static final String EXPIRED_AGG = "expired";
+    private static final String NEXT_EXPIRY_AGG = "next_expiry";
+    private static final String EXPIRES_FIELD = "expires";
+    private static final String KEYWORD_SUFFIX = ".keyword";
+    // Max number of distinct terms returned per terms aggregation
+    private static final int TERMS_SIZE = 50;
+    // Intervals allowed for the effective date histogram, kept small so the statistics cache stays bounded
+    private static final Set<String> HISTOGRAM_INTERVALS = CollectionUtil.setOf("1h", "1d", "1w", "1M");
 
     // Values are declared in the properties file of this service
     @Value("${weather.alert.elastic.index}")
@@ -51,6 +96,18 @@ public class WeatherAlertService {
     private final LambdaService lambdaService;
     private final S3Properties s3Properties;
     private final WeatherAlertFeedProcessor weatherAlertFeedProcessor;
+    private final WeatherAlertIndexService weatherAlertIndexService;
+    private final WeatherAlertExpiryService weatherAlertExpiryService;
+    private final AlertExportService alertExportService;
+
+    // Statistics computed since they were last invalidated keyed by histogram interval. Futures are cached so
+    // concurrent requests for the same interval share a single Elasticsearch round trip.
+    private final ConcurrentMap<String, CompletableFuture<AlertStatistics>> statisticsCache = new ConcurrentHashMap<>();
+    // Millis since epoch the statistics were last invalidated, used to tag cached statistics
+    private final AtomicLong statisticsVersion = new AtomicLong(System.currentTimeMillis());
+    // Millis since epoch the earliest active alert counted by the cached statistics expires, at which point their
+    // active and expired counts are no longer correct
+    private final AtomicLong statisticsExpiry = new AtomicLong(Long.MAX_VALUE);
 
     /**
      * Constructor for this {@link WeatherAlertService} class.
@@ -62,23 +119,34 @@ public class WeatherAlertService {
      * @param s3Properties              S3Properties object to hold S3 related information for source/sink processing
      * @param weatherAlertFeedProcessor handles transforming Weather Alert Atom feed data into a objects that the
      *                                  application can more easily interface with.
+     * @param weatherAlertIndexService  WeatherAlertIndexService holding an in-memory index of the latest feed cycle
+     * @param weatherAlertExpiryService WeatherAlertExpiryService marking alerts inactive once they expire
+     * @param alertExportService        AlertExportService deciding the S3 keys alerts are exported under
      */
     public WeatherAlertService(ElasticsearchService elasticsearchService,
                                KafkaService kafkaService,
                                S3FileService s3FileService,
                                LambdaService lambdaService,
                                S3Properties s3Properties,
-                               WeatherAlertFeedProcessor weatherAlertFeedProcessor) {
+                               WeatherAlertFeedProcessor weatherAlertFeedProcessor,
+                               WeatherAlertIndexService weatherAlertIndexService,
+                               WeatherAlertExpiryService weatherAlertExpiryService,
+                               AlertExportService alertExportService) {
         this.elasticsearchService = elasticsearchService;
         this.kafkaService = kafkaService;
         this.s3FileService = s3FileService;
         this.lambdaService = lambdaService;
         this.s3Properties = s3Properties;
         this.weatherAlertFeedProcessor = weatherAlertFeedProcessor;
+        this.weatherAlertIndexService = weatherAlertIndexService;
+        this.weatherAlertExpiryService = weatherAlertExpiryService;
+        this.alertExportService = alertExportService;
     }
 
     /**
-     * Searches the Weather alert Elasticsearch index using data in the provided {@link WeatherAlert}
+     * Searches the Weather alert Elasticsearch index using data in the provided {@link WeatherAlert}. If
+     * Elasticsearch is disabled, or the in-memory index is preferred and populated, the search is answered from
+     * the in-memory index of the latest feed cycle instead.
      *
      * @param weatherAlert  WeatherAlert to extract information from
      * @param isFuzzySearch Boolean to dictate whether to use fuzzy searching on ES data or not
@@ -86,24 +154,109 @@ public class WeatherAlertService {
      * @throws IOException
      */
     public Collection<WeatherAlert> searchWeatherAlerts(final WeatherAlert weatherAlert, final Boolean isFuzzySearch) throws IOException {
-        // If Elasticsearch is not enabled then throw exception
-        elasticsearchService.ifNotEnabledThrow(new AlertServiceException("Cannot Search Weather Alerts when Elasticsearch is NOT enabled"));
+        if (useInMemoryIndex(isFuzzySearch)) {
+            return weatherAlertIndexService.search(weatherAlert, ElasticsearchService.DEFAULT_SEARCH_SIZE);
+        }
         return elasticsearchService.search(weatherAlert, elasticsearchWeatherIndex, isFuzzySearch, WeatherAlert.class);
     }
 
     /**
-     * Retrieves Elasticsearch Weather Alert data and limits the result size to the provided limit.
+     * Retrieves Elasticsearch Weather Alert data and limits the result size to the provided limit. If Elasticsearch
+     * is disabled, or the in-memory index is preferred and populated, data is pulled from the in-memory index of
+     * the latest feed cycle instead.
      *
      * @param limit int the number of results to return
      * @return Collection of Weather Alert index data
      * @throws IOException   Generally occurs when data cannot be processed correctly when being passed around
      */
     public Collection<WeatherAlert> retrieveElasticsearchData(final int limit) throws IOException {
-        // If Elasticsearch is not enabled then throw exception
-        elasticsearchService.ifNotEnabledThrow(new AlertServiceException("Cannot Select All Weather Alerts when Elasticsearch is NOT enabled"));
+        if (useInMemoryIndex(false)) {
+            return weatherAlertIndexService.selectAll(limit);
+        }
         return elasticsearchService.selectAll(elasticsearchWeatherIndex, limit, WeatherAlert.class);
     }
 
+    /**
+     * Asynchronously searches the Weather alert Elasticsearch index using data in the provided {@link WeatherAlert}.
+     * Falls back on the in-memory index in the same cases as {@link #searchWeatherAlerts(WeatherAlert, Boolean)}.
+     *
+     * @param weatherAlert  WeatherAlert to extract information from
+     * @param isFuzzySearch Boolean to dictate whether to use fuzzy searching on ES data or not
+     * @param fields        Collection of WeatherAlert field names to return, if null or empty all fields are returned
+     * @return CompletableFuture that completes with the WeatherAlert data pulled from the Elasticsearch query
+     */
+    public CompletableFuture<Collection<WeatherAlert>> searchWeatherAlertsAsync(final WeatherAlert weatherAlert,
+                                                                               final Boolean isFuzzySearch,
+                                                                               final Collection<String> fields) {
+        if (useInMemoryIndex(isFuzzySearch)) {
+            return CompletableFuture.completedFuture(project(weatherAlertIndexService.search(weatherAlert, ElasticsearchService.DEFAULT_SEARCH_SIZE), fields));
+        }
+        return elasticsearchService.searchAsync(weatherAlert, elasticsearchWeatherIndex, isFuzzySearch, WeatherAlert.class, fields);
+    }
+
+    /**
+     * Asynchronously retrieves Elasticsearch Weather Alert data and limits the result size to the provided limit.
+     * Falls back on the in-memory index in the same cases as {@link #retrieveElasticsearchData(int)}.
+     *
+     * @param limit  int the number of results to return
+     * @param fields Collection of WeatherAlert field names to return, if null or empty all fields are returned
+     * @return CompletableFuture that completes with the Weather Alert index data
+     */
+    public CompletableFuture<Collection<WeatherAlert>> retrieveElasticsearchDataAsync(final int limit, final Collection<String> fields) {
+        if (useInMemoryIndex(false)) {
+            return CompletableFuture.completedFuture(project(weatherAlertIndexService.selectAll(limit), fields));
+        }
+        return elasticsearchService.selectAllAsync(elasticsearchWeatherIndex, limit, WeatherAlert.class, fields);
+    }
+
+    /**
+     * Retrieves Weather Alert statistics that are aggregated by Elasticsearch. This includes counts by severity,
+     * urgency and category, a histogram of alerts over their effective date and the number of active versus
+     * expired alerts. Active/expired counts are derived from the expires date at query time rather than the stored
+     * active flag. Results are cached until new alerts are indexed or the earliest counted active alert expires.
+     *
+     * @param interval String histogram interval to bucket effective dates by, one of 1h, 1d, 1w or 1M
+     * @return CompletableFuture that completes with the {@link AlertStatistics}
+     */
+    public CompletableFuture<AlertStatistics> retrieveAlertStatisticsAsync(final String interval) {
+        // If Elasticsearch is not enabled then throw exception
+        elasticsearchService.ifNotEnabledThrow(new AlertServiceException("Cannot Retrieve Weather Alert Statistics when Elasticsearch is NOT enabled"));
+        if (!HISTOGRAM_INTERVALS.contains(interval)) {
+            throw new AlertServiceException("Unsupported histogram interval " + interval + ", expected one of " + HISTOGRAM_INTERVALS);
+        }
+        invalidateExpiredStatistics();
+        CompletableFuture<AlertStatistics> statistics = statisticsCache.computeIfAbsent(interval, this::aggregateAlertStatistics);
+        // Do not hold on to failures so the next request tries Elasticsearch again
+        statistics.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                statisticsCache.remove(interval, statistics);
+            }
+        });
+        // Hand out a dependent future so a caller cancelling it does not cancel the one shared through the cache
+        return statistics.thenApply(Function.identity());
+    }
+
+    /**
+     * Retrieves the version of the statistics, which changes whenever cached statistics are invalidated so this can
+     * be used by clients to tag responses.
+     *
+     * @return long millis since epoch the statistics were last invalidated
+     */
+    public long getStatisticsVersion() {
+        invalidateExpiredStatistics();
+        return statisticsVersion.get();
+    }
+
+    /**
+     * Invalidates the cached statistics, called once new alerts are searchable in Elasticsearch.
+     */
+    public void invalidateStatistics() {
+        // Never hand out the same version twice, even if invalidated twice within a millisecond
+        statisticsVersion.accumulateAndGet(System.currentTimeMillis(), (version, now) -> Math.max(version + 1, now));
+        statisticsExpiry.set(Long.MAX_VALUE);
+        statisticsCache.clear();
+    }
+
     /**
      * Runs the full E2E process for this service which performs the following:
      * - Pull in Weather Alert Atom Feed
@@ -117,7 +270,7 @@ public class WeatherAlertService {
         LOG.debug("Executing End-to-End Process");
         kafkaService.ifNotEnabledThrow(new AlertServiceException("Cannot execute End-to-End Process when Kafka is NOT enabled"));
         // Pull in feed data and transform to a collection of weather alert objects
-        Collection<WeatherAlert> weatherAlerts = weatherAlertFeedProcessor.process();
+        Collection<WeatherAlert> weatherAlerts = processFeed();
         // Perform Kafka -> Elasticsearch portion of process
         AlertProcessingResult kafkaAlertProcessingResult = kafkaService.pushWeatherAlerts(weatherAlerts);
         LOG.debug("Kafka Processing Result = {}", kafkaAlertProcessingResult);
@@ -136,7 +289,8 @@ public class WeatherAlertService {
         // Ensure Kafka is enabled before continuing
         kafkaService.ifNotEnabledThrow(new AlertServiceException("Cannot Process Weather Alert Feed when Kafka is NOT enabled"));
         // Create the data feed and extract collection of weather alerts then push alerts to Kafka
-        return kafkaService.pushWeatherAlerts(weatherAlertFeedProcessor.process());
+        AlertProcessingResult alertProcessingResult = kafkaService.pushWeatherAlerts(processFeed());
+        return alertProcessingResult;
     }
 
     /**
@@ -148,20 +302,19 @@ public class WeatherAlertService {
      */
     public void executeS3Process() throws IOException {
         // Pull in feed data and transform to a collection of weather alert objects
-        executeS3Process(weatherAlertFeedProcessor.process());
+        executeS3Process(processFeed());
     }
 
     /**
      * Executes the S3 portion of the data process which takes the provided Collection of {@link WeatherAlert}
      * data, creates a CSV representation and pushes it to S3. This S3 bucket has a Lambda tied to it as well that
-     * will copy the data from the source bucket to the sink bucket.
+     * will copy the data from the source bucket to the sink bucket. Files are written under the keys chosen by
+     * {@link AlertExportService#exportKeys(Collection)} so they land in the configured time/severity partitions.
      *
      * @param weatherAlerts Collection of {@link WeatherAlert} data to push to S3
      * @throws IOException   Generally occurs when data cannot be processed correctly when being passed around
      */
     private void executeS3Process(Collection<WeatherAlert> weatherAlerts) throws IOException {
-        // Create an input stream from the alerts
-        InputStream inputStream = s3FileService.toCSVInputStream(weatherAlerts, WeatherAlert.class);
         // Create AWS Lambda Function
         AmazonWebServiceResult createFunctionResult = lambdaService.createLambdaFunction();
         LOG.debug("Lambda Create Result = {}", createFunctionResult);
@@ -170,10 +323,160 @@ public class WeatherAlertService {
         s3FileService.createBucket(s3Properties.getSinkBucket());
         // Configure source bucket with Lambda function
         s3FileService.appendWeatherAlertLambdaListener(s3Properties.getSourceBucket());
-        // Create file name for S3 object using the current millis since epoch
-        final String bucketKey = "weather-alert-" + new Date().getTime() + ".csv";
-        // Push Alert data to S3 Source bucket
-        PutObjectResult putObjectResult = s3FileService.uploadInputStream(inputStream, s3Properties.getSourceBucket(), bucketKey);
-        LOG.debug("Put Object Result = {}", putObjectResult);
+        // Push Alert data to S3 Source bucket, one file per partition of the configured key layout
+        for (Map.Entry<String, List<WeatherAlert>> export : alertExportService.exportKeys(weatherAlerts).entrySet()) {
+            InputStream inputStream = s3FileService.toCSVInputStream(export.getValue(), WeatherAlert.class);
+            PutObjectResult putObjectResult = s3FileService.uploadInputStream(inputStream, s3Properties.getSourceBucket(), export.getKey());
+            LOG.debug("Put Object Result for {} = {}", export.getKey(), putObjectResult);
+        }
+    }
+
+    /**
+     * Merges the small Weather Alert exports in every closed partition of the provided bucket into a single object
+     * per partition. The sink bucket is compacted by default since rewriting objects in the source bucket would
+     * invoke the copy Lambda again.
+     *
+     * @param bucketName String name of the bucket to compact, if null or empty the sink bucket is compacted
+     * @return CompactionResult with the number of partitions and objects merged
+     */
+    public CompactionResult compactS3Exports(final String bucketName) {
+        return alertExportService.compact(CommonUtil.defaultIfNullOrEmpty(bucketName, s3Properties.getSinkBucket()));
+    }
+
+    /**
+     * Pulls in the Weather Alert feed, rebuilds the in-memory index from it and schedules the active alerts to be
+     * marked inactive once they expire.
+     *
+     * @return Collection of {@link WeatherAlert} objects parsed from the feed
+     */
+    private Collection<WeatherAlert> processFeed() {
+        Collection<WeatherAlert> weatherAlerts = weatherAlertFeedProcessor.process();
+        weatherAlertIndexService.rebuild(weatherAlerts);
+        weatherAlertExpiryService.schedule(weatherAlerts);
+        return weatherAlerts;
+    }
+
+    /**
+     * Determines if a search should be answered by the in-memory index. This is always the case when Elasticsearch
+     * is disabled. Otherwise, it is only used when preferred, populated and the search is not fuzzy since fuzzy
+     * matching is only supported by Elasticsearch.
+     *
+     * @param isFuzzySearch Boolean to dictate whether the search is fuzzy or not
+     * @return boolean true if the in-memory index should be used, false if Elasticsearch should be
+     */
+    private boolean useInMemoryIndex(final Boolean isFuzzySearch) {
+        if (!elasticsearchService.isEnabled()) {
+            return true;
+        }
+        return !Boolean.TRUE.equals(isFuzzySearch) && weatherAlertIndexService.isPreferred() && weatherAlertIndexService.isPopulated();
+    }
+
+    /**
+     * Restricts the provided alerts to the requested fields, mirroring Elasticsearch source filtering for results
+     * served from the in-memory index.
+     *
+     * @param weatherAlerts Collection of {@link WeatherAlert} data to project
+     * @param fields        Collection of field names to keep, if null or empty the alerts are returned as is
+     * @return Collection of {@link WeatherAlert} data holding only the requested fields
+     */
+    private Collection<WeatherAlert> project(final Collection<WeatherAlert> weatherAlerts, final Collection<String> fields) {
+        if (CollectionUtil.isEmpty(fields)) {
+            return weatherAlerts;
+        }
+        return weatherAlerts.stream()
+                .map(weatherAlert -> {
+                    Map<String, Object> alertMap = TransformUtil.mapEntity(weatherAlert);
+                    alertMap.keySet().retainAll(fields);
+                    return TransformUtil.convert(alertMap, WeatherAlert.class);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Invalidates the cached statistics once the earliest active alert they counted has expired.
+     */
+    private void invalidateExpiredStatistics() {
+        if (System.currentTimeMillis() >= statisticsExpiry.get()) {
+            invalidateStatistics();
+        }
+    }
+
+    /**
+     * Builds and runs the Elasticsearch aggregations that make up {@link AlertStatistics}.
+     *
+     * @param interval String histogram interval to bucket effective dates by
+     * @return CompletableFuture that completes with the {@link AlertStatistics}
+     */
+    private CompletableFuture<AlertStatistics> aggregateAlertStatistics(final String interval) {
+        final long now = System.currentTimeMillis();
+        List<AggregationBuilder> aggregations = CollectionUtil.listOf(
+                AggregationBuilders.terms(SEVERITY_AGG).field(SEVERITY_AGG + KEYWORD_SUFFIX).size(TERMS_SIZE),
+                AggregationBuilders.terms(URGENCY_AGG).field(URGENCY_AGG + KEYWORD_SUFFIX).size(TERMS_SIZE),
+                AggregationBuilders.terms(CATEGORY_AGG).field(CATEGORY_AGG + KEYWORD_SUFFIX).size(TERMS_SIZE),
+                AggregationBuilders.dateHistogram(EFFECTIVE_AGG).field(EFFECTIVE_AGG)
+                        .dateHistogramInterval(new DateHistogramInterval(interval))
+                        .minDocCount(1),
+                AggregationBuilders.filter(ACTIVE_AGG, QueryBuilders.rangeQuery(EXPIRES_FIELD).gt(now))
+                        .subAggregation(AggregationBuilders.min(NEXT_EXPIRY_AGG).field(EXPIRES_FIELD)),
+                AggregationBuilders.filter(EXPIRED_AGG, QueryBuilders.rangeQuery(EXPIRES_FIELD).lte(now)));
+        return elasticsearchService.aggregateAsync(elasticsearchWeatherIndex, aggregations)
+                .thenApply(searchResponse -> toAlertStatistics(searchResponse, interval));
+    }
+
+    /**
+     * Transforms the aggregation results held in the provided {@link SearchResponse} into {@link AlertStatistics}.
+     *
+     * @param searchResponse SearchResponse holding the aggregation results
+     * @param interval       String histogram interval the effective dates were bucketed by
+     * @return AlertStatistics built from the aggregation results
+     */
+    private AlertStatistics toAlertStatistics(final SearchResponse searchResponse, final String interval) {
+        Aggregations aggregations = searchResponse.getAggregations();
+        AlertStatistics alertStatistics = new AlertStatistics();
+        alertStatistics.setTotal(searchResponse.getHits().getTotalHits());
+        alertStatistics.setSeverity(termCounts(aggregations.get(SEVERITY_AGG)));
+        alertStatistics.setUrgency(termCounts(aggregations.get(URGENCY_AGG)));
+        alertStatistics.setCategory(termCounts(aggregations.get(CATEGORY_AGG)));
+        alertStatistics.setInterval(interval);
+        alertStatistics.setEffective(histogramCounts(aggregations.get(EFFECTIVE_AGG)));
+        Filter active = aggregations.get(ACTIVE_AGG);
+        alertStatistics.setActive(active.getDocCount());
+        // The counts stay correct until the earliest active alert expires, there is no such alert if none are active
+        double nextExpiry = ((Min) active.getAggregations().get(NEXT_EXPIRY_AGG)).getValue();
+        if (!Double.isInfinite(nextExpiry)) {
+            statisticsExpiry.accumulateAndGet((long) nextExpiry, Math::min);
+        }
+        alertStatistics.setExpired(((Filter) aggregations.get(EXPIRED_AGG)).getDocCount());
+        alertStatistics.setTimestamp(new Date());
+        return alertStatistics;
+    }
+
+    /**
+     * Creates a Map of term to document count from the provided {@link Terms} aggregation.
+     *
+     * @param terms Terms aggregation result
+     * @return Map of term to count ordered by descending count
+     */
+    private Map<String, Long> termCounts(final Terms terms) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        terms.getBuckets().forEach(bucket -> counts.put(bucket.getKeyAsString(), bucket.getDocCount()));
+        return counts;
+    }
+
+    /**
+     * Creates a Map of interval start to document count from the provided {@link Histogram} aggregation.
+     *
+     * @param histogram date Histogram aggregation result
+     * @return Map of ISO-8601 interval start to count ordered by interval
+     */
+    private Map<String, Long> histogramCounts(final Histogram histogram) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        histogram.getBuckets().forEach(bucket -> {
+            // Date histogram bucket keys are Joda instants, convert them to ISO-8601 so they read the same way
+            // regardless of how the effective field is mapped in the index
+            final long millis = ((ReadableInstant) bucket.getKey()).getMillis();
+            counts.put(Instant.ofEpochMilli(millis).toString(), bucket.getDocCount());
+        });
+        return counts;
     }
 }
@@ -0,0 +1,176 @@
+package com.alert.microservice.service.weather.expiry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel that tracks keys by the time they are due. Time is divided into ticks and each level of
+ * the wheel has 64 slots, a slot in level 0 covers one tick, a slot in level 1 covers 64 ticks and so on. Timers
+ * are placed in the lowest level whose range covers their deadline and are cascaded down to lower levels as time
+ * moves forward, so scheduling is O(1) no matter how many timers are pending. Anything beyond the range of the
+ * highest level is held in an overflow list that is revisited once per rotation of that level.
+ * <p>
+ * Methods are synchronized so timers can be scheduled from one thread while another advances the wheel.
+ *
+ * @param <K> Generic Type of the keys being timed
+ */
+public class TimerWheel<K> {
+    // Each level has 2^SLOT_BITS slots
+    private static final int SLOT_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    // Final variables that are set in the constructor
+    private final long tickMillis;
+    private final List<List<Timer<K>>> slots;
+    private final List<Timer<K>> overflow = new ArrayList<>();
+
+    // Tick the wheel has been advanced to and the number of timers pending
+    private long currentTick;
+    private int size;
+
+    /**
+     * Constructor for a {@link TimerWheel}
+     *
+     * @param tickMillis  long milliseconds covered by a single tick, this is the resolution of the wheel
+     * @param startMillis long millis since epoch the wheel starts at
+     */
+    public TimerWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick millis must be positive but was " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.slots = new ArrayList<>(LEVELS * WHEEL_SIZE);
+        for (int i = 0; i < LEVELS * WHEEL_SIZE; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedules the provided key to be due at the provided deadline. Deadlines that have already passed are
+     * returned by the next call to {@link #advance(long)}.
+     *
+     * @param key            K key to schedule
+     * @param deadlineMillis long millis since epoch the key is due
+     */
+    public synchronized void schedule(final K key, final long deadlineMillis) {
+        // Round up so a timer never fires before its deadline
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        place(new Timer<>(key, deadlineMillis, Math.max(deadlineTick, currentTick + 1)), null);
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward to the provided time and removes every timer that is due.
+     *
+     * @param nowMillis long millis since epoch to advance to
+     * @return List of {@link Timer} objects that are due, in no particular order
+     */
+    public synchronized List<Timer<K>> advance(final long nowMillis) {
+        final long targetTick = nowMillis / tickMillis;
+        List<Timer<K>> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(due);
+            List<Timer<K>> slot = slots.get((int) (currentTick & SLOT_MASK));
+            due.addAll(slot);
+            slot.clear();
+        }
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * Number of timers that have been scheduled but are not yet due.
+     *
+     * @return int number of pending timers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * When the current tick lines up with the start of a slot on a higher level, that slot's timers are now within
+     * range of a lower level so they are placed again. Higher levels are handled first so timers can fall all the
+     * way down to level 0 in a single tick.
+     *
+     * @param due List to add timers to that turn out to already be due
+     */
+    private void cascade(final List<Timer<K>> due) {
+        int alignedLevel = 0;
+        while (alignedLevel < LEVELS && (currentTick & ((1L << (SLOT_BITS * (alignedLevel + 1))) - 1)) == 0) {
+            alignedLevel++;
+        }
+        if (alignedLevel == LEVELS) {
+            List<Timer<K>> pending = new ArrayList<>(overflow);
+            overflow.clear();
+            pending.forEach(timer -> place(timer, due));
+            alignedLevel = LEVELS - 1;
+        }
+        for (int level = alignedLevel; level >= 1; level--) {
+            List<Timer<K>> slot = slots.get(level * WHEEL_SIZE + (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+            List<Timer<K>> pending = new ArrayList<>(slot);
+            slot.clear();
+            pending.forEach(timer -> place(timer, due));
+        }
+    }
+
+    /**
+     * Places the timer on the lowest level where its deadline shares the same higher order bits as the current
+     * tick. This guarantees the slot is reached before that level wraps around.
+     *
+     * @param timer Timer to place
+     * @param due   List to add the timer to if it is already due, if null it is placed in the next tick's slot
+     */
+    private void place(final Timer<K> timer, final List<Timer<K>> due) {
+        if (timer.deadlineTick <= currentTick) {
+            if (due != null) {
+                due.add(timer);
+                return;
+            }
+            timer.deadlineTick = currentTick + 1;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            final int shift = SLOT_BITS * (level + 1);
+            if ((timer.deadlineTick >>> shift) == (currentTick >>> shift)) {
+                slots.get(level * WHEEL_SIZE + (int) ((timer.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK)).add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+
+    /**
+     * A key and the deadline it was scheduled for.
+     *
+     * @param <K> Generic Type of the key
+     */
+    public static class Timer<K> {
+        private final K key;
+        private final long deadlineMillis;
+        private long deadlineTick;
+
+        /**
+         * Constructor for a {@link Timer}
+         *
+         * @param key            K key that was scheduled
+         * @param deadlineMillis long millis since epoch the key is due
+         * @param deadlineTick   long tick the key is due
+         */
+        Timer(K key, long deadlineMillis, long deadlineTick) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+}
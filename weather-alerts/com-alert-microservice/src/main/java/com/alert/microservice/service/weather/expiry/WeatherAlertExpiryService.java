@@ -0,0 +1,164 @@
+package com.alert.microservice.service.weather.expiry;
+
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.config.weather.WeatherConstants;
+import com.alert.microservice.service.ToggleComponent;
+import com.alert.microservice.service.elasticsearch.ElasticsearchService;
+import com.alert.microservice.service.weather.index.WeatherAlertIndexService;
+import com.alert.microservice.util.CollectionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Service that keeps the {@code active} flag of {@link WeatherAlert} data in step with its {@code expires} date.
+ * The flag is computed once when the feed is processed, so without this service an alert would keep showing as
+ * active until it happened to be ingested again.
+ * <p>
+ * Each active alert is scheduled on a {@link TimerWheel} keyed by its expiry date. On every tick the alerts that
+ * have expired are flipped to inactive in the in-memory index and, when enabled, in Elasticsearch using a bulk
+ * partial update of only the {@code active} field. When an alert is ingested again with a different expiry date the
+ * old timer is not removed from the wheel, it is simply ignored when it fires.
+ * <p>
+ * Annotations Explained:
+ *
+ * <ul>
+ *  <li>
+ *      Service = Indicates that an annotated class is a "Service".
+ *  </li>
+ *  <li>
+ *      Value = Annotation at the field or method/constructor parameter level
+ *      that indicates a default value expression for the affected argument.
+ *  </li>
+ *  <li>
+ *      PostConstruct = The PostConstruct annotation is used on a method that needs to be executed
+ *      after dependency injection is done to perform any initialization.
+ *  </li>
+ * </ul>
+ */
+@Service
+public class WeatherAlertExpiryService extends ToggleComponent {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(WeatherAlertExpiryService.class);
+    // Partial document sent to Elasticsearch for expired alerts
+    private static final Map<String, Object> INACTIVE_DOCUMENT = Collections.singletonMap("active", false);
+
+    // Value from properties to dictate if alert expiry is enabled or not
+    @Value(WeatherConstants.ENABLE_EXPIRY_VALUE_PROPERTY)
+    private Boolean expiryIsEnabled;
+
+    // Resolution of the timer wheel in milliseconds
+    @Value(WeatherConstants.EXPIRY_TICK_PROPERTY)
+    private Long tickMillis;
+
+    // What Elasticsearch index holds the alerts
+    @Value("${weather.alert.elastic.index}")
+    private String elasticsearchWeatherIndex;
+
+    // Final variables that are injected in the service constructor
+    private final ElasticsearchService elasticsearchService;
+    private final WeatherAlertIndexService weatherAlertIndexService;
+
+    // Latest known expiry of each scheduled alert, used to ignore timers that were superseded
+    private final Map<String, Long> expiresById = new ConcurrentHashMap<>();
+
+    // Wheel of pending expirations, created once the tick has been injected
+    private TimerWheel<String> timerWheel;
+
+    /**
+     * Constructor for this {@link WeatherAlertExpiryService} class
+     *
+     * @param elasticsearchService     service class that serves up ES related functionality
+     * @param weatherAlertIndexService service class that holds the in-memory index of alerts
+     */
+    public WeatherAlertExpiryService(ElasticsearchService elasticsearchService,
+                                     WeatherAlertIndexService weatherAlertIndexService) {
+        this.elasticsearchService = elasticsearchService;
+        this.weatherAlertIndexService = weatherAlertIndexService;
+    }
+
+    /**
+     * Initializes the timer wheel starting at the current time.
+     */
+    @PostConstruct
+    public void init() {
+        timerWheel = new TimerWheel<>(tickMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * Schedules every active alert to be marked inactive once it expires. Alerts that are already scheduled for the
+     * same expiry date are skipped so processing the same feed repeatedly does not grow the wheel.
+     *
+     * @param weatherAlerts Collection of {@link WeatherAlert} data to schedule
+     */
+    public void schedule(final Collection<WeatherAlert> weatherAlerts) {
+        if (!isEnabled()) {
+            return;
+        }
+        int scheduled = 0;
+        for (WeatherAlert weatherAlert : CollectionUtil.removeNulls(weatherAlerts)) {
+            if (!Boolean.TRUE.equals(weatherAlert.getActive()) || Objects.isNull(weatherAlert.getId())
+                    || Objects.isNull(weatherAlert.getExpires())) {
+                continue;
+            }
+            final long expires = weatherAlert.getExpires().getTime();
+            if (!Objects.equals(expiresById.put(weatherAlert.getId(), expires), expires)) {
+                timerWheel.schedule(weatherAlert.getId(), expires);
+                scheduled++;
+            }
+        }
+        LOG.debug("Scheduled {} Weather Alert expirations, {} pending", scheduled, timerWheel.size());
+    }
+
+    /**
+     * Advances the timer wheel to the current time and marks every alert that has expired as inactive.
+     *
+     * @return int number of alerts that were marked inactive
+     */
+    public int expireDueAlerts() {
+        List<String> expiredIds = timerWheel.advance(System.currentTimeMillis()).stream()
+                // Only expire the alert if the timer is for its latest known expiry
+                .filter(timer -> expiresById.remove(timer.getKey(), timer.getDeadlineMillis()))
+                .map(TimerWheel.Timer::getKey)
+                .collect(Collectors.toList());
+        if (expiredIds.isEmpty()) {
+            return 0;
+        }
+        weatherAlertIndexService.deactivate(expiredIds);
+        if (elasticsearchService.isEnabled()) {
+            int updated = elasticsearchService.bulkPartialUpdate(elasticsearchWeatherIndex, expiredIds, INACTIVE_DOCUMENT);
+            LOG.debug("Marked {} of {} expired Weather Alerts inactive in Elasticsearch", updated, expiredIds.size());
+        }
+        LOG.info("Expired {} Weather Alerts", expiredIds.size());
+        return expiredIds.size();
+    }
+
+    /**
+     * Number of alerts waiting to expire.
+     *
+     * @return int number of pending expirations
+     */
+    public int pending() {
+        return expiresById.size();
+    }
+
+    /**
+     * Method to dictate if the component extending this class is enabled or not.
+     *
+     * @return boolean true if enabled, false otherwise
+     */
+    @Override
+    public boolean isEnabled() {
+        return expiryIsEnabled;
+    }
+}
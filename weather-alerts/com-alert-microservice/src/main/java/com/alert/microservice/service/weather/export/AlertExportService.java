@@ -0,0 +1,348 @@
+package com.alert.microservice.service.weather.export;
+
+import com.alert.microservice.api.CompactionResult;
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.service.aws.S3FileService;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.util.CollectionUtil;
+import com.alert.microservice.util.CommonUtil;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Service that decides where Weather Alert exports are written in S3 and merges the small per-cycle exports into
+ * larger objects once their partition is closed.
+ * <p>
+ * Keys follow the configured {@link AlertKeyLayout}, optionally followed by a {@code severity=} prefix, ex.
+ * {@code year=2019/month=06/day=01/hour=13/severity=severe/weather-alert-1559394000000.csv}. Compaction merges every
+ * export in a closed partition of the configured granularity into a single
+ * {@code weather-alert-compacted-<partition start millis>.csv} object and removes the originals.
+ * <p>
+ * Annotations Explained:
+ *
+ * <ul>
+ *  <li>
+ *      Service = Indicates that an annotated class is a "Service".
+ *  </li>
+ * </ul>
+ */
+@Service
+public class AlertExportService {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(AlertExportService.class);
+    // Matches partitioned export keys, the hour and severity prefixes are optional
+    private static final Pattern PARTITIONED_KEY = Pattern.compile(
+            "^year=(\\d{4})/month=(\\d{2})/day=(\\d{2})/(?:hour=(\\d{2})/)?(?:(severity=[^/]+)/)?[^/]+\\.csv$");
+    // Prefix of every export file name
+    private static final String EXPORT_PREFIX = "weather-alert-";
+    // Prefix of the file name of merged exports
+    private static final String COMPACTED_PREFIX = EXPORT_PREFIX + "compacted-";
+    // Partitions are only compacted once they have been closed for this long so late writes are not missed
+    private static final Duration COMPACTION_GRACE = Duration.ofMinutes(10);
+    // Max number of keys S3 returns in a single listing page
+    private static final int MAX_KEYS = 1000;
+
+    // Final variables that are injected in the service constructor
+    private final AmazonS3 s3Client;
+    private final S3FileService s3FileService;
+    private final S3Properties s3Properties;
+
+    /**
+     * Constructor for this {@link AlertExportService} class
+     *
+     * @param s3Client      Provides an interface for accessing the Amazon S3 web service.
+     * @param s3FileService Service to perform AWS S3 related operations
+     * @param s3Properties  S3Properties object to hold the key layout and compaction settings
+     */
+    public AlertExportService(AmazonS3 s3Client, S3FileService s3FileService, S3Properties s3Properties) {
+        this.s3Client = s3Client;
+        this.s3FileService = s3FileService;
+        this.s3Properties = s3Properties;
+    }
+
+    /**
+     * Splits the provided alerts into the S3 keys they should be exported under for the current time.
+     *
+     * @param weatherAlerts Collection of {@link WeatherAlert} data to export
+     * @return Map of S3 key to the alerts to write under it, in key order
+     */
+    public Map<String, List<WeatherAlert>> exportKeys(final Collection<WeatherAlert> weatherAlerts) {
+        return exportKeys(weatherAlerts, ZonedDateTime.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Splits the provided alerts into the S3 keys they should be exported under at the provided time.
+     *
+     * @param weatherAlerts Collection of {@link WeatherAlert} data to export
+     * @param now           ZonedDateTime the export is written at, in UTC
+     * @return Map of S3 key to the alerts to write under it, in key order
+     */
+    Map<String, List<WeatherAlert>> exportKeys(final Collection<WeatherAlert> weatherAlerts, final ZonedDateTime now) {
+        final String timePrefix = keyLayout().partitionPrefix(now);
+        final String fileName = EXPORT_PREFIX + now.toInstant().toEpochMilli() + ".csv";
+        if (!Boolean.TRUE.equals(s3Properties.getPartitionBySeverity())) {
+            Map<String, List<WeatherAlert>> exportKeys = new TreeMap<>();
+            exportKeys.put(timePrefix + fileName, CollectionUtil.removeNulls(weatherAlerts));
+            return exportKeys;
+        }
+        return CollectionUtil.removeNulls(weatherAlerts).stream()
+                .collect(Collectors.groupingBy(alert -> timePrefix + severityPrefix(alert.getSeverity()) + fileName,
+                        TreeMap::new, Collectors.toList()));
+    }
+
+    /**
+     * Merges the exports in every closed partition of the bucket into a single object per partition. The merged
+     * object is written before the originals are removed so data is never lost, at worst it is duplicated if the
+     * removal fails.
+     *
+     * @param bucketName String name of the bucket to compact
+     * @return CompactionResult with the number of partitions and objects merged
+     */
+    public CompactionResult compact(final String bucketName) {
+        return compact(bucketName, ZonedDateTime.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Merges the exports in every partition of the bucket that was closed at the provided time.
+     *
+     * @param bucketName String name of the bucket to compact
+     * @param now        ZonedDateTime current time, in UTC
+     * @return CompactionResult with the number of partitions and objects merged
+     */
+    CompactionResult compact(final String bucketName, final ZonedDateTime now) {
+        CommonUtil.ifEmptyThrowException(bucketName, new AlertServiceException("Cannot compact a null/empty bucket"));
+        final long start = System.currentTimeMillis();
+        CompactionResult compactionResult = new CompactionResult();
+        compactionResult.setBucketName(bucketName);
+        compactionResult.setPartitionsCompacted(0);
+        compactionResult.setObjectsMerged(0L);
+        compactionResult.setBytesWritten(0L);
+
+        for (Map.Entry<Partition, List<S3ObjectSummary>> entry : closedPartitions(bucketName, now).entrySet()) {
+            List<S3ObjectSummary> objects = entry.getValue();
+            if (objects.size() < 2) {
+                continue;
+            }
+            final String compactedKey = entry.getKey().compactedKey();
+            final long bytesWritten = merge(bucketName, objects, compactedKey);
+            List<String> mergedKeys = objects.stream()
+                    .map(S3ObjectSummary::getKey)
+                    .filter(key -> !key.equals(compactedKey))
+                    .collect(Collectors.toList());
+            s3FileService.deleteObjects(bucketName, mergedKeys);
+            compactionResult.setPartitionsCompacted(compactionResult.getPartitionsCompacted() + 1);
+            compactionResult.setObjectsMerged(compactionResult.getObjectsMerged() + mergedKeys.size());
+            compactionResult.setBytesWritten(compactionResult.getBytesWritten() + bytesWritten);
+        }
+        compactionResult.setElapsedMillis(System.currentTimeMillis() - start);
+        LOG.info("Compacted {} partitions of {} merging {} objects in {} ms", compactionResult.getPartitionsCompacted(),
+                bucketName, compactionResult.getObjectsMerged(), compactionResult.getElapsedMillis());
+        return compactionResult;
+    }
+
+    /**
+     * Lists the bucket and groups the partitioned exports by the compaction partition they fall in, keeping only
+     * partitions that closed more than {@code COMPACTION_GRACE} ago.
+     *
+     * @param bucketName String name of the bucket to list
+     * @param now        ZonedDateTime current time
+     * @return Map of partition to the exports in it, objects in key order
+     */
+    private Map<Partition, List<S3ObjectSummary>> closedPartitions(final String bucketName, final ZonedDateTime now) {
+        final AlertKeyLayout granularity = compactionGranularity();
+        Map<Partition, List<S3ObjectSummary>> partitions = new TreeMap<>();
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix("year=")
+                .withMaxKeys(MAX_KEYS);
+        ListObjectsV2Result result;
+        do {
+            result = s3Client.listObjectsV2(request);
+            for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                Partition partition = Partition.of(summary.getKey(), granularity);
+                // Daily layout keys fall in daily partitions even when compacting hourly, so close on the partition's own end
+                if (Objects.nonNull(partition) && !partition.granularity.partitionEnd(partition.start).plus(COMPACTION_GRACE).isAfter(now)) {
+                    partitions.computeIfAbsent(partition, key -> new ArrayList<>()).add(summary);
+                }
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+        return partitions;
+    }
+
+    /**
+     * Concatenates the CSV objects into a single object, keeping only the header of the first one. The merged
+     * content is spooled to a temporary file so it is never held in memory.
+     *
+     * @param bucketName   String name of the bucket holding the objects
+     * @param objects      List of objects to merge in key order
+     * @param compactedKey String key to write the merged object to
+     * @return long size in bytes of the merged object
+     */
+    private long merge(final String bucketName, final List<S3ObjectSummary> objects, final String compactedKey) {
+        File mergedFile = null;
+        try {
+            mergedFile = File.createTempFile("s3-compaction-", ".csv");
+            try (Writer writer = new BufferedWriter(Files.newBufferedWriter(mergedFile.toPath(), StandardCharsets.UTF_8))) {
+                boolean headerWritten = false;
+                for (S3ObjectSummary object : objects) {
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            s3FileService.retrieveBucketInputStream(bucketName, object.getKey()), StandardCharsets.UTF_8))) {
+                        String header = reader.readLine();
+                        if (Objects.isNull(header)) {
+                            continue;
+                        }
+                        if (!headerWritten) {
+                            writer.write(header);
+                            headerWritten = true;
+                        }
+                        String line;
+                        while (Objects.nonNull(line = reader.readLine())) {
+                            writer.write(S3FileService.CSV_LINE_SEPARATOR);
+                            writer.write(line);
+                        }
+                    }
+                }
+            }
+            s3Client.putObject(bucketName, compactedKey, mergedFile);
+            return mergedFile.length();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot merge exports into " + compactedKey, e);
+        } finally {
+            if (Objects.nonNull(mergedFile) && !mergedFile.delete()) {
+                LOG.warn("Unable to delete compaction file {}", mergedFile);
+            }
+        }
+    }
+
+    /**
+     * Builds the severity prefix for an alert.
+     *
+     * @param severity String severity of the alert, may be null
+     * @return String prefix such as "severity=severe/"
+     */
+    private static String severityPrefix(final String severity) {
+        final String value = CommonUtil.isNullOrEmpty(severity) ? "unknown"
+                : severity.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-");
+        return "severity=" + value + "/";
+    }
+
+    /**
+     * Retrieves the configured key layout.
+     *
+     * @return AlertKeyLayout exports are written with
+     */
+    private AlertKeyLayout keyLayout() {
+        return AlertKeyLayout.valueOf(CommonUtil.defaultIfNullOrEmpty(s3Properties.getKeyLayout(), AlertKeyLayout.FLAT.name())
+                .toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Retrieves the configured compaction granularity.
+     *
+     * @return AlertKeyLayout partitions are compacted into, either DAILY or HOURLY
+     */
+    private AlertKeyLayout compactionGranularity() {
+        AlertKeyLayout granularity = AlertKeyLayout.valueOf(CommonUtil.defaultIfNullOrEmpty(
+                s3Properties.getCompactionGranularity(), AlertKeyLayout.DAILY.name()).toUpperCase(Locale.ROOT));
+        if (granularity == AlertKeyLayout.FLAT) {
+            throw new AlertServiceException("Compaction granularity must be DAILY or HOURLY");
+        }
+        return granularity;
+    }
+
+    /**
+     * A compaction partition, the start of the time window and the severity prefix if there is one.
+     */
+    private static class Partition implements Comparable<Partition> {
+        private final AlertKeyLayout granularity;
+        private final ZonedDateTime start;
+        private final String severityPrefix;
+
+        /**
+         * Constructor for a {@link Partition}
+         *
+         * @param granularity    AlertKeyLayout size of the partition
+         * @param start          ZonedDateTime the partition starts at
+         * @param severityPrefix String severity prefix, empty if exports are not split by severity
+         */
+        private Partition(AlertKeyLayout granularity, ZonedDateTime start, String severityPrefix) {
+            this.granularity = granularity;
+            this.start = start;
+            this.severityPrefix = severityPrefix;
+        }
+
+        /**
+         * Parses the partition an export key falls in. Keys written with a daily layout can not be compacted into
+         * hourly partitions so they are compacted into daily ones instead.
+         *
+         * @param key         String S3 key of the export
+         * @param granularity AlertKeyLayout partitions are compacted into
+         * @return Partition the key falls in or null if the key is not a partitioned export
+         */
+        static Partition of(final String key, final AlertKeyLayout granularity) {
+            Matcher matcher = PARTITIONED_KEY.matcher(key);
+            if (!matcher.matches()) {
+                return null;
+            }
+            final boolean hourly = granularity == AlertKeyLayout.HOURLY && Objects.nonNull(matcher.group(4));
+            ZonedDateTime start = ZonedDateTime.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                    Integer.parseInt(matcher.group(3)), hourly ? Integer.parseInt(matcher.group(4)) : 0, 0, 0, 0, ZoneOffset.UTC);
+            return new Partition(hourly ? AlertKeyLayout.HOURLY : AlertKeyLayout.DAILY, start,
+                    Objects.isNull(matcher.group(5)) ? "" : matcher.group(5) + "/");
+        }
+
+        /**
+         * Builds the key the merged object of this partition is written to.
+         *
+         * @return String S3 key of the merged object
+         */
+        String compactedKey() {
+            return granularity.partitionPrefix(start) + severityPrefix + COMPACTED_PREFIX + start.toInstant().toEpochMilli() + ".csv";
+        }
+
+        @Override
+        public int compareTo(Partition other) {
+            return compactedKey().compareTo(other.compactedKey());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Partition && compactedKey().equals(((Partition) other).compactedKey());
+        }
+
+        @Override
+        public int hashCode() {
+            return compactedKey().hashCode();
+        }
+    }
+}
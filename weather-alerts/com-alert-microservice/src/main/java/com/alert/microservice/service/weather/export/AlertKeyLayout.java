@@ -0,0 +1,74 @@
+package com.alert.microservice.service.weather.export;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Layouts for the S3 keys Weather Alert exports are written under. Partitioned layouts use Hive style
+ * {@code name=value} prefixes so readers can prune by date just by listing a prefix, ex.
+ * {@code year=2019/month=06/day=01/hour=13/weather-alert-1559394000000.csv}.
+ */
+public enum AlertKeyLayout {
+    /**
+     * Every export is written to the root of the bucket.
+     */
+    FLAT(null),
+    /**
+     * Exports are grouped into {@code year=/month=/day=} prefixes.
+     */
+    DAILY(ChronoUnit.DAYS),
+    /**
+     * Exports are grouped into {@code year=/month=/day=/hour=} prefixes.
+     */
+    HOURLY(ChronoUnit.HOURS);
+
+    // Unit of time covered by a single partition, null when the layout is not partitioned
+    private final ChronoUnit unit;
+
+    /**
+     * Constructor for an {@link AlertKeyLayout}
+     *
+     * @param unit ChronoUnit covered by a single partition
+     */
+    AlertKeyLayout(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Builds the prefix of the partition the provided time falls in.
+     *
+     * @param dateTime ZonedDateTime to build the prefix for, expected to be in UTC
+     * @return String prefix ending in "/", or an empty String for the {@link #FLAT} layout
+     */
+    public String partitionPrefix(final ZonedDateTime dateTime) {
+        if (this == FLAT) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder()
+                .append(String.format("year=%04d/month=%02d/day=%02d/", dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth()));
+        if (this == HOURLY) {
+            prefix.append(String.format("hour=%02d/", dateTime.getHour()));
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Truncates the provided time to the start of the partition it falls in.
+     *
+     * @param dateTime ZonedDateTime to truncate
+     * @return ZonedDateTime at the start of the partition
+     */
+    public ZonedDateTime partitionStart(final ZonedDateTime dateTime) {
+        return this == FLAT ? dateTime : dateTime.truncatedTo(unit);
+    }
+
+    /**
+     * Determines the end of the partition that starts at the provided time.
+     *
+     * @param partitionStart ZonedDateTime the partition starts at
+     * @return ZonedDateTime the partition ends at, exclusive
+     */
+    public ZonedDateTime partitionEnd(final ZonedDateTime partitionStart) {
+        return this == FLAT ? partitionStart : partitionStart.plus(1, unit);
+    }
+}
@@ -0,0 +1,268 @@
+package com.alert.microservice.service.weather.index;
+
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.util.CollectionUtil;
+import com.alert.microservice.util.CommonUtil;
+import com.alert.microservice.util.TransformUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, in-memory index over a snapshot of {@link WeatherAlert} data. Alerts are stored in an array like list
+ * and each indexed field keeps an inverted index of value -> {@link BitSet} of alert positions so queries can be
+ * answered by intersecting bit sets instead of scanning every alert.
+ * <p>
+ * Inverted indexes are kept for {@code severity}, {@code urgency}, {@code category}, {@code certainty} and the
+ * tokens of {@code areaDesc}. All other populated query fields are checked against the alerts that survive the
+ * bit set intersection. Matching is case insensitive and exact, there is no fuzzy matching.
+ * <p>
+ * Instances are never modified after construction which makes them safe to read from many threads at once. Copies
+ * with alerts marked inactive share the inverted indexes of the index they were made from, since the active flag is
+ * not indexed.
+ */
+public class WeatherAlertIndex {
+    // Splits free text into tokens on anything that is not a letter or digit
+    private static final Pattern TOKEN_SPLIT = Pattern.compile("[^\\p{Alnum}]+");
+    // Shared empty index
+    private static final WeatherAlertIndex EMPTY = new WeatherAlertIndex(Collections.emptyList());
+
+    // Final variables that are set in the constructor
+    private final List<WeatherAlert> alerts;
+    private final Map<String, BitSet> severityIndex;
+    private final Map<String, BitSet> urgencyIndex;
+    private final Map<String, BitSet> categoryIndex;
+    private final Map<String, BitSet> certaintyIndex;
+    private final Map<String, BitSet> areaDescIndex;
+    // Exact id -> positions, used to find the alerts to mark inactive without scanning every alert
+    private final Map<String, BitSet> idIndex;
+
+    /**
+     * Constructor for a {@link WeatherAlertIndex} that builds all inverted indexes from the provided alerts.
+     *
+     * @param weatherAlerts Collection of {@link WeatherAlert} data to index, null values are ignored
+     */
+    public WeatherAlertIndex(Collection<WeatherAlert> weatherAlerts) {
+        this.alerts = Collections.unmodifiableList(CollectionUtil.removeNulls(weatherAlerts));
+        this.severityIndex = buildIndex(alert -> term(alert.getSeverity()));
+        this.urgencyIndex = buildIndex(alert -> term(alert.getUrgency()));
+        this.categoryIndex = buildIndex(alert -> term(alert.getCategory()));
+        this.certaintyIndex = buildIndex(alert -> term(alert.getCertainty()));
+        this.areaDescIndex = buildIndex(alert -> tokens(alert.getAreaDesc()));
+        this.idIndex = buildIndex(alert -> CommonUtil.isNullOrEmpty(alert.getId()) ? Stream.empty() : Stream.of(alert.getId()));
+    }
+
+    /**
+     * Constructor for a copy of the provided {@link WeatherAlertIndex} holding the provided alerts, which differ from
+     * the alerts of the source index in unindexed fields only, so the inverted indexes can be shared.
+     *
+     * @param source WeatherAlertIndex to share the inverted indexes of
+     * @param alerts List of {@link WeatherAlert} data at the same positions as in the source index
+     */
+    private WeatherAlertIndex(final WeatherAlertIndex source, final List<WeatherAlert> alerts) {
+        this.alerts = Collections.unmodifiableList(alerts);
+        this.severityIndex = source.severityIndex;
+        this.urgencyIndex = source.urgencyIndex;
+        this.categoryIndex = source.categoryIndex;
+        this.certaintyIndex = source.certaintyIndex;
+        this.areaDescIndex = source.areaDescIndex;
+        this.idIndex = source.idIndex;
+    }
+
+    /**
+     * Retrieves an index that holds no alerts.
+     *
+     * @return WeatherAlertIndex with no data
+     */
+    public static WeatherAlertIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Number of alerts held in this index.
+     *
+     * @return int number of alerts
+     */
+    public int size() {
+        return alerts.size();
+    }
+
+    /**
+     * Retrieves alerts in the order they were indexed limiting the number of results.
+     *
+     * @param limit int the max number of results to return
+     * @return List of at most limit {@link WeatherAlert} objects
+     */
+    public List<WeatherAlert> selectAll(final int limit) {
+        return alerts.subList(0, Math.max(0, Math.min(limit, alerts.size())));
+    }
+
+    /**
+     * Searches the index for alerts that match every populated field in the provided query alert.
+     *
+     * @param query WeatherAlert holding the values to match on, null fields are ignored
+     * @param limit int the max number of results to return
+     * @return List of at most limit matching {@link WeatherAlert} objects in the order they were indexed
+     */
+    public List<WeatherAlert> search(final WeatherAlert query, final int limit) {
+        if (Objects.isNull(query)) {
+            return selectAll(limit);
+        }
+        // Start with every alert and narrow down using the inverted indexes
+        BitSet matches = new BitSet(alerts.size());
+        matches.set(0, alerts.size());
+        intersect(matches, severityIndex, term(query.getSeverity()));
+        intersect(matches, urgencyIndex, term(query.getUrgency()));
+        intersect(matches, categoryIndex, term(query.getCategory()));
+        intersect(matches, certaintyIndex, term(query.getCertainty()));
+        intersect(matches, areaDescIndex, tokens(query.getAreaDesc()));
+        // Check the fields that are not indexed against whatever is left
+        Predicate<WeatherAlert> residual = residualPredicate(query);
+        List<WeatherAlert> results = new ArrayList<>();
+        for (int i = matches.nextSetBit(0); i >= 0 && results.size() < limit; i = matches.nextSetBit(i + 1)) {
+            WeatherAlert alert = alerts.get(i);
+            if (residual.test(alert)) {
+                results.add(alert);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Creates a copy of this index where the alerts with the provided ids are marked inactive. Alerts are copied
+     * before being changed so the alerts held by this index, and anyone reading them, are never modified. Alerts are
+     * found through the id index and the copy shares the inverted indexes of this index, so past copying the list of
+     * alert references only the expired alerts are touched.
+     *
+     * @param ids Set of alert ids that are no longer active
+     * @return WeatherAlertIndex with the alerts marked inactive, or this index if none of them are active in it
+     */
+    public WeatherAlertIndex withInactive(final Set<String> ids) {
+        WeatherAlert[] updated = null;
+        for (String id : ids) {
+            BitSet positions = idIndex.get(id);
+            if (Objects.isNull(positions)) {
+                continue;
+            }
+            for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                WeatherAlert alert = alerts.get(i);
+                if (Boolean.TRUE.equals(alert.getActive())) {
+                    if (Objects.isNull(updated)) {
+                        updated = alerts.toArray(new WeatherAlert[0]);
+                    }
+                    WeatherAlert inactive = TransformUtil.convert(TransformUtil.mapEntity(alert), WeatherAlert.class);
+                    inactive.setActive(false);
+                    updated[i] = inactive;
+                }
+            }
+        }
+        return Objects.isNull(updated) ? this : new WeatherAlertIndex(this, Arrays.asList(updated));
+    }
+
+    /**
+     * Builds an inverted index of term -> BitSet of alert positions using the provided term extractor.
+     *
+     * @param extractor Function to pull the terms to index from an alert
+     * @return Map of term to the positions of alerts that contain it
+     */
+    private Map<String, BitSet> buildIndex(final Function<WeatherAlert, Stream<String>> extractor) {
+        Map<String, BitSet> index = new HashMap<>();
+        for (int i = 0; i < alerts.size(); i++) {
+            final int position = i;
+            extractor.apply(alerts.get(i))
+                    .forEach(term -> index.computeIfAbsent(term, key -> new BitSet(alerts.size())).set(position));
+        }
+        return index;
+    }
+
+    /**
+     * ANDs the posting of every provided term into the matches. If a term is not in the index nothing can match.
+     *
+     * @param matches BitSet of candidate positions that is narrowed in place
+     * @param index   inverted index to pull postings from
+     * @param terms   Stream of terms that must all be present
+     */
+    private static void intersect(final BitSet matches, final Map<String, BitSet> index, final Stream<String> terms) {
+        terms.forEach(term -> {
+            BitSet posting = index.get(term);
+            if (Objects.isNull(posting)) {
+                matches.clear();
+            } else {
+                matches.and(posting);
+            }
+        });
+    }
+
+    /**
+     * Creates a predicate for the populated query fields that are not covered by an inverted index.
+     *
+     * @param query WeatherAlert holding the values to match on
+     * @return Predicate that is true when an alert matches all populated residual fields
+     */
+    private static Predicate<WeatherAlert> residualPredicate(final WeatherAlert query) {
+        List<Predicate<WeatherAlert>> predicates = new ArrayList<>();
+        if (CommonUtil.isNotEmpty(query.getId())) {
+            predicates.add(alert -> query.getId().equalsIgnoreCase(alert.getId()));
+        }
+        if (CommonUtil.isNotEmpty(query.getTitle())) {
+            Set<String> titleTokens = tokens(query.getTitle()).collect(Collectors.toSet());
+            predicates.add(alert -> tokens(alert.getTitle()).collect(Collectors.toSet()).containsAll(titleTokens));
+        }
+        if (CommonUtil.isNotEmpty(query.getSummary())) {
+            Set<String> summaryTokens = tokens(query.getSummary()).collect(Collectors.toSet());
+            predicates.add(alert -> tokens(alert.getSummary()).collect(Collectors.toSet()).containsAll(summaryTokens));
+        }
+        if (Objects.nonNull(query.getActive())) {
+            predicates.add(alert -> query.getActive().equals(alert.getActive()));
+        }
+        if (Objects.nonNull(query.getEffective())) {
+            predicates.add(alert -> query.getEffective().equals(alert.getEffective()));
+        }
+        if (Objects.nonNull(query.getExpires())) {
+            predicates.add(alert -> query.getExpires().equals(alert.getExpires()));
+        }
+        if (Objects.nonNull(query.getUpdatedDate())) {
+            predicates.add(alert -> query.getUpdatedDate().equals(alert.getUpdatedDate()));
+        }
+        return predicates.stream().reduce(alert -> true, Predicate::and);
+    }
+
+    /**
+     * Normalizes a whole field value into a single term.
+     *
+     * @param value String to normalize
+     * @return Stream of zero or one lower cased term
+     */
+    private static Stream<String> term(final String value) {
+        return CommonUtil.isNullOrEmpty(value) ? Stream.empty() : Stream.of(value.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Splits free text into lower cased tokens.
+     *
+     * @param value String to tokenize
+     * @return Stream of distinct lower cased tokens
+     */
+    private static Stream<String> tokens(final String value) {
+        if (CommonUtil.isNullOrEmpty(value)) {
+            return Stream.empty();
+        }
+        return TOKEN_SPLIT.splitAsStream(value.toLowerCase(Locale.ROOT))
+                .filter(CommonUtil::isNotEmpty)
+                .distinct();
+    }
+}
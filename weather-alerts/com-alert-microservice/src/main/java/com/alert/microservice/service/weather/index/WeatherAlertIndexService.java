@@ -0,0 +1,108 @@
+package com.alert.microservice.service.weather.index;
+
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.config.weather.WeatherConstants;
+import com.alert.microservice.util.CollectionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service that holds the {@link WeatherAlertIndex} built from the most recent feed cycle. Each cycle builds a brand
+ * new index off to the side and swaps it in by reference so readers never see a partially built index and never
+ * need to lock.
+ * <p>
+ * Annotations Explained:
+ *
+ * <ul>
+ *  <li>
+ *      Service = Indicates that an annotated class is a "Service".
+ *  </li>
+ *  <li>
+ *      Value = Annotation at the field or method/constructor parameter level
+ *      that indicates a default value expression for the affected argument.
+ *  </li>
+ * </ul>
+ */
+@Service
+public class WeatherAlertIndexService {
+    // Logger for info/debug purposes
+    private static final Logger LOG = LoggerFactory.getLogger(WeatherAlertIndexService.class);
+
+    // Value from properties to dictate if searches should be served from memory even when Elasticsearch is enabled
+    @Value(WeatherConstants.PREFER_IN_MEMORY_INDEX_PROPERTY)
+    private Boolean preferInMemoryIndex;
+
+    // Index for the latest feed cycle
+    private final AtomicReference<WeatherAlertIndex> currentIndex = new AtomicReference<>(WeatherAlertIndex.empty());
+
+    /**
+     * Builds a new index from the provided alerts and swaps it in place of the current one.
+     *
+     * @param weatherAlerts Collection of {@link WeatherAlert} data from the latest feed cycle
+     */
+    public void rebuild(final Collection<WeatherAlert> weatherAlerts) {
+        final long start = System.nanoTime();
+        WeatherAlertIndex weatherAlertIndex = new WeatherAlertIndex(weatherAlerts);
+        currentIndex.set(weatherAlertIndex);
+        LOG.debug("Rebuilt in-memory Weather Alert index with {} alerts in {} micros",
+                weatherAlertIndex.size(), (System.nanoTime() - start) / 1000);
+    }
+
+    /**
+     * Marks the alerts with the provided ids as inactive by swapping in an updated copy of the current index.
+     *
+     * @param ids Collection of alert ids that have expired
+     */
+    public void deactivate(final Collection<String> ids) {
+        if (CollectionUtil.isEmpty(ids)) {
+            return;
+        }
+        final Set<String> expiredIds = CollectionUtil.setOf(ids);
+        currentIndex.updateAndGet(index -> index.withInactive(expiredIds));
+    }
+
+    /**
+     * Searches the current index for alerts matching the populated fields of the provided alert.
+     *
+     * @param weatherAlert WeatherAlert holding the values to match on
+     * @param limit        int the max number of results to return
+     * @return Collection of matching {@link WeatherAlert} data
+     */
+    public Collection<WeatherAlert> search(final WeatherAlert weatherAlert, final int limit) {
+        return currentIndex.get().search(weatherAlert, limit);
+    }
+
+    /**
+     * Retrieves alerts from the current index limiting the number of results.
+     *
+     * @param limit int the max number of results to return
+     * @return Collection of {@link WeatherAlert} data
+     */
+    public Collection<WeatherAlert> selectAll(final int limit) {
+        return currentIndex.get().selectAll(limit);
+    }
+
+    /**
+     * Determines if the index has been populated with alert data yet.
+     *
+     * @return boolean true if the current index holds alerts, false otherwise
+     */
+    public boolean isPopulated() {
+        return currentIndex.get().size() > 0;
+    }
+
+    /**
+     * Determines if searches should be served from the in-memory index before falling back on Elasticsearch.
+     *
+     * @return boolean true if the in-memory index is preferred, false otherwise
+     */
+    public boolean isPreferred() {
+        return preferInMemoryIndex;
+    }
+}
@@ -196,6 +196,26 @@ public class CollectionUtil {
         return isNotEmpty(collection) ? collection.size() : 0;
     }
 
+    /**
+     * Splits the provided list into consecutive sub lists of at most the provided size. The sub lists are views of
+     * the original list so no elements are copied.
+     *
+     * @param list List to split up
+     * @param size int max number of elements in each sub list, must be positive
+     * @param <T>  Generic Type T contained in the List
+     * @return List of sub lists, empty if the provided list is null or empty
+     */
+    public static <T> List<List<T>> partition(final List<T> list, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive but was " + size);
+        }
+        List<List<T>> partitions = new ArrayList<>();
+        for (int i = 0; i < size(list); i += size) {
+            partitions.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return partitions;
+    }
+
     /**
      * Convert Iterator to Non-Parallel Stream.
      *
@@ -0,0 +1,69 @@
+package com.alert.microservice.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Class provides methods to read and fingerprint files without copying them onto the heap. Files are memory-mapped
+ * so the operating system pages them in as they are read.
+ */
+public class FileUtil {
+    // Largest region of a file that can be mapped at once
+    private static final long MAX_MAPPED_REGION = Integer.MAX_VALUE;
+
+    /**
+     * Private default constructor
+     */
+    private FileUtil() {
+        // Private constructor to keep static code analysis happy
+    }
+
+    /**
+     * Memory-maps the whole file read-only. The mapping stays valid after this method returns even though the
+     * channel used to create it is closed.
+     *
+     * @param path Path of the file to map
+     * @return ByteBuffer positioned at the start of the file
+     * @throws IOException if the file cannot be read or is larger than 2GB
+     */
+    public static ByteBuffer map(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_MAPPED_REGION) {
+                throw new IOException("Cannot map " + path + " as it is larger than " + MAX_MAPPED_REGION + " bytes");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Computes the SHA-256 of the bytes remaining in the buffer and encodes it as Base64, the format AWS uses for
+     * fields such as a Lambda function's {@code CodeSha256}. The buffer's position is left unchanged.
+     *
+     * @param buffer ByteBuffer to hash
+     * @return String Base64 encoded SHA-256 of the buffer
+     */
+    public static String sha256Base64(final ByteBuffer buffer) {
+        MessageDigest digest = sha256();
+        digest.update(buffer.duplicate());
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Creates a SHA-256 {@link MessageDigest}, which every Java platform is required to support.
+     *
+     * @return MessageDigest for SHA-256
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this platform", e);
+        }
+    }
+}
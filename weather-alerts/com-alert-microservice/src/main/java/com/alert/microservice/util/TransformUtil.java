@@ -4,10 +4,12 @@ package com.alert.microservice.util;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class provides useful methods to Transform data in a application to help ease development when transforming data.
@@ -15,6 +17,11 @@ import java.util.Objects;
  * @author Jack Phillips
  */
 public class TransformUtil {
+    // Shared mapper used to create readers, once configured ObjectMapper and ObjectReader instances are thread-safe
+    private static final ObjectMapper SHARED_MAPPER = new ObjectMapper();
+    // Cache of readers by the Class they deserialize so type introspection only happens once per Class
+    private static final Map<Class<?>, ObjectReader> READER_CACHE = new ConcurrentHashMap<>();
+
     /**
      * Private default constructor
      */
@@ -49,6 +56,18 @@ public class TransformUtil {
         return new ObjectMapper();
     }
 
+    /**
+     * Retrieves a shared, thread-safe {@link ObjectReader} for the provided Class. Unlike {@link #mapper()} this
+     * does not create a new instance on each call so it is suited for hot paths that deserialize many records.
+     *
+     * @param clazz Class the reader should deserialize data into
+     * @return ObjectReader bound to the provided Class
+     */
+    public static ObjectReader reader(Class<?> clazz) {
+        CommonUtil.ifNullThrowException(clazz, new NullPointerException("Cannot create reader for null class!"));
+        return READER_CACHE.computeIfAbsent(clazz, SHARED_MAPPER::readerFor);
+    }
+
     /**
      * Converts a Object to another instance, ex. a Map to a POJO.
      *
@@ -0,0 +1,58 @@
+package com.alert.microservice.config.aws;
+
+import com.alert.microservice.api.AwsClientProperties;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.retry.PredefinedBackoffStrategies;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AwsClientConfigurationFactoryTest {
+
+    @Test
+    public void testCreateDefaults() {
+        ClientConfiguration clientConfiguration = AwsClientConfigurationFactory.create("s3", null);
+        Assert.assertEquals(50, clientConfiguration.getMaxConnections());
+        Assert.assertTrue(clientConfiguration.useTcpKeepAlive());
+        Assert.assertEquals(60000L, clientConfiguration.getConnectionTTL());
+        Assert.assertEquals(30000, clientConfiguration.getSocketTimeout());
+        Assert.assertEquals(3, clientConfiguration.getMaxErrorRetry());
+        Assert.assertFalse(clientConfiguration.useGzip());
+        Assert.assertTrue(clientConfiguration.getRetryPolicy().getBackoffStrategy()
+                instanceof PredefinedBackoffStrategies.FullJitterBackoffStrategy);
+    }
+
+    @Test
+    public void testCreateFromProperties() {
+        AwsClientProperties properties = new AwsClientProperties();
+        properties.setMaxConnections(200);
+        properties.setConnectionTtlMillis(-1L);
+        properties.setUseGzip(true);
+        ClientConfiguration clientConfiguration = AwsClientConfigurationFactory.create("s3", properties);
+        Assert.assertEquals(200, clientConfiguration.getMaxConnections());
+        Assert.assertEquals(-1L, clientConfiguration.getConnectionTTL());
+        Assert.assertTrue(clientConfiguration.useGzip());
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testCreateInvalidMaxConnections() {
+        AwsClientProperties properties = new AwsClientProperties();
+        properties.setMaxConnections(0);
+        AwsClientConfigurationFactory.create("s3", properties);
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testCreateInvalidBackoff() {
+        AwsClientProperties properties = new AwsClientProperties();
+        properties.setRetryBaseDelayMillis(500);
+        properties.setRetryMaxBackoffMillis(100);
+        AwsClientConfigurationFactory.create("lambda", properties);
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testCreateInvalidConnectionTtl() {
+        AwsClientProperties properties = new AwsClientProperties();
+        properties.setConnectionTtlMillis(0L);
+        AwsClientConfigurationFactory.create("lambda", properties);
+    }
+}
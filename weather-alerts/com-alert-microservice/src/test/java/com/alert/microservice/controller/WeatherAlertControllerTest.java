@@ -0,0 +1,73 @@
+package com.alert.microservice.controller;
+
+import com.alert.microservice.api.AlertStatistics;
+import com.alert.microservice.service.weather.WeatherAlertService;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class WeatherAlertControllerTest extends AbstractMockitoTest {
+
+    private static final long STATISTICS_VERSION = 1559347200000L;
+
+    @Mock
+    private WeatherAlertService weatherAlertService;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAlertController(weatherAlertService)).build();
+        Mockito.when(weatherAlertService.getStatisticsVersion()).thenReturn(STATISTICS_VERSION);
+    }
+
+    @Test
+    public void testStatisticsTaggedWithVersion() throws Exception {
+        AlertStatistics alertStatistics = new AlertStatistics();
+        alertStatistics.setTotal(3L);
+        Mockito.when(weatherAlertService.retrieveAlertStatisticsAsync("1h"))
+                .thenReturn(CompletableFuture.completedFuture(alertStatistics));
+        MvcResult mvcResult = mockMvc.perform(get("/weather/statistics").param("interval", "1h"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + STATISTICS_VERSION + "-1h\""))
+                .andExpect(jsonPath("$.total").value(3));
+    }
+
+    @Test
+    public void testStatisticsNotModified() throws Exception {
+        mockMvc.perform(get("/weather/statistics").header(HttpHeaders.IF_NONE_MATCH, "\"" + STATISTICS_VERSION + "-1d\""))
+                .andExpect(status().isNotModified());
+        Mockito.verify(weatherAlertService, Mockito.never()).retrieveAlertStatisticsAsync(Mockito.anyString());
+    }
+
+    @Test
+    public void testStatisticsModifiedOnceVersionChanges() throws Exception {
+        Mockito.when(weatherAlertService.retrieveAlertStatisticsAsync("1d"))
+                .thenReturn(CompletableFuture.completedFuture(new AlertStatistics()));
+        // A tag from before the statistics were invalidated
+        MvcResult mvcResult = mockMvc.perform(get("/weather/statistics").header(HttpHeaders.IF_NONE_MATCH, "\"" + (STATISTICS_VERSION - 1) + "-1d\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + STATISTICS_VERSION + "-1d\""));
+    }
+}
@@ -0,0 +1,82 @@
+package com.alert.microservice.controller.aws;
+
+import com.alert.microservice.service.aws.S3FileService;
+import com.alert.microservice.service.aws.S3InventoryService;
+import com.alert.microservice.service.aws.S3TransferService;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class S3ControllerTest extends AbstractMockitoTest {
+    private static final String BUCKET_NAME = "BUCKET";
+    private static final String KEY = "alerts.csv";
+    private static final String ETAG = "6f5902ac237024bdd0c176cb93063dc4";
+
+    @Mock
+    private S3FileService s3FileService;
+    @Mock
+    private S3TransferService s3TransferService;
+    @Mock
+    private S3InventoryService s3InventoryService;
+
+    @InjectMocks
+    private S3Controller s3Controller;
+
+    @Before
+    public void setUp() {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(100);
+        metadata.setHeader(HttpHeaders.ETAG, ETAG);
+        Mockito.when(s3FileService.retrieveObjectMetadata(BUCKET_NAME, KEY)).thenReturn(metadata);
+    }
+
+    @Test
+    public void testDownloadOpensObjectInBody() throws IOException {
+        S3Object s3Object = new S3Object();
+        Mockito.when(s3FileService.retrieveObject(BUCKET_NAME, KEY, ETAG)).thenReturn(s3Object);
+        ResponseEntity<StreamingResponseBody> response = s3Controller.downloadFile(BUCKET_NAME, KEY, null);
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertEquals(100, response.getHeaders().getContentLength());
+        // Nothing is opened until the body is written
+        Mockito.verify(s3FileService, Mockito.never()).retrieveObject(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+        OutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        Mockito.verify(s3FileService).transfer(s3Object, outputStream);
+    }
+
+    @Test
+    public void testDownloadRangePinnedToETag() throws IOException {
+        S3Object s3Object = new S3Object();
+        Mockito.when(s3FileService.retrieveObject(BUCKET_NAME, KEY, ETAG, 90, 99)).thenReturn(s3Object);
+        ResponseEntity<StreamingResponseBody> response = s3Controller.downloadFile(BUCKET_NAME, KEY, "bytes=-10");
+        Assert.assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        Assert.assertEquals("bytes 90-99/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        Assert.assertEquals(10, response.getHeaders().getContentLength());
+        OutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        Mockito.verify(s3FileService).transfer(s3Object, outputStream);
+    }
+
+    @Test
+    public void testDownloadRangeNotSatisfiable() {
+        ResponseEntity<StreamingResponseBody> response = s3Controller.downloadFile(BUCKET_NAME, KEY, "bytes=100-");
+        Assert.assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        Assert.assertEquals("bytes */100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        Mockito.verify(s3FileService, Mockito.never())
+                .retrieveObject(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong());
+    }
+}
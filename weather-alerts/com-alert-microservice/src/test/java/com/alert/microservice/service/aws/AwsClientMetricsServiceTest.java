@@ -0,0 +1,49 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.ClientPoolMetrics;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class AwsClientMetricsServiceTest {
+
+    @Test
+    public void testCollectPoolMetrics() {
+        AwsClientMetricsService awsClientMetricsService = new AwsClientMetricsService();
+        RequestMetricCollector collector = awsClientMetricsService.collector("s3", 10);
+        Assert.assertSame(collector, awsClientMetricsService.collector("s3", 10));
+
+        collector.collectMetrics(request(8, 2, 3, 1), new Response<>(null, null));
+        collector.collectMetrics(request(4, 6, 0, 2), null);
+
+        List<ClientPoolMetrics> metrics = awsClientMetricsService.metrics();
+        Assert.assertEquals(1, metrics.size());
+        ClientPoolMetrics s3Metrics = metrics.get(0);
+        Assert.assertEquals("s3", s3Metrics.getClientName());
+        Assert.assertEquals(4, s3Metrics.getLeased().intValue());
+        Assert.assertEquals(6, s3Metrics.getAvailable().intValue());
+        Assert.assertEquals(8, s3Metrics.getMaxLeased().intValue());
+        Assert.assertEquals(3, s3Metrics.getMaxPending().intValue());
+        Assert.assertEquals(0.4, s3Metrics.getUtilization(), 0.0001);
+        Assert.assertEquals(2L, s3Metrics.getRequestCount().longValue());
+        Assert.assertEquals(1L, s3Metrics.getRetryCount().longValue());
+        Assert.assertEquals(1L, s3Metrics.getErrorCount().longValue());
+    }
+
+    private static DefaultRequest<Object> request(int leased, int available, int pending, int httpRequests) {
+        AWSRequestMetrics requestMetrics = new AWSRequestMetricsFullSupport();
+        requestMetrics.setCounter(AWSRequestMetrics.Field.HttpClientPoolLeasedCount, leased);
+        requestMetrics.setCounter(AWSRequestMetrics.Field.HttpClientPoolAvailableCount, available);
+        requestMetrics.setCounter(AWSRequestMetrics.Field.HttpClientPoolPendingCount, pending);
+        requestMetrics.setCounter(AWSRequestMetrics.Field.RequestCount, httpRequests);
+        DefaultRequest<Object> request = new DefaultRequest<>("s3");
+        request.setAWSRequestMetrics(requestMetrics);
+        return request;
+    }
+}
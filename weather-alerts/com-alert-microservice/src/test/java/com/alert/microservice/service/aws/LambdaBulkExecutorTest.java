@@ -0,0 +1,98 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.BulkLambdaResult;
+import com.alert.microservice.api.LambdaOperationResult;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LambdaBulkExecutorTest {
+
+    @Test
+    public void testExecuteAggregatesResults() {
+        List<String> names = Arrays.asList("a", "b", "missing", "c");
+        BulkLambdaResult result = new LambdaBulkExecutor(4, 3).execute("publish-version", names, name -> {
+            if ("missing".equals(name)) {
+                throw new ResourceNotFoundException("Function not found");
+            }
+            return "1";
+        });
+        Assert.assertEquals("publish-version", result.getOperation());
+        Assert.assertEquals(3, result.getSucceeded().intValue());
+        Assert.assertEquals(1, result.getFailed().intValue());
+        Assert.assertEquals(0, result.getThrottled().intValue());
+        Assert.assertEquals(4, result.getResults().size());
+        LambdaOperationResult missing = result.getResults().get(2);
+        Assert.assertEquals("missing", missing.getFunctionName());
+        Assert.assertFalse(missing.getSuccess());
+        // Failures that are not throttling are not retried
+        Assert.assertEquals(1, missing.getAttempts().intValue());
+        Assert.assertEquals("1", result.getResults().get(0).getVersion());
+    }
+
+    @Test
+    public void testExecuteRetriesThrottledOperations() {
+        ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        BulkLambdaResult result = new LambdaBulkExecutor(4, 3).execute("delete", Arrays.asList("a", "b"), name -> {
+            if ("a".equals(name) && attempts.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet() == 1) {
+                TooManyRequestsException throttled = new TooManyRequestsException("Rate exceeded");
+                throttled.setStatusCode(429);
+                throttled.setErrorCode("TooManyRequestsException");
+                throw throttled;
+            }
+            return null;
+        });
+        Assert.assertEquals(2, result.getSucceeded().intValue());
+        Assert.assertEquals(1, result.getThrottled().intValue());
+        Assert.assertEquals(2, result.getResults().get(0).getAttempts().intValue());
+    }
+
+    @Test
+    public void testExecuteReusesPool() {
+        LambdaBulkExecutor executor = new LambdaBulkExecutor(2, 1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<String> names = Arrays.asList("a", "b", "c", "d");
+        for (int i = 0; i < 3; i++) {
+            executor.execute("publish-version", names, name -> {
+                threads.add(Thread.currentThread().getName());
+                return "1";
+            });
+        }
+        // Every bulk operation ran on the same bounded pool
+        Assert.assertTrue(threads.size() <= 2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testExecuteNoFunctions() {
+        BulkLambdaResult result = new LambdaBulkExecutor(4, 3).execute("delete", Collections.emptyList(), name -> null);
+        Assert.assertEquals(0, result.getSucceeded().intValue());
+        Assert.assertTrue(result.getResults().isEmpty());
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws InterruptedException {
+        LambdaBulkExecutor.AdaptiveLimit limit = new LambdaBulkExecutor.AdaptiveLimit(8);
+        limit.acquire();
+        limit.release(true);
+        Assert.assertEquals(4, limit.current());
+        limit.acquire();
+        limit.release(true);
+        Assert.assertEquals(2, limit.current());
+        // Grows back by one after as many successes in a row as the current limit
+        for (int i = 0; i < 2; i++) {
+            limit.acquire();
+            limit.release(false);
+        }
+        Assert.assertEquals(3, limit.current());
+    }
+}
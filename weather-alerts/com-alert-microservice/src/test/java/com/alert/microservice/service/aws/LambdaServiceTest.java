@@ -1,23 +1,48 @@
 package com.alert.microservice.service.aws;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BulkLambdaResult;
 import com.alert.microservice.tests.AbstractMockitoTest;
 import com.alert.microservice.util.CollectionUtil;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.SdkHttpMetadata;
 import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.model.DeleteFunctionRequest;
 import com.amazonaws.services.lambda.model.DeleteFunctionResult;
 import com.amazonaws.services.lambda.model.FunctionConfiguration;
 import com.amazonaws.services.lambda.model.GetFunctionRequest;
 import com.amazonaws.services.lambda.model.GetFunctionResult;
+import com.amazonaws.services.lambda.model.ListFunctionsRequest;
 import com.amazonaws.services.lambda.model.ListFunctionsResult;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+import com.amazonaws.services.lambda.model.Runtime;
+import com.amazonaws.services.lambda.model.UpdateFunctionCodeRequest;
+import com.amazonaws.services.lambda.model.UpdateFunctionCodeResult;
+import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
 import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.InjectMocks;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Objects;
+
 public class LambdaServiceTest extends AbstractMockitoTest {
 
     private static final String DEFAULT_FUNCTION_NAME = "FUNCTION-NAME";
+    private static final String DEFAULT_HANDLER = "com.alert.Handler";
+    private static final String DEFAULT_ROLE = "arn:aws:iam::123456:role/irrelevant";
+    // SHA-256 of "hello world" encoded as Base64
+    private static final String DEFAULT_CODE_SHA256 = "uU0nuZNNPgilLlLX2n2r+sSE7+N6U4DukIj3rOLvzek=";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     @Mock
     private AwsLambdaProperties lambdaProperties;
@@ -25,16 +50,48 @@ public class LambdaServiceTest extends AbstractMockitoTest {
     @Mock
     private AWSLambda awsLambda;
 
-    @InjectMocks
+    @Mock
+    private AWSLambda bulkAwsLambda;
+
     private LambdaService lambdaService;
 
+    @Before
+    public void setUp() {
+        // Both clients are AWSLambda so they are passed explicitly rather than injected by type
+        lambdaService = new LambdaService(lambdaProperties, awsLambda, bulkAwsLambda);
+    }
+
     @Test
     public void testListLambdaFunctions() {
-        Mockito.when(awsLambda.listFunctions()).thenReturn(defaultListFunctionsResult());
+        Mockito.when(awsLambda.listFunctions(Mockito.any(ListFunctionsRequest.class))).thenReturn(defaultListFunctionsResult());
         ListFunctionsResult actualResult = lambdaService.listLambdaFunctions();
         Assert.assertEquals(DEFAULT_FUNCTION_NAME, actualResult.getFunctions().get(0).getFunctionName());
     }
 
+    @Test
+    public void testListLambdaFunctionsAcrossPages() {
+        Mockito.when(awsLambda.listFunctions(Mockito.any(ListFunctionsRequest.class))).thenAnswer(invocation -> {
+            ListFunctionsRequest request = invocation.getArgument(0);
+            return Objects.isNull(request.getMarker())
+                    ? defaultListFunctionsResult().withNextMarker("marker")
+                    : defaultListFunctionsResult();
+        });
+        Assert.assertEquals(2, lambdaService.lambdaFunctionCount());
+    }
+
+    @Test
+    public void testListLambdaFunctionsCached() {
+        Mockito.when(lambdaProperties.getMetadataCacheTtlMillis()).thenReturn(60000L);
+        Mockito.when(awsLambda.listFunctions(Mockito.any(ListFunctionsRequest.class))).thenReturn(defaultListFunctionsResult());
+        lambdaService.listLambdaFunctions();
+        Assert.assertEquals(CollectionUtil.listOf(DEFAULT_FUNCTION_NAME), lambdaService.getLambdaFunctionNames());
+        Mockito.verify(awsLambda, Mockito.times(1)).listFunctions(Mockito.any(ListFunctionsRequest.class));
+        // Deleting a function clears the cache
+        lambdaService.deleteLambdaFunction(DEFAULT_FUNCTION_NAME);
+        lambdaService.listLambdaFunctions();
+        Mockito.verify(awsLambda, Mockito.times(2)).listFunctions(Mockito.any(ListFunctionsRequest.class));
+    }
+
     @Test
     public void testGetLambdaFunction() {
         GetFunctionResult mockResult = new GetFunctionResult();
@@ -47,9 +104,67 @@ public class LambdaServiceTest extends AbstractMockitoTest {
 
     @Test
     public void testLambdaFunctionExists() {
-        Mockito.when(awsLambda.listFunctions()).thenReturn(defaultListFunctionsResult());
+        Mockito.when(lambdaProperties.getMetadataCacheTtlMillis()).thenReturn(60000L);
+        GetFunctionResult mockResult = new GetFunctionResult();
+        mockResult.setConfiguration(defaultFunctionConfiguration());
+        Mockito.when(awsLambda.getFunction(Mockito.any(GetFunctionRequest.class))).thenAnswer(invocation -> {
+            GetFunctionRequest request = invocation.getArgument(0);
+            if (DEFAULT_FUNCTION_NAME.equals(request.getFunctionName())) {
+                return mockResult;
+            }
+            throw new ResourceNotFoundException("Function not found");
+        });
         Assert.assertTrue(lambdaService.lambdaFunctionExists(DEFAULT_FUNCTION_NAME));
         Assert.assertFalse(lambdaService.lambdaFunctionExists(DEFAULT_FUNCTION_NAME + "-TEST"));
+        // The function is answered from the cache, the missing function is not remembered
+        Assert.assertTrue(lambdaService.lambdaFunctionExists(DEFAULT_FUNCTION_NAME));
+        Assert.assertFalse(lambdaService.lambdaFunctionExists(DEFAULT_FUNCTION_NAME + "-TEST"));
+        Mockito.verify(awsLambda, Mockito.times(3)).getFunction(Mockito.any(GetFunctionRequest.class));
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void testGetMissingLambdaFunction() {
+        Mockito.when(awsLambda.getFunction(Mockito.any(GetFunctionRequest.class)))
+                .thenThrow(new ResourceNotFoundException("Function not found"));
+        lambdaService.getLambdaFunction(DEFAULT_FUNCTION_NAME);
+    }
+
+    @Test
+    public void testCreateOrUpdateSkipsUnchangedFunction() throws IOException {
+        stubDeployment(DEFAULT_CODE_SHA256);
+        lambdaService.createOrUpdateLambdaFunction(lambdaProperties);
+        Mockito.verify(awsLambda, Mockito.never()).updateFunctionCode(Mockito.any(UpdateFunctionCodeRequest.class));
+        Mockito.verify(awsLambda, Mockito.never()).updateFunctionConfiguration(Mockito.any(UpdateFunctionConfigurationRequest.class));
+    }
+
+    @Test
+    public void testCreateOrUpdateUploadsChangedCode() throws IOException {
+        stubDeployment("stale");
+        HttpResponse httpResponse = new HttpResponse(null, null);
+        httpResponse.setStatusCode(200);
+        UpdateFunctionCodeResult updateResult = new UpdateFunctionCodeResult();
+        updateResult.setSdkHttpMetadata(SdkHttpMetadata.from(httpResponse));
+        Mockito.when(awsLambda.updateFunctionCode(Mockito.any(UpdateFunctionCodeRequest.class))).thenReturn(updateResult);
+        lambdaService.createOrUpdateLambdaFunction(lambdaProperties);
+        Mockito.verify(awsLambda).updateFunctionCode(Mockito.any(UpdateFunctionCodeRequest.class));
+        Mockito.verify(awsLambda, Mockito.never()).updateFunctionConfiguration(Mockito.any(UpdateFunctionConfigurationRequest.class));
+    }
+
+    @Test
+    public void testDeleteAllLambdaFunctions() {
+        Mockito.when(lambdaProperties.getBulkConcurrency()).thenReturn(4);
+        Mockito.when(lambdaProperties.getBulkMaxAttempts()).thenReturn(3);
+        Mockito.when(awsLambda.listFunctions(Mockito.any(ListFunctionsRequest.class))).thenAnswer(invocation -> {
+            ListFunctionsRequest request = invocation.getArgument(0);
+            return Objects.isNull(request.getMarker())
+                    ? defaultListFunctionsResult().withNextMarker("marker")
+                    : new ListFunctionsResult().withFunctions(new FunctionConfiguration().withFunctionName("OTHER"));
+        });
+        BulkLambdaResult result = lambdaService.deleteAllLambdaFunctions();
+        Assert.assertEquals(2, result.getSucceeded().intValue());
+        // Bulk deletes go through the client without SDK retries
+        Mockito.verify(bulkAwsLambda, Mockito.times(2)).deleteFunction(Mockito.any(DeleteFunctionRequest.class));
+        Mockito.verify(awsLambda, Mockito.never()).deleteFunction(Mockito.any(DeleteFunctionRequest.class));
     }
 
     @Test
@@ -58,6 +173,24 @@ public class LambdaServiceTest extends AbstractMockitoTest {
         System.out.println(deleteFunctionResult);
     }
 
+    private void stubDeployment(String deployedCodeSha256) throws IOException {
+        File jar = temporaryFolder.newFile("function.jar");
+        Files.write(jar.toPath(), "hello world".getBytes(StandardCharsets.UTF_8));
+        Mockito.when(lambdaProperties.getFunctionName()).thenReturn(DEFAULT_FUNCTION_NAME);
+        Mockito.when(lambdaProperties.getJarPath()).thenReturn(jar.getAbsolutePath());
+        Mockito.when(lambdaProperties.getHandler()).thenReturn(DEFAULT_HANDLER);
+        Mockito.when(lambdaProperties.getRole()).thenReturn(DEFAULT_ROLE);
+        Mockito.when(lambdaProperties.getTimeout()).thenReturn(15);
+        Mockito.when(lambdaProperties.getMetadataCacheTtlMillis()).thenReturn(60000L);
+        FunctionConfiguration deployed = defaultFunctionConfiguration()
+                .withHandler(DEFAULT_HANDLER)
+                .withRole(DEFAULT_ROLE)
+                .withTimeout(15)
+                .withRuntime(Runtime.Java8)
+                .withCodeSha256(deployedCodeSha256);
+        Mockito.when(awsLambda.getFunction(Mockito.any(GetFunctionRequest.class))).thenReturn(new GetFunctionResult().withConfiguration(deployed));
+    }
+
     private ListFunctionsResult defaultListFunctionsResult() {
         ListFunctionsResult listFunctionsResult = new ListFunctionsResult();
         listFunctionsResult.setFunctions(CollectionUtil.listOf(defaultFunctionConfiguration()));
@@ -0,0 +1,211 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BucketDeletionResult;
+import com.alert.microservice.api.BucketInventory;
+import com.alert.microservice.api.ObjectListingPage;
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.api.UploadProgress;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import com.alert.microservice.tests.EmbeddedS3Server;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
+import com.amazonaws.services.s3.model.LambdaConfiguration;
+import com.amazonaws.services.s3.model.S3Event;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the S3 services with a real {@link AmazonS3} client against an {@link EmbeddedS3Server}
+ */
+public class S3EmbeddedServerTest extends AbstractMockitoTest {
+    private static final String BUCKET_NAME = "embedded-bucket";
+
+    private static EmbeddedS3Server server;
+    private static AmazonS3 s3Client;
+
+    @Mock
+    private LambdaService lambdaService;
+
+    private S3FileService s3FileService;
+    private S3InventoryService s3InventoryService;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = EmbeddedS3Server.start();
+        s3Client = server.client();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        s3Client.shutdown();
+        server.close();
+    }
+
+    @Before
+    public void setup() {
+        server.reset();
+        S3Properties s3Properties = new S3Properties();
+        s3FileService = new S3FileService(s3Client, lambdaService, s3Properties);
+        s3InventoryService = new S3InventoryService(s3Client, s3Properties);
+    }
+
+    @Test
+    public void testUploadAndRetrieve() throws IOException {
+        Assert.assertTrue(s3FileService.createBucket(BUCKET_NAME));
+        Assert.assertFalse(s3FileService.createBucket(BUCKET_NAME));
+        s3FileService.uploadInputStream(stream("0123456789"), BUCKET_NAME, "dir/file name.csv");
+
+        Assert.assertEquals(10L, s3FileService.retrieveObjectMetadata(BUCKET_NAME, "dir/file name.csv").getContentLength());
+        Assert.assertEquals("0123456789", read(s3FileService.retrieveObject(BUCKET_NAME, "dir/file name.csv")));
+        Assert.assertEquals("2345", read(s3FileService.retrieveObject(BUCKET_NAME, "dir/file name.csv", 2, 5)));
+        Assert.assertEquals(BUCKET_NAME, s3FileService.bucketNames().get(0));
+    }
+
+    @Test
+    public void testListAndForceDeleteAcrossPages() {
+        s3FileService.createBucket(BUCKET_NAME);
+        IntStream.range(0, 2500).forEach(i -> s3Client.putObject(BUCKET_NAME, String.format("year=%d/%04d.csv", 2019 + i % 2, i), "x"));
+
+        ObjectListingPage page = s3InventoryService.listObjects(BUCKET_NAME, "year=2020/", null, 1000);
+        Assert.assertEquals(1000, page.getObjects().size());
+        Assert.assertTrue(page.getTruncated());
+        Assert.assertEquals(250, s3InventoryService.listObjects(BUCKET_NAME, "year=2020/", page.getNextContinuationToken(), 1000)
+                .getObjects().size());
+
+        BucketInventory inventory = s3InventoryService.inventory(BUCKET_NAME, null, "/");
+        Assert.assertEquals(2500L, inventory.getObjectCount().longValue());
+        Assert.assertEquals(2, inventory.getPrefixes().size());
+
+        BucketDeletionResult result = s3FileService.deleteBucket(BUCKET_NAME, true);
+        Assert.assertEquals(2500L, result.getObjectsDeleted().longValue());
+        Assert.assertTrue(s3FileService.bucketNames().isEmpty());
+    }
+
+    @Test
+    public void testRetrievePinnedToETag() throws IOException {
+        s3FileService.createBucket(BUCKET_NAME);
+        s3FileService.uploadInputStream(stream("first"), BUCKET_NAME, "alerts.csv");
+        final String eTag = s3FileService.retrieveObjectMetadata(BUCKET_NAME, "alerts.csv").getETag();
+        Assert.assertEquals("irs", read(s3FileService.retrieveObject(BUCKET_NAME, "alerts.csv", eTag, 1, 3)));
+
+        // Overwritten after its ETag was read
+        s3FileService.uploadInputStream(stream("second"), BUCKET_NAME, "alerts.csv");
+        try {
+            s3FileService.retrieveObject(BUCKET_NAME, "alerts.csv", eTag);
+            Assert.fail("Expected the read to fail");
+        } catch (AlertServiceException e) {
+            Assert.assertTrue(e.getMessage().contains("changed while it was being read"));
+        }
+    }
+
+    @Test
+    public void testMultipartUpload() throws Exception {
+        s3FileService.createBucket(BUCKET_NAME);
+        byte[] content = new byte[5000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        TransferManager transferManager = TransferManagerBuilder.standard()
+                .withS3Client(s3Client)
+                .withMultipartUploadThreshold(1024L)
+                .withMinimumUploadPartSize(1024L)
+                .withShutDownThreadPools(false)
+                .build();
+        S3TransferService s3TransferService = new S3TransferService(transferManager, s3FileService);
+        try {
+            UploadProgress uploadProgress = s3TransferService.uploadLargeFile(
+                    new MockMultipartFile("file", "large.csv", "text/csv", content), BUCKET_NAME);
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (!"Completed".equals(uploadProgress.getState()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                uploadProgress = s3TransferService.progress(uploadProgress.getId());
+            }
+            Assert.assertEquals("Completed", uploadProgress.getState());
+            Assert.assertEquals(5000L, uploadProgress.getBytesTransferred().longValue());
+        } finally {
+            transferManager.shutdownNow(false);
+        }
+
+        S3Object s3Object = s3FileService.retrieveObject(BUCKET_NAME, "large.csv");
+        Assert.assertTrue(s3Object.getObjectMetadata().getETag().endsWith("-5"));
+        Assert.assertEquals(new String(content, StandardCharsets.UTF_8), read(s3Object));
+    }
+
+    @Test
+    public void testBucketNotificationTriggersListeners() {
+        BucketNotificationConfiguration configuration = new BucketNotificationConfiguration();
+        configuration.addConfiguration("lambda", new LambdaConfiguration("arn:aws:lambda:us-east-1:000000000000:function:alert",
+                EnumSet.of(S3Event.ObjectCreated)));
+        Mockito.when(lambdaService.bucketNotificationConfiguration(Mockito.any(AwsLambdaProperties.class))).thenReturn(configuration);
+        List<String> createdKeys = new CopyOnWriteArrayList<>();
+        server.onObjectCreated((bucket, key) -> createdKeys.add(bucket + "/" + key));
+
+        s3FileService.createBucket(BUCKET_NAME);
+        s3Client.putObject(BUCKET_NAME, "before.csv", "x");
+        s3FileService.appendBucketNotificationLambda(BUCKET_NAME, new AwsLambdaProperties());
+        s3Client.putObject(BUCKET_NAME, "after.csv", "x");
+
+        Assert.assertEquals(1, s3Client.getBucketNotificationConfiguration(BUCKET_NAME).getConfigurations().size());
+        Assert.assertEquals(1, createdKeys.size());
+        Assert.assertEquals(BUCKET_NAME + "/after.csv", createdKeys.get(0));
+    }
+
+    @Test
+    public void testDeleteObjects() {
+        s3FileService.createBucket(BUCKET_NAME);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            keys.add("key & <" + i + ">");
+            s3Client.putObject(BUCKET_NAME, keys.get(i), "x");
+        }
+        Assert.assertEquals(5L, s3FileService.deleteObjects(BUCKET_NAME, keys.subList(0, 5)));
+        List<String> remaining = s3Client.listObjects(BUCKET_NAME).getObjectSummaries().stream()
+                .map(summary -> summary.getKey()).collect(Collectors.toList());
+        Assert.assertEquals(keys.subList(5, 10), remaining);
+    }
+
+    /**
+     * Helper method to create an input stream of a String
+     *
+     * @param content String content of the stream
+     * @return ByteArrayInputStream for testing
+     */
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Helper method to read an object's content
+     *
+     * @param s3Object S3Object to read
+     * @return String content of the object
+     * @throws IOException if the content cannot be read
+     */
+    private String read(S3Object s3Object) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        s3FileService.transfer(s3Object, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8.name());
+    }
+}
@@ -1,27 +1,43 @@
 package com.alert.microservice.service.aws;
 
 import com.alert.microservice.api.AwsLambdaProperties;
+import com.alert.microservice.api.BucketDeletionResult;
+import com.alert.microservice.api.S3Properties;
 import com.alert.microservice.api.WeatherAlert;
 import com.alert.microservice.service.exception.AlertServiceException;
 import com.alert.microservice.tests.AbstractMockitoTest;
 import com.alert.microservice.tests.DataGenUtil;
 import com.alert.microservice.util.CollectionUtil;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.springframework.util.StreamUtils;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Random;
 
 public class S3FileServiceTest extends AbstractMockitoTest {
     private static final String BUCKET_NAME = "BUCKET";
@@ -32,6 +48,9 @@ public class S3FileServiceTest extends AbstractMockitoTest {
     @Mock
     private LambdaService lambdaService;
 
+    @Spy
+    private S3Properties s3Properties = new S3Properties();
+
     @InjectMocks
     private S3FileService s3FileService;
 
@@ -52,6 +71,60 @@ public class S3FileServiceTest extends AbstractMockitoTest {
         Assert.assertTrue(result.contains(weatherAlerts.get(1).getId()));
     }
 
+    @Test
+    public void testRetrieveObjectRange() {
+        S3Object s3Object = new S3Object();
+        Mockito.when(s3Client.getObject(Mockito.any(GetObjectRequest.class))).thenReturn(s3Object);
+        Assert.assertSame(s3Object, s3FileService.retrieveObject(BUCKET_NAME, "key", 10, 19));
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        Mockito.verify(s3Client).getObject(request.capture());
+        Assert.assertArrayEquals(new long[]{10, 19}, request.getValue().getRange());
+    }
+
+    @Test
+    public void testRetrieveObjectPinnedToETag() {
+        S3Object s3Object = new S3Object();
+        Mockito.when(s3Client.getObject(Mockito.any(GetObjectRequest.class))).thenReturn(s3Object);
+        Assert.assertSame(s3Object, s3FileService.retrieveObject(BUCKET_NAME, "key", "etag", 10, 19));
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        Mockito.verify(s3Client).getObject(request.capture());
+        Assert.assertEquals(CollectionUtil.listOf("etag"), request.getValue().getMatchingETagConstraints());
+        Assert.assertArrayEquals(new long[]{10, 19}, request.getValue().getRange());
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testRetrieveObjectChangedSinceETag() {
+        // The client hands back null when S3 answers 412 to a failed ETag constraint
+        Mockito.when(s3Client.getObject(Mockito.any(GetObjectRequest.class))).thenReturn(null);
+        s3FileService.retrieveObject(BUCKET_NAME, "key", "etag");
+    }
+
+    @Test
+    public void testTransfer() throws IOException {
+        byte[] content = new byte[200_000];
+        new Random().nextBytes(content);
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new ByteArrayInputStream(content));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Assert.assertEquals(content.length, s3FileService.transfer(s3Object, outputStream));
+        Assert.assertArrayEquals(content, outputStream.toByteArray());
+    }
+
+    @Test
+    public void testTransferAbortsOnClientError() throws IOException {
+        S3ObjectInputStream inputStream = Mockito.spy(new S3ObjectInputStream(new ByteArrayInputStream(new byte[10]), null));
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(inputStream);
+        OutputStream outputStream = Mockito.mock(OutputStream.class);
+        Mockito.doThrow(new IOException("Client went away")).when(outputStream).write(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+        try {
+            s3FileService.transfer(s3Object, outputStream);
+            Assert.fail("Expected transfer to fail");
+        } catch (IOException e) {
+            Mockito.verify(inputStream).abort();
+        }
+    }
+
     @Test
     public void testToCSVInputStream() throws IOException {
         List<WeatherAlert> weatherAlerts = CollectionUtil.listOf(DataGenUtil.randomWeatherAlert(), DataGenUtil.randomWeatherAlert());
@@ -60,6 +133,15 @@ public class S3FileServiceTest extends AbstractMockitoTest {
         Assert.assertTrue(result.contains(weatherAlerts.get(1).getId()));
     }
 
+    @Test
+    public void testToCSVInputStreamLineSeparator() throws IOException {
+        List<WeatherAlert> weatherAlerts = CollectionUtil.listOf(DataGenUtil.randomWeatherAlert(), DataGenUtil.randomWeatherAlert());
+        String result = StreamUtils.copyToString(s3FileService.toCSVInputStream(weatherAlerts, WeatherAlert.class), StandardCharsets.UTF_8);
+        // Header and one line per alert, separated the same way on every OS
+        Assert.assertFalse(result.contains("\r"));
+        Assert.assertEquals(3, result.split(S3FileService.CSV_LINE_SEPARATOR).length);
+    }
+
     @Test(expected = AlertServiceException.class)
     public void testAppendWeatherAlertLambdaListenerNullBucketName() {
         s3FileService.appendWeatherAlertLambdaListener(null);
@@ -112,6 +194,44 @@ public class S3FileServiceTest extends AbstractMockitoTest {
         s3FileService.deleteBucket("BUCKET", false);
     }
 
+    @Test
+    public void testForceDeleteBucketBatchesAcrossPages() {
+        ObjectListing firstPage = objectListing(true, "a", "b");
+        ObjectListing secondPage = objectListing(false, "c");
+        Mockito.when(s3Client.listObjects(Mockito.any(ListObjectsRequest.class))).thenReturn(firstPage);
+        Mockito.when(s3Client.listNextBatchOfObjects(firstPage)).thenReturn(secondPage);
+        BucketDeletionResult result = s3FileService.deleteBucket(BUCKET_NAME, true);
+        Assert.assertEquals(3L, result.getObjectsDeleted().longValue());
+        Assert.assertEquals(2, result.getDeleteRequests().intValue());
+        Assert.assertTrue(result.getMultiObjectDelete());
+        Mockito.verify(s3Client, Mockito.times(2)).deleteObjects(Mockito.any(DeleteObjectsRequest.class));
+        Mockito.verify(s3Client, Mockito.never()).deleteObject(Mockito.anyString(), Mockito.anyString());
+        Mockito.verify(s3Client).deleteBucket(BUCKET_NAME);
+    }
+
+    @Test
+    public void testForceDeleteBucketFallsBackWithoutMultiObjectDelete() {
+        AmazonS3Exception notImplemented = new AmazonS3Exception("Not Implemented");
+        notImplemented.setStatusCode(501);
+        Mockito.when(s3Client.listObjects(Mockito.any(ListObjectsRequest.class))).thenReturn(objectListing(false, "a", "b"));
+        Mockito.when(s3Client.deleteObjects(Mockito.any(DeleteObjectsRequest.class))).thenThrow(notImplemented);
+        BucketDeletionResult result = s3FileService.deleteBucket(BUCKET_NAME, true);
+        Assert.assertEquals(2L, result.getObjectsDeleted().longValue());
+        Assert.assertFalse(result.getMultiObjectDelete());
+        Mockito.verify(s3Client, Mockito.times(2)).deleteObject(Mockito.eq(BUCKET_NAME), Mockito.anyString());
+    }
+
+    @Test
+    public void testForceDeleteAllBuckets() {
+        Mockito.when(s3Client.listBuckets()).thenReturn(CollectionUtil.listOf(DataGenUtil.randomBucket(), DataGenUtil.randomBucket()));
+        Mockito.when(s3Client.listObjects(Mockito.any(ListObjectsRequest.class)))
+                .thenAnswer(invocation -> objectListing(false, "a"));
+        List<BucketDeletionResult> results = s3FileService.deleteAllBuckets(true);
+        Assert.assertEquals(2, results.size());
+        results.forEach(result -> Assert.assertEquals(1L, result.getObjectsDeleted().longValue()));
+        Mockito.verify(s3Client, Mockito.times(2)).deleteBucket(Mockito.anyString());
+    }
+
     @Test
     public void testBuckets() {
         List<Bucket> randomBuckets = CollectionUtil.listOf(DataGenUtil.randomBucket());
@@ -119,6 +239,24 @@ public class S3FileServiceTest extends AbstractMockitoTest {
         Assert.assertEquals(randomBuckets.get(0).getName(), s3FileService.buckets().get(0).getName());
     }
 
+    /**
+     * Helper method to create an {@link ObjectListing} page holding the provided keys
+     *
+     * @param truncated boolean true if there are more pages after this one
+     * @param keys      String keys of the objects in the page
+     * @return ObjectListing for testing
+     */
+    private ObjectListing objectListing(boolean truncated, String... keys) {
+        ObjectListing objectListing = new ObjectListing();
+        objectListing.setTruncated(truncated);
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            objectListing.getObjectSummaries().add(summary);
+        }
+        return objectListing;
+    }
+
     /**
      * Helper method to create a String from the provided {@link InputStream}
      *
@@ -0,0 +1,148 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.BucketInventory;
+import com.alert.microservice.api.ObjectListingPage;
+import com.alert.microservice.api.PrefixInventory;
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Objects;
+
+public class S3InventoryServiceTest extends AbstractMockitoTest {
+    private static final String BUCKET_NAME = "BUCKET";
+
+    @Mock
+    private AmazonS3 s3Client;
+
+    @Spy
+    private S3Properties s3Properties = new S3Properties();
+
+    @InjectMocks
+    private S3InventoryService s3InventoryService;
+
+    @Test
+    public void testListObjects() {
+        Mockito.when(s3Client.listObjectsV2(Mockito.any(ListObjectsV2Request.class)))
+                .thenReturn(listing("token", null, object("a", 1), object("b", 2)));
+        ObjectListingPage page = s3InventoryService.listObjects(BUCKET_NAME, null, null, 5000);
+        Assert.assertEquals(2, page.getObjects().size());
+        Assert.assertEquals("a", page.getObjects().get(0).getKey());
+        Assert.assertEquals(2L, page.getObjects().get(1).getSize().longValue());
+        Assert.assertEquals("token", page.getNextContinuationToken());
+        Assert.assertTrue(page.getTruncated());
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testListObjectsEmptyBucket() {
+        s3InventoryService.listObjects("", null, null, 10);
+    }
+
+    @Test
+    public void testStreamObjectsAcrossPages() throws IOException {
+        Mockito.when(s3Client.listObjectsV2(Mockito.any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            return Objects.isNull(request.getContinuationToken())
+                    ? listing("token", null, object("a", 1))
+                    : listing(null, null, object("b", 2));
+        });
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Assert.assertEquals(2, s3InventoryService.streamObjects(BUCKET_NAME, null, outputStream));
+        String[] lines = outputStream.toString().split("\n");
+        Assert.assertEquals(2, lines.length);
+        Assert.assertTrue(lines[0].contains("\"key\":\"a\""));
+        Assert.assertTrue(lines[1].contains("\"key\":\"b\""));
+    }
+
+    @Test
+    public void testStreamObjectsStopsWhenInterrupted() throws IOException {
+        Mockito.when(s3Client.listObjectsV2(Mockito.any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            // The request timed out while this page was being listed
+            Thread.currentThread().interrupt();
+            return listing("token", null, object("a", 1));
+        });
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            s3InventoryService.streamObjects(BUCKET_NAME, null, outputStream);
+            Assert.fail("Expected the stream to stop once interrupted");
+        } catch (InterruptedIOException e) {
+            Assert.assertTrue(Thread.interrupted());
+        }
+        Assert.assertTrue(outputStream.toString().contains("\"key\":\"a\""));
+        Mockito.verify(s3Client, Mockito.times(1)).listObjectsV2(Mockito.any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void testInventoryFansOutAcrossPrefixes() {
+        Mockito.when(s3Client.listObjectsV2(Mockito.any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            if (Objects.nonNull(request.getDelimiter())) {
+                return listing(null, new String[]{"year=2019/", "year=2020/"}, object("root.csv", 5));
+            }
+            return "year=2019/".equals(request.getPrefix())
+                    ? listing(null, null, object("year=2019/a.csv", 10), object("year=2019/b.csv", 20))
+                    : listing(null, null, object("year=2020/a.csv", 30));
+        });
+        BucketInventory inventory = s3InventoryService.inventory(BUCKET_NAME, null, "/");
+        Assert.assertEquals(4L, inventory.getObjectCount().longValue());
+        Assert.assertEquals(65L, inventory.getTotalBytes().longValue());
+        List<PrefixInventory> prefixes = inventory.getPrefixes();
+        Assert.assertEquals(3, prefixes.size());
+        Assert.assertEquals("", prefixes.get(0).getPrefix());
+        Assert.assertEquals("year=2019/", prefixes.get(1).getPrefix());
+        Assert.assertEquals(2L, prefixes.get(1).getObjectCount().longValue());
+        Assert.assertEquals(30L, prefixes.get(1).getTotalBytes().longValue());
+        Assert.assertEquals(30L, prefixes.get(2).getTotalBytes().longValue());
+    }
+
+    /**
+     * Helper method to create a listing page
+     *
+     * @param nextToken      String continuation token for the next page, null if this is the last page
+     * @param commonPrefixes String array of common prefixes in the page, may be null
+     * @param objects        S3ObjectSummary objects in the page
+     * @return ListObjectsV2Result for testing
+     */
+    private ListObjectsV2Result listing(String nextToken, String[] commonPrefixes, S3ObjectSummary... objects) {
+        ListObjectsV2Result result = new ListObjectsV2Result();
+        result.setNextContinuationToken(nextToken);
+        result.setTruncated(Objects.nonNull(nextToken));
+        if (Objects.nonNull(commonPrefixes)) {
+            for (String commonPrefix : commonPrefixes) {
+                result.getCommonPrefixes().add(commonPrefix);
+            }
+        }
+        for (S3ObjectSummary object : objects) {
+            result.getObjectSummaries().add(object);
+        }
+        return result;
+    }
+
+    /**
+     * Helper method to create an object summary
+     *
+     * @param key  String object key
+     * @param size long object size in bytes
+     * @return S3ObjectSummary for testing
+     */
+    private S3ObjectSummary object(String key, long size) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setSize(size);
+        return summary;
+    }
+}
@@ -0,0 +1,99 @@
+package com.alert.microservice.service.aws;
+
+import com.alert.microservice.api.UploadProgress;
+import com.alert.microservice.service.exception.AlertServiceException;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.services.s3.transfer.Transfer;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferProgress;
+import com.amazonaws.services.s3.transfer.Upload;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+
+public class S3TransferServiceTest extends AbstractMockitoTest {
+    private static final String BUCKET_NAME = "BUCKET";
+
+    @Mock
+    private TransferManager transferManager;
+
+    @Mock
+    private S3FileService s3FileService;
+
+    @Mock
+    private Upload upload;
+
+    @InjectMocks
+    private S3TransferService s3TransferService;
+
+    @Test
+    public void testUploadLargeFile() throws IOException {
+        TransferProgress transferProgress = new TransferProgress();
+        transferProgress.setTotalBytesToTransfer(5);
+        Mockito.when(upload.getProgress()).thenReturn(transferProgress);
+        Mockito.when(upload.getState()).thenReturn(Transfer.TransferState.InProgress);
+        ArgumentCaptor<File> spooledFile = ArgumentCaptor.forClass(File.class);
+        Mockito.when(transferManager.upload(Mockito.eq(BUCKET_NAME), Mockito.eq("alerts.csv"), spooledFile.capture())).thenReturn(upload);
+
+        UploadProgress uploadProgress = s3TransferService.uploadLargeFile(
+                new MockMultipartFile("file", "alerts.csv", "text/csv", "a,b,c".getBytes()), BUCKET_NAME);
+        Assert.assertEquals(BUCKET_NAME, uploadProgress.getBucketName());
+        Assert.assertEquals("alerts.csv", uploadProgress.getBucketKey());
+        Assert.assertEquals(5L, uploadProgress.getTotalBytes().longValue());
+        Assert.assertEquals("InProgress", uploadProgress.getState());
+        Assert.assertEquals(uploadProgress.getId(), s3TransferService.progress(uploadProgress.getId()).getId());
+        Assert.assertTrue(spooledFile.getValue().exists());
+        Mockito.verify(s3FileService).createBucket(BUCKET_NAME);
+        Mockito.verify(upload).addProgressListener(Mockito.any(ProgressListener.class));
+        Assert.assertTrue(spooledFile.getValue().delete());
+    }
+
+    @Test
+    public void testUploadLargeFileAlreadyDone() throws IOException {
+        Mockito.when(upload.getProgress()).thenReturn(new TransferProgress());
+        Mockito.when(upload.isDone()).thenReturn(true);
+        ArgumentCaptor<File> spooledFile = ArgumentCaptor.forClass(File.class);
+        Mockito.when(transferManager.upload(Mockito.eq(BUCKET_NAME), Mockito.eq("alerts.csv"), spooledFile.capture())).thenReturn(upload);
+        s3TransferService.uploadLargeFile(new MockMultipartFile("file", "alerts.csv", "text/csv", "a,b,c".getBytes()), BUCKET_NAME);
+        Assert.assertFalse(spooledFile.getValue().exists());
+    }
+
+    @Test
+    public void testElapsedTimeStopsOnceUploadFinished() throws IOException, InterruptedException {
+        TransferProgress transferProgress = new TransferProgress();
+        transferProgress.updateProgress(1000);
+        Mockito.when(upload.getProgress()).thenReturn(transferProgress);
+        ArgumentCaptor<ProgressListener> progressListener = ArgumentCaptor.forClass(ProgressListener.class);
+        Mockito.doNothing().when(upload).addProgressListener(progressListener.capture());
+        Mockito.when(transferManager.upload(Mockito.eq(BUCKET_NAME), Mockito.eq("alerts.csv"), Mockito.any(File.class))).thenReturn(upload);
+
+        UploadProgress started = s3TransferService.uploadLargeFile(
+                new MockMultipartFile("file", "alerts.csv", "text/csv", "a,b,c".getBytes()), BUCKET_NAME);
+        progressListener.getValue().progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+        UploadProgress finished = s3TransferService.progress(started.getId());
+        Thread.sleep(20);
+        UploadProgress later = s3TransferService.progress(started.getId());
+        Assert.assertEquals(finished.getElapsedMillis(), later.getElapsedMillis());
+        Assert.assertEquals(finished.getBytesPerSecond(), later.getBytesPerSecond(), 0d);
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testUploadLargeFileWithoutName() throws IOException {
+        s3TransferService.uploadLargeFile(new MockMultipartFile("file", "a,b,c".getBytes()), BUCKET_NAME);
+    }
+
+    @Test(expected = AlertServiceException.class)
+    public void testProgressUnknownUpload() {
+        s3TransferService.progress("unknown");
+    }
+}
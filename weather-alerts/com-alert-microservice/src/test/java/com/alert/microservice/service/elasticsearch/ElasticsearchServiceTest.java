@@ -0,0 +1,148 @@
+package com.alert.microservice.service.elasticsearch;
+
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.service.exception.SearchRejectedException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ElasticsearchServiceTest {
+
+    private static final String INDEX = "weather-alerts";
+    private static final long SEARCH_TIMEOUT_MILLIS = 2500L;
+
+    // Searches sent by the service, answered by the tests on their own thread the way the client's I/O threads would
+    private final List<SearchRequest> requests = new CopyOnWriteArrayList<>();
+    private final List<ActionListener<SearchResponse>> listeners = new CopyOnWriteArrayList<>();
+    private ElasticsearchService elasticsearchService;
+
+    @Before
+    public void setUp() {
+        elasticsearchService = new ElasticsearchService(null) {
+            @Override
+            void sendSearch(SearchRequest searchRequest, ActionListener<SearchResponse> listener) {
+                requests.add(searchRequest);
+                listeners.add(listener);
+            }
+        };
+        ReflectionTestUtils.setField(elasticsearchService, "maxInFlightSearches", 1);
+        ReflectionTestUtils.setField(elasticsearchService, "searchTimeoutMillis", SEARCH_TIMEOUT_MILLIS);
+        elasticsearchService.init();
+    }
+
+    @After
+    public void tearDown() {
+        elasticsearchService.shutdown();
+    }
+
+    @Test
+    public void testSearchAsyncReadsHitsOffTheListenerThread() throws Exception {
+        CompletableFuture<String> readOn = elasticsearchService
+                .selectAllAsync(INDEX, 10, WeatherAlert.class, null)
+                .thenApply(weatherAlerts -> {
+                    Assert.assertEquals("Tornado Warning", weatherAlerts.iterator().next().getTitle());
+                    return Thread.currentThread().getName();
+                });
+        listeners.get(0).onResponse(searchResponse("{\"title\": \"Tornado Warning\"}"));
+        Assert.assertTrue(readOn.get(5, TimeUnit.SECONDS).startsWith("es-response-"));
+    }
+
+    @Test
+    public void testSearchAsyncSetsElasticsearchTimeout() {
+        WeatherAlert weatherAlert = new WeatherAlert();
+        weatherAlert.setTitle("Tornado");
+        elasticsearchService.searchAsync(weatherAlert, INDEX, false, WeatherAlert.class, null);
+        Assert.assertEquals(TimeValue.timeValueMillis(SEARCH_TIMEOUT_MILLIS), requests.get(0).source().timeout());
+    }
+
+    @Test
+    public void testSearchAsyncLeavesOutHitsWithoutSource() throws Exception {
+        WeatherAlert weatherAlert = new WeatherAlert();
+        weatherAlert.setTitle("Tornado");
+        CompletableFuture<Collection<WeatherAlert>> search =
+                elasticsearchService.searchAsync(weatherAlert, INDEX, false, WeatherAlert.class, null);
+        Assert.assertEquals(ElasticsearchService.DEFAULT_SEARCH_SIZE, requests.get(0).source().size());
+        SearchResponse searchResponse = searchResponse("{\"title\": \"Tornado Warning\"}", null);
+        listeners.get(0).onResponse(searchResponse);
+        Collection<WeatherAlert> weatherAlerts = search.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, weatherAlerts.size());
+        Assert.assertEquals("Tornado Warning", weatherAlerts.iterator().next().getTitle());
+    }
+
+    @Test
+    public void testSearchAsyncRejectsOverLimit() throws Exception {
+        elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        CompletableFuture<Collection<WeatherAlert>> rejected = elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        Assert.assertEquals(1, requests.size());
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            Assert.fail("Search over the in-flight limit should be rejected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SearchRejectedException);
+            Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                    SearchRejectedException.class.getAnnotation(ResponseStatus.class).value());
+        }
+    }
+
+    @Test
+    public void testCancelledSearchReleasesPermit() {
+        CompletableFuture<Collection<WeatherAlert>> search = elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        Assert.assertTrue(search.cancel(true));
+        elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        Assert.assertEquals(2, requests.size());
+        // A response arriving after the cancel is dropped and does not hand back a second permit
+        listeners.get(0).onResponse(searchResponse("{}"));
+        elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        Assert.assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testFailedSearchReleasesPermit() {
+        CompletableFuture<Collection<WeatherAlert>> search = elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        listeners.get(0).onFailure(new IllegalStateException("Connection refused"));
+        Assert.assertTrue(search.isCompletedExceptionally());
+        elasticsearchService.selectAllAsync(INDEX, 10, WeatherAlert.class, null);
+        Assert.assertEquals(2, requests.size());
+    }
+
+    /**
+     * Builds a {@link SearchResponse} holding one hit per provided source
+     *
+     * @param sources JSON sources of the hits, a null source makes a hit without one
+     * @return SearchResponse as the client would hand to the listener
+     */
+    private static SearchResponse searchResponse(final String... sources) {
+        SearchHit[] hits = new SearchHit[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            hits[i] = new SearchHit(i, String.valueOf(i), new Text("_doc"), Collections.emptyMap());
+            if (sources[i] != null) {
+                hits[i].sourceRef(new BytesArray(sources[i]));
+            }
+        }
+        InternalSearchResponse sections = new InternalSearchResponse(new SearchHits(hits, hits.length, 1.0f),
+                null, null, null, false, null, 1);
+        return new SearchResponse(sections, null, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+}
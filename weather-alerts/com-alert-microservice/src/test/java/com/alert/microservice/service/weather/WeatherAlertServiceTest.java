@@ -0,0 +1,154 @@
+package com.alert.microservice.service.weather;
+
+import com.alert.microservice.api.AlertStatistics;
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.service.aws.LambdaService;
+import com.alert.microservice.service.aws.S3FileService;
+import com.alert.microservice.service.elasticsearch.ElasticsearchService;
+import com.alert.microservice.service.kafka.KafkaService;
+import com.alert.microservice.service.weather.expiry.WeatherAlertExpiryService;
+import com.alert.microservice.service.weather.export.AlertExportService;
+import com.alert.microservice.service.weather.index.WeatherAlertIndexService;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+public class WeatherAlertServiceTest extends AbstractMockitoTest {
+
+    @Mock
+    private ElasticsearchService elasticsearchService;
+    @Mock
+    private KafkaService kafkaService;
+    @Mock
+    private S3FileService s3FileService;
+    @Mock
+    private LambdaService lambdaService;
+    @Mock
+    private S3Properties s3Properties;
+    @Mock
+    private WeatherAlertFeedProcessor weatherAlertFeedProcessor;
+    @Mock
+    private WeatherAlertIndexService weatherAlertIndexService;
+    @Mock
+    private WeatherAlertExpiryService weatherAlertExpiryService;
+    @Mock
+    private AlertExportService alertExportService;
+
+    @InjectMocks
+    private WeatherAlertService weatherAlertService;
+
+    @Test
+    public void testStatisticsCachedUntilInvalidated() {
+        Mockito.when(elasticsearchService.aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(statisticsResponse(Double.POSITIVE_INFINITY)));
+        final long version = weatherAlertService.getStatisticsVersion();
+        AlertStatistics statistics = weatherAlertService.retrieveAlertStatisticsAsync("1d").join();
+        Assert.assertEquals(2L, statistics.getActive().longValue());
+        Assert.assertEquals(1L, statistics.getExpired().longValue());
+        weatherAlertService.retrieveAlertStatisticsAsync("1d").join();
+        Assert.assertEquals(version, weatherAlertService.getStatisticsVersion());
+        Mockito.verify(elasticsearchService, Mockito.times(1)).aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection());
+
+        // New alerts were indexed
+        weatherAlertService.invalidateStatistics();
+        Assert.assertNotEquals(version, weatherAlertService.getStatisticsVersion());
+        weatherAlertService.retrieveAlertStatisticsAsync("1d").join();
+        Mockito.verify(elasticsearchService, Mockito.times(2)).aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection());
+    }
+
+    @Test
+    public void testStatisticsInvalidatedOnceCountedAlertExpires() throws InterruptedException {
+        final long nextExpiry = System.currentTimeMillis() + 1000;
+        Mockito.when(elasticsearchService.aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(statisticsResponse(nextExpiry)));
+        weatherAlertService.retrieveAlertStatisticsAsync("1h").join();
+        final long version = weatherAlertService.getStatisticsVersion();
+        weatherAlertService.retrieveAlertStatisticsAsync("1h").join();
+        Mockito.verify(elasticsearchService, Mockito.times(1)).aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection());
+
+        // The active and expired counts change once the earliest active alert expires
+        Thread.sleep(nextExpiry - System.currentTimeMillis() + 50);
+        Assert.assertNotEquals(version, weatherAlertService.getStatisticsVersion());
+        weatherAlertService.retrieveAlertStatisticsAsync("1h").join();
+        Mockito.verify(elasticsearchService, Mockito.times(2)).aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection());
+    }
+
+    @Test
+    public void testCancelledStatisticsRequestKeepsCachedStatistics() {
+        CompletableFuture<SearchResponse> aggregation = new CompletableFuture<>();
+        Mockito.when(elasticsearchService.aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection()))
+                .thenReturn(aggregation);
+        CompletableFuture<AlertStatistics> cancelled = weatherAlertService.retrieveAlertStatisticsAsync("1w");
+        CompletableFuture<AlertStatistics> waiting = weatherAlertService.retrieveAlertStatisticsAsync("1w");
+        Assert.assertTrue(cancelled.cancel(true));
+        aggregation.complete(statisticsResponse(Double.POSITIVE_INFINITY));
+        Assert.assertEquals(3L, waiting.join().getTotal().longValue());
+        Mockito.verify(elasticsearchService, Mockito.times(1)).aggregateAsync(ArgumentMatchers.any(), ArgumentMatchers.anyCollection());
+    }
+
+    /**
+     * Builds the {@link SearchResponse} of the statistics aggregations with 3 alerts, 2 of which are active
+     *
+     * @param nextExpiry millis since epoch the earliest active alert expires, infinite if there is none
+     * @return SearchResponse holding the aggregation results
+     */
+    private static SearchResponse statisticsResponse(final double nextExpiry) {
+        Min min = aggregation(Min.class, "next_expiry");
+        Mockito.when(min.getValue()).thenReturn(nextExpiry);
+        Filter active = aggregation(Filter.class, "active");
+        Mockito.when(active.getDocCount()).thenReturn(2L);
+        Mockito.when(active.getAggregations()).thenReturn(new Aggregations(Collections.singletonList(min)));
+        Filter expired = aggregation(Filter.class, "expired");
+        Mockito.when(expired.getDocCount()).thenReturn(1L);
+        Histogram effective = aggregation(Histogram.class, "effective");
+        Mockito.doReturn(Collections.emptyList()).when(effective).getBuckets();
+        Aggregations aggregations = new Aggregations(Arrays.asList(
+                terms("severity"), terms("urgency"), terms("category"), effective, active, expired));
+        SearchResponse searchResponse = Mockito.mock(SearchResponse.class);
+        Mockito.when(searchResponse.getHits()).thenReturn(new SearchHits(SearchHits.EMPTY, 3, 0f));
+        Mockito.when(searchResponse.getAggregations()).thenReturn(aggregations);
+        return searchResponse;
+    }
+
+    /**
+     * Mocks an empty {@link Terms} aggregation
+     *
+     * @param name name of the aggregation
+     * @return Terms without buckets
+     */
+    private static Terms terms(final String name) {
+        Terms terms = aggregation(Terms.class, name);
+        Mockito.doReturn(Collections.emptyList()).when(terms).getBuckets();
+        return terms;
+    }
+
+    /**
+     * Mocks an {@link Aggregation} with a name so it can be looked up in {@link Aggregations}
+     *
+     * @param type type of aggregation
+     * @param name name of the aggregation
+     * @param <A>  Generic Type of the aggregation
+     * @return mocked aggregation
+     */
+    private static <A extends Aggregation> A aggregation(final Class<A> type, final String name) {
+        A aggregation = Mockito.mock(type);
+        Mockito.when(aggregation.getName()).thenReturn(name);
+        return aggregation;
+    }
+}
@@ -0,0 +1,66 @@
+package com.alert.microservice.service.weather.expiry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TimerWheelTest {
+    private static final long TICK_MILLIS = 1000;
+    private static final long START_MILLIS = 1_560_000_000_000L;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTick() {
+        new TimerWheel<String>(0, START_MILLIS);
+    }
+
+    @Test
+    public void testTimerNotDueBeforeDeadline() {
+        TimerWheel<String> timerWheel = new TimerWheel<>(TICK_MILLIS, START_MILLIS);
+        timerWheel.schedule("A", START_MILLIS + 5_500);
+        Assert.assertTrue(timerWheel.advance(START_MILLIS + 5_000).isEmpty());
+        Assert.assertEquals(1, timerWheel.size());
+        List<TimerWheel.Timer<String>> due = timerWheel.advance(START_MILLIS + 6_000);
+        Assert.assertEquals(1, due.size());
+        Assert.assertEquals("A", due.get(0).getKey());
+        Assert.assertEquals(START_MILLIS + 5_500, due.get(0).getDeadlineMillis());
+        Assert.assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void testPastDeadlineDueOnNextAdvance() {
+        TimerWheel<String> timerWheel = new TimerWheel<>(TICK_MILLIS, START_MILLIS);
+        timerWheel.schedule("A", START_MILLIS - 60_000);
+        Assert.assertEquals(1, timerWheel.advance(START_MILLIS + TICK_MILLIS).size());
+    }
+
+    @Test
+    public void testCascadingAcrossLevelsAndOverflow() {
+        TimerWheel<Integer> timerWheel = new TimerWheel<>(TICK_MILLIS, START_MILLIS);
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        // Spread deadlines from a few seconds out to past the range of the highest level (64^4 ticks)
+        for (int i = 0; i < 5_000; i++) {
+            long offsetTicks = (long) Math.pow(2, random.nextDouble() * 26);
+            long deadline = START_MILLIS + offsetTicks * TICK_MILLIS + random.nextInt((int) TICK_MILLIS);
+            deadlines.put(i, deadline);
+            timerWheel.schedule(i, deadline);
+        }
+        long now = START_MILLIS;
+        int fired = 0;
+        while (timerWheel.size() > 0) {
+            // Advance in uneven steps to exercise catch up after gaps
+            now += TICK_MILLIS * (1 + random.nextInt(5_000));
+            for (TimerWheel.Timer<Integer> timer : timerWheel.advance(now)) {
+                long deadline = deadlines.get(timer.getKey());
+                Assert.assertTrue("Fired before deadline", deadline <= now);
+                Assert.assertTrue("Fired too late", now - deadline < TICK_MILLIS * 5_001);
+                fired++;
+            }
+        }
+        Assert.assertEquals(deadlines.size(), fired);
+    }
+}
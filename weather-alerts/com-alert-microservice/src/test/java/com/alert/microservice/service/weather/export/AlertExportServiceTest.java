@@ -0,0 +1,134 @@
+package com.alert.microservice.service.weather.export;
+
+import com.alert.microservice.api.CompactionResult;
+import com.alert.microservice.api.S3Properties;
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.service.aws.S3FileService;
+import com.alert.microservice.tests.AbstractMockitoTest;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class AlertExportServiceTest extends AbstractMockitoTest {
+    private static final String BUCKET_NAME = "BUCKET";
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2019, 6, 2, 1, 30, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private AmazonS3 s3Client;
+
+    @Mock
+    private S3FileService s3FileService;
+
+    private S3Properties s3Properties;
+    private AlertExportService alertExportService;
+
+    @Before
+    public void setup() {
+        s3Properties = new S3Properties();
+        alertExportService = new AlertExportService(s3Client, s3FileService, s3Properties);
+    }
+
+    @Test
+    public void testExportKeysFlat() {
+        Map<String, List<WeatherAlert>> exportKeys = alertExportService.exportKeys(Collections.singletonList(alert("Severe")), NOW);
+        Assert.assertEquals(Collections.singleton("weather-alert-" + NOW.toInstant().toEpochMilli() + ".csv"), exportKeys.keySet());
+    }
+
+    @Test
+    public void testExportKeysHourlyBySeverity() {
+        s3Properties.setKeyLayout("HOURLY");
+        s3Properties.setPartitionBySeverity(true);
+        Map<String, List<WeatherAlert>> exportKeys = alertExportService.exportKeys(
+                Arrays.asList(alert("Severe"), alert("Minor"), alert("Severe"), alert(null)), NOW);
+        final String fileName = "weather-alert-" + NOW.toInstant().toEpochMilli() + ".csv";
+        Assert.assertEquals(3, exportKeys.size());
+        Assert.assertEquals(2, exportKeys.get("year=2019/month=06/day=02/hour=01/severity=severe/" + fileName).size());
+        Assert.assertEquals(1, exportKeys.get("year=2019/month=06/day=02/hour=01/severity=minor/" + fileName).size());
+        Assert.assertEquals(1, exportKeys.get("year=2019/month=06/day=02/hour=01/severity=unknown/" + fileName).size());
+    }
+
+    @Test
+    public void testCompactMergesClosedPartitions() throws IOException {
+        ListObjectsV2Result listing = new ListObjectsV2Result();
+        listing.getObjectSummaries().addAll(Arrays.asList(
+                object("year=2019/month=06/day=01/hour=10/weather-alert-1.csv"),
+                object("year=2019/month=06/day=01/hour=11/weather-alert-2.csv"),
+                // Single object in its partition, nothing to merge
+                object("year=2019/month=05/day=31/hour=23/weather-alert-3.csv"),
+                // Partition is still open
+                object("year=2019/month=06/day=02/hour=00/weather-alert-4.csv"),
+                object("year=2019/month=06/day=02/hour=01/weather-alert-5.csv")));
+        Mockito.when(s3Client.listObjectsV2(Mockito.any(ListObjectsV2Request.class))).thenReturn(listing);
+        Mockito.when(s3FileService.retrieveBucketInputStream(Mockito.eq(BUCKET_NAME), Mockito.anyString()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(("id,severity\n" + invocation.getArgument(1) + ",Severe")
+                        .getBytes(StandardCharsets.UTF_8)));
+        final String compactedKey = "year=2019/month=06/day=01/weather-alert-compacted-"
+                + ZonedDateTime.of(2019, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli() + ".csv";
+        ArgumentCaptor<File> mergedFile = ArgumentCaptor.forClass(File.class);
+        StringBuilder merged = new StringBuilder();
+        Mockito.when(s3Client.putObject(Mockito.eq(BUCKET_NAME), Mockito.eq(compactedKey), mergedFile.capture()))
+                .thenAnswer(invocation -> {
+                    merged.append(new String(Files.readAllBytes(((File) invocation.getArgument(2)).toPath()), StandardCharsets.UTF_8));
+                    return null;
+                });
+
+        CompactionResult compactionResult = alertExportService.compact(BUCKET_NAME, NOW);
+        Assert.assertEquals(1, compactionResult.getPartitionsCompacted().intValue());
+        Assert.assertEquals(2L, compactionResult.getObjectsMerged().longValue());
+        Assert.assertEquals(String.join(S3FileService.CSV_LINE_SEPARATOR, "id,severity",
+                "year=2019/month=06/day=01/hour=10/weather-alert-1.csv,Severe",
+                "year=2019/month=06/day=01/hour=11/weather-alert-2.csv,Severe"), merged.toString());
+        Mockito.verify(s3FileService).deleteObjects(BUCKET_NAME, Arrays.asList(
+                "year=2019/month=06/day=01/hour=10/weather-alert-1.csv",
+                "year=2019/month=06/day=01/hour=11/weather-alert-2.csv"));
+        Assert.assertFalse(mergedFile.getValue().exists());
+    }
+
+    @Test
+    public void testCompactHourlyKeepsOpenDailyPartition() {
+        s3Properties.setCompactionGranularity("HOURLY");
+        ListObjectsV2Result listing = new ListObjectsV2Result();
+        // Exports written with the daily layout fall in daily partitions, today's is still open at 01:30
+        listing.getObjectSummaries().addAll(Arrays.asList(
+                object("year=2019/month=06/day=02/weather-alert-1.csv"),
+                object("year=2019/month=06/day=02/weather-alert-2.csv")));
+        Mockito.when(s3Client.listObjectsV2(Mockito.any(ListObjectsV2Request.class))).thenReturn(listing);
+
+        CompactionResult compactionResult = alertExportService.compact(BUCKET_NAME, NOW);
+        Assert.assertEquals(0, compactionResult.getPartitionsCompacted().intValue());
+        Mockito.verify(s3Client, Mockito.never()).putObject(Mockito.anyString(), Mockito.anyString(), Mockito.any(File.class));
+        Mockito.verify(s3FileService, Mockito.never()).deleteObjects(Mockito.anyString(), Mockito.anyList());
+    }
+
+    private static WeatherAlert alert(String severity) {
+        WeatherAlert weatherAlert = new WeatherAlert();
+        weatherAlert.setSeverity(severity);
+        return weatherAlert;
+    }
+
+    private static S3ObjectSummary object(String key) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setSize(10);
+        return summary;
+    }
+}
@@ -0,0 +1,28 @@
+package com.alert.microservice.service.weather.export;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+public class AlertKeyLayoutTest {
+    private static final ZonedDateTime DATE_TIME = ZonedDateTime.of(2019, 6, 1, 13, 45, 10, 0, ZoneOffset.UTC);
+
+    @Test
+    public void testPartitionPrefix() {
+        Assert.assertEquals("", AlertKeyLayout.FLAT.partitionPrefix(DATE_TIME));
+        Assert.assertEquals("year=2019/month=06/day=01/", AlertKeyLayout.DAILY.partitionPrefix(DATE_TIME));
+        Assert.assertEquals("year=2019/month=06/day=01/hour=13/", AlertKeyLayout.HOURLY.partitionPrefix(DATE_TIME));
+    }
+
+    @Test
+    public void testPartitionBounds() {
+        ZonedDateTime dailyStart = AlertKeyLayout.DAILY.partitionStart(DATE_TIME);
+        Assert.assertEquals(ZonedDateTime.of(2019, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC), dailyStart);
+        Assert.assertEquals(ZonedDateTime.of(2019, 6, 2, 0, 0, 0, 0, ZoneOffset.UTC), AlertKeyLayout.DAILY.partitionEnd(dailyStart));
+        ZonedDateTime hourlyStart = AlertKeyLayout.HOURLY.partitionStart(DATE_TIME);
+        Assert.assertEquals(ZonedDateTime.of(2019, 6, 1, 13, 0, 0, 0, ZoneOffset.UTC), hourlyStart);
+        Assert.assertEquals(ZonedDateTime.of(2019, 6, 1, 14, 0, 0, 0, ZoneOffset.UTC), AlertKeyLayout.HOURLY.partitionEnd(hourlyStart));
+    }
+}
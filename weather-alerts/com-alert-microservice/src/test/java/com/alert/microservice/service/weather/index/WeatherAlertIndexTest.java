@@ -0,0 +1,137 @@
+package com.alert.microservice.service.weather.index;
+
+import com.alert.microservice.api.WeatherAlert;
+import com.alert.microservice.tests.DataGenUtil;
+import com.alert.microservice.util.CollectionUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class WeatherAlertIndexTest {
+
+    @Test
+    public void testEmptyIndex() {
+        Assert.assertEquals(0, WeatherAlertIndex.empty().size());
+        Assert.assertTrue(WeatherAlertIndex.empty().selectAll(10).isEmpty());
+        Assert.assertTrue(WeatherAlertIndex.empty().search(new WeatherAlert(), 10).isEmpty());
+    }
+
+    @Test
+    public void testNullAlertsIgnored() {
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(null, DataGenUtil.randomWeatherAlert(), null));
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testSelectAllLimit() {
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(
+                DataGenUtil.randomWeatherAlert(), DataGenUtil.randomWeatherAlert(), DataGenUtil.randomWeatherAlert()));
+        Assert.assertEquals(2, index.selectAll(2).size());
+        Assert.assertEquals(3, index.selectAll(10).size());
+        Assert.assertEquals(0, index.selectAll(-1).size());
+    }
+
+    @Test
+    public void testSearchIntersectsIndexedFields() {
+        WeatherAlert severeFlood = alert("1", "Severe", "Immediate", "Madison; Warren");
+        WeatherAlert minorFlood = alert("2", "Minor", "Immediate", "Warren");
+        WeatherAlert severeWind = alert("3", "Severe", "Expected", "Humboldt");
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(severeFlood, minorFlood, severeWind));
+
+        WeatherAlert query = new WeatherAlert();
+        query.setSeverity("severe");
+        Assert.assertEquals(CollectionUtil.listOf(severeFlood, severeWind), index.search(query, 10));
+
+        query.setUrgency("IMMEDIATE");
+        Assert.assertEquals(CollectionUtil.listOf(severeFlood), index.search(query, 10));
+
+        query = new WeatherAlert();
+        query.setAreaDesc("warren");
+        Assert.assertEquals(CollectionUtil.listOf(severeFlood, minorFlood), index.search(query, 10));
+        Assert.assertEquals(1, index.search(query, 1).size());
+    }
+
+    @Test
+    public void testSearchUnknownTermMatchesNothing() {
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(alert("1", "Severe", "Immediate", "Warren")));
+        WeatherAlert query = new WeatherAlert();
+        query.setSeverity("Extreme");
+        Assert.assertTrue(index.search(query, 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchResidualFields() {
+        WeatherAlert first = alert("1", "Severe", "Immediate", "Warren");
+        WeatherAlert second = alert("2", "Severe", "Immediate", "Warren");
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(first, second));
+        WeatherAlert query = new WeatherAlert();
+        query.setSeverity("Severe");
+        query.setId("2");
+        List<WeatherAlert> results = index.search(query, 10);
+        Assert.assertEquals(1, results.size());
+        Assert.assertSame(second, results.get(0));
+    }
+
+    @Test
+    public void testSearchNullQuery() {
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(DataGenUtil.randomWeatherAlert()));
+        Assert.assertEquals(1, index.search(null, 10).size());
+    }
+
+    @Test
+    public void testWithInactive() {
+        WeatherAlert first = alert("1", "Severe", "Immediate", "Warren");
+        first.setActive(true);
+        WeatherAlert second = alert("2", "Severe", "Immediate", "Warren");
+        second.setActive(true);
+        WeatherAlertIndex index = new WeatherAlertIndex(CollectionUtil.listOf(first, second));
+        WeatherAlertIndex updated = index.withInactive(CollectionUtil.setOf("2"));
+        Assert.assertNotSame(index, updated);
+        Assert.assertTrue(second.getActive());
+        WeatherAlert query = new WeatherAlert();
+        query.setActive(false);
+        List<WeatherAlert> results = updated.search(query, 10);
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("2", results.get(0).getId());
+        Assert.assertSame(updated, updated.withInactive(CollectionUtil.setOf("2", "3")));
+    }
+
+    @Test
+    public void testWithInactiveKeepsInvertedIndexes() {
+        WeatherAlert first = alert("1", "Severe", "Immediate", "Warren");
+        first.setActive(true);
+        WeatherAlert second = alert("2", "Minor", "Expected", "Bucks");
+        second.setActive(true);
+        WeatherAlertIndex updated = new WeatherAlertIndex(CollectionUtil.listOf(first, second)).withInactive(CollectionUtil.setOf("2"));
+        Assert.assertEquals(2, updated.size());
+        WeatherAlert query = new WeatherAlert();
+        query.setSeverity("minor");
+        query.setAreaDesc("bucks");
+        List<WeatherAlert> results = updated.search(query, 10);
+        Assert.assertEquals(1, results.size());
+        Assert.assertFalse(results.get(0).getActive());
+        // Alerts that did not expire are carried over as they are
+        Assert.assertSame(first, updated.selectAll(1).get(0));
+        // Each copy can be updated again
+        Assert.assertFalse(updated.withInactive(CollectionUtil.setOf("1")).selectAll(1).get(0).getActive());
+    }
+
+    /**
+     * Helper method to create a {@link WeatherAlert} with the indexed fields populated
+     *
+     * @param id        String alert identifier
+     * @param severity  String alert severity
+     * @param urgency   String alert urgency
+     * @param areaDesc  String alert area description
+     * @return WeatherAlert for testing
+     */
+    private WeatherAlert alert(String id, String severity, String urgency, String areaDesc) {
+        WeatherAlert weatherAlert = new WeatherAlert();
+        weatherAlert.setId(id);
+        weatherAlert.setSeverity(severity);
+        weatherAlert.setUrgency(urgency);
+        weatherAlert.setAreaDesc(areaDesc);
+        return weatherAlert;
+    }
+}
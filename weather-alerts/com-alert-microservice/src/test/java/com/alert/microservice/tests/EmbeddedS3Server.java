@@ -0,0 +1,717 @@
+package com.alert.microservice.tests;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process, memory backed stand-in for the parts of the AWS S3 REST API the application uses, so the S3 services
+ * and the {@link com.amazonaws.services.s3.transfer.TransferManager} can be tested with a real {@link AmazonS3} client
+ * without LocalStack. Only the requests the application sends are served.
+ *
+ * Supported operations:
+ *
+ * <ul>
+ *     <li>
+ *         Buckets = list, create, delete, exists (HEAD and ?acl) and get/put ?notification
+ *     </li>
+ *     <li>
+ *         Objects = put, get (with ranges and If-Match), head, delete and multi-object delete
+ *     </li>
+ *     <li>
+ *         Listing = ListObjects and ListObjectsV2 with prefix, delimiter, max-keys, markers and url encoding
+ *     </li>
+ *     <li>
+ *         Multipart = initiate, upload part, list parts, complete and abort
+ *     </li>
+ * </ul>
+ *
+ * Requests are served path-style and without aws-chunked bodies only, as sent by {@link #client()}. When a bucket
+ * has a notification configuration with an ObjectCreated event, every object created in it is handed to the
+ * listeners registered with {@link #onObjectCreated(BiConsumer)} so tests can stand in for the AWS Lambda that
+ * would be triggered.
+ */
+public class EmbeddedS3Server implements AutoCloseable {
+    private static final String REGION = "us-east-1";
+    private static final String OWNER_ID = "embedded";
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String XML_NAMESPACE = " xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"";
+    private static final int DEFAULT_MAX_KEYS = 1000;
+    private static final DateTimeFormatter ISO_8601 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter RFC_822 = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern DELETE_KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, StoredBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, String>> objectCreatedListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for an {@link EmbeddedS3Server}, use {@link #start()}
+     *
+     * @param server HttpServer bound to a local port
+     */
+    private EmbeddedS3Server(final HttpServer server) {
+        this.server = server;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-s3");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Starts a server on an ephemeral port of the loopback interface.
+     *
+     * @return EmbeddedS3Server that is accepting requests
+     * @throws IOException if the server cannot be bound
+     */
+    public static EmbeddedS3Server start() throws IOException {
+        return new EmbeddedS3Server(HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0));
+    }
+
+    /**
+     * URL the server is accepting requests on
+     *
+     * @return String endpoint, ex. http://127.0.0.1:49152
+     */
+    public String endpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Creates an {@link AmazonS3} client configured the same way as a client for LocalStack, pointed at this server.
+     *
+     * @return AmazonS3 client for this server
+     */
+    public AmazonS3 client() {
+        return AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint(), REGION))
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(OWNER_ID, OWNER_ID)))
+                .withPathStyleAccessEnabled(true)
+                .withChunkedEncodingDisabled(true)
+                .build();
+    }
+
+    /**
+     * Registers a listener called with the bucket and key of every object created in a bucket that has an
+     * ObjectCreated notification configured. Listeners are called on the request thread before the response is sent.
+     *
+     * @param listener BiConsumer of bucket name and object key
+     */
+    public void onObjectCreated(final BiConsumer<String, String> listener) {
+        objectCreatedListeners.add(listener);
+    }
+
+    /**
+     * Removes every bucket, object, upload and listener so the server can be reused between tests.
+     */
+    public void reset() {
+        buckets.clear();
+        uploads.clear();
+        objectCreatedListeners.clear();
+    }
+
+    /**
+     * Stops accepting requests and releases the port.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Routes a request to the bucket or object operation it addresses.
+     *
+     * @param exchange HttpExchange for the request
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath().substring(1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int slash = path.indexOf('/');
+            String bucketName = decode(slash < 0 ? path : path.substring(0, slash));
+            String key = slash < 0 ? "" : decode(path.substring(slash + 1));
+            if (bucketName.isEmpty()) {
+                listBuckets(exchange);
+            } else if (key.isEmpty()) {
+                handleBucket(exchange, bucketName, query);
+            } else {
+                handleObject(exchange, bucketName, key, query);
+            }
+        } catch (S3Error e) {
+            sendError(exchange, e);
+        } catch (RuntimeException e) {
+            sendError(exchange, new S3Error(500, "InternalError", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBucket(final HttpExchange exchange, final String bucketName, final Map<String, String> query) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                if (query.containsKey("notification")) {
+                    bucket(bucketName).notification = new String(readBody(exchange), StandardCharsets.UTF_8);
+                } else {
+                    readBody(exchange);
+                    buckets.putIfAbsent(bucketName, new StoredBucket(bucketName));
+                }
+                send(exchange, 200, null);
+                break;
+            case "HEAD":
+                bucket(bucketName);
+                send(exchange, 200, null);
+                break;
+            case "DELETE":
+                if (!bucket(bucketName).objects.isEmpty()) {
+                    throw new S3Error(409, "BucketNotEmpty", "The bucket you tried to delete is not empty");
+                }
+                buckets.remove(bucketName);
+                send(exchange, 204, null);
+                break;
+            case "POST":
+                if (!query.containsKey("delete")) {
+                    throw new S3Error(501, "NotImplemented", "Unsupported bucket POST");
+                }
+                deleteObjects(exchange, bucket(bucketName));
+                break;
+            case "GET":
+                StoredBucket bucket = bucket(bucketName);
+                if (query.containsKey("acl")) {
+                    sendXml(exchange, 200, "<AccessControlPolicy" + XML_NAMESPACE + ">" + owner()
+                            + "<AccessControlList/></AccessControlPolicy>");
+                } else if (query.containsKey("notification")) {
+                    sendXml(exchange, 200, Objects.isNull(bucket.notification)
+                            ? "<NotificationConfiguration" + XML_NAMESPACE + "/>"
+                            : bucket.notification.replaceFirst("^<\\?xml[^>]*\\?>", ""));
+                } else {
+                    listObjects(exchange, bucket, query);
+                }
+                break;
+            default:
+                throw new S3Error(405, "MethodNotAllowed", exchange.getRequestMethod());
+        }
+    }
+
+    private void handleObject(final HttpExchange exchange, final String bucketName, final String key,
+                              final Map<String, String> query) throws IOException {
+        StoredBucket bucket = bucket(bucketName);
+        Headers headers = exchange.getRequestHeaders();
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                if (query.containsKey("uploadId")) {
+                    uploadPart(exchange, upload(query.get("uploadId")), Integer.parseInt(query.get("partNumber")));
+                } else {
+                    StoredObject object = new StoredObject(readBody(exchange), headers.getFirst("Content-Type"), userMetadata(headers));
+                    created(bucket, key, object);
+                    exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+                    send(exchange, 200, null);
+                }
+                break;
+            case "GET":
+                if (query.containsKey("uploadId")) {
+                    listParts(exchange, bucketName, key, query.get("uploadId"));
+                } else {
+                    getObject(exchange, object(bucket, key));
+                }
+                break;
+            case "HEAD":
+                getObject(exchange, object(bucket, key));
+                break;
+            case "DELETE":
+                if (query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    bucket.objects.remove(key);
+                }
+                send(exchange, 204, null);
+                break;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    readBody(exchange);
+                    String uploadId = UUID.randomUUID().toString();
+                    uploads.put(uploadId, new MultipartUpload(headers.getFirst("Content-Type"), userMetadata(headers)));
+                    sendXml(exchange, 200, "<InitiateMultipartUploadResult" + XML_NAMESPACE + "><Bucket>" + escape(bucketName)
+                            + "</Bucket><Key>" + escape(key) + "</Key><UploadId>" + uploadId
+                            + "</UploadId></InitiateMultipartUploadResult>");
+                } else if (query.containsKey("uploadId")) {
+                    completeUpload(exchange, bucket, key, query.get("uploadId"));
+                } else {
+                    throw new S3Error(501, "NotImplemented", "Unsupported object POST");
+                }
+                break;
+            default:
+                throw new S3Error(405, "MethodNotAllowed", exchange.getRequestMethod());
+        }
+    }
+
+    private void listBuckets(final HttpExchange exchange) throws IOException {
+        StringBuilder xml = new StringBuilder("<ListAllMyBucketsResult").append(XML_NAMESPACE).append(">")
+                .append(owner()).append("<Buckets>");
+        new TreeMap<>(buckets).values().forEach(bucket -> xml.append("<Bucket><Name>").append(escape(bucket.name))
+                .append("</Name><CreationDate>").append(ISO_8601.format(bucket.created))
+                .append("</CreationDate></Bucket>"));
+        sendXml(exchange, 200, xml.append("</Buckets></ListAllMyBucketsResult>").toString());
+    }
+
+    /**
+     * Lists a page of objects for both ListObjects and ListObjectsV2. Keys sharing the part after the prefix up to
+     * the delimiter are rolled up into a single common prefix that counts once against max-keys.
+     */
+    private void listObjects(final HttpExchange exchange, final StoredBucket bucket, final Map<String, String> query) throws IOException {
+        final boolean v2 = "2".equals(query.get("list-type"));
+        final boolean urlEncoded = "url".equals(query.get("encoding-type"));
+        final String prefix = query.getOrDefault("prefix", "");
+        final String delimiter = query.get("delimiter");
+        final int maxKeys = query.containsKey("max-keys") ? Integer.parseInt(query.get("max-keys")) : DEFAULT_MAX_KEYS;
+        String after = v2 ? query.get("start-after") : query.get("marker");
+        if (v2 && query.containsKey("continuation-token")) {
+            after = new String(Base64.getDecoder().decode(query.get("continuation-token")), StandardCharsets.UTF_8);
+        }
+
+        NavigableMap<String, StoredObject> candidates = Objects.isNull(after) || after.isEmpty()
+                ? bucket.objects : bucket.objects.tailMap(after, false);
+        List<Map.Entry<String, StoredObject>> contents = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        String last = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                if (key.compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            int index = Objects.isNull(delimiter) || delimiter.isEmpty() ? -1 : key.indexOf(delimiter, prefix.length());
+            String commonPrefix = index < 0 ? null : key.substring(0, index + delimiter.length());
+            if (Objects.nonNull(commonPrefix) && (commonPrefix.equals(last) || (Objects.nonNull(after) && commonPrefix.compareTo(after) <= 0))) {
+                continue;
+            }
+            if (contents.size() + commonPrefixes.size() >= maxKeys) {
+                truncated = true;
+                break;
+            }
+            if (Objects.isNull(commonPrefix)) {
+                contents.add(entry);
+                last = key;
+            } else {
+                commonPrefixes.add(commonPrefix);
+                last = commonPrefix;
+            }
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult").append(XML_NAMESPACE).append(">")
+                .append(element("Name", bucket.name, false))
+                .append(element("Prefix", prefix, urlEncoded))
+                .append(element("MaxKeys", String.valueOf(maxKeys), false))
+                .append(element("IsTruncated", String.valueOf(truncated), false));
+        if (Objects.nonNull(delimiter)) {
+            xml.append(element("Delimiter", delimiter, urlEncoded));
+        }
+        if (urlEncoded) {
+            xml.append(element("EncodingType", "url", false));
+        }
+        if (v2) {
+            xml.append(element("KeyCount", String.valueOf(contents.size() + commonPrefixes.size()), false));
+            if (query.containsKey("continuation-token")) {
+                xml.append(element("ContinuationToken", query.get("continuation-token"), false));
+            }
+            if (query.containsKey("start-after")) {
+                xml.append(element("StartAfter", query.get("start-after"), urlEncoded));
+            }
+            if (truncated) {
+                xml.append(element("NextContinuationToken",
+                        Base64.getEncoder().encodeToString(last.getBytes(StandardCharsets.UTF_8)), false));
+            }
+        } else {
+            xml.append(element("Marker", Objects.isNull(after) ? "" : after, urlEncoded));
+            if (truncated) {
+                xml.append(element("NextMarker", last, urlEncoded));
+            }
+        }
+        for (Map.Entry<String, StoredObject> entry : contents) {
+            StoredObject object = entry.getValue();
+            xml.append("<Contents>").append(element("Key", entry.getKey(), urlEncoded))
+                    .append(element("LastModified", ISO_8601.format(object.lastModified), false))
+                    .append("<ETag>&quot;").append(object.etag).append("&quot;</ETag>")
+                    .append(element("Size", String.valueOf(object.content.length), false))
+                    .append(owner())
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        commonPrefixes.forEach(commonPrefix -> xml.append("<CommonPrefixes>")
+                .append(element("Prefix", commonPrefix, urlEncoded)).append("</CommonPrefixes>"));
+        sendXml(exchange, 200, xml.append("</ListBucketResult>").toString());
+    }
+
+    private void deleteObjects(final HttpExchange exchange, final StoredBucket bucket) throws IOException {
+        String body = new String(readBody(exchange), StandardCharsets.UTF_8);
+        boolean quiet = body.contains("<Quiet>true</Quiet>");
+        StringBuilder xml = new StringBuilder("<DeleteResult").append(XML_NAMESPACE).append(">");
+        Matcher matcher = DELETE_KEY.matcher(body);
+        while (matcher.find()) {
+            String key = unescape(matcher.group(1));
+            bucket.objects.remove(key);
+            if (!quiet) {
+                xml.append("<Deleted>").append(element("Key", key, false)).append("</Deleted>");
+            }
+        }
+        sendXml(exchange, 200, xml.append("</DeleteResult>").toString());
+    }
+
+    private void getObject(final HttpExchange exchange, final StoredObject object) throws IOException {
+        // Reads pinned to an ETag fail once the object was overwritten, the client then returns no object
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (Objects.nonNull(ifMatch) && !ifMatch.replace("\"", "").equals(object.etag)) {
+            throw new S3Error(412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold");
+        }
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", "\"" + object.etag + "\"");
+        responseHeaders.set("Last-Modified", RFC_822.format(object.lastModified));
+        responseHeaders.set("Accept-Ranges", "bytes");
+        responseHeaders.set("Content-Type", Objects.isNull(object.contentType) ? "application/octet-stream" : object.contentType);
+        object.userMetadata.forEach((name, value) -> responseHeaders.set("x-amz-meta-" + name, value));
+
+        int start = 0;
+        int end = object.content.length - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = Objects.isNull(range) ? null : RANGE.matcher(range);
+        if (Objects.nonNull(matcher) && matcher.matches()) {
+            if (matcher.group(1).isEmpty()) {
+                start = Math.max(0, object.content.length - Integer.parseInt(matcher.group(2)));
+            } else {
+                start = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                }
+            }
+            if (start >= object.content.length) {
+                throw new S3Error(416, "InvalidRange", "The requested range is not satisfiable");
+            }
+            status = 206;
+            responseHeaders.set("Content-Range", "bytes " + start + "-" + end + "/" + object.content.length);
+        }
+
+        final int length = end - start + 1;
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            responseHeaders.set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(object.content, start, length);
+        }
+    }
+
+    private void uploadPart(final HttpExchange exchange, final MultipartUpload upload, final int partNumber) throws IOException {
+        byte[] content = readBody(exchange);
+        upload.parts.put(partNumber, content);
+        exchange.getResponseHeaders().set("ETag", "\"" + hex(md5(content)) + "\"");
+        send(exchange, 200, null);
+    }
+
+    /**
+     * Lists the uploaded parts in a single page. TransferManager asks for them before uploading a file in parallel.
+     */
+    private void listParts(final HttpExchange exchange, final String bucketName, final String key, final String uploadId) throws IOException {
+        StringBuilder xml = new StringBuilder("<ListPartsResult").append(XML_NAMESPACE).append("><Bucket>")
+                .append(escape(bucketName)).append("</Bucket><Key>").append(escape(key)).append("</Key><UploadId>")
+                .append(uploadId).append("</UploadId><IsTruncated>false</IsTruncated>");
+        new TreeMap<>(upload(uploadId).parts).forEach((partNumber, content) -> xml.append("<Part><PartNumber>")
+                .append(partNumber).append("</PartNumber><ETag>&quot;").append(hex(md5(content)))
+                .append("&quot;</ETag><Size>").append(content.length).append("</Size></Part>"));
+        sendXml(exchange, 200, xml.append("</ListPartsResult>").toString());
+    }
+
+    /**
+     * Assembles the listed parts into the object. The ETag is the MD5 of the part MD5s followed by the part count,
+     * the same as S3, so clients treat it as a multipart ETag and skip whole object MD5 validation.
+     */
+    private void completeUpload(final HttpExchange exchange, final StoredBucket bucket, final String key, final String uploadId) throws IOException {
+        MultipartUpload upload = upload(uploadId);
+        String body = new String(readBody(exchange), StandardCharsets.UTF_8);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream partDigests = new ByteArrayOutputStream();
+        int partCount = 0;
+        Matcher matcher = PART_NUMBER.matcher(body);
+        while (matcher.find()) {
+            byte[] part = upload.parts.get(Integer.parseInt(matcher.group(1)));
+            if (Objects.isNull(part)) {
+                throw new S3Error(400, "InvalidPart", "Part " + matcher.group(1) + " was not uploaded");
+            }
+            content.write(part);
+            partDigests.write(md5(part));
+            partCount++;
+        }
+        uploads.remove(uploadId);
+        StoredObject object = new StoredObject(content.toByteArray(), upload.contentType, upload.userMetadata,
+                hex(md5(partDigests.toByteArray())) + "-" + partCount);
+        created(bucket, key, object);
+        sendXml(exchange, 200, "<CompleteMultipartUploadResult" + XML_NAMESPACE + "><Location>" + endpoint() + "/"
+                + escape(bucket.name) + "/" + escape(key) + "</Location><Bucket>" + escape(bucket.name) + "</Bucket><Key>"
+                + escape(key) + "</Key><ETag>&quot;" + object.etag + "&quot;</ETag></CompleteMultipartUploadResult>");
+    }
+
+    /**
+     * Stores the object and notifies the listeners if the bucket is configured to publish ObjectCreated events.
+     */
+    private void created(final StoredBucket bucket, final String key, final StoredObject object) {
+        bucket.objects.put(key, object);
+        if (Objects.nonNull(bucket.notification) && bucket.notification.contains("s3:ObjectCreated")) {
+            objectCreatedListeners.forEach(listener -> listener.accept(bucket.name, key));
+        }
+    }
+
+    private StoredBucket bucket(final String bucketName) {
+        StoredBucket bucket = buckets.get(bucketName);
+        if (Objects.isNull(bucket)) {
+            throw new S3Error(404, "NoSuchBucket", "The specified bucket does not exist");
+        }
+        return bucket;
+    }
+
+    private static StoredObject object(final StoredBucket bucket, final String key) {
+        StoredObject object = bucket.objects.get(key);
+        if (Objects.isNull(object)) {
+            throw new S3Error(404, "NoSuchKey", "The specified key does not exist.");
+        }
+        return object;
+    }
+
+    private MultipartUpload upload(final String uploadId) {
+        MultipartUpload upload = uploads.get(uploadId);
+        if (Objects.isNull(upload)) {
+            throw new S3Error(404, "NoSuchUpload", "The specified upload does not exist");
+        }
+        return upload;
+    }
+
+    /**
+     * Reads the request body.
+     */
+    private static byte[] readBody(final HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> userMetadata(final Headers headers) {
+        Map<String, String> userMetadata = new HashMap<>();
+        headers.forEach((name, values) -> {
+            if (name.toLowerCase().startsWith("x-amz-meta-")) {
+                userMetadata.put(name.substring("x-amz-meta-".length()).toLowerCase(), values.get(0));
+            }
+        });
+        return userMetadata;
+    }
+
+    private static Map<String, String> parseQuery(final String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (Objects.nonNull(rawQuery)) {
+            for (String parameter : rawQuery.split("&")) {
+                int equals = parameter.indexOf('=');
+                query.put(decode(equals < 0 ? parameter : parameter.substring(0, equals)),
+                        equals < 0 ? "" : decode(parameter.substring(equals + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static void sendError(final HttpExchange exchange, final S3Error error) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(error.status, -1);
+        } else {
+            sendXml(exchange, error.status, "<Error><Code>" + error.code + "</Code><Message>" + escape(error.getMessage())
+                    + "</Message><Resource>" + escape(exchange.getRequestURI().getRawPath()) + "</Resource><RequestId>"
+                    + UUID.randomUUID() + "</RequestId></Error>");
+        }
+    }
+
+    private static void sendXml(final HttpExchange exchange, final int status, final String xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, status, (XML_HEADER + xml).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("x-amz-request-id", UUID.randomUUID().toString());
+        if (Objects.isNull(body) || body.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static String owner() {
+        return "<Owner><ID>" + OWNER_ID + "</ID><DisplayName>" + OWNER_ID + "</DisplayName></Owner>";
+    }
+
+    private static String element(final String name, final String value, final boolean urlEncode) {
+        return "<" + name + ">" + escape(urlEncode ? encode(value) : value) + "</" + name + ">";
+    }
+
+    private static String escape(final String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\"", "&quot;").replace("'", "&apos;");
+    }
+
+    private static String unescape(final String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] md5(final byte[] content) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Bucket with its objects sorted by key, as S3 lists them
+     */
+    private static class StoredBucket {
+        private final String name;
+        private final Instant created = Instant.now();
+        private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+        private volatile String notification;
+
+        private StoredBucket(final String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Immutable object content and the metadata returned with it
+     */
+    private static class StoredObject {
+        private final byte[] content;
+        private final String contentType;
+        private final Map<String, String> userMetadata;
+        private final String etag;
+        private final Instant lastModified = Instant.now();
+
+        private StoredObject(final byte[] content, final String contentType, final Map<String, String> userMetadata) {
+            this(content, contentType, userMetadata, hex(md5(content)));
+        }
+
+        private StoredObject(final byte[] content, final String contentType, final Map<String, String> userMetadata, final String etag) {
+            this.content = content;
+            this.contentType = contentType;
+            this.userMetadata = userMetadata;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Parts uploaded so far for a multipart upload that has not been completed or aborted
+     */
+    private static class MultipartUpload {
+        private final String contentType;
+        private final Map<String, String> userMetadata;
+        private final ConcurrentMap<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        private MultipartUpload(final String contentType, final Map<String, String> userMetadata) {
+            this.contentType = contentType;
+            this.userMetadata = userMetadata;
+        }
+    }
+
+    /**
+     * S3 error response
+     */
+    private static class S3Error extends RuntimeException {
+        private final int status;
+        private final String code;
+
+        private S3Error(final int status, final String code, final String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+    }
+}
@@ -115,6 +115,18 @@ public class CollectionUtilTest {
         Assert.assertEquals(1, size(listOf(TEST_STR)));
     }
 
+    @Test
+    public void testPartition() {
+        Assert.assertTrue(partition(null, 2).isEmpty());
+        Assert.assertEquals(listOf(listOf("a", "b"), listOf("c")), partition(listOf("a", "b", "c"), 2));
+        Assert.assertEquals(Collections.singletonList(listOf("a", "b", "c")), partition(listOf("a", "b", "c"), 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartitionInvalidSize() {
+        partition(listOf(TEST_STR), 0);
+    }
+
     @Test
     public void testStreamOnSequential() {
         String joinedElements = streamOn(setOf(TEST_STR).iterator()).collect(Collectors.joining());
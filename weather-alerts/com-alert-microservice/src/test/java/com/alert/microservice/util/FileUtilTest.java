@@ -0,0 +1,36 @@
+package com.alert.microservice.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class FileUtilTest {
+    // SHA-256 of "hello world" encoded as Base64
+    private static final String HELLO_WORLD_SHA256 = "uU0nuZNNPgilLlLX2n2r+sSE7+N6U4DukIj3rOLvzek=";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSha256Base64EmptyBuffer() {
+        Assert.assertEquals("47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=", FileUtil.sha256Base64(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void testMapMatchesFile() throws IOException {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), "hello world".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = FileUtil.map(file.toPath());
+        Assert.assertEquals(11, buffer.remaining());
+        Assert.assertEquals(HELLO_WORLD_SHA256, FileUtil.sha256Base64(buffer));
+        // Hashing the buffer leaves it untouched so it can still be uploaded
+        Assert.assertEquals(0, buffer.position());
+    }
+}
@@ -6,12 +6,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 import static com.alert.microservice.util.TransformUtil.convert;
 import static com.alert.microservice.util.TransformUtil.mapEntity;
 import static com.alert.microservice.util.TransformUtil.mapper;
+import static com.alert.microservice.util.TransformUtil.reader;
 import static com.alert.microservice.util.TransformUtil.writeAsJSONString;
 
 public class TransformUtilTest {
@@ -56,4 +59,19 @@ public class TransformUtilTest {
         Map<String, String> map = mapEntity(weatherAlert);
         Assert.assertEquals("1", map.get("id"));
     }
+
+    @Test(expected = NullPointerException.class)
+    public void testReaderNPE() {
+        reader(null);
+    }
+
+    @Test
+    public void testReader() throws IOException {
+        // Readers are cached so the same instance should be handed back for the same class
+        Assert.assertSame(reader(WeatherAlert.class), reader(WeatherAlert.class));
+        byte[] json = "{\"id\":\"1\",\"severity\":\"Minor\"}".getBytes(StandardCharsets.UTF_8);
+        WeatherAlert weatherAlert = reader(WeatherAlert.class).readValue(json, 0, json.length);
+        Assert.assertEquals("1", weatherAlert.getId());
+        Assert.assertEquals("Minor", weatherAlert.getSeverity());
+    }
 }